@@ -1,11 +1,14 @@
 package edu.ucsb.cs156.example;
 
+import edu.ucsb.cs156.example.config.JobRetentionProperties;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
@@ -18,6 +21,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @Slf4j
 @EnableAsync // for @Async annotation for JobsService
 @EnableScheduling // for @Scheduled annotation for JobsService
+@EnableConfigurationProperties(JobRetentionProperties.class)
+@EnableCaching // for @Cacheable on ReferenceDataCache
 public class ExampleApplication {
 
   @Autowired WiremockService wiremockService;
@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.aop;
+
+import edu.ucsb.cs156.example.controllers.VersionedTable;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Conditional GETs for controllers marked with {@link VersionedTable}.
+ *
+ * <p>A GET (or HEAD) gets a strong {@code ETag} made from the table's version, and {@code
+ * Cache-Control: private, no-cache} so that browsers keep the response but revalidate it each time.
+ * If the request's {@code If-None-Match} matches, the response is a 304 and the handler's body is
+ * not run, so no rows are read.
+ *
+ * <p>This is advice on the handler method rather than a {@code HandlerInterceptor} so that it runs
+ * after {@code @PreAuthorize}: it has the lowest precedence, so method security's advice wraps it,
+ * and a caller who may not read the table gets a 403 rather than a 304 that confirms its version.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ConditionalGetAspect {
+
+  private static final String CACHE_CONTROL =
+      CacheControl.noCache().cachePrivate().getHeaderValue();
+
+  @Autowired TableVersionService tableVersionService;
+
+  /**
+   * Answer a GET of a versioned table with 304 Not Modified if the client's copy is current.
+   *
+   * @param joinPoint the handler method call
+   * @param versionedTable the handler's {@link VersionedTable} annotation
+   * @return what the handler returns, or {@code null} for a 304
+   * @throws Throwable whatever the handler throws
+   */
+  @Around(
+      "@within(versionedTable) && @annotation(org.springframework.web.bind.annotation.GetMapping)")
+  public Object checkNotModified(ProceedingJoinPoint joinPoint, VersionedTable versionedTable)
+      throws Throwable {
+    ServletRequestAttributes attributes =
+        (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+    HttpServletResponse response = attributes.getResponse();
+    response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+    String etag = tableVersionService.etag(versionedTable.value());
+    if (new ServletWebRequest(attributes.getRequest(), response).checkNotModified(etag)) {
+      return null;
+    }
+    return joinPoint.proceed();
+  }
+}
@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.aop;
+
+import edu.ucsb.cs156.example.controllers.VersionedTable;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * Bumps the version of the table behind a controller marked with {@link VersionedTable} on every
+ * write (POST, PUT, PATCH or DELETE), in the same transaction as the write.
+ *
+ * <p>The handler runs in a transaction that its repository calls join, and the bump is its last
+ * statement, so the new version commits together with the rows before the response is written: a
+ * conditional GET sent as soon as the response arrives cannot be answered 304 with the old {@code
+ * ETag}. If the handler or the bump throws, the transaction rolls back and the exception becomes
+ * the response. Controllers whose writes bump the version themselves ({@link
+ * VersionedTable#bumpAfterWrites}) are left alone. The ETags and 304s of the reads are {@link
+ * ConditionalGetAspect}'s.
+ *
+ * <p>Like {@link ConditionalGetAspect} it has the lowest precedence, so it runs after
+ * {@code @PreAuthorize} and a refused caller never opens a transaction.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class TableVersionAspect {
+
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired PlatformTransactionManager transactionManager;
+
+  /**
+   * Run a write to a versioned table and bump the table's version in one transaction.
+   *
+   * @param joinPoint the handler method call
+   * @param versionedTable the handler's {@link VersionedTable} annotation
+   * @return what the handler returns
+   * @throws Throwable whatever the handler or the bump throws
+   */
+  @Around(
+      "@within(versionedTable) && ("
+          + "@annotation(org.springframework.web.bind.annotation.PostMapping)"
+          + " || @annotation(org.springframework.web.bind.annotation.PutMapping)"
+          + " || @annotation(org.springframework.web.bind.annotation.PatchMapping)"
+          + " || @annotation(org.springframework.web.bind.annotation.DeleteMapping))")
+  public Object bumpWithWrite(ProceedingJoinPoint joinPoint, VersionedTable versionedTable)
+      throws Throwable {
+    if (!versionedTable.bumpAfterWrites()) {
+      return joinPoint.proceed();
+    }
+    TransactionStatus transaction =
+        transactionManager.getTransaction(TransactionDefinition.withDefaults());
+    Object result;
+    try {
+      result = joinPoint.proceed();
+      tableVersionService.bump(versionedTable.value());
+    } catch (Throwable t) {
+      transactionManager.rollback(transaction);
+      throw t;
+    }
+    transactionManager.commit(transaction);
+    return result;
+  }
+}
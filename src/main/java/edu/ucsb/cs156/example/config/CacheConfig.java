@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The `CacheConfig` class adds the caches that need different settings from the ones in {@code
+ * spring.cache.caffeine.spec}.
+ *
+ * <p>The {@value #CURRENT_USERS} cache holds the {@code User} row of each logged in user, keyed by
+ * email, for {@code app.currentUser.cacheTtl}. It is kept short so that changes made to the users
+ * table behind the app's back are picked up quickly.
+ */
+@Configuration
+@Slf4j
+public class CacheConfig {
+
+  /** Name of the cache of logged in users. */
+  public static final String CURRENT_USERS = "currentUsers";
+
+  @Value("${app.currentUser.cacheTtl:60s}")
+  private Duration currentUserCacheTtl;
+
+  @Value("${app.currentUser.cacheMaxSize:10000}")
+  private long currentUserCacheMaxSize;
+
+  /**
+   * Registers the {@value #CURRENT_USERS} cache with the Caffeine cache manager.
+   *
+   * @return the customizer
+   */
+  @Bean
+  public CacheManagerCustomizer<CaffeineCacheManager> currentUsersCacheCustomizer() {
+    log.info("current user cache: ttl={} maxSize={}", currentUserCacheTtl, currentUserCacheMaxSize);
+    return cacheManager ->
+        cacheManager.registerCustomCache(
+            CURRENT_USERS,
+            Caffeine.newBuilder()
+                .expireAfterWrite(currentUserCacheTtl)
+                .maximumSize(currentUserCacheMaxSize)
+                .recordStats()
+                .build());
+  }
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * The `JobExecutorConfig` class defines the executor that background jobs run on (see {@code
+ * JobService.runJobAsync}).
+ *
+ * <p>At most {@code app.jobs.executor.poolSize} jobs run at once, and at most {@code
+ * app.jobs.executor.queueCapacity} more wait for a thread. A job submitted beyond that is rejected
+ * immediately instead of piling up. With {@code app.jobs.executor.mode=virtual} each job runs on a
+ * virtual thread; the pool size then only limits how many run concurrently.
+ */
+@Configuration
+@Slf4j
+public class JobExecutorConfig {
+
+  /** Name of the executor bean, as used in {@code @Async(JobExecutorConfig.JOB_EXECUTOR)}. */
+  public static final String JOB_EXECUTOR = "jobExecutor";
+
+  @Value("${app.jobs.executor.mode:platform}")
+  private String mode;
+
+  @Value("${app.jobs.executor.poolSize:4}")
+  private int poolSize;
+
+  @Value("${app.jobs.executor.queueCapacity:100}")
+  private int queueCapacity;
+
+  /**
+   * The executor for background jobs. Its default rejection policy throws a {@code
+   * TaskRejectedException} back to the caller when the pool and queue are full.
+   *
+   * @return the job executor
+   */
+  @Bean(name = JOB_EXECUTOR)
+  public ThreadPoolTaskExecutor jobExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setVirtualThreads("virtual".equalsIgnoreCase(mode));
+    executor.setThreadNamePrefix("job-");
+    log.info("job executor: mode={} poolSize={} queueCapacity={}", mode, poolSize, queueCapacity);
+    return executor;
+  }
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * How long finished jobs are kept ({@code app.jobs.retention.*}); see {@code JobRetentionService}.
+ *
+ * @param maxAge jobs created longer ago than this are deleted (null or zero to keep them)
+ * @param maxCount only the newest this many jobs of each status are kept (0 for no limit)
+ * @param batchSize the number of rows deleted per statement
+ * @param statuses limits for particular statuses, overriding {@code maxAge} and {@code maxCount}
+ */
+@ConfigurationProperties(prefix = "app.jobs.retention")
+public record JobRetentionProperties(
+    Duration maxAge, int maxCount, int batchSize, Map<String, Limits> statuses) {
+
+  /**
+   * Limits for one status. A null field falls back to the default.
+   *
+   * @param maxAge jobs created longer ago than this are deleted
+   * @param maxCount only the newest this many jobs are kept
+   */
+  public record Limits(Duration maxAge, Integer maxCount) {}
+}
@@ -2,23 +2,18 @@ package edu.ucsb.cs156.example.config;
 
 import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
-import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AdminService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
@@ -53,10 +48,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @Slf4j
 public class SecurityConfig {
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<>();
-
-  @Autowired UserRepository userRepository;
+  @Autowired AdminService adminService;
 
   /**
    * The `filterChain` method in this Java code configures various security settings for an HTTP
@@ -79,7 +71,12 @@ public class SecurityConfig {
                 csrf.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
                     .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(
+            auth ->
+                auth.requestMatchers(antMatcher("/actuator/metrics/**"))
+                    .hasRole("ADMIN")
+                    .anyRequest()
+                    .permitAll())
         .logout(
             logout ->
                 logout
@@ -113,7 +110,7 @@ public class SecurityConfig {
               mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_USER"));
 
               String email = (String) userAttributes.get("email");
-              if (getAdmin(email)) {
+              if (adminService.isAdmin(email)) {
                 mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
               }
 
@@ -127,21 +124,6 @@ public class SecurityConfig {
     };
   }
 
-  /**
-   * This method checks if the given email belongs to an admin user either from a predefined list or
-   * by querying the user repository.
-   *
-   * @param email email address of the user
-   * @return whether the user with the given email is an admin
-   */
-  public boolean getAdmin(String email) {
-    if (adminEmails.contains(email)) {
-      return true;
-    }
-    Optional<User> u = userRepository.findByEmail(email);
-    return u.isPresent() && u.get().getAdmin();
-  }
-
   @Bean
   static RoleHierarchy roleHierarchy() {
     return RoleHierarchyImpl.withDefaultRolePrefix().role("ADMIN").implies("USER").build();
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * The `WebAsyncConfig` class defines the executor that streamed response bodies (see {@code
+ * JsonStreamService}) are written on. Only export endpoints such as {@code
+ * /api/menuitemreviews/export} stream their responses; the {@code /all} endpoints do not use it.
+ *
+ * <p>Because {@link JobExecutorConfig} defines an executor, Spring Boot does not create its usual
+ * one, and Spring MVC would otherwise start a new thread for every streamed response. At most
+ * {@code app.streaming.poolSize} responses are written at once, and a response that takes longer
+ * than {@code app.streaming.timeoutMillis} is abandoned.
+ *
+ * <p>A streamed response holds a database connection for as long as the client takes to read it, so
+ * the pool is capped at a quarter of the connection pool ({@code
+ * spring.datasource.hikari.maximum-pool-size}); slow clients can then never take the connections
+ * every other request needs.
+ */
+@Configuration
+@Slf4j
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+  /** Name of the executor bean. */
+  public static final String STREAMING_EXECUTOR = "streamingExecutor";
+
+  @Value("${app.streaming.poolSize:2}")
+  private int poolSize;
+
+  @Value("${app.streaming.queueCapacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.streaming.timeoutMillis:600000}")
+  private long timeoutMillis;
+
+  @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+  private int connectionPoolSize;
+
+  /**
+   * How many responses may be streamed at once: {@code app.streaming.poolSize}, but no more than a
+   * quarter of the database connection pool.
+   *
+   * @return the number of streaming threads
+   */
+  int threads() {
+    int limit = Math.max(1, connectionPoolSize / 4);
+    if (poolSize > limit) {
+      log.warn(
+          "app.streaming.poolSize={} lowered to {}, a quarter of the {} database connections",
+          poolSize,
+          limit,
+          connectionPoolSize);
+      return limit;
+    }
+    return poolSize;
+  }
+
+  /**
+   * The executor for streamed response bodies.
+   *
+   * @return the streaming executor
+   */
+  @Bean(name = STREAMING_EXECUTOR)
+  public ThreadPoolTaskExecutor streamingExecutor() {
+    int threads = threads();
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("stream-");
+    log.info("streaming executor: poolSize={} queueCapacity={}", threads, queueCapacity);
+    return executor;
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(streamingExecutor());
+    configurer.setDefaultTimeout(timeoutMillis);
+  }
+}
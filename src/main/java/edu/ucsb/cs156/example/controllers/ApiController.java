@@ -1,20 +1,77 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobRejectedException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.repositories.StreamingRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.JsonStreamService;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.CrudRepository;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is an abstract class that provides common functionality for all API controllers. */
 @Slf4j
 public abstract class ApiController {
+  /** Page size for keyset pagination when no {@code limit} is given. */
+  public static final int DEFAULT_PAGE_LIMIT = 100;
+
+  /** Largest page size for keyset pagination; larger limits are reduced to this. */
+  public static final int MAX_PAGE_LIMIT = 1000;
+
+  /**
+   * Description of the {@code after} and {@code limit} parameters of the {@code /all} endpoints.
+   */
+  protected static final String KEYSET_DESCRIPTION =
+      "With no parameters, returns every row. With `after` and/or `limit`, returns `{items, next}`:"
+          + " up to `limit` rows (default 100, at most 1000) in primary key order, starting after key"
+          + " `after`. Pass `next` as `after` to get the following page; it is null on the last"
+          + " page.";
+
+  /** Description of the {@code /batch} endpoints. */
+  protected static final String BATCH_DESCRIPTION =
+      "Takes a JSON array (at most `app.batch.maxItems` items, 1000 by default) and applies every"
+          + " item in one transaction. Returns `{index, key, status}` for each item, in request"
+          + " order; status is CREATED, UPDATED, DELETED, NOT_FOUND or CONFLICT (the key of a new"
+          + " item is already taken). Items that cannot be applied do not stop the others.";
+
+  /** Description of the {@code If-Match} header of the PUT, PATCH and DELETE endpoints. */
+  protected static final String IF_MATCH_DESCRIPTION =
+      "With `If-Match: \"<version>\"`, where version is the row's `version` property, the row is"
+          + " only changed if it is still at that version; otherwise the response is 412. A PUT"
+          + " body with a non-null `version` is checked the same way, but answers 409.";
+
+  /** Description of the PATCH endpoints. */
+  protected static final String PATCH_DESCRIPTION =
+      "Takes a JSON object with only the fields to change, e.g. `{\"done\": true}`, and changes"
+          + " them with a single UPDATE statement. The key and `version` cannot be changed. "
+          + IF_MATCH_DESCRIPTION;
+
+  private static final Pattern VERSION_TAG = Pattern.compile("\"(\\d{1,18})\"");
+
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JsonStreamService jsonStreamService;
+
   /**
    * This method returns the current user.
    *
@@ -34,6 +91,137 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * Read one page of a list in key order; see {@link KeysetPage}.
+   *
+   * @param <T> type of the items
+   * @param <K> type of the key
+   * @param limit requested page size (null for the default)
+   * @param query reads rows in key order, after the requested key, up to the given limit
+   * @param key gets the key of an item
+   * @return the page
+   */
+  protected static <T, K> KeysetPage<T, K> keysetPage(
+      Integer limit, Function<Limit, List<T>> query, Function<T, K> key) {
+    int size = limit == null ? DEFAULT_PAGE_LIMIT : Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+    return KeysetPage.of(query.apply(Limit.of(size + 1)), size, key);
+  }
+
+  /**
+   * Write every row of a table to the response as it is read, rather than reading the whole table
+   * into memory first; see {@link JsonStreamService#array}. Only for endpoints that export a large
+   * table: the body is written on the small streaming executor (see {@code WebAsyncConfig}), which
+   * holds a database connection until the client has read it all. The {@code /all} endpoints return
+   * their rows as usual.
+   *
+   * @param <T> type of the rows
+   * @param repository the repository to read from
+   * @return a response whose body is a JSON array of the rows
+   */
+  protected <T> ResponseEntity<StreamingResponseBody> streamAll(
+      StreamingRepository<T, ?> repository) {
+    return jsonStreamService.array(repository::streamAllBy);
+  }
+
+  /**
+   * The version a row must be at for a PUT, PATCH or DELETE to change it.
+   *
+   * @param ifMatch the {@code If-Match} header, or null if there is none
+   * @param version the version given in the request body, or null if there is none
+   * @return the version from {@code If-Match} if there is one, otherwise {@code version}; null if
+   *     the row may be at any version
+   * @throws ResponseStatusException (400) if {@code If-Match} is not {@code *} or a quoted version
+   */
+  protected static Long requiredVersion(String ifMatch, Long version) {
+    if (ifMatch == null) {
+      return version;
+    }
+    if (ifMatch.trim().equals("*")) {
+      return null;
+    }
+    Matcher matcher = VERSION_TAG.matcher(ifMatch.trim());
+    if (!matcher.matches()) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "If-Match must be * or a quoted version, such as \"3\"");
+    }
+    return Long.valueOf(matcher.group(1));
+  }
+
+  /**
+   * Check the number of rows changed by a single-statement update or delete, and if there were
+   * none, work out why. Only a failed write pays for the extra {@code existsById} query.
+   *
+   * @param <K> type of the key
+   * @param count the number of rows the statement changed
+   * @param repository the repository the row is in
+   * @param type the entity class, for error messages
+   * @param key the key of the row
+   * @param ifMatch the {@code If-Match} header, or null if there is none
+   * @param version the version the row had to be at (see {@link #requiredVersion}), or null
+   * @throws EntityNotFoundException if there is no row with that key
+   * @throws PreconditionFailedException (412) if the row is not at the version in {@code If-Match}
+   * @throws VersionConflictException (409) if the row is not at the version in the request body
+   */
+  protected static <K> void checkWritten(
+      int count,
+      CrudRepository<?, K> repository,
+      Class<?> type,
+      K key,
+      String ifMatch,
+      Long version) {
+    if (count > 0) {
+      return;
+    }
+    if (version == null || !repository.existsById(key)) {
+      throw new EntityNotFoundException(type, key);
+    }
+    if (ifMatch != null) {
+      throw new PreconditionFailedException(type, key, version);
+    }
+    throw new VersionConflictException(type, key, version);
+  }
+
+  /**
+   * Overwrite a row with a single-statement update and work out the version it is at afterwards.
+   * With a required version, the update is conditional on it, and failures are reported by {@link
+   * #checkWritten}. Without one, the row's current version is read and the update made conditional
+   * on that, so the version returned is the one this update wrote even if another write lands at
+   * the same time; if one does, the update is tried again at the newer version.
+   *
+   * @param <K> type of the key
+   * @param update runs the update, only changing the row if it is at the given version
+   * @param findVersion reads the version of the row with a key
+   * @param repository the repository the row is in
+   * @param type the entity class, for error messages
+   * @param key the key of the row
+   * @param ifMatch the {@code If-Match} header, or null if there is none
+   * @param version the version the row has to be at (see {@link #requiredVersion}), or null
+   * @return the version of the row after the update
+   * @throws EntityNotFoundException if there is no row with that key
+   * @throws PreconditionFailedException (412) if the row is not at the version in {@code If-Match}
+   * @throws VersionConflictException (409) if the row is not at the version in the request body
+   */
+  protected static <K> long updateRow(
+      LongToIntFunction update,
+      Function<K, Optional<Long>> findVersion,
+      CrudRepository<?, K> repository,
+      Class<?> type,
+      K key,
+      String ifMatch,
+      Long version) {
+    if (version != null) {
+      checkWritten(update.applyAsInt(version), repository, type, key, ifMatch, version);
+      return version + 1;
+    }
+    while (true) {
+      long current =
+          findVersion.apply(key).orElseThrow(() -> new EntityNotFoundException(type, key));
+      if (update.applyAsInt(current) > 0) {
+        return current + 1;
+      }
+    }
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    *
@@ -47,4 +235,66 @@ public abstract class ApiController {
         "type", e.getClass().getSimpleName(),
         "message", e.getMessage());
   }
+
+  /**
+   * This method handles the JobRejectedException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({JobRejectedException.class})
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public Object handleJobRejectedException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles the VersionConflictException, and the OptimisticLockingFailureException
+   * that JPA throws when a row read for an update has been changed by the time it is written.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({VersionConflictException.class, OptimisticLockingFailureException.class})
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleVersionConflictException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles the DataIntegrityViolationException that a write throws when the database
+   * rejects it, e.g. a POST with the key of an existing row. The database's own message names
+   * tables and SQL, so it is logged rather than returned.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({DataIntegrityViolationException.class})
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleDataIntegrityViolationException(Throwable e) {
+    log.info("Write rejected by the database: {}", e.getMessage());
+    return Map.of(
+        "type",
+        e.getClass().getSimpleName(),
+        "message",
+        "The write conflicts with an existing row, e.g. its key is already taken");
+  }
+
+  /**
+   * This method handles the PreconditionFailedException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({PreconditionFailedException.class})
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handlePreconditionFailedException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
 }
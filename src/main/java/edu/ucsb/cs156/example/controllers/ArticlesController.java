@@ -1,23 +1,34 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,22 +37,51 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Articles")
 @RequestMapping("/api/articles")
 @RestController
+@VersionedTable(Article.class)
 @Slf4j
 public class ArticlesController extends ApiController {
 
   @Autowired ArticleRepository articleRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
+  @Autowired ArticleSearchIndex articleSearchIndex;
+
+  /** Number of articles a search returns when {@code limit} is not given. */
+  public static final int DEFAULT_SEARCH_LIMIT = 10;
+
+  /** Largest search {@code limit} honoured; larger values are capped to this. */
+  public static final int MAX_SEARCH_LIMIT = 100;
+
   /**
    * List all articles
    *
-   * @return an iterable of articles
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of articles, or one page of them if {@code after} or {@code limit} is given
    */
-  @Operation(summary = "List articles")
+  @Operation(summary = "List articles", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Article> allArticles() {
-    Iterable<Article> articles = articleRepository.findAll();
-    return articles;
+  public Object allArticles(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<Article> articles = articleRepository.findAll();
+      return articles;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            articleRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        Article::getId);
   }
 
   /**
@@ -84,10 +124,38 @@ public class ArticlesController extends ApiController {
     article.setLocalDateTime(localDateTime);
 
     Article savedArticle = articleRepository.save(article);
+    articleSearchIndex.put(savedArticle.getId(), savedArticle);
 
     return savedArticle;
   }
 
+  /**
+   * Search the titles and explanations of the articles
+   *
+   * @param q the words to look for
+   * @param limit the most articles to return
+   * @return the best matching articles, best first
+   */
+  @Operation(
+      summary = "Search articles",
+      description =
+          "Finds articles whose title or explanation contains words starting with the words of `q`"
+              + " (ignoring case and punctuation), ranked by BM25. Articles written through other"
+              + " nodes show up once the search index has been rebuilt there.")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/search")
+  public List<Article> searchArticles(
+      @Parameter(name = "q", description = "the words to look for") @RequestParam String q,
+      @Parameter(
+              name = "limit",
+              description = "maximum number of articles (default 10, at most 100)")
+          @RequestParam(required = false)
+          Integer limit) {
+    int size =
+        limit == null ? DEFAULT_SEARCH_LIMIT : Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+    return articleSearchIndex.search(q, size);
+  }
+
   /**
    * Get a single date by id
    *
@@ -110,6 +178,7 @@ public class ArticlesController extends ApiController {
    * Update a single date
    *
    * @param id id of the date to update
+   * @param ifMatch if given, the version the article must be at
    * @param incoming the new date
    * @return the updated date object
    */
@@ -117,40 +186,157 @@ public class ArticlesController extends ApiController {
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public Article updateArticle(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid Article incoming) {
-
-    Article article =
-        articleRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-    article.setTitle(incoming.getTitle());
-    article.setUrl(incoming.getUrl());
-    article.setExplanation(incoming.getExplanation());
-    article.setEmail(incoming.getEmail());
-    article.setLocalDateTime(incoming.getLocalDateTime());
-
-    articleRepository.save(article);
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody @Valid Article incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> articleRepository.updateById(id, v, incoming),
+            articleRepository::findVersionById,
+            articleRepository,
+            Article.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    articleSearchIndex.put(id, incoming);
+    return incoming;
+  }
 
-    return article;
+  /**
+   * Change some of the fields of a single article. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the article to change
+   * @param ifMatch if given, the version the article must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the article was changed
+   */
+  @Operation(summary = "Change some fields of a single article", description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchArticle(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(Article.class, id, fields, version),
+        articleRepository,
+        Article.class,
+        id,
+        ifMatch,
+        version);
+    if (fields.containsKey("title") || fields.containsKey("explanation")) {
+      articleRepository.findById(id).ifPresent(article -> articleSearchIndex.put(id, article));
+    }
+    return genericMessage("Article with id %s updated".formatted(id));
   }
 
   /**
    * Delete an article
    *
    * @param id the id of the date to delete
+   * @param ifMatch if given, the version the article must be at
    * @return a message indicating the date was deleted
    */
   @Operation(summary = "Delete an Article")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteUCSBDate(@Parameter(name = "id") @RequestParam Long id) {
-    Article article =
-        articleRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-    articleRepository.delete(article);
+  public Object deleteUCSBDate(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        articleRepository.deleteRowById(id, version),
+        articleRepository,
+        Article.class,
+        id,
+        ifMatch,
+        version);
+    articleSearchIndex.remove(id);
     return genericMessage("Article with id %s deleted".formatted(id));
   }
+
+  /**
+   * Create many articles in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   * Any ids in the items are ignored.
+   *
+   * @param items the articles to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many articles", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postArticlesBatch(@RequestBody List<Article> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    List<BatchItemResult> results = batchService.create(articleRepository, items, Article::getId);
+    results.forEach(
+        result -> articleSearchIndex.put((Long) result.key(), items.get(result.index())));
+    return results;
+  }
+
+  /**
+   * Update many articles in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many articles", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateArticlesBatch(@RequestBody List<Article> items) {
+    List<Article> updated = new ArrayList<>();
+    List<BatchItemResult> results =
+        batchService.update(
+            articleRepository,
+            items,
+            Article::getId,
+            (target, incoming) -> {
+              copyFields(target, incoming);
+              updated.add(target);
+            });
+    updated.forEach(article -> articleSearchIndex.put(article.getId(), article));
+    return results;
+  }
+
+  /**
+   * Delete many articles in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many articles", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteArticlesBatch(@RequestBody List<Long> keys) {
+    List<BatchItemResult> results = batchService.delete(articleRepository, keys, Article::getId);
+    for (BatchItemResult result : results) {
+      if (result.status() == BatchItemResult.Status.DELETED) {
+        articleSearchIndex.remove((Long) result.key());
+      }
+    }
+    return results;
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(Article target, Article incoming) {
+    target.setTitle(incoming.getTitle());
+    target.setUrl(incoming.getUrl());
+    target.setExplanation(incoming.getExplanation());
+    target.setEmail(incoming.getEmail());
+    target.setLocalDateTime(incoming.getLocalDateTime());
+  }
 }
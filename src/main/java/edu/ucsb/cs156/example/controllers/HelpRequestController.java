@@ -1,23 +1,32 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,22 +35,44 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "helprequests")
 @RequestMapping("/api/helprequests")
 @RestController
+@VersionedTable(HelpRequest.class)
 @Slf4j
 public class HelpRequestController extends ApiController {
 
   @Autowired HelpRequestRepository helpRequestRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
   /**
    * List all Help Requests
    *
-   * @return an iterable of HelpRequests
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of HelpRequests, or one page of them if {@code after} or {@code limit} is
+   *     given
    */
-  @Operation(summary = "List all help requests")
+  @Operation(summary = "List all help requests", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<HelpRequest> allHelpRequests() {
-    Iterable<HelpRequest> helpRequests = helpRequestRepository.findAll();
-    return helpRequests;
+  public Object allHelpRequests(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<HelpRequest> helpRequests = helpRequestRepository.findAll();
+      return helpRequests;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            helpRequestRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        HelpRequest::getId);
   }
 
   /**
@@ -110,6 +141,7 @@ public class HelpRequestController extends ApiController {
    * Update a single help request
    *
    * @param id id of the date to help request
+   * @param ifMatch if given, the version the help request must be at
    * @param incoming the new help request
    * @return the updated help request object
    */
@@ -117,41 +149,138 @@ public class HelpRequestController extends ApiController {
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public HelpRequest updateUCSBDate(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid HelpRequest incoming) {
-
-    HelpRequest helpRequest =
-        helpRequestRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-    helpRequest.setRequesterEmail(incoming.getRequesterEmail());
-    helpRequest.setTeamId(incoming.getTeamId());
-    helpRequest.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
-    helpRequest.setExplanation(incoming.getExplanation());
-    helpRequest.setSolved(incoming.getSolved());
-    helpRequest.setRequestTime(incoming.getRequestTime());
-
-    helpRequestRepository.save(helpRequest);
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody @Valid HelpRequest incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> helpRequestRepository.updateById(id, v, incoming),
+            helpRequestRepository::findVersionById,
+            helpRequestRepository,
+            HelpRequest.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    return helpRequest;
+  /**
+   * Change some of the fields of a single help request. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the help request to change
+   * @param ifMatch if given, the version the help request must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the help request was changed
+   */
+  @Operation(
+      summary = "Change some fields of a single help request",
+      description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchHelpRequest(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(HelpRequest.class, id, fields, version),
+        helpRequestRepository,
+        HelpRequest.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("HelpRequest with id %s updated".formatted(id));
   }
 
   /**
    * Delete a help request
    *
    * @param id the id of the help request to delete
+   * @param ifMatch if given, the version the help request must be at
    * @return a message indicating the help request was deleted
    */
   @Operation(summary = "Delete a help request")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deletehelprequest(@Parameter(name = "id") @RequestParam Long id) {
-    HelpRequest helpRequest =
-        helpRequestRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-    helpRequestRepository.delete(helpRequest);
+  public Object deletehelprequest(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        helpRequestRepository.deleteRowById(id, version),
+        helpRequestRepository,
+        HelpRequest.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("HelpRequest with id %s deleted".formatted(id));
   }
+
+  /**
+   * Create many help requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN". Any ids in the items are ignored.
+   *
+   * @param items the help requests to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many help requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postHelpRequestsBatch(@RequestBody List<HelpRequest> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return batchService.create(helpRequestRepository, items, HelpRequest::getId);
+  }
+
+  /**
+   * Update many help requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many help requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateHelpRequestsBatch(@RequestBody List<HelpRequest> items) {
+    return batchService.update(
+        helpRequestRepository, items, HelpRequest::getId, HelpRequestController::copyFields);
+  }
+
+  /**
+   * Delete many help requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many help requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteHelpRequestsBatch(@RequestBody List<Long> keys) {
+    return batchService.delete(helpRequestRepository, keys, HelpRequest::getId);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(HelpRequest target, HelpRequest incoming) {
+    target.setRequesterEmail(incoming.getRequesterEmail());
+    target.setTeamId(incoming.getTeamId());
+    target.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
+    target.setExplanation(incoming.getExplanation());
+    target.setSolved(incoming.getSolved());
+    target.setRequestTime(incoming.getRequestTime());
+  }
 }
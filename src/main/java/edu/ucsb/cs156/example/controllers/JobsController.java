@@ -4,33 +4,69 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.ArticleIndexJob;
+import edu.ucsb.cs156.example.jobs.ExportJob;
+import edu.ucsb.cs156.example.jobs.ExportJobFactory;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobSummary;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
 @RestController
 @Slf4j
 public class JobsController extends ApiController {
+  private static final Set<String> SORT_FIELDS = Set.of("id", "createdAt", "updatedAt", "status");
+
   @Autowired private JobsRepository jobsRepository;
 
   @Autowired private JobService jobService;
 
+  @Autowired private JobRetentionService jobRetentionService;
+
+  @Autowired private ExportJobFactory exportJobFactory;
+
+  @Autowired private ArticleSearchIndex articleSearchIndex;
+
   @Autowired ObjectMapper mapper;
 
   @Operation(summary = "List all jobs")
@@ -41,15 +77,65 @@ public class JobsController extends ApiController {
     return jobs;
   }
 
+  @Operation(
+      summary = "List jobs a page at a time, without their logs",
+      description =
+          "Sort by `createdAt`, `updatedAt`, `status` or `id` (e.g. `sort=status,asc`); other sort"
+              + " fields are ignored, and ties are broken by id. The response says whether there is"
+              + " a next page but not how many jobs there are; use `/api/jobs/count` for that.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/paged")
+  public Slice<JobSummary> pagedJobs(
+      @Parameter(name = "status", description = "only list jobs with this status")
+          @RequestParam(required = false)
+          String status,
+      @ParameterObject
+          @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC)
+          Pageable pageable) {
+
+    Pageable page =
+        PageRequest.of(
+            pageable.getPageNumber(), pageable.getPageSize(), jobSort(pageable.getSort()));
+    if (status == null) {
+      return jobsRepository.findAllProjectedBy(page);
+    }
+    return jobsRepository.findByStatus(status, page);
+  }
+
+  private static Sort jobSort(Sort requested) {
+    List<Sort.Order> orders =
+        requested.stream().filter(order -> SORT_FIELDS.contains(order.getProperty())).toList();
+    Sort sort = orders.isEmpty() ? Sort.by(Sort.Direction.DESC, "createdAt") : Sort.by(orders);
+    if (sort.getOrderFor("id") != null) {
+      return sort;
+    }
+    return sort.and(Sort.by(sort.iterator().next().getDirection(), "id"));
+  }
+
+  @Operation(summary = "Count jobs, optionally only those with a given status")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/count")
+  public Map<String, Long> countJobs(
+      @Parameter(name = "status", description = "only count jobs with this status")
+          @RequestParam(required = false)
+          String status) {
+
+    long count = status == null ? jobsRepository.count() : jobsRepository.countByStatus(status);
+    return Map.of("count", count);
+  }
+
   @Operation(summary = "Delete all job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
+    jobRetentionService.deleteAll();
     return Map.of("message", "All jobs deleted");
   }
 
-  @Operation(summary = "Get a specific Job Log by ID if it is in the database")
+  @Operation(
+      summary = "Get a specific Job Log by ID if it is in the database",
+      description =
+          "The job's whole log is returned in `log`; use `/api/jobs/logs/{id}` to read part of it.")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("")
   public Job getJobLogById(
@@ -59,36 +145,161 @@ public class JobsController extends ApiController {
     Job job =
         jobsRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(Job.class, id));
 
+    // The log is stored in chunks, not in the job's own column
+    job.setLog(jobService.getJobLogs(job));
     return job;
   }
 
   @Operation(summary = "Delete specific job record")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Map<String, String> deleteAllJobs(@Parameter(name = "id") @RequestParam Long id) {
+  public Map<String, String> deleteAllJobs(@Parameter(name = "id") @RequestParam Long id)
+      throws IOException {
     if (!jobsRepository.existsById(id)) {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
     jobsRepository.deleteById(id);
+    exportJobFactory.deleteExportFile(id);
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
+  @Operation(
+      summary = "Cancel a job",
+      description =
+          "A running job is interrupted and ends with status `cancelled`; a queued job is cancelled"
+              + " before it starts.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/cancel")
+  public Map<String, String> cancelJob(@Parameter(name = "id") @RequestParam Long id) {
+    if (!jobService.cancelJob(id)) {
+      return Map.of("message", String.format("Job with id %d has already finished", id));
+    }
+    return Map.of("message", String.format("Job with id %d cancelled", id));
+  }
+
   @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(
+              name = "timeoutMs",
+              description = "stop the job with status timed_out after this many ms")
+          @RequestParam(required = false)
+          Long timeoutMs) {
 
     TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+    return jobService.runAsJob(testJob, timeoutMs);
+  }
+
+  @Operation(summary = "List the tables that can be exported")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/export/tables")
+  public SortedSet<String> exportTables() {
+    return exportJobFactory.getTables();
+  }
+
+  @Operation(
+      summary = "Launch a job that exports a table to a gzip-compressed NDJSON file",
+      description =
+          "When the job is complete, download the file from `/api/jobs/export/{id}`; see"
+              + " `/api/jobs/export/tables` for the tables that can be exported.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/export")
+  public Job launchExportJob(@Parameter(name = "table") @RequestParam String table) {
+    ExportJob exportJob;
+    try {
+      exportJob = exportJobFactory.create(table);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    return jobService.runAsJob(exportJob);
+  }
+
+  @Operation(
+      summary = "Launch a job that rebuilds the article search index",
+      description =
+          "The index is held in memory, so only the node that runs the job is rebuilt. Searches"
+              + " use the old index until the new one is complete.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/articleindex")
+  public Job launchArticleIndexJob() {
+    return jobService.runAsJob(
+        ArticleIndexJob.builder().articleSearchIndex(articleSearchIndex).build());
+  }
+
+  @Operation(summary = "Download the file written by a completed export job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/export/{id}")
+  public ResponseEntity<Resource> downloadExport(
+      @Parameter(name = "id", description = "ID of the export job") @PathVariable Long id)
+      throws IOException {
+
+    Job job =
+        jobsRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+    if (!ExportJob.class.getName().equals(job.getJobType())) {
+      throw new ResponseStatusException(
+          HttpStatus.NOT_FOUND, "Job %d is not an export job".formatted(id));
+    }
+    if (!"complete".equals(job.getStatus())) {
+      throw new ResponseStatusException(
+          HttpStatus.CONFLICT, "Job %d is %s, not complete".formatted(id, job.getStatus()));
+    }
+    Path file = exportJobFactory.exportFile(id);
+    if (!Files.exists(file)) {
+      throw new ResponseStatusException(
+          HttpStatus.NOT_FOUND, "The file for job %d no longer exists".formatted(id));
+    }
+
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/gzip"))
+        .contentLength(Files.size(file))
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment()
+                .filename(file.getFileName().toString())
+                .build()
+                .toString())
+        .body(new FileSystemResource(file));
   }
 
-  @Operation(summary = "Get long job logs")
+  @Operation(
+      summary = "Get long job logs",
+      description =
+          "Returns the log starting at character offset `offset`, up to `limit` characters. To tail a"
+              + " running job, pass the number of characters already received as `offset`.")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public String getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "first character of the log to return")
+          @RequestParam(defaultValue = "0")
+          long offset,
+      @Parameter(name = "limit", description = "maximum number of characters to return")
+          @RequestParam(required = false)
+          Integer limit) {
+
+    return jobService.getJobLogs(id, offset, limit);
+  }
+
+  @Operation(
+      summary = "Stream job logs as they are written (Server-Sent Events)",
+      description =
+          "Sends the log from `offset` (or from the `Last-Event-ID` header when reconnecting) as"
+              + " `log` events, then new text as the job writes it. When the job finishes, a"
+              + " `status` event is sent and the stream is closed.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "first character of the log to send")
+          @RequestParam(required = false)
+          Long offset,
+      @Parameter(hidden = true) @RequestHeader(value = "Last-Event-ID", required = false)
+          Long lastEventId) {
 
-    return jobService.getJobLogs(id);
+    long from = offset != null ? offset : (lastEventId != null ? lastEventId : 0);
+    return jobService.streamJobLogs(id, from);
   }
 }
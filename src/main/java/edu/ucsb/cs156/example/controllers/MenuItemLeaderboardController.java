@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboard;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * This is a REST controller for the best reviewed menu items, answered from the in-memory {@link
+ * MenuItemLeaderboard}.
+ *
+ * <p>It shares its path with {@link UCSBDiningCommonsMenuItemController} but is not a {@link
+ * VersionedTable}: the ranking also changes when reviews are written, so an ETag made from the menu
+ * item table's version would be wrong for it.
+ */
+@Tag(name = "UCSBDiningCommonsMenuItem")
+@RequestMapping("/api/UCSBDiningCommonsMenuItem")
+@RestController
+public class MenuItemLeaderboardController extends ApiController {
+
+  /** Number of items returned when {@code n} is not given. */
+  public static final int DEFAULT_TOP = 10;
+
+  /** Largest {@code n} honoured; larger values are capped to this. */
+  public static final int MAX_TOP = 100;
+
+  @Autowired MenuItemLeaderboard menuItemLeaderboard;
+
+  /**
+   * List the best reviewed menu items of a dining commons
+   *
+   * @param commons the dining commons code
+   * @param station if given, only rank the items of this station
+   * @param n how many items to return
+   * @return up to n menu items with their review totals, highest average stars first
+   */
+  @Operation(
+      summary = "List the best reviewed menu items of a dining commons",
+      description =
+          "Items are ranked by average stars, then number of reviews; items without reviews are"
+              + " left out. Reviews written on other nodes may take a few seconds to show up.")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/top")
+  public List<TopMenuItem> topUCSBDiningCommonsMenuItems(
+      @Parameter(name = "commons") @RequestParam String commons,
+      @Parameter(name = "station", description = "only rank the items of this station")
+          @RequestParam(required = false)
+          String station,
+      @Parameter(name = "n", description = "how many items to return (default 10, at most 100)")
+          @RequestParam(required = false)
+          Integer n) {
+    int size = n == null ? DEFAULT_TOP : Math.max(1, Math.min(n, MAX_TOP));
+    return menuItemLeaderboard.top(commons, station, size);
+  }
+}
@@ -1,47 +1,95 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for MenuItemReviews */
 @Tag(name = "MenuItemReviews")
 @RequestMapping("/api/menuitemreviews")
 @RestController
+@VersionedTable(value = MenuItemReview.class, bumpAfterWrites = false)
 @Slf4j
 public class MenuItemReviewsController extends ApiController {
 
   @Autowired MenuItemReviewRepository menuItemReviewRepository;
 
+  @Autowired MenuItemReviewService menuItemReviewService;
+
   /**
    * List all menu item reviews
    *
-   * @return an iterable of MenuItemReview
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of MenuItemReview, or one page of them if {@code after} or {@code limit} is
+   *     given
    */
-  @Operation(summary = "List all menu item reviews")
+  @Operation(summary = "List all menu item reviews", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<MenuItemReview> allMenuItemReviews() {
-    Iterable<MenuItemReview> menuItemReviews = menuItemReviewRepository.findAll();
-    return menuItemReviews;
+  public Object allMenuItemReviews(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<MenuItemReview> menuItemReviews = menuItemReviewRepository.findAll();
+      return menuItemReviews;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        MenuItemReview::getId);
+  }
+
+  /**
+   * Export every menu item review. Unlike {@code /all}, the reviews are written to the response as
+   * they are read from the database, so the table does not have to fit in memory.
+   *
+   * @return a JSON array of every menu item review
+   */
+  @Operation(
+      summary = "Export all menu item reviews",
+      description =
+          "Returns the same JSON array as `/all` with no parameters, but writes each review as it is"
+              + " read. Only a few exports run at once (`app.streaming.poolSize`); others wait.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportMenuItemReviews() {
+    return streamAll(menuItemReviewRepository);
   }
 
   /**
@@ -83,7 +131,7 @@ public class MenuItemReviewsController extends ApiController {
     menuItemReview.setDateReviewed(dateReviewed);
     menuItemReview.setComments(comments);
 
-    MenuItemReview savedMenuItemReview = menuItemReviewRepository.save(menuItemReview);
+    MenuItemReview savedMenuItemReview = menuItemReviewService.create(menuItemReview);
 
     return savedMenuItemReview;
   }
@@ -106,10 +154,25 @@ public class MenuItemReviewsController extends ApiController {
     return menuItemReview;
   }
 
+  /**
+   * Get the review stats of a single menu item
+   *
+   * @param itemId the id of the menu item
+   * @return the number of reviews of the item, their total and average stars, and how many gave
+   *     each number of stars; all zero if the item has no reviews
+   */
+  @Operation(summary = "Get the review stats of a single menu item")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/stats")
+  public MenuItemReviewStats getStats(@Parameter(name = "itemId") @RequestParam long itemId) {
+    return menuItemReviewService.stats(itemId);
+  }
+
   /**
    * Update a single menu item review
    *
    * @param id id of the menu item review to update
+   * @param ifMatch if given, the version the menu item review must be at
    * @param incoming the new menu item review
    * @return the updated menu item review object
    */
@@ -117,40 +180,127 @@ public class MenuItemReviewsController extends ApiController {
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public MenuItemReview updateMenuItemReview(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid MenuItemReview incoming) {
-
-    MenuItemReview menuItemReview =
-        menuItemReviewRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-    menuItemReview.setItemId(incoming.getItemId());
-    menuItemReview.setReviewerEmail(incoming.getReviewerEmail());
-    menuItemReview.setStars(incoming.getStars());
-    menuItemReview.setDateReviewed(incoming.getDateReviewed());
-    menuItemReview.setComments(incoming.getComments());
-
-    menuItemReviewRepository.save(menuItemReview);
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody @Valid MenuItemReview incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> menuItemReviewService.update(id, v, incoming),
+            menuItemReviewRepository::findVersionById,
+            menuItemReviewRepository,
+            MenuItemReview.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    return menuItemReview;
+  /**
+   * Change some of the fields of a single menu item review. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the menu item review to change
+   * @param ifMatch if given, the version the menu item review must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the menu item review was changed
+   */
+  @Operation(
+      summary = "Change some fields of a single menu item review",
+      description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchMenuItemReview(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        menuItemReviewService.patch(id, fields, version),
+        menuItemReviewRepository,
+        MenuItemReview.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("MenuItemReview with id %s updated".formatted(id));
   }
 
   /**
    * Delete a MenuItemReview
    *
    * @param id the id of the MenuItemReview to delete
+   * @param ifMatch if given, the version the menu item review must be at
    * @return a message indicating the MenuItemReview was deleted
    */
   @Operation(summary = "Delete a MenuItemReview")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteMenuItemReview(@Parameter(name = "id") @RequestParam Long id) {
-    MenuItemReview menuItemReview =
-        menuItemReviewRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-    menuItemReviewRepository.delete(menuItemReview);
+  public Object deleteMenuItemReview(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        menuItemReviewService.delete(id, version),
+        menuItemReviewRepository,
+        MenuItemReview.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("MenuItemReview with id %s deleted".formatted(id));
   }
+
+  /**
+   * Create many menu item reviews in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN". Any ids in the items are ignored.
+   *
+   * @param items the menu item reviews to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many menu item reviews", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postMenuItemReviewsBatch(@RequestBody List<MenuItemReview> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return menuItemReviewService.createAll(items);
+  }
+
+  /**
+   * Update many menu item reviews in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many menu item reviews", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateMenuItemReviewsBatch(@RequestBody List<MenuItemReview> items) {
+    return menuItemReviewService.updateAll(items);
+  }
+
+  /**
+   * Delete many menu item reviews in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many menu item reviews", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteMenuItemReviewsBatch(@RequestBody List<Long> keys) {
+    return menuItemReviewService.deleteAll(keys);
+  }
 }
@@ -1,23 +1,32 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,23 +35,45 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "RecommendationRequest")
 @RequestMapping("/api/recommendationrequest")
 @RestController
+@VersionedTable(RecommendationRequest.class)
 @Slf4j
 public class RecommendationRequestController extends ApiController {
 
   @Autowired RecommendationRequestRepository recommendationRequestRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
   /**
    * List all Recommendation Requests
    *
-   * @return an iterable of Rec Request
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of Rec Request, or one page of them if {@code after} or {@code limit} is
+   *     given
    */
-  @Operation(summary = "List all Recommendation Requests")
+  @Operation(summary = "List all Recommendation Requests", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<RecommendationRequest> allRecommendationRequests() {
-    Iterable<RecommendationRequest> recommendationRequests =
-        recommendationRequestRepository.findAll();
-    return recommendationRequests;
+  public Object allRecommendationRequests(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<RecommendationRequest> recommendationRequests =
+          recommendationRequestRepository.findAll();
+      return recommendationRequests;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        RecommendationRequest::getId);
   }
 
   /**
@@ -122,6 +153,7 @@ public class RecommendationRequestController extends ApiController {
    * Update a single Recommendation Request
    *
    * @param id id of the recommendation request to update
+   * @param ifMatch if given, the version the recommendation request must be at
    * @param incoming the new recommendation request
    * @return the updated recommendation request object
    */
@@ -130,41 +162,143 @@ public class RecommendationRequestController extends ApiController {
   @PutMapping("")
   public RecommendationRequest updateRecommendationRequest(
       @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
       @RequestBody @Valid RecommendationRequest incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> recommendationRequestRepository.updateById(id, v, incoming),
+            recommendationRequestRepository::findVersionById,
+            recommendationRequestRepository,
+            RecommendationRequest.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    RecommendationRequest recommendationRequest =
-        recommendationRequestRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-    recommendationRequest.setRequesterEmail(incoming.getRequesterEmail());
-    recommendationRequest.setProfessorEmail(incoming.getProfessorEmail());
-    recommendationRequest.setExplanation(incoming.getExplanation());
-    recommendationRequest.setDateRequested(incoming.getDateRequested());
-    recommendationRequest.setDateNeeded(incoming.getDateNeeded());
-    recommendationRequest.setDone(incoming.getDone());
-
-    recommendationRequestRepository.save(recommendationRequest);
-
-    return recommendationRequest;
+  /**
+   * Change some of the fields of a single recommendation request. Accessible only to users with the
+   * role "ROLE_ADMIN".
+   *
+   * @param id id of the recommendation request to change
+   * @param ifMatch if given, the version the recommendation request must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the recommendation request was changed
+   */
+  @Operation(
+      summary = "Change some fields of a single recommendation request",
+      description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchRecommendationRequest(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(RecommendationRequest.class, id, fields, version),
+        recommendationRequestRepository,
+        RecommendationRequest.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("RecommendationRequest with id %s updated".formatted(id));
   }
 
   /**
    * Delete a Recommendation Request
    *
    * @param id the id of the recommendation request to delete
+   * @param ifMatch if given, the version the recommendation request must be at
    * @return a message indicating the recommendation request was deleted
    */
   @Operation(summary = "Delete a Recommendation Request")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteRecommendationRequest(@Parameter(name = "id") @RequestParam Long id) {
-    RecommendationRequest recommendationRequest =
-        recommendationRequestRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-    recommendationRequestRepository.delete(recommendationRequest);
+  public Object deleteRecommendationRequest(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        recommendationRequestRepository.deleteRowById(id, version),
+        recommendationRequestRepository,
+        RecommendationRequest.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
   }
+
+  /**
+   * Create many recommendation requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN". Any ids in the items are ignored.
+   *
+   * @param items the recommendation requests to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many recommendation requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postRecommendationRequestsBatch(
+      @RequestBody List<RecommendationRequest> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return batchService.create(
+        recommendationRequestRepository, items, RecommendationRequest::getId);
+  }
+
+  /**
+   * Update many recommendation requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many recommendation requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateRecommendationRequestsBatch(
+      @RequestBody List<RecommendationRequest> items) {
+    return batchService.update(
+        recommendationRequestRepository,
+        items,
+        RecommendationRequest::getId,
+        RecommendationRequestController::copyFields);
+  }
+
+  /**
+   * Delete many recommendation requests in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many recommendation requests", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteRecommendationRequestsBatch(@RequestBody List<Long> keys) {
+    return batchService.delete(recommendationRequestRepository, keys, RecommendationRequest::getId);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(RecommendationRequest target, RecommendationRequest incoming) {
+    target.setRequesterEmail(incoming.getRequesterEmail());
+    target.setProfessorEmail(incoming.getProfessorEmail());
+    target.setExplanation(incoming.getExplanation());
+    target.setDateRequested(incoming.getDateRequested());
+    target.setDateNeeded(incoming.getDateNeeded());
+    target.setDone(incoming.getDone());
+  }
 }
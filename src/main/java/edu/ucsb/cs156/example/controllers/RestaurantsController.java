@@ -1,19 +1,28 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -22,21 +31,43 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Restaurants")
 @RequestMapping("/api/restaurants")
 @RestController
+@VersionedTable(Restaurant.class)
 public class RestaurantsController extends ApiController {
 
   @Autowired RestaurantRepository restaurantRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
   /**
    * This method returns a list of all restaurants.
    *
-   * @return a list of all restaurants
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return a list of all restaurants, or one page of them if {@code after} or {@code limit} is
+   *     given
    */
-  @Operation(summary = "List all restaurants")
+  @Operation(summary = "List all restaurants", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Restaurant> allRestaurants() {
-    Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-    return restaurants;
+  public Object allRestaurants(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<Restaurant> restaurants = restaurantRepository.findAll();
+      return restaurants;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            restaurantRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        Restaurant::getId);
   }
 
   /**
@@ -83,18 +114,25 @@ public class RestaurantsController extends ApiController {
    * Deletes a restaurant. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param id id of the restaurant to delete
+   * @param ifMatch if given, the version the restaurant must be at
    * @return a message indicating that the restaurant was deleted
    */
   @Operation(summary = "Delete a Restaurant")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteRestaurant(@Parameter(name = "id") @RequestParam Long id) {
-    Restaurant restaurant =
-        restaurantRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
-
-    restaurantRepository.delete(restaurant);
+  public Object deleteRestaurant(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        restaurantRepository.deleteRowById(id, version),
+        restaurantRepository,
+        Restaurant.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("Restaurant with id %s deleted".formatted(id));
   }
 
@@ -102,6 +140,7 @@ public class RestaurantsController extends ApiController {
    * Update a single restaurant. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param id id of the restaurant to update
+   * @param ifMatch if given, the version the restaurant must be at
    * @param incoming the new restaurant contents
    * @return the updated restaurant object
    */
@@ -109,18 +148,106 @@ public class RestaurantsController extends ApiController {
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public Restaurant updateRestaurant(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid Restaurant incoming) {
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody @Valid Restaurant incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> restaurantRepository.updateById(id, v, incoming),
+            restaurantRepository::findVersionById,
+            restaurantRepository,
+            Restaurant.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    Restaurant restaurant =
-        restaurantRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+  /**
+   * Change some of the fields of a single restaurant. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the restaurant to change
+   * @param ifMatch if given, the version the restaurant must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the restaurant was changed
+   */
+  @Operation(summary = "Change some fields of a single restaurant", description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchRestaurant(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(Restaurant.class, id, fields, version),
+        restaurantRepository,
+        Restaurant.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("Restaurant with id %s updated".formatted(id));
+  }
 
-    restaurant.setName(incoming.getName());
-    restaurant.setDescription(incoming.getDescription());
+  /**
+   * Create many restaurants in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN". Any ids in the items are ignored.
+   *
+   * @param items the restaurants to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many restaurants", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postRestaurantsBatch(@RequestBody List<Restaurant> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return batchService.create(restaurantRepository, items, Restaurant::getId);
+  }
 
-    restaurantRepository.save(restaurant);
+  /**
+   * Update many restaurants in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many restaurants", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateRestaurantsBatch(@RequestBody List<Restaurant> items) {
+    return batchService.update(
+        restaurantRepository, items, Restaurant::getId, RestaurantsController::copyFields);
+  }
 
-    return restaurant;
+  /**
+   * Delete many restaurants in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many restaurants", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteRestaurantsBatch(@RequestBody List<Long> keys) {
+    return batchService.delete(restaurantRepository, keys, Restaurant::getId);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(Restaurant target, Restaurant incoming) {
+    target.setName(incoming.getName());
+    target.setDescription(incoming.getDescription());
   }
 }
@@ -1,23 +1,32 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,22 +35,43 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
 @RestController
+@VersionedTable(UCSBDate.class)
 @Slf4j
 public class UCSBDatesController extends ApiController {
 
   @Autowired UCSBDateRepository ucsbDateRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
   /**
    * List all UCSB dates
    *
-   * @return an iterable of UCSBDate
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of UCSBDate, or one page of them if {@code after} or {@code limit} is given
    */
-  @Operation(summary = "List all ucsb dates")
+  @Operation(summary = "List all ucsb dates", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDate> allUCSBDates() {
-    Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-    return dates;
+  public Object allUCSBDates(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
+      return dates;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        UCSBDate::getId);
   }
 
   /**
@@ -104,18 +134,25 @@ public class UCSBDatesController extends ApiController {
    * Delete a UCSBDate
    *
    * @param id the id of the date to delete
+   * @param ifMatch if given, the version the date must be at
    * @return a message indicating the date was deleted
    */
   @Operation(summary = "Delete a UCSBDate")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteUCSBDate(@Parameter(name = "id") @RequestParam Long id) {
-    UCSBDate ucsbDate =
-        ucsbDateRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-    ucsbDateRepository.delete(ucsbDate);
+  public Object deleteUCSBDate(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        ucsbDateRepository.deleteRowById(id, version),
+        ucsbDateRepository,
+        UCSBDate.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("UCSBDate with id %s deleted".formatted(id));
   }
 
@@ -123,6 +160,7 @@ public class UCSBDatesController extends ApiController {
    * Update a single date
    *
    * @param id id of the date to update
+   * @param ifMatch if given, the version the date must be at
    * @param incoming the new date
    * @return the updated date object
    */
@@ -130,19 +168,105 @@ public class UCSBDatesController extends ApiController {
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public UCSBDate updateUCSBDate(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid UCSBDate incoming) {
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody @Valid UCSBDate incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> ucsbDateRepository.updateById(id, v, incoming),
+            ucsbDateRepository::findVersionById,
+            ucsbDateRepository,
+            UCSBDate.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    UCSBDate ucsbDate =
-        ucsbDateRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+  /**
+   * Change some of the fields of a single date. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the date to change
+   * @param ifMatch if given, the version the date must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the date was changed
+   */
+  @Operation(summary = "Change some fields of a single date", description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchUCSBDate(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(UCSBDate.class, id, fields, version),
+        ucsbDateRepository,
+        UCSBDate.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("UCSBDate with id %s updated".formatted(id));
+  }
 
-    ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
-    ucsbDate.setName(incoming.getName());
-    ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
+  /**
+   * Create many UCSB dates in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   * Any ids in the items are ignored.
+   *
+   * @param items the UCSB dates to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many UCSB dates", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postUCSBDatesBatch(@RequestBody List<UCSBDate> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return batchService.create(ucsbDateRepository, items, UCSBDate::getId);
+  }
 
-    ucsbDateRepository.save(ucsbDate);
+  /**
+   * Update many UCSB dates in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many UCSB dates", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateUCSBDatesBatch(@RequestBody List<UCSBDate> items) {
+    return batchService.update(
+        ucsbDateRepository, items, UCSBDate::getId, UCSBDatesController::copyFields);
+  }
 
-    return ucsbDate;
+  /**
+   * Delete many UCSB dates in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many UCSB dates", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteUCSBDatesBatch(@RequestBody List<Long> keys) {
+    return batchService.delete(ucsbDateRepository, keys, UCSBDate::getId);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(UCSBDate target, UCSBDate incoming) {
+    target.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
+    target.setName(incoming.getName());
+    target.setLocalDateTime(incoming.getLocalDateTime());
   }
 }
@@ -1,20 +1,31 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.ReferenceDataCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,22 +34,45 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
+@VersionedTable(UCSBDiningCommons.class)
 @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
 
   @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
+  @Autowired ReferenceDataCache referenceDataCache;
+
   /**
    * THis method returns a list of all ucsbdiningcommons.
    *
-   * @return a list of all ucsbdiningcommons
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return a list of all ucsbdiningcommons, or one page of them if {@code after} or {@code limit}
+   *     is given
    */
-  @Operation(summary = "List all ucsb dining commons")
+  @Operation(summary = "List all ucsb dining commons", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommons> allCommonss() {
-    Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-    return commons;
+  public Object allCommonss(
+      @Parameter(name = "after", description = "code of the last row of the previous page")
+          @RequestParam(required = false)
+          String after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      return referenceDataCache.allDiningCommons();
+    }
+    return keysetPage(
+        limit,
+        n ->
+            ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(
+                after == null ? "" : after, n),
+        UCSBDiningCommons::getCode);
   }
 
   /**
@@ -51,12 +85,9 @@ public class UCSBDiningCommonsController extends ApiController {
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
   public UCSBDiningCommons getById(@Parameter(name = "code") @RequestParam String code) {
-    UCSBDiningCommons commons =
-        ucsbDiningCommonsRepository
-            .findById(code)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-    return commons;
+    return referenceDataCache
+        .findDiningCommons(code)
+        .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
   }
 
   /**
@@ -71,7 +102,10 @@ public class UCSBDiningCommonsController extends ApiController {
    * @param longitude logitude of the commons
    * @return the save diningcommons
    */
-  @Operation(summary = "Create a new commons")
+  @Operation(
+      summary = "Create a new commons",
+      description = "Answers 409 if a commons with that code already exists; use PUT to change it.")
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/post")
   public UCSBDiningCommons postCommons(
@@ -101,18 +135,26 @@ public class UCSBDiningCommonsController extends ApiController {
    * Delete a diningcommons. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param code code of the commons
+   * @param ifMatch if given, the version the commons must be at
    * @return a message indiciating the commons was deleted
    */
   @Operation(summary = "Delete a UCSBDiningCommons")
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteCommons(@Parameter(name = "code") @RequestParam String code) {
-    UCSBDiningCommons commons =
-        ucsbDiningCommonsRepository
-            .findById(code)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-    ucsbDiningCommonsRepository.delete(commons);
+  public Object deleteCommons(
+      @Parameter(name = "code") @RequestParam String code,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        ucsbDiningCommonsRepository.deleteRowByCode(code, version),
+        ucsbDiningCommonsRepository,
+        UCSBDiningCommons.class,
+        code,
+        ifMatch,
+        version);
     return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
   }
 
@@ -120,30 +162,121 @@ public class UCSBDiningCommonsController extends ApiController {
    * Update a single diningcommons. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param code code of the diningcommons
+   * @param ifMatch if given, the version the commons must be at
    * @param incoming the new commons contents
    * @return the updated commons object
    */
   @Operation(summary = "Update a single commons")
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public UCSBDiningCommons updateCommons(
       @Parameter(name = "code") @RequestParam String code,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
       @RequestBody @Valid UCSBDiningCommons incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> ucsbDiningCommonsRepository.updateByCode(code, v, incoming),
+            ucsbDiningCommonsRepository::findVersionByCode,
+            ucsbDiningCommonsRepository,
+            UCSBDiningCommons.class,
+            code,
+            ifMatch,
+            version);
+    incoming.setCode(code);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    UCSBDiningCommons commons =
-        ucsbDiningCommonsRepository
-            .findById(code)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+  /**
+   * Change some of the fields of a single commons. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param code code of the commons to change
+   * @param ifMatch if given, the version the commons must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the commons was changed
+   */
+  @Operation(summary = "Change some fields of a single commons", description = PATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchCommons(
+      @Parameter(name = "code") @RequestParam String code,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(UCSBDiningCommons.class, code, fields, version),
+        ucsbDiningCommonsRepository,
+        UCSBDiningCommons.class,
+        code,
+        ifMatch,
+        version);
+    return genericMessage("UCSBDiningCommons with id %s updated".formatted(code));
+  }
 
-    commons.setName(incoming.getName());
-    commons.setHasSackMeal(incoming.getHasSackMeal());
-    commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
-    commons.setHasDiningCam(incoming.getHasDiningCam());
-    commons.setLatitude(incoming.getLatitude());
-    commons.setLongitude(incoming.getLongitude());
+  /**
+   * Create many dining commons in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the dining commons to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many dining commons", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postCommonsBatch(@RequestBody List<UCSBDiningCommons> items) {
+    return batchService.create(ucsbDiningCommonsRepository, items, UCSBDiningCommons::getCode);
+  }
+
+  /**
+   * Update many dining commons in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the code of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many dining commons", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateCommonsBatch(@RequestBody List<UCSBDiningCommons> items) {
+    return batchService.update(
+        ucsbDiningCommonsRepository,
+        items,
+        UCSBDiningCommons::getCode,
+        UCSBDiningCommonsController::copyFields);
+  }
 
-    ucsbDiningCommonsRepository.save(commons);
+  /**
+   * Delete many dining commons in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the codes of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many dining commons", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.DINING_COMMONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteCommonsBatch(@RequestBody List<String> keys) {
+    return batchService.delete(ucsbDiningCommonsRepository, keys, UCSBDiningCommons::getCode);
+  }
 
-    return commons;
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(UCSBDiningCommons target, UCSBDiningCommons incoming) {
+    target.setName(incoming.getName());
+    target.setHasSackMeal(incoming.getHasSackMeal());
+    target.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
+    target.setHasDiningCam(incoming.getHasDiningCam());
+    target.setLatitude(incoming.getLatitude());
+    target.setLongitude(incoming.getLongitude());
   }
 }
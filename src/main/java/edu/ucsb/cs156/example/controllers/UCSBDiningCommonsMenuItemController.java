@@ -1,45 +1,91 @@
 package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJob;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJobFactory;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 /** This is a REST controller for UCSBDiningCommonsMenuItem */
 @Tag(name = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/UCSBDiningCommonsMenuItem")
 @RestController
+@VersionedTable(UCSBDiningCommonsMenuItem.class)
 @Slf4j
 public class UCSBDiningCommonsMenuItemController extends ApiController {
 
   @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
+  @Autowired JobService jobService;
+
+  @Autowired MenuItemImportJobFactory menuItemImportJobFactory;
+
   /**
    * List all UCSB dining commons menu items
    *
-   * @return an iterable of UCSBDiningCommonsMenuItem
+   * @param after return the page after this key (see {@link KeysetPage})
+   * @param limit page size
+   * @return an iterable of UCSBDiningCommonsMenuItem, or one page of them if {@code after} or
+   *     {@code limit} is given
    */
-  @Operation(summary = "List all ucsb dining commons menu items")
+  @Operation(summary = "List all ucsb dining commons menu items", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItem() {
-    Iterable<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findAll();
-    return items;
+  public Object allUCSBDiningCommonsMenuItem(
+      @Parameter(name = "after", description = "id of the last row of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      Iterable<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findAll();
+      return items;
+    }
+    return keysetPage(
+        limit,
+        n ->
+            ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? Long.MIN_VALUE : after, n),
+        UCSBDiningCommonsMenuItem::getId);
   }
 
   /**
@@ -92,6 +138,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
    * Update a single menu item
    *
    * @param id id of menu item to update
+   * @param ifMatch if given, the version the menu item must be at
    * @param incoming the new date
    * @return the updated menu item object
    */
@@ -100,38 +147,179 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
   @PutMapping("")
   public UCSBDiningCommonsMenuItem updateUCSBDiningCommonsMenuItem(
       @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
       @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> ucsbDiningCommonsMenuItemRepository.updateById(id, v, incoming),
+            ucsbDiningCommonsMenuItemRepository::findVersionById,
+            ucsbDiningCommonsMenuItemRepository,
+            UCSBDiningCommonsMenuItem.class,
+            id,
+            ifMatch,
+            version);
+    incoming.setId(id);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
 
-    UCSBDiningCommonsMenuItem menu_item =
-        ucsbDiningCommonsMenuItemRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-    menu_item.setDining_commons_code(incoming.getDining_commons_code());
-    menu_item.setName(incoming.getName());
-    menu_item.setStation(incoming.getStation());
-
-    ucsbDiningCommonsMenuItemRepository.save(menu_item);
-
-    return menu_item;
+  /**
+   * Change some of the fields of a single menu item. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param id id of the menu item to change
+   * @param ifMatch if given, the version the menu item must be at
+   * @param fields the fields to change and their new values
+   * @return a message indicating the menu item was changed
+   */
+  @Operation(summary = "Change some fields of a single menu item", description = PATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchUCSBDiningCommonsMenuItem(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(UCSBDiningCommonsMenuItem.class, id, fields, version),
+        ucsbDiningCommonsMenuItemRepository,
+        UCSBDiningCommonsMenuItem.class,
+        id,
+        ifMatch,
+        version);
+    return genericMessage("UCSBDiningCommonsMenuItem with id %s updated".formatted(id));
   }
 
   /**
    * Delete a UCSBDiningCommonsMenuItem
    *
    * @param id the id of the menu item to delete
+   * @param ifMatch if given, the version the menu item must be at
    * @return a message indicating the menu item was deleted
    */
   @Operation(summary = "Delete a UCSBDiningCommonsMenuItem")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteUCSBDiningCommonsMenuItem(@Parameter(name = "id") @RequestParam Long id) {
-    UCSBDiningCommonsMenuItem menu_item =
-        ucsbDiningCommonsMenuItemRepository
-            .findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-    ucsbDiningCommonsMenuItemRepository.delete(menu_item);
+  public Object deleteUCSBDiningCommonsMenuItem(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        ucsbDiningCommonsMenuItemRepository.deleteRowById(id, version),
+        ucsbDiningCommonsMenuItemRepository,
+        UCSBDiningCommonsMenuItem.class,
+        id,
+        ifMatch,
+        version);
     return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
   }
+
+  /**
+   * Import menu items from a CSV or NDJSON file in a background job
+   *
+   * @param file the file to import
+   * @param format csv or ndjson; if omitted, worked out from the file name
+   * @return the job doing the import; its log reports progress and rejected rows
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(
+      summary = "Import menu items from a CSV or NDJSON file",
+      description =
+          "Each row needs `dining_commons_code`, `name` and `station`; a CSV file must start with a"
+              + " header row naming them. Rows are imported by a background job whose log lists"
+              + " progress and any rows that were rejected.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importUCSBDiningCommonsMenuItems(
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(name = "format", description = "csv or ndjson (default: from the file name)")
+          @RequestParam(required = false)
+          String format)
+      throws IOException {
+
+    MenuItemImportJob.Format importFormat;
+    try {
+      importFormat =
+          MenuItemImportJob.Format.of(format != null ? format : file.getOriginalFilename());
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    Path upload = Files.createTempFile("menu-items-", "." + importFormat.name().toLowerCase());
+    try {
+      file.transferTo(upload);
+      return jobService.runAsJob(menuItemImportJobFactory.create(upload, importFormat));
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(upload);
+      throw e;
+    }
+  }
+
+  /**
+   * Create many menu items in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   * Any ids in the items are ignored.
+   *
+   * @param items the menu items to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many menu items", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postUCSBDiningCommonsMenuItemsBatch(
+      @RequestBody List<UCSBDiningCommonsMenuItem> items) {
+    items.forEach(
+        item -> {
+          item.setId(0);
+          item.setVersion(null);
+        });
+    return batchService.create(
+        ucsbDiningCommonsMenuItemRepository, items, UCSBDiningCommonsMenuItem::getId);
+  }
+
+  /**
+   * Update many menu items in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the id of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many menu items", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateUCSBDiningCommonsMenuItemsBatch(
+      @RequestBody List<UCSBDiningCommonsMenuItem> items) {
+    return batchService.update(
+        ucsbDiningCommonsMenuItemRepository,
+        items,
+        UCSBDiningCommonsMenuItem::getId,
+        UCSBDiningCommonsMenuItemController::copyFields);
+  }
+
+  /**
+   * Delete many menu items in one transaction. Accessible only to users with the role "ROLE_ADMIN".
+   *
+   * @param keys the ids of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many menu items", description = BATCH_DESCRIPTION)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteUCSBDiningCommonsMenuItemsBatch(@RequestBody List<Long> keys) {
+    return batchService.delete(
+        ucsbDiningCommonsMenuItemRepository, keys, UCSBDiningCommonsMenuItem::getId);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(
+      UCSBDiningCommonsMenuItem target, UCSBDiningCommonsMenuItem incoming) {
+    target.setDining_commons_code(incoming.getDining_commons_code());
+    target.setName(incoming.getName());
+    target.setStation(incoming.getStation());
+  }
 }
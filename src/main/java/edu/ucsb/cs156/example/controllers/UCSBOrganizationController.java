@@ -1,20 +1,29 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.BatchService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.ReferenceDataCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -22,20 +31,44 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "UCSBOrganization")
 @RequestMapping("/api/ucsborganizations")
 @RestController
+@VersionedTable(UCSBOrganization.class)
 @Slf4j
 public class UCSBOrganizationController extends ApiController {
 
   @Autowired UCSBOrganizationRepository ucsbOrganizationRepository;
 
-  @Operation(summary = "List all UCSB organizations")
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
+  @Autowired ReferenceDataCache referenceDataCache;
+
+  @Operation(summary = "List all UCSB organizations", description = KEYSET_DESCRIPTION)
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBOrganization> allOrganizations() {
-    Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
-    return orgs;
+  public Object allOrganizations(
+      @Parameter(name = "after", description = "orgCode of the last row of the previous page")
+          @RequestParam(required = false)
+          String after,
+      @Parameter(name = "limit", description = "maximum number of rows to return")
+          @RequestParam(required = false)
+          Integer limit) {
+    if (after == null && limit == null) {
+      return referenceDataCache.allOrganizations();
+    }
+    return keysetPage(
+        limit,
+        n ->
+            ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(
+                after == null ? "" : after, n),
+        UCSBOrganization::getOrgCode);
   }
 
-  @Operation(summary = "Create a new UCSBOrganization")
+  @Operation(
+      summary = "Create a new UCSBOrganization",
+      description =
+          "Answers 409 if an organization with that orgCode already exists; use PUT to change it.")
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/post")
   public UCSBOrganization postOrganization(
@@ -59,40 +92,136 @@ public class UCSBOrganizationController extends ApiController {
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
   public UCSBOrganization getById(@Parameter(name = "orgCode") @RequestParam String orgCode) {
-    return ucsbOrganizationRepository
-        .findById(orgCode)
+    return referenceDataCache
+        .findOrganization(orgCode)
         .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
   }
 
   // put endpoint
   @Operation(summary = "Update a single organization")
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
   public UCSBOrganization updateOrganization(
       @Parameter(name = "orgCode") @RequestParam String orgCode,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
       @RequestBody UCSBOrganization incoming) {
-    UCSBOrganization org =
-        ucsbOrganizationRepository
-            .findById(orgCode)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-    org.setOrgTranslationShort(incoming.getOrgTranslationShort());
-    org.setOrgTranslation(incoming.getOrgTranslation());
-    org.setInactive(incoming.getInactive());
-    UCSBOrganization saved = ucsbOrganizationRepository.save(org);
-    return saved;
+    Long version = requiredVersion(ifMatch, incoming.getVersion());
+    long newVersion =
+        updateRow(
+            v -> ucsbOrganizationRepository.updateByOrgCode(orgCode, v, incoming),
+            ucsbOrganizationRepository::findVersionByOrgCode,
+            ucsbOrganizationRepository,
+            UCSBOrganization.class,
+            orgCode,
+            ifMatch,
+            version);
+    incoming.setOrgCode(orgCode);
+    incoming.setVersion(newVersion);
+    return incoming;
+  }
+
+  // patch endpoint
+  @Operation(
+      summary = "Change some fields of a single organization",
+      description = PATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PatchMapping("")
+  public Object patchOrganization(
+      @Parameter(name = "orgCode") @RequestParam String orgCode,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch,
+      @RequestBody Map<String, JsonNode> fields) {
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        patchService.patch(UCSBOrganization.class, orgCode, fields, version),
+        ucsbOrganizationRepository,
+        UCSBOrganization.class,
+        orgCode,
+        ifMatch,
+        version);
+    return genericMessage("UCSBOrganization with id %s updated".formatted(orgCode));
   }
 
   // delete endpoint
   @Operation(summary = "Delete a single organization by orgCode")
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
-  public Object deleteOrganization(@Parameter(name = "orgCode") @RequestParam String orgCode) {
+  public Object deleteOrganization(
+      @Parameter(name = "orgCode") @RequestParam String orgCode,
+      @Parameter(name = "If-Match", description = IF_MATCH_DESCRIPTION)
+          @RequestHeader(name = "If-Match", required = false)
+          String ifMatch) {
 
-    UCSBOrganization org =
-        ucsbOrganizationRepository
-            .findById(orgCode)
-            .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-    ucsbOrganizationRepository.delete(org);
+    Long version = requiredVersion(ifMatch, null);
+    checkWritten(
+        ucsbOrganizationRepository.deleteRowByOrgCode(orgCode, version),
+        ucsbOrganizationRepository,
+        UCSBOrganization.class,
+        orgCode,
+        ifMatch,
+        version);
     return Map.of("message", String.format("UCSBOrganization with id %s deleted", orgCode));
   }
+
+  /**
+   * Create many UCSB organizations in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the UCSB organizations to create
+   * @return one result per item, with the key of the new row
+   */
+  @Operation(summary = "Create many UCSB organizations", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<BatchItemResult> postOrganizationsBatch(@RequestBody List<UCSBOrganization> items) {
+    return batchService.create(ucsbOrganizationRepository, items, UCSBOrganization::getOrgCode);
+  }
+
+  /**
+   * Update many UCSB organizations in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param items the new values, each with the orgCode of the row to update
+   * @return one result per item
+   */
+  @Operation(summary = "Update many UCSB organizations", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/batch")
+  public List<BatchItemResult> updateOrganizationsBatch(@RequestBody List<UCSBOrganization> items) {
+    return batchService.update(
+        ucsbOrganizationRepository,
+        items,
+        UCSBOrganization::getOrgCode,
+        UCSBOrganizationController::copyFields);
+  }
+
+  /**
+   * Delete many UCSB organizations in one transaction. Accessible only to users with the role
+   * "ROLE_ADMIN".
+   *
+   * @param keys the orgCodes of the rows to delete
+   * @return one result per key
+   */
+  @Operation(summary = "Delete many UCSB organizations", description = BATCH_DESCRIPTION)
+  @CacheEvict(cacheNames = ReferenceDataCache.ORGANIZATIONS, allEntries = true)
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/batch")
+  public List<BatchItemResult> deleteOrganizationsBatch(@RequestBody List<String> keys) {
+    return batchService.delete(ucsbOrganizationRepository, keys, UCSBOrganization::getOrgCode);
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(UCSBOrganization target, UCSBOrganization incoming) {
+    target.setOrgTranslationShort(incoming.getOrgTranslationShort());
+    target.setOrgTranslation(incoming.getOrgTranslation());
+    target.setInactive(incoming.getInactive());
+  }
 }
@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.controllers;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller whose endpoints read and write a single table. {@code ConditionalGetAspect}
+ * gives its GET responses an {@code ETag} made from the table's version and answers {@code
+ * If-None-Match} with 304 Not Modified once the caller is authorized, without reading any rows.
+ * {@code TableVersionAspect} bumps the version in the transaction of every write, unless the writes
+ * bump it themselves.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedTable {
+  /**
+   * The entity stored in the table.
+   *
+   * @return the entity class
+   */
+  Class<?> value();
+
+  /**
+   * Whether {@code TableVersionAspect} runs each write in a transaction and bumps the version in
+   * it. False if the writes bump it themselves, in their own transaction, to know the version they
+   * wrote at.
+   *
+   * @return false if the writes bump the version themselves
+   */
+  boolean bumpAfterWrites() default true;
+}
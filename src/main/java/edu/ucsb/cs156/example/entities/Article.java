@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +23,8 @@ import lombok.NoArgsConstructor;
 @Entity(name = "articles")
 public class Article {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ARTICLES_SEQ")
+  @SequenceGenerator(name = "ARTICLES_SEQ", allocationSize = 50)
   private long id;
 
   private String title;
@@ -29,4 +32,6 @@ public class Article {
   private String explanation;
   private String email;
   private LocalDateTime localDateTime;
+
+  @Version private Long version;
 }
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +23,8 @@ import lombok.NoArgsConstructor;
 @Entity(name = "helprequests")
 public class HelpRequest {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "HELPREQUESTS_SEQ")
+  @SequenceGenerator(name = "HELPREQUESTS_SEQ", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -30,4 +33,6 @@ public class HelpRequest {
   private LocalDateTime requestTime;
   private String explanation;
   private boolean solved;
+
+  @Version private Long version;
 }
@@ -10,6 +10,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import java.time.ZonedDateTime;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -28,7 +29,8 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @EntityListeners(AuditingEntityListener.class)
 public class Job {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "JOBS_SEQ")
+  @SequenceGenerator(name = "JOBS_SEQ", allocationSize = 50)
   private long id;
 
   @JsonIgnore
@@ -41,6 +43,26 @@ public class Job {
 
   private String status;
 
+  // When the job last started running and when it finished, so that time spent waiting can be told
+  // apart from time spent running
+  private ZonedDateTime startedAt;
+  private ZonedDateTime finishedAt;
+
+  // The job's class name. For jobs that can be queued in the database and run by any node, params
+  // holds the job's parameters as JSON.
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT")
+  private String params;
+
+  // The node running a queued job, and when its claim expires unless renewed by a heartbeat
+  private String claimedBy;
+  private ZonedDateTime leaseExpiresAt;
+  private int attempts;
+
+  // If set, the job is stopped with status timed_out once it has been running this long
+  private Long timeoutMillis;
+
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents one append-only chunk of a job's log.
+ *
+ * <p>Concatenating the chunks of a job in {@code seq} order gives the full log. {@code startOffset}
+ * and {@code endOffset} are the character positions (end exclusive) the chunk covers in that log,
+ * so a range of the log can be read without loading the chunks before it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_log_chunks")
+public class JobLogChunk {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "JOB_LOG_CHUNKS_SEQ")
+  @SequenceGenerator(name = "JOB_LOG_CHUNKS_SEQ", allocationSize = 50)
+  private long id;
+
+  private long jobId;
+  private int seq;
+  private long startOffset;
+  private long endOffset;
+
+  @Column(columnDefinition = "TEXT")
+  private String content;
+}
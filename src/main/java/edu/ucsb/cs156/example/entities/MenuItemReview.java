@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,7 +20,8 @@ import lombok.NoArgsConstructor;
 @Entity(name = "menuitemreviews")
 public class MenuItemReview {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "MENUITEMREVIEWS_SEQ")
+  @SequenceGenerator(name = "MENUITEMREVIEWS_SEQ", allocationSize = 50)
   private long id;
 
   private long itemId;
@@ -26,4 +29,6 @@ public class MenuItemReview {
   private int stars;
   private LocalDateTime dateReviewed;
   private String comments;
+
+  @Version private Long version;
 }
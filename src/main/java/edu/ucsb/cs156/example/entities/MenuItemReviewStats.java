@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that holds the totals of the MenuItemReviews of one menu item: how many
+ * there are, their total stars, and how many gave each of 1 to 5 stars. It is kept up to date as
+ * reviews are written (see {@link edu.ucsb.cs156.example.services.MenuItemReviewService}), so the
+ * stats of an item can be read without reading its reviews.
+ *
+ * <p>A review with a star count outside 1 to 5 counts towards {@code reviewCount} and {@code
+ * starsTotal} but not towards any of the histogram fields.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "menu_item_review_stats")
+public class MenuItemReviewStats {
+  @Id private long itemId;
+
+  private long reviewCount;
+  private long starsTotal;
+  private long oneStar;
+  private long twoStars;
+  private long threeStars;
+  private long fourStars;
+  private long fiveStars;
+
+  /**
+   * The average number of stars.
+   *
+   * @return the average, or null if the item has no reviews
+   */
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) starsTotal / reviewCount;
+  }
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,7 +20,8 @@ import lombok.NoArgsConstructor;
 @Entity(name = "recommendationrequest")
 public class RecommendationRequest {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "RECOMMENDATIONREQUEST_SEQ")
+  @SequenceGenerator(name = "RECOMMENDATIONREQUEST_SEQ", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -27,4 +30,6 @@ public class RecommendationRequest {
   LocalDateTime dateRequested;
   LocalDateTime dateNeeded;
   private boolean done;
+
+  @Version private Long version;
 }
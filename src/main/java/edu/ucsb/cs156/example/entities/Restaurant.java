@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,9 +19,12 @@ import lombok.NoArgsConstructor;
 @Entity(name = "restaurants")
 public class Restaurant {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "RESTAURANTS_SEQ")
+  @SequenceGenerator(name = "RESTAURANTS_SEQ", allocationSize = 50)
   private long id;
 
   private String name;
   private String description;
+
+  @Version private Long version;
 }
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that holds the version of a table: a counter that goes up every time the
+ * table is written to, used to build {@code ETag}s for responses read from the table.
+ *
+ * <p>{@code tableName} is the simple name of the entity class stored in the table, e.g. {@code
+ * Restaurant}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "table_versions")
+public class TableVersion {
+  @Id private String tableName;
+
+  private long version;
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,10 +23,13 @@ import lombok.NoArgsConstructor;
 @Entity(name = "ucsbdates")
 public class UCSBDate {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "UCSBDATES_SEQ")
+  @SequenceGenerator(name = "UCSBDATES_SEQ", allocationSize = 50)
   private long id;
 
   private String quarterYYYYQ;
   private String name;
   private LocalDateTime localDateTime;
+
+  @Version private Long version;
 }
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -25,4 +26,6 @@ public class UCSBDiningCommons {
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
+
+  @Version private Long version;
 }
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,10 +23,13 @@ import lombok.NoArgsConstructor;
 @Entity(name = "ucsbdiningcommonsmenuitem")
 public class UCSBDiningCommonsMenuItem {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "UCSBDININGCOMMONSMENUITEM_SEQ")
+  @SequenceGenerator(name = "UCSBDININGCOMMONSMENUITEM_SEQ", allocationSize = 50)
   private long id;
 
   private String dining_commons_code;
   private String name;
   private String station;
+
+  @Version private Long version;
 }
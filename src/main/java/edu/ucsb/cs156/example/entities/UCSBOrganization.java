@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.entities;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,4 +22,6 @@ public class UCSBOrganization {
   private String orgTranslationShort;
   private String orgTranslation;
   private boolean inactive;
+
+  @Version private Long version;
 }
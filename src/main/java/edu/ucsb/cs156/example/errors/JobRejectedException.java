@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a job
+ * could not be started because the job executor is already at capacity.
+ */
+public class JobRejectedException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param jobId the id of the job that was rejected
+   */
+  public JobRejectedException(long jobId) {
+    super("Job %d rejected: too many jobs are already running or queued".formatted(jobId));
+  }
+}
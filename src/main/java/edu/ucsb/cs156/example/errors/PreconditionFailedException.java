@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a row
+ * was not changed because it does not match the request's {@code If-Match} header.
+ */
+public class PreconditionFailedException extends VersionConflictException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entityType The class of the entity, e.g. HelpRequest.class
+   * @param id the id of the row
+   * @param version the version given in {@code If-Match}
+   */
+  public PreconditionFailedException(Class<?> entityType, Object id, long version) {
+    super(entityType, id, version);
+  }
+}
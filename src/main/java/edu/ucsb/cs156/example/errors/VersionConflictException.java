@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a row
+ * was not changed because it is no longer at the version the request was based on, i.e. someone
+ * else changed it first.
+ */
+public class VersionConflictException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entityType The class of the entity, e.g. HelpRequest.class
+   * @param id the id of the row
+   * @param version the version the request expected the row to be at
+   */
+  public VersionConflictException(Class<?> entityType, Object id, long version) {
+    super(
+        "%s with id %s is no longer at version %d"
+            .formatted(entityType.getSimpleName(), id.toString(), version));
+  }
+}
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.jobs;
+
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import lombok.Builder;
+
+/**
+ * Rebuilds the {@link ArticleSearchIndex} from the articles table. The index is held in memory, so
+ * this job always runs on the node that launched it; it is not a {@code QueueableJob}.
+ */
+@Builder
+public class ArticleIndexJob implements JobContextConsumer {
+  static final int PROGRESS_EVERY = 10_000;
+
+  private final ArticleSearchIndex articleSearchIndex;
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    ctx.log("Rebuilding the article search index");
+    long count =
+        articleSearchIndex.rebuild(
+            ctx::isCancelled,
+            n -> {
+              if (n % PROGRESS_EVERY == 0) {
+                ctx.log("Indexed %d articles so far".formatted(n));
+              }
+            });
+    if (ctx.isCancelled()) {
+      ctx.log("Rebuild stopped after %d articles; the old index is still in use".formatted(count));
+      return;
+    }
+    ctx.log("Indexed %d articles".formatted(count));
+  }
+}
@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.jobs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV (RFC 4180) one record at a time. Fields may be quoted with {@code "}, in which case
+ * they may contain commas, line breaks and doubled quotes. Line endings may be {@code \n} or {@code
+ * \r\n}.
+ */
+class CsvReader {
+  private final BufferedReader in;
+  private int line = 1;
+  private int recordLine = 0;
+
+  /**
+   * Create a reader.
+   *
+   * @param in the text to read
+   */
+  CsvReader(BufferedReader in) {
+    this.in = in;
+  }
+
+  /**
+   * Line number (starting at 1) on which the record last returned by {@link #next()} starts.
+   *
+   * @return the line number
+   */
+  int getRecordLine() {
+    return recordLine;
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return the fields of the record, or null at the end of the input
+   * @throws IOException if the input cannot be read
+   * @throws IllegalArgumentException if a quoted field is not closed before the end of the input
+   */
+  List<String> next() throws IOException {
+    int c = in.read();
+    if (c == -1) {
+      return null;
+    }
+    recordLine = line;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (; ; c = in.read()) {
+      if (quoted) {
+        if (c == -1) {
+          throw new IllegalArgumentException(
+              "Line %d: quoted field is not closed".formatted(recordLine));
+        }
+        if (c == '"') {
+          in.mark(1);
+          if (in.read() != '"') {
+            in.reset();
+            quoted = false;
+            continue;
+          }
+        } else if (c == '\n') {
+          line++;
+        }
+        field.append((char) c);
+      } else if (c == -1 || c == '\n') {
+        if (c == '\n') {
+          line++;
+        }
+        fields.add(field.toString());
+        return fields;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '"' && field.isEmpty()) {
+        quoted = true;
+      } else if (c != '\r') {
+        field.append((char) c);
+      }
+    }
+  }
+}
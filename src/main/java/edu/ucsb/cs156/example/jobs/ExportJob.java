@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.jobs;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import lombok.Builder;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Exports every row of one entity table to a gzip-compressed NDJSON file, one JSON object per line
+ * in the same form as the API returns it.
+ *
+ * <p>Rows are read through a forward-only result stream, {@code fetchSize} at a time, and each is
+ * detached from the persistence context once written, so memory use does not grow with the size of
+ * the table. Output goes through a {@code bufferSize} byte compression buffer to a {@code .part}
+ * file, which is renamed to {@link #fileFor the export file} once complete.
+ */
+@Builder
+public class ExportJob implements JobContextConsumer {
+  static final int PROGRESS_EVERY = 10_000;
+
+  private final String entityName;
+  private final Class<?> entityType;
+  private final Path directory;
+  private final int fetchSize;
+  private final int bufferSize;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper mapper;
+
+  /**
+   * Where the export written by a job is kept.
+   *
+   * @param directory the export directory
+   * @param jobId id of the export job
+   * @return the path of the export file
+   */
+  public static Path fileFor(Path directory, long jobId) {
+    return directory.resolve("export-%d.ndjson.gz".formatted(jobId));
+  }
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    Files.createDirectories(directory);
+    Path target = fileFor(directory, ctx.getJobId());
+    Path partial = target.resolveSibling(target.getFileName() + ".part");
+    ctx.log("Exporting %s".formatted(entityName));
+
+    long count;
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), bufferSize);
+        JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+      generator.setRootValueSeparator(null);
+      count = transactionTemplate.execute(status -> writeRows(ctx, generator));
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(partial);
+      throw e;
+    }
+
+    if (ctx.isCancelled()) {
+      Files.deleteIfExists(partial);
+      ctx.log("Export stopped after %d rows".formatted(count));
+      return;
+    }
+    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+    ctx.log("Exported %d rows (%d bytes compressed)".formatted(count, Files.size(target)));
+  }
+
+  private long writeRows(JobContext ctx, JsonGenerator generator) {
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    long count = 0;
+    try (Stream<?> rows =
+        entityManager
+            .createQuery("SELECT e FROM %s e".formatted(entityName), entityType)
+            .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(AvailableHints.HINT_READ_ONLY, true)
+            .getResultStream()) {
+      Iterator<?> iterator = rows.iterator();
+      while (!ctx.isCancelled() && iterator.hasNext()) {
+        Object row = iterator.next();
+        writer.writeValue(generator, row);
+        generator.writeRaw('\n');
+        entityManager.detach(row);
+        count++;
+        if (count % PROGRESS_EVERY == 0) {
+          ctx.log("Exported %d rows so far".formatted(count));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,162 @@
+package edu.ucsb.cs156.example.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Creates {@link ExportJob}s. Any JPA entity can be exported, by its entity name (e.g. {@code
+ * articles}), except the jobs tables themselves.
+ */
+@Service
+public class ExportJobFactory {
+  static final Set<String> NOT_EXPORTABLE = Set.of("jobs", "job_log_chunks");
+
+  /** Export files, finished or still being written, named after their job. */
+  static final Pattern EXPORT_FILE = Pattern.compile("export-(\\d{1,18})\\.ndjson\\.gz(\\.part)?");
+
+  @Value("${app.jobs.export.dir:${java.io.tmpdir}/exports}")
+  private Path directory;
+
+  @Value("${app.jobs.export.fetchSize:500}")
+  private int fetchSize;
+
+  @Value("${app.jobs.export.bufferSize:65536}")
+  private int bufferSize;
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  private final Map<String, Class<?>> tables = new TreeMap<>();
+
+  /** Find the entities that can be exported. */
+  @PostConstruct
+  void findTables() {
+    for (EntityType<?> entity : entityManager.getMetamodel().getEntities()) {
+      if (!NOT_EXPORTABLE.contains(entity.getName())) {
+        tables.put(entity.getName(), entity.getJavaType());
+      }
+    }
+  }
+
+  /**
+   * Names of the tables that can be exported.
+   *
+   * @return the table names, sorted
+   */
+  public SortedSet<String> getTables() {
+    return new TreeSet<>(tables.keySet());
+  }
+
+  /**
+   * Create a job that exports a table.
+   *
+   * @param table name of the table, one of {@link #getTables()}
+   * @return the job, ready to pass to {@code JobService.runAsJob}
+   * @throws IllegalArgumentException if the table cannot be exported
+   */
+  public ExportJob create(String table) {
+    Class<?> entityType = tables.get(table);
+    if (entityType == null) {
+      throw new IllegalArgumentException(
+          "Cannot export %s; choose one of %s".formatted(table, tables.keySet()));
+    }
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    return ExportJob.builder()
+        .entityName(table)
+        .entityType(entityType)
+        .directory(directory)
+        .fetchSize(fetchSize)
+        .bufferSize(bufferSize)
+        .entityManager(entityManager)
+        .transactionTemplate(readOnly)
+        .mapper(mapper)
+        .build();
+  }
+
+  /**
+   * Where the file written by an export job is kept.
+   *
+   * @param jobId id of the export job
+   * @return the path of the export file
+   */
+  public Path exportFile(long jobId) {
+    return ExportJob.fileFor(directory, jobId);
+  }
+
+  /**
+   * Delete the file written by an export job, if there is one.
+   *
+   * @param jobId id of the export job
+   * @throws IOException if the file cannot be deleted
+   */
+  public void deleteExportFile(long jobId) throws IOException {
+    Files.deleteIfExists(exportFile(jobId));
+  }
+
+  /**
+   * Delete the export files in this node's export directory whose jobs no longer exist. The
+   * retention purge removes jobs with set-based statements that do not say which jobs went, so the
+   * files are matched against the jobs that are left instead.
+   *
+   * @return the number of files deleted
+   * @throws IOException if the directory cannot be listed or a file cannot be deleted
+   */
+  public long deleteExportFilesOfDeletedJobs() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    Map<Long, List<Path>> files = new HashMap<>();
+    try (Stream<Path> paths = Files.list(directory)) {
+      paths.forEach(
+          path -> {
+            Matcher matcher = EXPORT_FILE.matcher(path.getFileName().toString());
+            if (matcher.matches()) {
+              files
+                  .computeIfAbsent(Long.parseLong(matcher.group(1)), id -> new ArrayList<>())
+                  .add(path);
+            }
+          });
+    }
+    if (files.isEmpty()) {
+      return 0;
+    }
+    jobsRepository.findExistingIds(files.keySet()).forEach(files::remove);
+    long deleted = 0;
+    for (List<Path> paths : files.values()) {
+      for (Path path : paths) {
+        if (Files.deleteIfExists(path)) {
+          deleted++;
+        }
+      }
+    }
+    return deleted;
+  }
+}
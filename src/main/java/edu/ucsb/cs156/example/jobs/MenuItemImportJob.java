@@ -0,0 +1,230 @@
+package edu.ucsb.cs156.example.jobs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Builder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports UCSB dining commons menu items from an uploaded file.
+ *
+ * <p>The file is read a row at a time, so its size does not matter. Each row must have a {@code
+ * dining_commons_code}, {@code name} and {@code station}, none of them blank or longer than 255
+ * characters; rows that are not are skipped and reported in the job log. Valid rows are saved
+ * {@code batchSize} at a time, one transaction per chunk, so a failure part way through keeps the
+ * chunks already committed. They are saved through the repository, like {@link
+ * edu.ucsb.cs156.example.services.BatchService} does, so ids come from the entity's pooled sequence
+ * generator, one {@code nextval} per 50 rows, and the inserts are sent {@code
+ * hibernate.jdbc.batch_size} rows per statement. Each chunk also bumps the table's version (see
+ * {@link TableVersionService}) so that clients holding an ETag see the new rows. The file is
+ * deleted when the job ends.
+ *
+ * <p>A CSV file must start with a header row naming the columns, in any order and case; other
+ * columns are ignored. An NDJSON file has one JSON object per line.
+ */
+@Builder
+public class MenuItemImportJob implements JobContextConsumer {
+  static final List<String> COLUMNS = List.of("dining_commons_code", "name", "station");
+  static final int MAX_LENGTH = 255;
+  static final int MAX_ERRORS_LOGGED = 100;
+
+  /** The formats that can be imported. */
+  public enum Format {
+    CSV,
+    NDJSON;
+
+    /**
+     * Look up a format by name, or by file name extension ({@code .csv}, {@code .ndjson} or {@code
+     * .jsonl}).
+     *
+     * @param nameOrFilename a format name such as {@code csv}, or a file name
+     * @return the format
+     * @throws IllegalArgumentException if neither matches a format
+     */
+    public static Format of(String nameOrFilename) {
+      String lower = nameOrFilename == null ? "" : nameOrFilename.toLowerCase(Locale.ROOT);
+      if (lower.equals("csv") || lower.endsWith(".csv")) {
+        return CSV;
+      }
+      if (lower.equals("ndjson")
+          || lower.equals("jsonl")
+          || lower.endsWith(".ndjson")
+          || lower.endsWith(".jsonl")) {
+        return NDJSON;
+      }
+      throw new IllegalArgumentException(
+          "Cannot tell the format of %s; use csv or ndjson".formatted(nameOrFilename));
+    }
+  }
+
+  private final Path file;
+  private final Format format;
+  private final int batchSize;
+  private final UCSBDiningCommonsMenuItemRepository repository;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper mapper;
+  private final TableVersionService tableVersionService;
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    Importer importer = new Importer(ctx);
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      ctx.log("Importing menu items from %s file".formatted(format));
+      if (format == Format.CSV) {
+        readCsv(reader, importer);
+      } else {
+        readNdjson(reader, importer);
+      }
+      importer.finish();
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private void readCsv(BufferedReader reader, Importer importer) throws IOException {
+    CsvReader csv = new CsvReader(reader);
+    List<String> header = csv.next();
+    if (header == null) {
+      return;
+    }
+    Map<String, Integer> positions = new HashMap<>();
+    for (int i = 0; i < header.size(); i++) {
+      positions.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+    }
+    List<String> missing = COLUMNS.stream().filter(c -> !positions.containsKey(c)).toList();
+    if (!missing.isEmpty()) {
+      throw new IllegalArgumentException("CSV header is missing " + String.join(", ", missing));
+    }
+
+    List<String> record;
+    while (!importer.isCancelled() && (record = csv.next()) != null) {
+      if (record.size() == 1 && record.get(0).isBlank()) {
+        continue;
+      }
+      String[] row = new String[COLUMNS.size()];
+      for (int i = 0; i < row.length; i++) {
+        int position = positions.get(COLUMNS.get(i));
+        row[i] = position < record.size() ? record.get(position) : null;
+      }
+      importer.add(csv.getRecordLine(), row);
+    }
+  }
+
+  private void readNdjson(BufferedReader reader, Importer importer) throws IOException {
+    int lineNumber = 0;
+    String line;
+    while (!importer.isCancelled() && (line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      JsonNode node;
+      try {
+        node = mapper.readTree(line);
+      } catch (JsonProcessingException e) {
+        importer.reject(lineNumber, "not valid JSON: " + e.getOriginalMessage());
+        continue;
+      }
+      if (!node.isObject()) {
+        importer.reject(lineNumber, "not a JSON object");
+        continue;
+      }
+      String[] row = new String[COLUMNS.size()];
+      for (int i = 0; i < row.length; i++) {
+        JsonNode value = node.get(COLUMNS.get(i));
+        row[i] = value == null || value.isNull() ? null : value.asText();
+      }
+      importer.add(lineNumber, row);
+    }
+  }
+
+  /** Validates rows, inserts them a chunk at a time and keeps count. */
+  private class Importer {
+    private final JobContext ctx;
+    private final List<UCSBDiningCommonsMenuItem> batch = new ArrayList<>();
+    private long imported = 0;
+    private long rejected = 0;
+
+    Importer(JobContext ctx) {
+      this.ctx = ctx;
+    }
+
+    boolean isCancelled() {
+      return ctx.isCancelled();
+    }
+
+    void add(int lineNumber, String[] row) {
+      for (int i = 0; i < row.length; i++) {
+        String value = row[i] == null ? "" : row[i].trim();
+        if (value.isEmpty()) {
+          reject(lineNumber, COLUMNS.get(i) + " is missing");
+          return;
+        }
+        if (value.length() > MAX_LENGTH) {
+          reject(
+              lineNumber, "%s is longer than %d characters".formatted(COLUMNS.get(i), MAX_LENGTH));
+          return;
+        }
+        row[i] = value;
+      }
+      batch.add(
+          UCSBDiningCommonsMenuItem.builder()
+              .dining_commons_code(row[0])
+              .name(row[1])
+              .station(row[2])
+              .build());
+      if (batch.size() >= batchSize) {
+        insertBatch();
+      }
+    }
+
+    void reject(int lineNumber, String reason) {
+      rejected++;
+      if (rejected <= MAX_ERRORS_LOGGED) {
+        ctx.log("Line %d: %s".formatted(lineNumber, reason));
+      }
+    }
+
+    void finish() {
+      if (isCancelled()) {
+        ctx.log(
+            "Import stopped; %d rows were imported before it was cancelled".formatted(imported));
+        return;
+      }
+      if (!batch.isEmpty()) {
+        insertBatch();
+      }
+      if (rejected > MAX_ERRORS_LOGGED) {
+        ctx.log("(only the first %d rejected rows are listed)".formatted(MAX_ERRORS_LOGGED));
+      }
+      ctx.log("Import finished: %d rows imported, %d rejected".formatted(imported, rejected));
+    }
+
+    private void insertBatch() {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            repository.saveAll(batch);
+            tableVersionService.bump(UCSBDiningCommonsMenuItem.class);
+          });
+      imported += batch.size();
+      batch.clear();
+      ctx.log("Imported %d rows so far (%d rejected)".formatted(imported, rejected));
+    }
+  }
+}
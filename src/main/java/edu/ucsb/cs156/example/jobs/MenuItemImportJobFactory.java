@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/** Creates {@link MenuItemImportJob}s wired to this application's database. */
+@Service
+public class MenuItemImportJobFactory {
+
+  @Value("${app.jobs.import.batchSize:500}")
+  private int batchSize;
+
+  @Autowired private UCSBDiningCommonsMenuItemRepository repository;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private TableVersionService tableVersionService;
+
+  /**
+   * Create a job that imports the given file and then deletes it.
+   *
+   * @param file the uploaded file
+   * @param format the format of the file
+   * @return the job, ready to pass to {@code JobService.runAsJob}
+   */
+  public MenuItemImportJob create(Path file, MenuItemImportJob.Format format) {
+    return MenuItemImportJob.builder()
+        .file(file)
+        .format(format)
+        .batchSize(Math.max(1, batchSize))
+        .repository(repository)
+        .transactionTemplate(transactionTemplate)
+        .mapper(mapper)
+        .tableVersionService(tableVersionService)
+        .build();
+  }
+}
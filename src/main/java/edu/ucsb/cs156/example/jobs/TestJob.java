@@ -1,11 +1,15 @@
 package edu.ucsb.cs156.example.jobs;
 
 import edu.ucsb.cs156.example.services.jobs.JobContext;
-import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.QueueableJob;
 import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
 
 @Builder
-public class TestJob implements JobContextConsumer {
+@Getter
+@Jacksonized
+public class TestJob implements QueueableJob {
 
   private boolean fail;
   private int sleepMs;
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+/**
+ * What happened to one item of a {@code /batch} request. Results are returned in the same order as
+ * the items in the request.
+ *
+ * @param index position of the item in the request
+ * @param key primary key of the row the item was applied to
+ * @param status what happened to the item
+ */
+public record BatchItemResult(int index, Object key, Status status) {
+
+  /** What happened to an item. */
+  public enum Status {
+    /** The item was inserted. */
+    CREATED,
+    /** The row with the item's key was updated. */
+    UPDATED,
+    /** The row with the item's key was deleted. */
+    DELETED,
+    /** There was no row with the item's key, so nothing was done. */
+    NOT_FOUND,
+    /** The item's key was already taken, so it was not inserted. */
+    CONFLICT
+  }
+}
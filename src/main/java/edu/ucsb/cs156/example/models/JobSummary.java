@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A job without its log, for listing jobs. Spring Data selects only these columns when a repository
+ * method returns this projection, so listing jobs never reads the {@code log} column.
+ */
+public interface JobSummary {
+  long getId();
+
+  ZonedDateTime getCreatedAt();
+
+  ZonedDateTime getUpdatedAt();
+
+  ZonedDateTime getStartedAt();
+
+  ZonedDateTime getFinishedAt();
+
+  String getStatus();
+
+  String getJobType();
+
+  int getAttempts();
+
+  Long getTimeoutMillis();
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a list read in key order ("keyset pagination"). To get the following page, pass
+ * {@code next} back as {@code after}; {@code next} is null on the last page.
+ *
+ * <p>Each page is read with {@code WHERE key > after ORDER BY key LIMIT n}, which the primary key
+ * index answers directly, so a deep page costs no more than the first one (unlike {@code OFFSET}).
+ *
+ * @param <T> type of the items
+ * @param <K> type of the key
+ * @param items the items on this page
+ * @param next key of the last item, or null if there are no more
+ */
+public record KeysetPage<T, K>(List<T> items, K next) {
+
+  /**
+   * Make a page from rows read with a limit one more than the page size, so that an extra row shows
+   * that there is a next page.
+   *
+   * @param <T> type of the items
+   * @param <K> type of the key
+   * @param rows rows read, in key order
+   * @param limit page size
+   * @param key gets the key of an item
+   * @return the page
+   */
+  public static <T, K> KeysetPage<T, K> of(List<T> rows, int limit, Function<T, K> key) {
+    if (rows.size() <= limit) {
+      return new KeysetPage<>(rows, null);
+    }
+    List<T> items = rows.subList(0, limit);
+    return new KeysetPage<>(items, key.apply(items.get(limit - 1)));
+  }
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.Comparator;
+
+/**
+ * A menu item with the totals of its reviews, as ranked by the menu item leaderboard.
+ *
+ * @param id id of the menu item
+ * @param dining_commons_code the dining commons where the item is served
+ * @param station the station where the item is served
+ * @param name the name of the item
+ * @param reviewCount how many reviews the item has
+ * @param starsTotal the total stars of those reviews
+ */
+public record TopMenuItem(
+    long id,
+    String dining_commons_code,
+    String station,
+    String name,
+    long reviewCount,
+    long starsTotal) {
+
+  /**
+   * Best first: highest average stars, then most reviews, then lowest id. Averages are compared by
+   * cross-multiplying, so there is no rounding.
+   */
+  public static final Comparator<TopMenuItem> BEST_FIRST =
+      ((Comparator<TopMenuItem>)
+              (a, b) -> Long.compare(b.starsTotal * a.reviewCount, a.starsTotal * b.reviewCount))
+          .thenComparing(Comparator.comparingLong(TopMenuItem::reviewCount).reversed())
+          .thenComparingLong(TopMenuItem::id);
+
+  /**
+   * The average number of stars.
+   *
+   * @return the average, or null if the item has no reviews
+   */
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) starsTotal / reviewCount;
+  }
+}
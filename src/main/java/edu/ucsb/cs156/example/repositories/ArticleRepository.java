@@ -1,9 +1,68 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Article;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The ArticleRepository is a repository for Article entities. */
 @Repository
-public interface ArticleRepository extends CrudRepository<Article, Long> {}
+public interface ArticleRepository
+    extends CrudRepository<Article, Long>,
+        PagingAndSortingRepository<Article, Long>,
+        StreamingRepository<Article, Long> {
+  /**
+   * Read a page of Articles in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<Article> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+  /**
+   * Overwrite one Article with a single UPDATE statement, without reading it first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE articles a SET a.title = :#{#incoming.title}, a.url = :#{#incoming.url}, "
+          + "a.explanation = :#{#incoming.explanation}, a.email = :#{#incoming.email}, "
+          + "a.localDateTime = :#{#incoming.localDateTime}, a.version = a.version + 1 "
+          + "WHERE a.id = :id AND (:version IS NULL OR a.version = :version)")
+  int updateById(
+      @Param("id") long id, @Param("version") Long version, @Param("incoming") Article incoming);
+
+  /**
+   * Delete one Article with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM articles a WHERE a.id = :id AND (:version IS NULL OR a.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one Article without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT a.version FROM articles a WHERE a.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+}
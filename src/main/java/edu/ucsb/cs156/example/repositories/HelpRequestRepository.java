@@ -1,9 +1,72 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The HelpRequestRepository is a repository for HelpRequest entities. */
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {}
+public interface HelpRequestRepository
+    extends CrudRepository<HelpRequest, Long>, PagingAndSortingRepository<HelpRequest, Long> {
+  /**
+   * Read a page of HelpRequests in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<HelpRequest> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+  /**
+   * Overwrite one HelpRequest with a single UPDATE statement, without reading it first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE helprequests h SET h.requesterEmail = :#{#incoming.requesterEmail}, "
+          + "h.teamId = :#{#incoming.teamId}, "
+          + "h.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom}, "
+          + "h.requestTime = :#{#incoming.requestTime}, "
+          + "h.explanation = :#{#incoming.explanation}, "
+          + "h.solved = :#{#incoming.solved}, h.version = h.version + 1 "
+          + "WHERE h.id = :id AND (:version IS NULL OR h.version = :version)")
+  int updateById(
+      @Param("id") long id,
+      @Param("version") Long version,
+      @Param("incoming") HelpRequest incoming);
+
+  /**
+   * Delete one HelpRequest with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM helprequests h WHERE h.id = :id AND (:version IS NULL OR h.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one HelpRequest without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT h.version FROM helprequests h WHERE h.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+}
@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/** The JobLogChunksRepository is a repository for JobLogChunk entities. */
+@Repository
+public interface JobLogChunksRepository extends CrudRepository<JobLogChunk, Long> {
+  /**
+   * This method returns the chunks of a job's log that overlap the character range [from, to), in
+   * order.
+   *
+   * @param jobId id of the job
+   * @param from first character offset wanted (inclusive)
+   * @param to last character offset wanted (exclusive)
+   * @return the overlapping chunks ordered by seq
+   */
+  @Query(
+      "SELECT c FROM job_log_chunks c WHERE c.jobId = :jobId"
+          + " AND c.endOffset > :from AND c.startOffset < :to ORDER BY c.seq")
+  List<JobLogChunk> findChunksInRange(
+      @Param("jobId") long jobId, @Param("from") long from, @Param("to") long to);
+
+  /**
+   * This method returns the most recently appended chunk of a job's log.
+   *
+   * @param jobId id of the job
+   * @return Optional of JobLogChunk (empty if the job has not logged anything)
+   */
+  Optional<JobLogChunk> findFirstByJobIdOrderBySeqDesc(long jobId);
+}
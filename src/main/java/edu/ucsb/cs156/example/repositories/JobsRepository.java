@@ -1,8 +1,226 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobSummary;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+
+  /**
+   * One page of jobs, without their logs. Returns a slice rather than a page, so no count query is
+   * run; use {@link #count()} or {@link #countByStatus} when the total is needed.
+   *
+   * @param pageable the page and sort order
+   * @return the jobs on the page
+   */
+  Slice<JobSummary> findAllProjectedBy(Pageable pageable);
+
+  /**
+   * One page of the jobs with a given status, without their logs.
+   *
+   * @param status the status
+   * @param pageable the page and sort order
+   * @return the jobs on the page
+   */
+  Slice<JobSummary> findByStatus(String status, Pageable pageable);
+
+  /**
+   * Count the jobs with a given status.
+   *
+   * @param status the status
+   * @return the number of jobs
+   */
+  long countByStatus(String status);
+
+  /**
+   * Lock up to {@code limit} jobs that are waiting to run: queued jobs, and running jobs whose
+   * lease has expired because the node running them stopped sending heartbeats. Rows already locked
+   * by another node's claim are skipped rather than waited for. Must be called in a transaction;
+   * the locks are held until it commits.
+   *
+   * @param now the current time
+   * @param limit the maximum number of jobs to lock
+   * @return ids of the locked jobs, oldest first
+   */
+  @Query(
+      value =
+          "SELECT id FROM jobs WHERE status = 'queued'"
+              + " OR (status = 'running' AND lease_expires_at < :now)"
+              + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<Long> lockClaimableJobIds(@Param("now") ZonedDateTime now, @Param("limit") int limit);
+
+  /**
+   * Mark jobs as running on a node until {@code leaseExpiresAt}, and count the attempt.
+   *
+   * @param ids ids of the jobs, as returned by {@link #lockClaimableJobIds}
+   * @param node id of the node claiming them
+   * @param leaseExpiresAt when the claim expires unless renewed
+   * @return the number of jobs updated
+   */
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "UPDATE jobs j SET j.status = 'running', j.claimedBy = :node,"
+          + " j.leaseExpiresAt = :leaseExpiresAt, j.attempts = j.attempts + 1 WHERE j.id IN :ids")
+  int claim(
+      @Param("ids") Collection<Long> ids,
+      @Param("node") String node,
+      @Param("leaseExpiresAt") ZonedDateTime leaseExpiresAt);
+
+  /**
+   * Extend the lease on jobs that a node is still running. Jobs that have since finished, or been
+   * claimed by another node, are left alone.
+   *
+   * @param ids ids of the jobs the node is running
+   * @param node id of the node
+   * @param leaseExpiresAt the new expiry
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.leaseExpiresAt = :leaseExpiresAt"
+          + " WHERE j.id IN :ids AND j.claimedBy = :node AND j.status = 'running'")
+  int renewLeases(
+      @Param("ids") Collection<Long> ids,
+      @Param("node") String node,
+      @Param("leaseExpiresAt") ZonedDateTime leaseExpiresAt);
+
+  /**
+   * Mark a job as cancelled unless it has already finished.
+   *
+   * @param id id of the job
+   * @return 1 if the job was queued or running, otherwise 0
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = 'cancelled'"
+          + " WHERE j.id = :id AND j.status IN ('queued', 'running')")
+  int cancelIfNotFinished(@Param("id") long id);
+
+  /**
+   * The status of a job, read without loading the job.
+   *
+   * @param id id of the job
+   * @return the status, if the job exists
+   */
+  @Query("SELECT j.status FROM jobs j WHERE j.id = :id")
+  Optional<String> findStatusById(@Param("id") long id);
+
+  /**
+   * Record how a job run on this node ended. The status is only written if the job is still {@code
+   * running}, so a cancel that was written while the job ran is kept.
+   *
+   * @param id id of the job
+   * @param status the status the job ended with
+   * @param startedAt when the job started
+   * @param finishedAt when the job finished
+   * @return 1 if the job exists, otherwise 0
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = CASE WHEN j.status = 'running' THEN :status ELSE j.status END,"
+          + " j.startedAt = :startedAt, j.finishedAt = :finishedAt WHERE j.id = :id")
+  int finish(
+      @Param("id") long id,
+      @Param("status") String status,
+      @Param("startedAt") ZonedDateTime startedAt,
+      @Param("finishedAt") ZonedDateTime finishedAt);
+
+  /**
+   * Find which of a set of jobs have been marked as cancelled.
+   *
+   * @param ids ids of the jobs
+   * @return ids of those that are cancelled
+   */
+  @Query("SELECT j.id FROM jobs j WHERE j.id IN :ids AND j.status = 'cancelled'")
+  List<Long> findCancelledIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Find which of a set of jobs still exist.
+   *
+   * @param ids ids of the jobs
+   * @return ids of those that have not been deleted
+   */
+  @Query("SELECT j.id FROM jobs j WHERE j.id IN :ids")
+  List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Delete up to {@code limit} jobs with a given status created before {@code cutoff}, oldest
+   * first. Their log chunks are removed by the database ({@code ON DELETE CASCADE}).
+   *
+   * @param status the status
+   * @param cutoff delete jobs created before this
+   * @param limit the maximum number of jobs to delete
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs WHERE status = :status"
+              + " AND created_at < :cutoff ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteCreatedBefore(
+      @Param("status") String status,
+      @Param("cutoff") ZonedDateTime cutoff,
+      @Param("limit") int limit);
+
+  /**
+   * Find the newest job with a given status that is not among the newest {@code keep}; that job and
+   * every older one with the same status are beyond a limit of {@code keep} jobs.
+   *
+   * @param status the status
+   * @param keep the number of newest jobs to skip
+   * @return the id of the job, if there are more than {@code keep}
+   */
+  @Query(
+      value = "SELECT id FROM jobs WHERE status = :status ORDER BY id DESC LIMIT 1 OFFSET :keep",
+      nativeQuery = true)
+  Optional<Long> findIdAfterNewest(@Param("status") String status, @Param("keep") int keep);
+
+  /**
+   * Delete up to {@code limit} jobs with a given status and an id of at most {@code maxId}, oldest
+   * first.
+   *
+   * @param status the status
+   * @param maxId the highest id to delete
+   * @param limit the maximum number of jobs to delete
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs WHERE status = :status"
+              + " AND id <= :maxId ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteUpToId(
+      @Param("status") String status, @Param("maxId") long maxId, @Param("limit") int limit);
+
+  /**
+   * Delete up to {@code limit} jobs, oldest first, without loading them.
+   *
+   * @param limit the maximum number of jobs to delete
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value = "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteOldest(@Param("limit") int limit);
+}
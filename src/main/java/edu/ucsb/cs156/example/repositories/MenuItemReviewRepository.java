@@ -1,9 +1,84 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The MenuItemReviewRepository is a repository for MenuItemReview entities. */
 @Repository
-public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {}
+public interface MenuItemReviewRepository
+    extends CrudRepository<MenuItemReview, Long>,
+        PagingAndSortingRepository<MenuItemReview, Long>,
+        StreamingRepository<MenuItemReview, Long> {
+  /**
+   * Read a page of MenuItemReviews in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<MenuItemReview> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+  /**
+   * Read one MenuItemReview and lock its row until the caller's transaction ends, so that the
+   * values read are still the row's values when it is then updated or deleted.
+   *
+   * @param id id of the row
+   * @return the row, if there is one
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<MenuItemReview> findForUpdateById(long id);
+
+  /**
+   * Overwrite one MenuItemReview with a single UPDATE statement, without reading it first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE menuitemreviews r SET r.itemId = :#{#incoming.itemId}, "
+          + "r.reviewerEmail = :#{#incoming.reviewerEmail}, r.stars = :#{#incoming.stars}, "
+          + "r.dateReviewed = :#{#incoming.dateReviewed}, "
+          + "r.comments = :#{#incoming.comments}, r.version = r.version + 1 "
+          + "WHERE r.id = :id AND (:version IS NULL OR r.version = :version)")
+  int updateById(
+      @Param("id") long id,
+      @Param("version") Long version,
+      @Param("incoming") MenuItemReview incoming);
+
+  /**
+   * Delete one MenuItemReview with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM menuitemreviews r WHERE r.id = :id AND (:version IS NULL OR r.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one MenuItemReview without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT r.version FROM menuitemreviews r WHERE r.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The MenuItemReviewStatsRepository is a repository for MenuItemReviewStats entities */
+@Repository
+public interface MenuItemReviewStatsRepository extends CrudRepository<MenuItemReviewStats, Long> {
+  /**
+   * Add a change to the stats of one menu item with a single UPDATE statement, in the caller's
+   * transaction if there is one.
+   *
+   * @param delta the amounts to add to each field of the row with the same itemId
+   * @return 1 if the item has a stats row, otherwise 0
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE menu_item_review_stats s SET s.reviewCount = s.reviewCount + :#{#delta.reviewCount}, "
+          + "s.starsTotal = s.starsTotal + :#{#delta.starsTotal}, "
+          + "s.oneStar = s.oneStar + :#{#delta.oneStar}, "
+          + "s.twoStars = s.twoStars + :#{#delta.twoStars}, "
+          + "s.threeStars = s.threeStars + :#{#delta.threeStars}, "
+          + "s.fourStars = s.fourStars + :#{#delta.fourStars}, "
+          + "s.fiveStars = s.fiveStars + :#{#delta.fiveStars} WHERE s.itemId = :#{#delta.itemId}")
+  int add(@Param("delta") MenuItemReviewStats delta);
+
+  /**
+   * Insert an all-zero stats row for a menu item, in a transaction of its own: if another
+   * transaction has inserted the row first, only this insert fails, and the caller's transaction
+   * can go on to {@link #add} to the row that is there. This briefly takes a second connection from
+   * the pool, but only for the first review of an item.
+   *
+   * @param itemId the id of the menu item
+   * @return 1
+   * @throws org.springframework.dao.DataIntegrityViolationException if the item already has a stats
+   *     row
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query(
+      value = "INSERT INTO menu_item_review_stats (item_id) VALUES (:itemId)",
+      nativeQuery = true)
+  int insertEmpty(@Param("itemId") long itemId);
+}
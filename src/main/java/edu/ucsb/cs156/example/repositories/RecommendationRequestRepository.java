@@ -1,10 +1,73 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The RecommendationRequestRepository is a repository for RecommendationRequest entities. */
 @Repository
 public interface RecommendationRequestRepository
-    extends CrudRepository<RecommendationRequest, Long> {}
+    extends CrudRepository<RecommendationRequest, Long>,
+        PagingAndSortingRepository<RecommendationRequest, Long> {
+  /**
+   * Read a page of RecommendationRequests in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<RecommendationRequest> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+  /**
+   * Overwrite one RecommendationRequest with a single UPDATE statement, without reading it first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE recommendationrequest r SET r.requesterEmail = :#{#incoming.requesterEmail}, "
+          + "r.professorEmail = :#{#incoming.professorEmail}, "
+          + "r.explanation = :#{#incoming.explanation}, "
+          + "r.dateRequested = :#{#incoming.dateRequested}, "
+          + "r.dateNeeded = :#{#incoming.dateNeeded}, "
+          + "r.done = :#{#incoming.done}, r.version = r.version + 1 "
+          + "WHERE r.id = :id AND (:version IS NULL OR r.version = :version)")
+  int updateById(
+      @Param("id") long id,
+      @Param("version") Long version,
+      @Param("incoming") RecommendationRequest incoming);
+
+  /**
+   * Delete one RecommendationRequest with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM recommendationrequest r WHERE r.id = :id AND (:version IS NULL OR r.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one RecommendationRequest without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT r.version FROM recommendationrequest r WHERE r.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+}
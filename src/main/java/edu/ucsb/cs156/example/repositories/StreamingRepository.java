@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.hibernate.jpa.AvailableHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.AvailableHints.HINT_READ_ONLY;
+
+import jakarta.persistence.QueryHint;
+import java.util.stream.Stream;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Adds {@link #streamAllBy()} to a repository, for endpoints that write every row of a table to the
+ * response as it is read (see {@code JsonStreamService}).
+ *
+ * @param <T> the entity type
+ * @param <ID> the type of the entity's id
+ */
+@NoRepositoryBean
+public interface StreamingRepository<T, ID> extends Repository<T, ID> {
+  /** Number of rows the JDBC driver fetches from the database at a time. */
+  String FETCH_SIZE = "500";
+
+  /**
+   * Read every row, {@link #FETCH_SIZE} at a time, as read-only entities. Must be called inside a
+   * transaction, and the stream must be closed.
+   *
+   * @return the rows
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE),
+    @QueryHint(name = HINT_READ_ONLY, value = "true")
+  })
+  Stream<T> streamAllBy();
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The TableVersionRepository is a repository for TableVersion entities */
+@Repository
+public interface TableVersionRepository extends CrudRepository<TableVersion, String> {
+  /**
+   * Add one to the version of a table, in the caller's transaction if there is one.
+   *
+   * @param tableName name of the table
+   * @return 1 if the table has a version row, otherwise 0
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE table_versions v SET v.version = v.version + 1 WHERE v.tableName = :tableName")
+  int increment(@Param("tableName") String tableName);
+}
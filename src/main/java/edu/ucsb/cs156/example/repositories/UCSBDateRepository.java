@@ -1,12 +1,30 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The UCSBDateRepository is a repository for UCSBDate entities. */
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository
+    extends CrudRepository<UCSBDate, Long>, PagingAndSortingRepository<UCSBDate, Long> {
+  /**
+   * Read a page of UCSBDates in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
   /**
    * This method returns all UCSBDate entities with a given quarterYYYYQ.
    *
@@ -15,4 +33,43 @@ public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
    * @return all UCSBDate entities with a given quarterYYYYQ
    */
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
+
+  /**
+   * Overwrite one UCSBDate with a single UPDATE statement, without reading it first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsbdates d SET d.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, "
+          + "d.name = :#{#incoming.name}, "
+          + "d.localDateTime = :#{#incoming.localDateTime}, d.version = d.version + 1 "
+          + "WHERE d.id = :id AND (:version IS NULL OR d.version = :version)")
+  int updateById(
+      @Param("id") long id, @Param("version") Long version, @Param("incoming") UCSBDate incoming);
+
+  /**
+   * Delete one UCSBDate with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM ucsbdates d WHERE d.id = :id AND (:version IS NULL OR d.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one UCSBDate without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT d.version FROM ucsbdates d WHERE d.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
 }
@@ -1,12 +1,85 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * The UCSBDiningCommonsMenuItemRepository is a repository for UCSBDiningCommonsMenuItem entities
  */
 @Repository
 public interface UCSBDiningCommonsMenuItemRepository
-    extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {}
+    extends CrudRepository<UCSBDiningCommonsMenuItem, Long>,
+        PagingAndSortingRepository<UCSBDiningCommonsMenuItem, Long> {
+  /**
+   * Read a page of UCSBDiningCommonsMenuItems in id order, for keyset pagination.
+   *
+   * @param after only return rows whose id is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in id order
+   */
+  List<UCSBDiningCommonsMenuItem> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+  /**
+   * Read every menu item with the totals of its reviews, taken from the review stats table rather
+   * than the reviews themselves.
+   *
+   * @return one row per menu item; an item with no reviews has zero totals
+   */
+  @Query(
+      "SELECT new edu.ucsb.cs156.example.models.TopMenuItem(m.id, m.dining_commons_code, m.station, "
+          + "m.name, COALESCE(s.reviewCount, 0L), COALESCE(s.starsTotal, 0L)) "
+          + "FROM ucsbdiningcommonsmenuitem m LEFT JOIN menu_item_review_stats s ON s.itemId = m.id")
+  List<TopMenuItem> findAllWithReviewTotals();
+
+  /**
+   * Overwrite one UCSBDiningCommonsMenuItem with a single UPDATE statement, without reading it
+   * first.
+   *
+   * @param id id of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its id is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsbdiningcommonsmenuitem m SET m.dining_commons_code = :#{#incoming.dining_commons_code}, "
+          + "m.name = :#{#incoming.name}, m.station = :#{#incoming.station}, m.version = m.version + 1 "
+          + "WHERE m.id = :id AND (:version IS NULL OR m.version = :version)")
+  int updateById(
+      @Param("id") long id,
+      @Param("version") Long version,
+      @Param("incoming") UCSBDiningCommonsMenuItem incoming);
+
+  /**
+   * Delete one UCSBDiningCommonsMenuItem with a single DELETE statement, without reading it first.
+   *
+   * @param id id of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that id at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM ucsbdiningcommonsmenuitem m WHERE m.id = :id AND (:version IS NULL OR m.version = :version)")
+  int deleteRowById(@Param("id") long id, @Param("version") Long version);
+
+  /**
+   * Read the version of one UCSBDiningCommonsMenuItem without reading the rest of the row.
+   *
+   * @param id id of the row
+   * @return the version, if there is a row with that id
+   */
+  @Query("SELECT m.version FROM ucsbdiningcommonsmenuitem m WHERE m.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+}
@@ -1,9 +1,73 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The UCSBDiningCommonsRepository is a repository for UCSBDiningCommons entities */
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {}
+public interface UCSBDiningCommonsRepository
+    extends CrudRepository<UCSBDiningCommons, String>,
+        PagingAndSortingRepository<UCSBDiningCommons, String> {
+  /**
+   * Read a page of UCSBDiningCommonss in code order, for keyset pagination.
+   *
+   * @param after only return rows whose code is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in code order
+   */
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String after, Limit limit);
+
+  /**
+   * Overwrite one UCSBDiningCommons with a single UPDATE statement, without reading it first.
+   *
+   * @param code code of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its code is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that code at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsbdiningcommons c SET c.name = :#{#incoming.name}, "
+          + "c.hasSackMeal = :#{#incoming.hasSackMeal}, "
+          + "c.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+          + "c.hasDiningCam = :#{#incoming.hasDiningCam}, "
+          + "c.latitude = :#{#incoming.latitude}, "
+          + "c.longitude = :#{#incoming.longitude}, c.version = c.version + 1 "
+          + "WHERE c.code = :code AND (:version IS NULL OR c.version = :version)")
+  int updateByCode(
+      @Param("code") String code,
+      @Param("version") Long version,
+      @Param("incoming") UCSBDiningCommons incoming);
+
+  /**
+   * Delete one UCSBDiningCommons with a single DELETE statement, without reading it first.
+   *
+   * @param code code of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that code at that version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM ucsbdiningcommons c WHERE c.code = :code AND (:version IS NULL OR c.version = :version)")
+  int deleteRowByCode(@Param("code") String code, @Param("version") Long version);
+
+  /**
+   * Read the version of one UCSBDiningCommons without reading the rest of the row.
+   *
+   * @param code code of the row
+   * @return the version, if there is a row with that code
+   */
+  @Query("SELECT c.version FROM ucsbdiningcommons c WHERE c.code = :code")
+  Optional<Long> findVersionByCode(@Param("code") String code);
+}
@@ -1,8 +1,71 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {}
+public interface UCSBOrganizationRepository
+    extends CrudRepository<UCSBOrganization, String>,
+        PagingAndSortingRepository<UCSBOrganization, String> {
+  /**
+   * Read a page of UCSBOrganizations in orgCode order, for keyset pagination.
+   *
+   * @param after only return rows whose orgCode is greater than this
+   * @param limit the maximum number of rows to return
+   * @return the rows, in orgCode order
+   */
+  List<UCSBOrganization> findByOrgCodeGreaterThanOrderByOrgCodeAsc(String after, Limit limit);
+
+  /**
+   * Overwrite one UCSBOrganization with a single UPDATE statement, without reading it first.
+   *
+   * @param orgCode orgCode of the row to update
+   * @param version if not null, only update the row if it is at this version
+   * @param incoming the new values; its orgCode is ignored
+   * @return the number of rows updated: 1, or 0 if there is no row with that orgCode at that
+   *     version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsborganizations o SET o.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+          + "o.orgTranslation = :#{#incoming.orgTranslation}, "
+          + "o.inactive = :#{#incoming.inactive}, o.version = o.version + 1 "
+          + "WHERE o.orgCode = :orgCode AND (:version IS NULL OR o.version = :version)")
+  int updateByOrgCode(
+      @Param("orgCode") String orgCode,
+      @Param("version") Long version,
+      @Param("incoming") UCSBOrganization incoming);
+
+  /**
+   * Delete one UCSBOrganization with a single DELETE statement, without reading it first.
+   *
+   * @param orgCode orgCode of the row to delete
+   * @param version if not null, only delete the row if it is at this version
+   * @return the number of rows deleted: 1, or 0 if there is no row with that orgCode at that
+   *     version
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "DELETE FROM ucsborganizations o WHERE o.orgCode = :orgCode AND (:version IS NULL OR o.version = :version)")
+  int deleteRowByOrgCode(@Param("orgCode") String orgCode, @Param("version") Long version);
+
+  /**
+   * Read the version of one UCSBOrganization without reading the rest of the row.
+   *
+   * @param orgCode orgCode of the row
+   * @return the version, if there is a row with that orgCode
+   */
+  @Query("SELECT o.version FROM ucsborganizations o WHERE o.orgCode = :orgCode")
+  Optional<Long> findVersionByOrgCode(@Param("orgCode") String orgCode);
+}
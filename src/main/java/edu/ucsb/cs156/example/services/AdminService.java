@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.config.CacheConfig;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Decides who is an admin: anyone whose email is listed in {@code app.admin.emails}, and any user
+ * whose row in the users table has {@code admin} set.
+ *
+ * <p>The configured emails are held in a hash set. Users are read through the {@value
+ * CacheConfig#CURRENT_USERS} cache, keyed by email, which is also where {@link
+ * CurrentUserServiceImpl} gets the logged in user from; a user looked up while their login is
+ * mapped to authorities is therefore already cached for their first request. Concurrent lookups of
+ * the same email, e.g. a burst of logins, wait for a single query. Code that changes a user's row
+ * must pass the new row to {@link #userChanged(User)}.
+ */
+@Service
+public class AdminService {
+
+  @Autowired UserRepository userRepository;
+
+  @Autowired CacheManager cacheManager;
+
+  private final Set<String> adminEmails;
+
+  /**
+   * Create the service.
+   *
+   * @param adminEmails the comma separated emails in {@code app.admin.emails}
+   */
+  public AdminService(@Value("${app.admin.emails}") String adminEmails) {
+    this.adminEmails = StringUtils.commaDelimitedListToSet(adminEmails.replace(" ", ""));
+  }
+
+  /**
+   * Whether the email is listed in {@code app.admin.emails}.
+   *
+   * @param email email address of the user
+   * @return whether the email is a configured admin
+   */
+  public boolean isConfiguredAdmin(String email) {
+    return adminEmails.contains(email);
+  }
+
+  /**
+   * Whether the user with this email is an admin, either because the email is listed in {@code
+   * app.admin.emails} or because their row says so.
+   *
+   * @param email email address of the user
+   * @return whether the user is an admin
+   */
+  public boolean isAdmin(String email) {
+    return isConfiguredAdmin(email) || findUser(email).map(User::getAdmin).orElse(false);
+  }
+
+  /**
+   * Look up a user by email, from the cache if possible.
+   *
+   * @param email email address of the user
+   * @return the user, if there is one
+   */
+  public Optional<User> findUser(String email) {
+    return Optional.ofNullable(
+        users().get(email, () -> userRepository.findByEmail(email).orElse(null)));
+  }
+
+  /**
+   * Replace the cached copy of a user that has just been saved.
+   *
+   * @param user the saved user
+   */
+  public void userChanged(User user) {
+    users().put(user.getEmail(), user);
+  }
+
+  private Cache users() {
+    return cacheManager.getCache(CacheConfig.CURRENT_USERS);
+  }
+}
@@ -0,0 +1,345 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * An in-memory inverted index of the words in each article's title and explanation, for ranked
+ * full-text search without reading the articles table.
+ *
+ * <p>Text is split into words at anything that is not a letter or digit, and lower-cased; there is
+ * no stemming. Each word of a query matches the indexed words it is a prefix of (at most {@link
+ * #MAX_EXPANSIONS} of them, shortest first) and scores a document by the best of those under BM25.
+ * A document's score is the sum over the query's words.
+ *
+ * <p>The index is built when the app starts and can be rebuilt by the article index job. The
+ * articles controller adds each write once it has committed. The index belongs to this node: writes
+ * made through other nodes show up here after the next rebuild.
+ *
+ * <p>It is meant for a modest number of articles and has only been measured at that size; latency
+ * at a million articles is unverified. A query scores every posting of every word it expands to,
+ * with no top-k pruning (such as WAND), so its cost grows with how common its words are. Postings
+ * are {@code HashMap}s of boxed ids and counts, and one read-write lock covers the whole index, so
+ * a write waits for the searches in progress and holds up new ones until it is done.
+ */
+@Slf4j
+@Service
+public class ArticleSearchIndex {
+
+  /** BM25 term frequency saturation. */
+  static final double K1 = 1.2;
+
+  /** BM25 document length normalization. */
+  static final double B = 0.75;
+
+  /** The most indexed words one query word is expanded to. */
+  static final int MAX_EXPANSIONS = 50;
+
+  /** Orders indexed words, with their postings, shortest first and then alphabetically. */
+  private static final Comparator<Map.Entry<String, Map<Long, Integer>>> SHORTEST_FIRST =
+      Comparator.<Map.Entry<String, Map<Long, Integer>>>comparingInt(
+              entry -> entry.getKey().length())
+          .thenComparing(Map.Entry::getKey);
+
+  @Autowired ArticleRepository articleRepository;
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired PlatformTransactionManager transactionManager;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private Index index = new Index();
+
+  /** Writes made while a rebuild is running, by article id; null marks a delete. */
+  private Map<Long, Article> pending;
+
+  /** The postings of every word, and the words of every document. */
+  private static class Index {
+    final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    final Map<Long, Document> documents = new HashMap<>();
+    long totalLength;
+
+    void put(long id, Article article) {
+      remove(id);
+      List<String> words =
+          tokenize(
+              Objects.toString(article.getTitle(), "")
+                  + " "
+                  + Objects.toString(article.getExplanation(), ""));
+      Map<String, Integer> counts = new HashMap<>();
+      words.forEach(word -> counts.merge(word, 1, Integer::sum));
+      counts.forEach(
+          (word, count) -> postings.computeIfAbsent(word, w -> new HashMap<>()).put(id, count));
+      documents.put(id, new Document(counts.keySet().toArray(String[]::new), words.size()));
+      totalLength += words.size();
+    }
+
+    void remove(long id) {
+      Document document = documents.remove(id);
+      if (document == null) {
+        return;
+      }
+      for (String word : document.words()) {
+        Map<Long, Integer> docs = postings.get(word);
+        docs.remove(id);
+        if (docs.isEmpty()) {
+          postings.remove(word);
+        }
+      }
+      totalLength -= document.length();
+    }
+  }
+
+  /**
+   * The distinct words of one indexed document, and how many words it has.
+   *
+   * @param words the distinct words
+   * @param length the number of words
+   */
+  private record Document(String[] words, int length) {}
+
+  /**
+   * Split text into lower-cased words.
+   *
+   * @param text the text
+   * @return the words, in order
+   */
+  static List<String> tokenize(String text) {
+    return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+        .filter(word -> !word.isEmpty())
+        .toList();
+  }
+
+  /**
+   * Find the articles that best match a query.
+   *
+   * @param query the words to look for
+   * @param limit the most articles to return
+   * @return up to {@code limit} articles, best match first
+   */
+  public List<Article> search(String query, int limit) {
+    List<Long> ids;
+    lock.readLock().lock();
+    try {
+      ids = rank(tokenize(query).stream().distinct().toList(), limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+    Map<Long, Article> articles = new HashMap<>();
+    articleRepository.findAllById(ids).forEach(article -> articles.put(article.getId(), article));
+    return ids.stream().map(articles::get).filter(Objects::nonNull).toList();
+  }
+
+  /**
+   * The postings of the indexed words that start with {@code prefix}: the {@link #MAX_EXPANSIONS}
+   * shortest, alphabetically among words of the same length. Every matching word is looked at, but
+   * only the shortest are kept.
+   */
+  private Collection<Map<Long, Integer>> expansions(String prefix) {
+    PriorityQueue<Map.Entry<String, Map<Long, Integer>>> shortest =
+        new PriorityQueue<>(SHORTEST_FIRST.reversed());
+    for (Map.Entry<String, Map<Long, Integer>> entry : index.postings.tailMap(prefix).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        break;
+      }
+      shortest.add(entry);
+      if (shortest.size() > MAX_EXPANSIONS) {
+        shortest.poll();
+      }
+    }
+    return shortest.stream().map(Map.Entry::getValue).toList();
+  }
+
+  /** Score the documents that match any of the words and keep the best {@code limit}. */
+  private List<Long> rank(List<String> words, int limit) {
+    int documentCount = index.documents.size();
+    if (documentCount == 0) {
+      return List.of();
+    }
+    double averageLength = (double) index.totalLength / documentCount;
+    Map<Long, Double> scores = new HashMap<>();
+    for (String word : words) {
+      Map<Long, Double> best = new HashMap<>();
+      for (Map<Long, Integer> docs : expansions(word)) {
+        double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+        docs.forEach(
+            (id, count) -> {
+              double norm = K1 * (1 - B + B * index.documents.get(id).length() / averageLength);
+              best.merge(id, idf * count * (K1 + 1) / (count + norm), Math::max);
+            });
+      }
+      best.forEach((id, score) -> scores.merge(id, score, Double::sum));
+    }
+
+    Comparator<Map.Entry<Long, Double>> worstFirst =
+        Map.Entry.<Long, Double>comparingByValue()
+            .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+    PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(worstFirst);
+    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+      top.add(entry);
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+    List<Long> ids = new ArrayList<>();
+    while (!top.isEmpty()) {
+      ids.add(top.poll().getKey());
+    }
+    Collections.reverse(ids);
+    return ids;
+  }
+
+  /**
+   * Add an article to the index, or replace it. Called in a transaction, the article is added once
+   * the transaction commits, and not at all if it rolls back.
+   *
+   * @param id id of the article
+   * @param article the article
+   */
+  public void put(long id, Article article) {
+    afterCommit(() -> write(id, article));
+  }
+
+  /**
+   * Take an article out of the index. Called in a transaction, the article is taken out once the
+   * transaction commits, and not at all if it rolls back.
+   *
+   * @param id id of the article
+   */
+  public void remove(long id) {
+    afterCommit(() -> write(id, null));
+  }
+
+  private static void afterCommit(Runnable change) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      change.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            change.run();
+          }
+        });
+  }
+
+  private void write(long id, Article article) {
+    lock.writeLock().lock();
+    try {
+      if (article == null) {
+        index.remove(id);
+      } else {
+        index.put(id, article);
+      }
+      if (pending != null) {
+        pending.put(id, article);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Build the index when the app starts. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void buildOnStartup() {
+    long count = rebuild(() -> false, n -> {});
+    log.info("article search index built: {} articles", count);
+  }
+
+  /**
+   * Build a new index from the articles table, then swap it in. Searches use the old index until
+   * then, and writes made in the meantime are applied to both. Only one rebuild runs at a time.
+   *
+   * @param cancelled checked before each article; if it returns true, the rebuild stops and the old
+   *     index is kept
+   * @param progress told the number of articles read so far, after each article
+   * @return the number of articles read
+   */
+  public synchronized long rebuild(BooleanSupplier cancelled, LongConsumer progress) {
+    lock.writeLock().lock();
+    try {
+      pending = new LinkedHashMap<>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    Index built = new Index();
+    long count;
+    try {
+      TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+      readOnly.setReadOnly(true);
+      count = readOnly.execute(status -> readAll(built, cancelled, progress));
+    } catch (RuntimeException e) {
+      stopRebuild(null);
+      throw e;
+    }
+    stopRebuild(cancelled.getAsBoolean() ? null : built);
+    return count;
+  }
+
+  private long readAll(Index built, BooleanSupplier cancelled, LongConsumer progress) {
+    long count = 0;
+    try (Stream<Article> rows = articleRepository.streamAllBy()) {
+      for (Article article : (Iterable<Article>) rows::iterator) {
+        if (cancelled.getAsBoolean()) {
+          break;
+        }
+        built.put(article.getId(), article);
+        entityManager.detach(article);
+        progress.accept(++count);
+      }
+    }
+    return count;
+  }
+
+  /** Swap in the built index, if there is one, with the writes made while it was being built. */
+  private void stopRebuild(Index built) {
+    lock.writeLock().lock();
+    try {
+      if (built != null) {
+        pending.forEach(
+            (id, article) -> {
+              if (article == null) {
+                built.remove(id);
+              } else {
+                built.put(id, article);
+              }
+            });
+        index = built;
+      }
+      pending = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+}
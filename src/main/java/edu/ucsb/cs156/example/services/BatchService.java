@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.BatchItemResult.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Applies the items of a {@code /batch} request to a repository in one transaction.
+ *
+ * <p>The existing rows for an update or delete are read with a single {@code findAllById} query
+ * instead of one {@code findById} per item, and the inserts, updates and deletes are written when
+ * the transaction commits, {@code hibernate.jdbc.batch_size} rows per statement. A request may have
+ * at most {@code app.batch.maxItems} items.
+ *
+ * <p>Items that cannot be applied are reported, not thrown: each result says what happened to its
+ * item, and the items that can be applied still are. Only a failure the checks cannot see, such as
+ * a row with the same key inserted by another request at the same time, rolls back the whole batch.
+ */
+@Service
+public class BatchService {
+
+  @Value("${app.batch.maxItems:1000}")
+  private int maxItems;
+
+  /**
+   * Insert every item whose key is free. The keys the items bring with them are looked up with a
+   * single {@code findAllById} query; keys left for the database to generate ({@code null} or
+   * {@code 0}) never conflict.
+   *
+   * @param <T> type of the entities
+   * @param <ID> type of their keys
+   * @param repository the repository to save to
+   * @param items the new rows
+   * @param key gets the key of a row
+   * @return one result per item; {@code CONFLICT} for items whose key belongs to an existing row or
+   *     to an earlier item of the batch, which are not inserted
+   */
+  @Transactional
+  public <T, ID> List<BatchItemResult> create(
+      CrudRepository<T, ID> repository, List<T> items, Function<T, ID> key) {
+    checkSize(items);
+    List<ID> assigned = items.stream().map(key).filter(BatchService::isAssigned).toList();
+    Set<ID> taken = new HashSet<>(findAll(repository, assigned, key).keySet());
+    BatchItemResult[] results = new BatchItemResult[items.size()];
+    List<T> inserted = new ArrayList<>(items.size());
+    List<Integer> insertedIndexes = new ArrayList<>(items.size());
+    for (int index = 0; index < items.size(); index++) {
+      ID id = key.apply(items.get(index));
+      if (isAssigned(id) && !taken.add(id)) {
+        results[index] = new BatchItemResult(index, id, Status.CONFLICT);
+        continue;
+      }
+      inserted.add(items.get(index));
+      insertedIndexes.add(index);
+    }
+    int next = 0;
+    for (T saved : repository.saveAll(inserted)) {
+      int index = insertedIndexes.get(next++);
+      results[index] = new BatchItemResult(index, key.apply(saved), Status.CREATED);
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Copy each item onto the existing row with the same key.
+   *
+   * @param <T> type of the entities
+   * @param <ID> type of their keys
+   * @param repository the repository to update
+   * @param items the new values, each with the key of the row to update
+   * @param key gets the key of a row
+   * @param copy copies the updatable fields of its second argument onto its first
+   * @return one result per item; {@code NOT_FOUND} for items with no existing row
+   */
+  @Transactional
+  public <T, ID> List<BatchItemResult> update(
+      CrudRepository<T, ID> repository, List<T> items, Function<T, ID> key, BiConsumer<T, T> copy) {
+    checkSize(items);
+    Map<ID, T> existing = findAll(repository, items.stream().map(key).toList(), key);
+    List<BatchItemResult> results = new ArrayList<>(items.size());
+    List<T> updated = new ArrayList<>(items.size());
+    for (int index = 0; index < items.size(); index++) {
+      ID id = key.apply(items.get(index));
+      T row = existing.get(id);
+      if (row == null) {
+        results.add(new BatchItemResult(index, id, Status.NOT_FOUND));
+        continue;
+      }
+      copy.accept(row, items.get(index));
+      updated.add(row);
+      results.add(new BatchItemResult(index, id, Status.UPDATED));
+    }
+    repository.saveAll(updated);
+    return results;
+  }
+
+  /**
+   * Delete the rows with the given keys.
+   *
+   * @param <T> type of the entities
+   * @param <ID> type of their keys
+   * @param repository the repository to delete from
+   * @param ids keys of the rows to delete
+   * @param key gets the key of a row
+   * @return one result per key; {@code NOT_FOUND} for keys with no row (including repeats)
+   */
+  @Transactional
+  public <T, ID> List<BatchItemResult> delete(
+      CrudRepository<T, ID> repository, List<ID> ids, Function<T, ID> key) {
+    checkSize(ids);
+    Map<ID, T> existing = findAll(repository, ids, key);
+    List<BatchItemResult> results = new ArrayList<>(ids.size());
+    List<T> deleted = new ArrayList<>(ids.size());
+    for (int index = 0; index < ids.size(); index++) {
+      T row = existing.remove(ids.get(index));
+      if (row == null) {
+        results.add(new BatchItemResult(index, ids.get(index), Status.NOT_FOUND));
+        continue;
+      }
+      deleted.add(row);
+      results.add(new BatchItemResult(index, ids.get(index), Status.DELETED));
+    }
+    repository.deleteAll(deleted);
+    return results;
+  }
+
+  private static boolean isAssigned(Object id) {
+    return id != null && !(id instanceof Number number && number.longValue() == 0);
+  }
+
+  private void checkSize(List<?> items) {
+    if (items.size() > maxItems) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "A batch may have at most %d items; this one has %d".formatted(maxItems, items.size()));
+    }
+  }
+
+  private static <T, ID> Map<ID, T> findAll(
+      CrudRepository<T, ID> repository, List<ID> ids, Function<T, ID> key) {
+    Map<ID, T> rows = new HashMap<>();
+    for (T row : repository.findAllById(ids)) {
+      rows.put(key.apply(row), row);
+    }
+    return rows;
+  }
+}
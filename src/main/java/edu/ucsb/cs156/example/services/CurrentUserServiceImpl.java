@@ -3,13 +3,10 @@ package edu.ucsb.cs156.example.services;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -18,11 +15,19 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * This is a service that provides information about the current user.
  *
  * <p>This is the version of the service used in production.
+ *
+ * <p>The user is looked up at most once per request: the result is kept in a request attribute, so
+ * that calling {@link #getUser()} (or {@link #isLoggedIn()}) again during the same request is free.
+ * Between requests, users are looked up through {@link AdminService}, which caches them by email,
+ * so most requests make no query at all. When the user's admin flag is changed here, the new row
+ * replaces the cached one.
  */
 @Slf4j
 @Service("currentUser")
@@ -32,8 +37,10 @@ public class CurrentUserServiceImpl extends CurrentUserService {
 
   @Autowired GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<String>();
+  @Autowired AdminService adminService;
+
+  /** Request attribute that holds the user once it has been looked up during a request. */
+  static final String USER_ATTRIBUTE = CurrentUserServiceImpl.class.getName() + ".user";
 
   /**
    * This method returns the current user as a User object.
@@ -73,12 +80,13 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     java.util.Map<java.lang.String, java.lang.Object> attrs = oAuthUser.getAttributes();
     log.info("attrs={}", attrs);
 
-    Optional<User> ou = userRepository.findByEmail(email);
+    Optional<User> ou = adminService.findUser(email);
     if (ou.isPresent()) {
       User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
+      if (adminService.isConfiguredAdmin(email) && !u.getAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
+        adminService.userChanged(u);
       }
       return u;
     }
@@ -94,9 +102,10 @@ public class CurrentUserServiceImpl extends CurrentUserService {
             .emailVerified(emailVerified)
             .locale(locale)
             .hostedDomain(hostedDomain)
-            .admin(adminEmails.contains(email))
+            .admin(adminService.isConfiguredAdmin(email))
             .build();
     userRepository.save(u);
+    adminService.userChanged(u);
     return u;
   }
 
@@ -106,11 +115,22 @@ public class CurrentUserServiceImpl extends CurrentUserService {
    * @return the current user
    */
   public User getUser() {
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null
+        && request.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+            instanceof User user) {
+      return user;
+    }
+
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
 
     if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+      User user = getOAuth2AuthenticatedUser(securityContext, authentication);
+      if (request != null) {
+        request.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+      }
+      return user;
     }
     return null;
   }
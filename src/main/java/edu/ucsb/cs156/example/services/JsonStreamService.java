@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes JSON responses straight to the socket instead of building them in memory first.
+ *
+ * <p>{@link #array} reads rows from a repository {@code Stream} inside a read-only transaction and
+ * writes each one as soon as it is read, detaching it so the persistence context does not grow with
+ * the table. The response is flushed every {@code app.streaming.flushEveryRows} rows. The body is
+ * written on the MVC async executor (see {@code WebAsyncConfig}), not the request thread, so it is
+ * only used for export endpoints; ordinary responses are written by the request thread.
+ */
+@Service
+public class JsonStreamService {
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${app.streaming.flushEveryRows:500}")
+  private int flushEveryRows;
+
+  /**
+   * A response whose body is a JSON array of the given rows.
+   *
+   * @param <T> type of the rows
+   * @param rows opens the stream of rows; called once, inside a read-only transaction
+   * @return the response
+   */
+  public <T> ResponseEntity<StreamingResponseBody> array(Supplier<Stream<T>> rows) {
+    return json(
+        out -> {
+          TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+          transaction.setReadOnly(true);
+          transaction.executeWithoutResult(status -> writeArray(out, rows));
+        });
+  }
+
+  private ResponseEntity<StreamingResponseBody> json(StreamingResponseBody body) {
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  private ObjectWriter writer() {
+    return mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  private <T> void writeArray(OutputStream out, Supplier<Stream<T>> rows) {
+    ObjectWriter writer = writer();
+    try (Stream<T> stream = rows.get();
+        JsonGenerator generator =
+            mapper
+                .getFactory()
+                .createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      generator.writeStartArray();
+      long count = 0;
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        writer.writeValue(generator, row);
+        entityManager.detach(row);
+        if (++count % flushEveryRows == 0) {
+          generator.flush();
+        }
+      }
+      generator.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
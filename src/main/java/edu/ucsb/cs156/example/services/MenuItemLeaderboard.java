@@ -0,0 +1,233 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * An in-memory ranking of the reviewed menu items of each dining commons, and of each station
+ * within a dining commons, best first (see {@link TopMenuItem#BEST_FIRST}). Reading the top items
+ * walks the front of a skip list and does not touch the database.
+ *
+ * <p>The ranking is built from the menu items and their {@link MenuItemReviewStats} with one query,
+ * when the app starts and then whenever the table version (see {@link TableVersionService}) of the
+ * menu items or the reviews has changed, checked every {@code app.leaderboard.refreshMillis}. That
+ * picks up writes from other nodes and from jobs. Review writes on this node are added as soon as
+ * they commit (see {@link #add}), together with the reviews version they were written at, so they
+ * show up straight away and do not cause a rebuild of their own.
+ *
+ * <p>A local write bumps the reviews version only after it has committed, so for a moment its rows
+ * are visible at the version before it. A rebuild that overlaps that moment cannot tell whether its
+ * rows include the write, and is rebuilt again next time (see {@link #writeCommitting}).
+ */
+@Slf4j
+@Service
+public class MenuItemLeaderboard {
+
+  @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired TableVersionService tableVersionService;
+
+  private volatile Board board = new Board(-1, -1);
+
+  /** Reviews versions newer than the board's that {@link #add} has applied to it. */
+  private final NavigableSet<Long> addedReviewsVersions = new ConcurrentSkipListSet<>();
+
+  /** Local review writes between {@link #writeCommitting} and {@link #writeFinished}. */
+  private final AtomicInteger writesInFlight = new AtomicInteger();
+
+  /** How many times {@link #writeCommitting} has been called. */
+  private final AtomicLong commitsStarted = new AtomicLong();
+
+  /** One build of the leaderboard, and the table versions it is at. */
+  private static class Board {
+    final long menuItemsVersion;
+
+    /** Moves forward, holding the leaderboard's lock, as local writes are accounted for. */
+    long reviewsVersion;
+
+    /**
+     * Whether the rows were read at exactly {@code reviewsVersion}, with no review written since
+     * and no local write committing meanwhile.
+     */
+    boolean settled;
+
+    final Map<Long, TopMenuItem> items = new ConcurrentHashMap<>();
+    final Map<String, NavigableSet<TopMenuItem>> byCommons = new ConcurrentHashMap<>();
+    final Map<List<String>, NavigableSet<TopMenuItem>> byStation = new ConcurrentHashMap<>();
+
+    Board(long menuItemsVersion, long reviewsVersion) {
+      this.menuItemsVersion = menuItemsVersion;
+      this.reviewsVersion = reviewsVersion;
+    }
+
+    void put(TopMenuItem item) {
+      items.put(item.id(), item);
+      if (isRanked(item)) {
+        ranking(byCommons, item.dining_commons_code()).add(item);
+        ranking(byStation, stationKey(item)).add(item);
+      }
+    }
+
+    void remove(TopMenuItem item) {
+      items.remove(item.id());
+      if (isRanked(item)) {
+        ranking(byCommons, item.dining_commons_code()).remove(item);
+        ranking(byStation, stationKey(item)).remove(item);
+      }
+    }
+
+    /** Only reviewed items in a dining commons are ranked. */
+    private static boolean isRanked(TopMenuItem item) {
+      return item.reviewCount() > 0 && item.dining_commons_code() != null;
+    }
+
+    private static <K> NavigableSet<TopMenuItem> ranking(
+        Map<K, NavigableSet<TopMenuItem>> rankings, K key) {
+      return rankings.computeIfAbsent(
+          key, k -> new ConcurrentSkipListSet<>(TopMenuItem.BEST_FIRST));
+    }
+
+    private static List<String> stationKey(TopMenuItem item) {
+      return stationKey(item.dining_commons_code(), item.station());
+    }
+
+    private static List<String> stationKey(String commons, String station) {
+      return Arrays.asList(commons, station);
+    }
+  }
+
+  /**
+   * The best reviewed menu items of a dining commons, or of one station in it. Items without
+   * reviews are not ranked.
+   *
+   * @param commons the dining commons code
+   * @param station if not null, only rank the items of this station
+   * @param n the most items to return
+   * @return up to {@code n} items, best first
+   */
+  public List<TopMenuItem> top(String commons, String station, int n) {
+    Board current = board;
+    NavigableSet<TopMenuItem> ranking =
+        station == null
+            ? current.byCommons.get(commons)
+            : current.byStation.get(Board.stationKey(commons, station));
+    return ranking == null ? List.of() : ranking.stream().limit(n).toList();
+  }
+
+  /**
+   * Rebuild the leaderboard if the menu items have been written since it was built, or the reviews
+   * have been written other than by the writes already added to it (see {@link #add}). The versions
+   * are read before the rows, so a write that lands in between causes another rebuild next time
+   * rather than being missed, as does a local write that commits while the rows are read.
+   */
+  @Scheduled(fixedDelayString = "${app.leaderboard.refreshMillis:5000}")
+  public void refresh() {
+    boolean quiet = writesInFlight.get() == 0;
+    long committed = commitsStarted.get();
+    long menuItemsVersion = tableVersionService.readVersion(UCSBDiningCommonsMenuItem.class);
+    long reviewsVersion = tableVersionService.readVersion(MenuItemReview.class);
+    synchronized (this) {
+      if (menuItemsVersion == board.menuItemsVersion && isUpToDate(reviewsVersion)) {
+        return;
+      }
+    }
+    Board built = new Board(menuItemsVersion, reviewsVersion);
+    ucsbDiningCommonsMenuItemRepository.findAllWithReviewTotals().forEach(built::put);
+    built.settled =
+        quiet
+            && tableVersionService.readVersion(MenuItemReview.class) == reviewsVersion
+            && commitsStarted.get() == committed;
+    synchronized (this) {
+      board = built;
+      // writes added to the old board since the rows were read are not in this one
+      addedReviewsVersions.clear();
+    }
+    log.info(
+        "menu item leaderboard rebuilt: {} items, menu items version {}, reviews version {}",
+        built.items.size(),
+        menuItemsVersion,
+        reviewsVersion);
+  }
+
+  /**
+   * Whether the board holds every review write up to {@code reviewsVersion}: it was built at that
+   * version or every version since has been added. If so, moves the board on to that version.
+   */
+  private boolean isUpToDate(long reviewsVersion) {
+    if (!board.settled) {
+      return false;
+    }
+    for (long version = board.reviewsVersion + 1; version <= reviewsVersion; version++) {
+      if (!addedReviewsVersions.contains(version)) {
+        return false;
+      }
+    }
+    addedReviewsVersions.headSet(reviewsVersion, true).clear();
+    board.reviewsVersion = Math.max(board.reviewsVersion, reviewsVersion);
+    return true;
+  }
+
+  /**
+   * Add a committed write's changes to the review totals of some menu items, unless the leaderboard
+   * was built from rows that already include it. Items the leaderboard does not know about yet are
+   * left for the next rebuild.
+   *
+   * @param deltas the changes, one per menu item
+   * @param reviewsVersion the reviews version the write bumped the table to
+   */
+  public synchronized void add(Collection<MenuItemReviewStats> deltas, long reviewsVersion) {
+    if (reviewsVersion <= board.reviewsVersion) {
+      return;
+    }
+    addedReviewsVersions.add(reviewsVersion);
+    for (MenuItemReviewStats delta : deltas) {
+      TopMenuItem old = board.items.get(delta.getItemId());
+      if (old == null) {
+        continue;
+      }
+      board.remove(old);
+      board.put(
+          new TopMenuItem(
+              old.id(),
+              old.dining_commons_code(),
+              old.station(),
+              old.name(),
+              old.reviewCount() + delta.getReviewCount(),
+              old.starsTotal() + delta.getStarsTotal()));
+    }
+  }
+
+  /**
+   * Record that a review write on this node is about to commit. Its rows become visible before its
+   * reviews version is bumped, so until {@link #writeFinished} a rebuild cannot tell from the
+   * version whether the rows it reads include the write.
+   */
+  public void writeCommitting() {
+    commitsStarted.incrementAndGet();
+    writesInFlight.incrementAndGet();
+  }
+
+  /**
+   * Record that a review write passed to {@link #writeCommitting} has been added, or has failed to
+   * commit or to bump the version.
+   */
+  public void writeFinished() {
+    writesInFlight.decrementAndGet();
+  }
+}
@@ -0,0 +1,303 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.BatchItemResult.Status;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Writes MenuItemReviews together with the {@link MenuItemReviewStats} of their menu items, in one
+ * transaction, so that the stats always match the reviews.
+ *
+ * <p>Each write works out how it changes the stats of every item it touches and adds that to the
+ * item's stats row with one UPDATE statement. For an item's first review, an empty row is inserted
+ * first (see {@link MenuItemReviewStatsRepository#insertEmpty}), so that two first reviews written
+ * at once both end up adding to the same row instead of one failing to insert it. An update or
+ * delete by id first reads the review with a row lock, to know what it is replacing.
+ *
+ * <p>Once a write has committed, it bumps the reviews' table version (see {@link
+ * TableVersionService}) in a transaction of its own, so that the {@code table_versions} row is
+ * locked only for the bump rather than for the whole write, which would let only one review write
+ * commit at a time. The same changes are then added to the {@link MenuItemLeaderboard} together
+ * with the version the bump returned, which tells the leaderboard that it need not be rebuilt for
+ * this write. Between the commit and the bump the leaderboard is told the write is in flight (see
+ * {@link MenuItemLeaderboard#writeCommitting}), since its rows are visible before its version is.
+ */
+@Service
+public class MenuItemReviewService {
+
+  @Autowired MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @Autowired BatchService batchService;
+
+  @Autowired PatchService patchService;
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired MenuItemLeaderboard menuItemLeaderboard;
+
+  @Autowired TableVersionService tableVersionService;
+
+  /**
+   * The review stats of one menu item, read with a single primary key lookup.
+   *
+   * @param itemId the id of the menu item
+   * @return the stats; all zero if the item has no reviews
+   */
+  public MenuItemReviewStats stats(long itemId) {
+    return menuItemReviewStatsRepository
+        .findById(itemId)
+        .orElse(MenuItemReviewStats.builder().itemId(itemId).build());
+  }
+
+  /**
+   * Insert a review.
+   *
+   * @param review the new review
+   * @return the saved review
+   */
+  @Transactional
+  public MenuItemReview create(MenuItemReview review) {
+    MenuItemReview saved = menuItemReviewRepository.save(review);
+    Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+    count(deltas, saved, 1);
+    apply(deltas);
+    return saved;
+  }
+
+  /**
+   * Overwrite a review (see {@link MenuItemReviewRepository#updateById}).
+   *
+   * @param id id of the review
+   * @param version if not null, only update the review if it is at this version
+   * @param incoming the new values
+   * @return the number of reviews updated: 1, or 0 if there is no review with that id at that
+   *     version
+   */
+  @Transactional
+  public int update(long id, Long version, MenuItemReview incoming) {
+    Optional<MenuItemReview> old = menuItemReviewRepository.findForUpdateById(id);
+    if (old.isEmpty()) {
+      return 0;
+    }
+    int count = menuItemReviewRepository.updateById(id, version, incoming);
+    if (count > 0) {
+      Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+      count(deltas, old.get(), -1);
+      count(deltas, incoming, 1);
+      apply(deltas);
+    }
+    return count;
+  }
+
+  /**
+   * Change some of the fields of a review (see {@link PatchService#patch}).
+   *
+   * @param id id of the review
+   * @param fields the fields to change and their new values
+   * @param version if not null, only change the review if it is at this version
+   * @return the number of reviews changed: 1, or 0 if there is no review with that id at that
+   *     version
+   */
+  @Transactional
+  public int patch(long id, Map<String, JsonNode> fields, Long version) {
+    Optional<MenuItemReview> review = menuItemReviewRepository.findForUpdateById(id);
+    if (review.isEmpty()) {
+      return 0;
+    }
+    Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+    count(deltas, review.get(), -1);
+    int count = patchService.patch(MenuItemReview.class, id, fields, version);
+    if (count > 0) {
+      entityManager.refresh(review.get());
+      count(deltas, review.get(), 1);
+      apply(deltas);
+    }
+    return count;
+  }
+
+  /**
+   * Delete a review (see {@link MenuItemReviewRepository#deleteRowById}).
+   *
+   * @param id id of the review
+   * @param version if not null, only delete the review if it is at this version
+   * @return the number of reviews deleted: 1, or 0 if there is no review with that id at that
+   *     version
+   */
+  @Transactional
+  public int delete(long id, Long version) {
+    Optional<MenuItemReview> old = menuItemReviewRepository.findForUpdateById(id);
+    if (old.isEmpty()) {
+      return 0;
+    }
+    int count = menuItemReviewRepository.deleteRowById(id, version);
+    if (count > 0) {
+      Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+      count(deltas, old.get(), -1);
+      apply(deltas);
+    }
+    return count;
+  }
+
+  /**
+   * Insert many reviews (see {@link BatchService#create}).
+   *
+   * @param items the new reviews
+   * @return one result per item
+   */
+  @Transactional
+  public List<BatchItemResult> createAll(List<MenuItemReview> items) {
+    List<BatchItemResult> results =
+        batchService.create(menuItemReviewRepository, items, MenuItemReview::getId);
+    Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+    results.stream()
+        .filter(result -> result.status() == Status.CREATED)
+        .forEach(result -> count(deltas, items.get(result.index()), 1));
+    apply(deltas);
+    return results;
+  }
+
+  /**
+   * Update many reviews (see {@link BatchService#update}).
+   *
+   * @param items the new values, each with the id of the review to update
+   * @return one result per item
+   */
+  @Transactional
+  public List<BatchItemResult> updateAll(List<MenuItemReview> items) {
+    Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+    List<BatchItemResult> results =
+        batchService.update(
+            menuItemReviewRepository,
+            items,
+            MenuItemReview::getId,
+            (target, incoming) -> {
+              count(deltas, target, -1);
+              copyFields(target, incoming);
+              count(deltas, target, 1);
+            });
+    apply(deltas);
+    return results;
+  }
+
+  /**
+   * Delete many reviews (see {@link BatchService#delete}).
+   *
+   * @param ids the ids of the reviews to delete
+   * @return one result per id
+   */
+  @Transactional
+  public List<BatchItemResult> deleteAll(List<Long> ids) {
+    Map<Long, MenuItemReview> rows = new HashMap<>();
+    menuItemReviewRepository.findAllById(ids).forEach(row -> rows.put(row.getId(), row));
+    List<BatchItemResult> results =
+        batchService.delete(menuItemReviewRepository, ids, MenuItemReview::getId);
+    Map<Long, MenuItemReviewStats> deltas = new HashMap<>();
+    for (BatchItemResult result : results) {
+      if (result.status() == Status.DELETED) {
+        count(deltas, rows.get(result.key()), -1);
+      }
+    }
+    apply(deltas);
+    return results;
+  }
+
+  /** Copy the fields that an update may change from {@code incoming} onto {@code target}. */
+  private static void copyFields(MenuItemReview target, MenuItemReview incoming) {
+    target.setItemId(incoming.getItemId());
+    target.setReviewerEmail(incoming.getReviewerEmail());
+    target.setStars(incoming.getStars());
+    target.setDateReviewed(incoming.getDateReviewed());
+    target.setComments(incoming.getComments());
+  }
+
+  /** Add ({@code sign} 1) or take away ({@code sign} -1) one review from its item's delta. */
+  private static void count(
+      Map<Long, MenuItemReviewStats> deltas, MenuItemReview review, int sign) {
+    MenuItemReviewStats delta =
+        deltas.computeIfAbsent(
+            review.getItemId(), itemId -> MenuItemReviewStats.builder().itemId(itemId).build());
+    delta.setReviewCount(delta.getReviewCount() + sign);
+    delta.setStarsTotal(delta.getStarsTotal() + (long) sign * review.getStars());
+    switch (review.getStars()) {
+      case 1 -> delta.setOneStar(delta.getOneStar() + sign);
+      case 2 -> delta.setTwoStars(delta.getTwoStars() + sign);
+      case 3 -> delta.setThreeStars(delta.getThreeStars() + sign);
+      case 4 -> delta.setFourStars(delta.getFourStars() + sign);
+      case 5 -> delta.setFiveStars(delta.getFiveStars() + sign);
+      default -> {}
+    }
+  }
+
+  /**
+   * Add each non-zero delta to its item's stats row, inserting the row if there is none, and once
+   * the transaction has committed, bump the reviews' table version and add the deltas to the
+   * leaderboard at that version.
+   */
+  private void apply(Map<Long, MenuItemReviewStats> deltas) {
+    List<MenuItemReviewStats> applied = new ArrayList<>();
+    for (MenuItemReviewStats delta : deltas.values()) {
+      if (delta.equals(MenuItemReviewStats.builder().itemId(delta.getItemId()).build())) {
+        continue;
+      }
+      if (menuItemReviewStatsRepository.add(delta) == 0) {
+        insertEmptyStats(delta.getItemId());
+        menuItemReviewStatsRepository.add(delta);
+      }
+      applied.add(delta);
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      menuItemLeaderboard.add(applied, tableVersionService.bump(MenuItemReview.class));
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          private boolean committing;
+
+          @Override
+          public void beforeCommit(boolean readOnly) {
+            menuItemLeaderboard.writeCommitting();
+            committing = true;
+          }
+
+          @Override
+          public void afterCommit() {
+            menuItemLeaderboard.add(
+                applied, tableVersionService.bumpInNewTransaction(MenuItemReview.class));
+          }
+
+          @Override
+          public void afterCompletion(int status) {
+            if (committing) {
+              menuItemLeaderboard.writeFinished();
+            }
+          }
+        });
+  }
+
+  /** Insert an empty stats row for an item, unless another transaction has just inserted one. */
+  private void insertEmptyStats(long itemId) {
+    try {
+      menuItemReviewStatsRepository.insertEmpty(itemId);
+    } catch (DataIntegrityViolationException e) {
+      // another transaction inserted it after our add found no row; add to that one
+    }
+  }
+}
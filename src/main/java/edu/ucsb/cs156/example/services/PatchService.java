@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import jakarta.persistence.Query;
+import jakarta.persistence.Version;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Applies the body of a PATCH request to one row with a single UPDATE statement, without reading
+ * the row first.
+ *
+ * <p>The body is a JSON object whose properties are fields of the entity. Each value is converted
+ * to the field's type with the application's {@link ObjectMapper}, and only those columns are set;
+ * the {@code @Version} column is incremented. The {@code @Id} and {@code @Version} fields cannot be
+ * patched, and a primitive field cannot be set to null.
+ */
+@Service
+public class PatchService {
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired ObjectMapper mapper;
+
+  /**
+   * Update some of the fields of one row.
+   *
+   * @param type the entity class; it must have an {@code @Id} and a {@code @Version} field
+   * @param key the key of the row
+   * @param fields the fields to change and their new values
+   * @param version if not null, only change the row if it is at this version
+   * @return the number of rows changed: 1, or 0 if there is no row with that key (at that version)
+   * @throws ResponseStatusException (400) if a field does not exist, cannot be patched or cannot
+   *     hold the given value
+   */
+  @Transactional
+  public int patch(Class<?> type, Object key, Map<String, JsonNode> fields, Long version) {
+    if (fields.isEmpty()) {
+      throw badRequest("Give at least one field of %s to change".formatted(type.getSimpleName()));
+    }
+    String idName = null;
+    String versionName = null;
+    Map<String, Field> patchable = new HashMap<>();
+    for (Field field : type.getDeclaredFields()) {
+      if (field.isAnnotationPresent(Id.class)) {
+        idName = field.getName();
+      } else if (field.isAnnotationPresent(Version.class)) {
+        versionName = field.getName();
+      } else {
+        patchable.put(field.getName(), field);
+      }
+    }
+
+    StringBuilder jpql =
+        new StringBuilder("UPDATE %s e SET ".formatted(type.getAnnotation(Entity.class).name()));
+    List<Object> values = new ArrayList<>(fields.size());
+    for (Map.Entry<String, JsonNode> entry : fields.entrySet()) {
+      Field field = patchable.get(entry.getKey());
+      if (field == null) {
+        throw badRequest(
+            "%s has no field %s that can be changed"
+                .formatted(type.getSimpleName(), entry.getKey()));
+      }
+      jpql.append("e.%s = :v%d, ".formatted(field.getName(), values.size()));
+      values.add(convert(field, entry.getValue()));
+    }
+    jpql.append("e.%1$s = e.%1$s + 1 WHERE e.%2$s = :key".formatted(versionName, idName));
+    if (version != null) {
+      jpql.append(" AND e.%s = :version".formatted(versionName));
+    }
+
+    Query query = entityManager.createQuery(jpql.toString()).setParameter("key", key);
+    for (int i = 0; i < values.size(); i++) {
+      query.setParameter("v" + i, values.get(i));
+    }
+    if (version != null) {
+      query.setParameter("version", version);
+    }
+    return query.executeUpdate();
+  }
+
+  private Object convert(Field field, JsonNode value) {
+    if (value.isNull() && field.getType().isPrimitive()) {
+      throw badRequest("%s cannot be null".formatted(field.getName()));
+    }
+    try {
+      return mapper.treeToValue(value, field.getType());
+    } catch (JsonProcessingException | IllegalArgumentException e) {
+      throw badRequest(
+          "%s must be a %s".formatted(field.getName(), field.getType().getSimpleName()));
+    }
+  }
+
+  private static ResponseStatusException badRequest(String message) {
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+  }
+}
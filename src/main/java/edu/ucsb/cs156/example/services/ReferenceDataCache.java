@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.util.Streamable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cached reads of the small, rarely changed reference tables: dining commons and organizations.
+ *
+ * <p>Each table has its own cache, named by {@link #DINING_COMMONS} and {@link #ORGANIZATIONS},
+ * holding single rows under {@code [version, key]} and the whole table under {@code version}, where
+ * version is the table's {@link TableVersionService#version} version. A write on any node bumps the
+ * version, so every node's entries for the old version stop being used within {@code
+ * app.tableVersions.cacheMillis}; the version is kept on each node for that long and shared with
+ * the request's {@code ETag}, so most reads make no query at all. The caches are Caffeine caches
+ * configured by {@code spring.cache.caffeine.spec}, so old entries expire; the controllers that
+ * write to these tables also clear the local cache with {@code @CacheEvict}.
+ *
+ * <p>The cached entities are shared between requests and must not be modified; updates read the row
+ * from the repository instead.
+ */
+@Service
+public class ReferenceDataCache {
+
+  /** Name of the cache of {@link UCSBDiningCommons} rows. */
+  public static final String DINING_COMMONS = "ucsbDiningCommons";
+
+  /** Name of the cache of {@link UCSBOrganization} rows. */
+  public static final String ORGANIZATIONS = "ucsbOrganizations";
+
+  /** Cache key for the whole dining commons table: its version, read before the rows. */
+  private static final String DINING_COMMONS_VERSION = "#root.target.diningCommonsVersion()";
+
+  /** Cache key for the whole organizations table: its version, read before the rows. */
+  private static final String ORGANIZATIONS_VERSION = "#root.target.organizationsVersion()";
+
+  @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired TableVersionService tableVersionService;
+
+  /**
+   * The current version of the dining commons table, part of every key of its cache.
+   *
+   * @return the version
+   */
+  public long diningCommonsVersion() {
+    return tableVersionService.version(UCSBDiningCommons.class);
+  }
+
+  /**
+   * The current version of the organizations table, part of every key of its cache.
+   *
+   * @return the version
+   */
+  public long organizationsVersion() {
+    return tableVersionService.version(UCSBOrganization.class);
+  }
+
+  /**
+   * Look up a dining commons by code.
+   *
+   * @param code code of the dining commons
+   * @return the dining commons, if there is one
+   */
+  @Cacheable(cacheNames = DINING_COMMONS, key = "{" + DINING_COMMONS_VERSION + ", #code}")
+  public Optional<UCSBDiningCommons> findDiningCommons(String code) {
+    return ucsbDiningCommonsRepository.findById(code);
+  }
+
+  /**
+   * Read every dining commons.
+   *
+   * @return all the dining commons
+   */
+  @Cacheable(cacheNames = DINING_COMMONS, key = DINING_COMMONS_VERSION)
+  public List<UCSBDiningCommons> allDiningCommons() {
+    return Streamable.of(ucsbDiningCommonsRepository.findAll()).toList();
+  }
+
+  /**
+   * Look up an organization by orgCode.
+   *
+   * @param orgCode orgCode of the organization
+   * @return the organization, if there is one
+   */
+  @Cacheable(cacheNames = ORGANIZATIONS, key = "{" + ORGANIZATIONS_VERSION + ", #orgCode}")
+  public Optional<UCSBOrganization> findOrganization(String orgCode) {
+    return ucsbOrganizationRepository.findById(orgCode);
+  }
+
+  /**
+   * Read every organization.
+   *
+   * @return all the organizations
+   */
+  @Cacheable(cacheNames = ORGANIZATIONS, key = ORGANIZATIONS_VERSION)
+  public List<UCSBOrganization> allOrganizations() {
+    return Streamable.of(ucsbOrganizationRepository.findAll()).toList();
+  }
+}
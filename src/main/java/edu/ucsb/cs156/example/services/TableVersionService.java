@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Keeps a version number for each CRUD table, stored in the {@code table_versions} table so that
+ * every node sees the same one. The version goes up after every write to the table, so a response
+ * read from the table can be identified by the version it was read at.
+ *
+ * <p>Read the version <em>before</em> reading the rows: a write that lands in between then makes
+ * the response look older than it is, which only costs the client a download next time, rather than
+ * newer, which would let it keep stale rows.
+ *
+ * <p>{@link #version} does not query {@code table_versions} on every call. Each node keeps the
+ * versions it has read for {@code app.tableVersions.cacheMillis}, and drops a table's version as
+ * soon as one of its own writes to the table commits, so only writes made on other nodes can take
+ * that long to be seen. Within a request, a table's version is read once and kept in a request
+ * attribute, so the {@code ETag} of a response and the cache entries it was read from agree.
+ */
+@Service
+public class TableVersionService {
+
+  /** Prefix of the request attributes that hold the versions read during a request. */
+  static final String VERSION_ATTRIBUTE = TableVersionService.class.getName() + ".version.";
+
+  @Autowired TableVersionRepository tableVersionRepository;
+
+  @Value("${app.tableVersions.cacheMillis:1000}")
+  private long cacheMillis;
+
+  private Cache<String, Long> versions;
+
+  /** Create the cache of versions. */
+  @PostConstruct
+  void buildCache() {
+    versions = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(cacheMillis)).build();
+  }
+
+  /**
+   * The version of the table that holds an entity, as this node last saw it: at most {@code
+   * app.tableVersions.cacheMillis} old, and the same for the rest of the request once read.
+   *
+   * @param entity the entity class
+   * @return the version; 0 if the table has never been written to
+   */
+  public long version(Class<?> entity) {
+    String table = entity.getSimpleName();
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null
+        && request.getAttribute(VERSION_ATTRIBUTE + table, RequestAttributes.SCOPE_REQUEST)
+            instanceof Long version) {
+      return version;
+    }
+    long version = versions.get(table, this::read);
+    if (request != null) {
+      request.setAttribute(VERSION_ATTRIBUTE + table, version, RequestAttributes.SCOPE_REQUEST);
+    }
+    return version;
+  }
+
+  /**
+   * The current version of the table that holds an entity, read from {@code table_versions} rather
+   * than this node's copy. For code that must not miss a write made a moment ago on another node.
+   *
+   * @param entity the entity class
+   * @return the version; 0 if the table has never been written to
+   */
+  public long readVersion(Class<?> entity) {
+    return read(entity.getSimpleName());
+  }
+
+  private long read(String table) {
+    return tableVersionRepository.findById(table).map(TableVersion::getVersion).orElse(0L);
+  }
+
+  /**
+   * A strong {@code ETag} for responses read from the table that holds an entity.
+   *
+   * @param entity the entity class
+   * @return the quoted ETag
+   */
+  public String etag(Class<?> entity) {
+    return "\"%s-%d\"".formatted(entity.getSimpleName(), version(entity));
+  }
+
+  /**
+   * Record that the table that holds an entity has been written to. Joins the caller's transaction
+   * if there is one. The row of every versioned table is inserted by the {@code TableVersions}
+   * migration, so this is a single {@code UPDATE} and concurrent first writes cannot race to insert
+   * it. This node's copy of the version is dropped once the write commits.
+   *
+   * @param entity the entity class
+   * @return the new version, read from {@code table_versions}. Called in a transaction, this is the
+   *     version the transaction's write is at, since the {@code UPDATE} locks the row until it
+   *     commits; otherwise another write may already have bumped it further.
+   * @throws IllegalStateException if the migration has no row for the table
+   */
+  public long bump(Class<?> entity) {
+    String table = entity.getSimpleName();
+    if (tableVersionRepository.increment(table) == 0) {
+      throw new IllegalStateException(
+          "table_versions has no row for %s; add one in the TableVersions migration"
+              .formatted(table));
+    }
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null) {
+      request.removeAttribute(VERSION_ATTRIBUTE + table, RequestAttributes.SCOPE_REQUEST);
+    }
+    // Until the write commits, other transactions still see the old version
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              versions.invalidate(table);
+            }
+          });
+    } else {
+      versions.invalidate(table);
+    }
+    return read(table);
+  }
+
+  /**
+   * {@link #bump} in a transaction of its own, which commits before this returns. For a write that
+   * should not hold the {@code table_versions} row lock until it commits itself: call this once it
+   * has committed, e.g. from {@link TransactionSynchronization#afterCommit}.
+   *
+   * @param entity the entity class
+   * @return the new version; the version this bump is at, even if other writes bump it further
+   * @throws IllegalStateException if the migration has no row for the table
+   */
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public long bumpInNewTransaction(Class<?> entity) {
+    return bump(entity);
+  }
+}
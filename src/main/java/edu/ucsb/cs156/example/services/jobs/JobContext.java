@@ -1,20 +1,192 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * The context handed to a running job. Log lines are collected in memory and written out in
+ * batches: once every {@code flushEveryLines} lines, or on the first line logged after {@code
+ * flushEveryMillis} have elapsed since the last write, whichever comes first.
+ *
+ * <p>When a {@link JobLogChunksRepository} is supplied, each batch is appended to the log as a new
+ * {@link JobLogChunk} row and the job row itself is left alone. Without one, the batch is appended
+ * to the job's {@code log} column and the job is saved.
+ *
+ * <p>After each batch is written, the optional {@link JobLogListener} is told about it so that the
+ * text can be pushed to anyone watching the job.
+ *
+ * <p>With the defaults ({@code flushEveryLines = 1}) every line is written as soon as it is logged.
+ *
+ * <p>When the job is cancelled or times out, its thread is interrupted and {@link #isCancelled()}
+ * starts returning true. Jobs with long loops that do not block should check it and return early.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
+  private final JobsRepository jobsRepository;
+  private final JobLogChunksRepository jobLogChunksRepository;
+  private final JobLogListener listener;
+  private final Job job;
+  private final int flushEveryLines;
+  private final long flushEveryMillis;
 
-  public void log(String message) {
+  private final StringBuilder pending = new StringBuilder();
+  private boolean hasLog;
+  private int pendingLines = 0;
+  private long lastFlushMillis;
+  private long logLength = 0;
+  private int nextSeq = 0;
+  private volatile boolean cancelled = false;
+
+  /**
+   * Create an unbuffered context that stores the log in the job's {@code log} column.
+   *
+   * @param jobsRepository repository used to persist the job (may be null, e.g. in tests)
+   * @param job the job being run
+   */
+  public JobContext(JobsRepository jobsRepository, Job job) {
+    this(jobsRepository, null, null, job, 1, 0);
+  }
+
+  /**
+   * Create a buffered context that stores the log in the job's {@code log} column.
+   *
+   * @param jobsRepository repository used to persist the job (may be null, e.g. in tests)
+   * @param job the job being run
+   * @param flushEveryLines write after this many lines have been buffered (values below 1 mean 1)
+   * @param flushEveryMillis write when a line is logged this long after the last write (0 disables)
+   */
+  public JobContext(
+      JobsRepository jobsRepository, Job job, int flushEveryLines, long flushEveryMillis) {
+    this(jobsRepository, null, null, job, flushEveryLines, flushEveryMillis);
+  }
+
+  /**
+   * Create a buffered context.
+   *
+   * @param jobsRepository repository used to persist the job (may be null, e.g. in tests)
+   * @param jobLogChunksRepository repository the log is appended to (null to use the job's {@code
+   *     log} column instead)
+   * @param listener notified after each batch is written (may be null)
+   * @param job the job being run
+   * @param flushEveryLines write after this many lines have been buffered (values below 1 mean 1)
+   * @param flushEveryMillis write when a line is logged this long after the last write (0 disables)
+   */
+  public JobContext(
+      JobsRepository jobsRepository,
+      JobLogChunksRepository jobLogChunksRepository,
+      JobLogListener listener,
+      Job job,
+      int flushEveryLines,
+      long flushEveryMillis) {
+    this.jobsRepository = jobsRepository;
+    this.jobLogChunksRepository = jobLogChunksRepository;
+    this.listener = listener;
+    this.job = job;
+    this.flushEveryLines = Math.max(1, flushEveryLines);
+    this.flushEveryMillis = flushEveryMillis;
+    this.lastFlushMillis = System.currentTimeMillis();
+
+    if (jobLogChunksRepository != null) {
+      Optional<JobLogChunk> lastChunk =
+          jobLogChunksRepository.findFirstByJobIdOrderBySeqDesc(job.getId());
+      this.hasLog = lastChunk.isPresent();
+      lastChunk.ifPresent(
+          chunk -> {
+            this.logLength = chunk.getEndOffset();
+            this.nextSeq = chunk.getSeq() + 1;
+          });
+    } else {
+      this.hasLog = job.getLog() != null;
+    }
+  }
+
+  /**
+   * Id of the job being run, e.g. for naming files it writes.
+   *
+   * @return the job id
+   */
+  public long getJobId() {
+    return job.getId();
+  }
+
+  /**
+   * Whether the job has been cancelled or has timed out. Cheap enough to call on every iteration of
+   * a loop.
+   *
+   * @return true if the job should stop
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /** Ask the job to stop; see {@link #isCancelled()}. */
+  void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Append a line to the job log, writing it out if a flush threshold has been reached.
+   *
+   * @param message the line to append
+   */
+  public synchronized void log(String message) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    if (hasLog) {
+      pending.append('\n');
+    }
+    pending.append(message);
+    hasLog = true;
+    pendingLines++;
+
+    if (pendingLines >= flushEveryLines
+        || (flushEveryMillis > 0
+            && System.currentTimeMillis() - lastFlushMillis >= flushEveryMillis)) {
+      write(false);
+    }
+  }
+
+  /** Write out any buffered lines that have not been written yet. */
+  public synchronized void flush() {
+    if (pendingLines > 0) {
+      write(false);
+    }
+  }
+
+  /** Write out any buffered lines and save the job, even if nothing is pending. */
+  public synchronized void save() {
+    write(true);
+  }
+
+  private void write(boolean saveJob) {
+    String text = null;
+    long startOffset = 0;
+    if (pendingLines > 0) {
+      text = pending.toString();
+      if (jobLogChunksRepository != null) {
+        startOffset = logLength;
+        jobLogChunksRepository.save(
+            JobLogChunk.builder()
+                .jobId(job.getId())
+                .seq(nextSeq++)
+                .startOffset(logLength)
+                .endOffset(logLength + text.length())
+                .content(text)
+                .build());
+        logLength += text.length();
+      } else {
+        startOffset = job.getLog() == null ? 0 : job.getLog().length();
+        job.setLog(job.getLog() == null ? text : job.getLog() + text);
+        saveJob = true;
+      }
+      pending.setLength(0);
+      pendingLines = 0;
+    }
+    lastFlushMillis = System.currentTimeMillis();
+    if (saveJob && jobsRepository != null) jobsRepository.save(job);
+    if (text != null && listener != null) listener.logAppended(job.getId(), startOffset, text);
   }
 }
@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/** Notified by a {@link JobContext} each time a batch of log text has been written out. */
+@FunctionalInterface
+public interface JobLogListener {
+  /**
+   * Called after text has been appended to a job's log.
+   *
+   * @param jobId id of the job
+   * @param startOffset character offset in the log at which {@code text} starts
+   * @param text the text that was appended
+   */
+  void logAppended(long jobId, long startOffset, String text);
+}
@@ -0,0 +1,131 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * In-process fan-out of job log text to clients watching over Server-Sent Events.
+ *
+ * <p>{@link JobService} publishes each batch of log text as it is written and tells this service
+ * when a job finishes; every subscription to that job receives the text, and is closed when the job
+ * finishes. Publishing to a job nobody is watching is a single map lookup.
+ *
+ * <p>Events are written to clients on virtual threads, at most one per subscription at a time, so
+ * publishing never waits for a client's socket.
+ */
+@Service
+public class JobLogStreamService {
+
+  @Value("${app.jobs.log.streamTimeoutMillis:600000}")
+  private long streamTimeoutMillis;
+
+  @Value("${app.jobs.log.streamMaxQueuedEvents:1000}")
+  int streamMaxQueuedEvents;
+
+  /** Writes events to clients. */
+  Executor sender =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("log-stream-", 0).factory());
+
+  private final Map<Long, Set<JobLogSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+  /**
+   * Register a new subscription to a job's log. The caller must then call {@link
+   * JobLogSubscription#start} with the part of the log already stored.
+   *
+   * @param jobId id of the job
+   * @return the subscription
+   */
+  public JobLogSubscription subscribe(long jobId) {
+    JobLogSubscription subscription =
+        new JobLogSubscription(jobId, createEmitter(), sender, streamMaxQueuedEvents);
+    subscriptions.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+
+    SseEmitter emitter = subscription.getEmitter();
+    emitter.onCompletion(() -> unsubscribe(subscription));
+    emitter.onTimeout(() -> unsubscribe(subscription));
+    emitter.onError(e -> unsubscribe(subscription));
+    return subscription;
+  }
+
+  /**
+   * Create the emitter for a new subscription.
+   *
+   * @return a new emitter
+   */
+  SseEmitter createEmitter() {
+    return new SseEmitter(streamTimeoutMillis);
+  }
+
+  /**
+   * Remove a subscription.
+   *
+   * @param subscription the subscription to remove
+   */
+  public void unsubscribe(JobLogSubscription subscription) {
+    subscriptions.computeIfPresent(
+        subscription.getJobId(),
+        (id, set) -> {
+          set.remove(subscription);
+          return set.isEmpty() ? null : set;
+        });
+  }
+
+  /**
+   * Send text appended to a job's log to everyone watching it.
+   *
+   * @param jobId id of the job
+   * @param startOffset character offset in the log at which {@code text} starts
+   * @param text the text that was appended
+   */
+  public void publish(long jobId, long startOffset, String text) {
+    Set<JobLogSubscription> watchers = subscriptions.get(jobId);
+    if (watchers == null) {
+      return;
+    }
+    for (JobLogSubscription subscription : watchers) {
+      subscription.append(startOffset, text);
+    }
+  }
+
+  /**
+   * Send a job's final status to everyone watching it and close their streams.
+   *
+   * @param jobId id of the job
+   * @param status the job's final status
+   */
+  public void finish(long jobId, String status) {
+    Set<JobLogSubscription> watchers = subscriptions.remove(jobId);
+    if (watchers == null) {
+      return;
+    }
+    for (JobLogSubscription subscription : watchers) {
+      subscription.finish(status);
+    }
+  }
+
+  /**
+   * Ids of the jobs that have open subscriptions.
+   *
+   * @return the job ids
+   */
+  public Set<Long> watchedJobIds() {
+    return Set.copyOf(subscriptions.keySet());
+  }
+
+  /**
+   * Number of open subscriptions to a job's log.
+   *
+   * @param jobId id of the job
+   * @return the number of subscriptions
+   */
+  public int subscriberCount(long jobId) {
+    Set<JobLogSubscription> watchers = subscriptions.get(jobId);
+    return watchers == null ? 0 : watchers.size();
+  }
+}
@@ -0,0 +1,192 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * One client watching one job's log over Server-Sent Events.
+ *
+ * <p>A subscription is registered before the existing log is read from the database, so nothing
+ * written in between is missed. Until {@link #start} is called, live text is queued; after that it
+ * is sent straight away. Each {@code log} event carries the character offset where its text starts
+ * and has the offset where it ends as its event id, and text the client already has is never sent
+ * twice. A reconnecting client can send that id back as {@code Last-Event-ID} to resume.
+ *
+ * <p>Events are written to the client on a separate sender, never on the thread that logs, so a
+ * slow client cannot hold up the job. At most {@code maxQueuedEvents} events wait to be written; a
+ * client that falls further behind than that is disconnected, and can reconnect to resume.
+ */
+@Slf4j
+public class JobLogSubscription {
+  private record PendingText(long startOffset, String text) {}
+
+  /**
+   * The data of a {@code log} event.
+   *
+   * @param offset character offset in the log at which {@code text} starts
+   * @param text the log text
+   */
+  public record LogEvent(long offset, String text) {}
+
+  @Getter private final long jobId;
+  @Getter private final SseEmitter emitter;
+  private final Executor sender;
+  private final int maxQueuedEvents;
+
+  private final List<PendingText> queued = new ArrayList<>();
+  private final Deque<SseEmitter.SseEventBuilder> outbox = new ArrayDeque<>();
+  private boolean started = false;
+  private boolean closed = false;
+  private boolean draining = false;
+  private boolean completeWhenSent = false;
+  private String finishedStatus = null;
+  private long sentUpTo = 0;
+
+  /**
+   * Create a subscription.
+   *
+   * @param jobId id of the job being watched
+   * @param emitter the emitter events are sent to
+   * @param sender runs the writes to the emitter
+   * @param maxQueuedEvents the most events that may wait to be written before the client is
+   *     disconnected
+   */
+  public JobLogSubscription(long jobId, SseEmitter emitter, Executor sender, int maxQueuedEvents) {
+    this.jobId = jobId;
+    this.emitter = emitter;
+    this.sender = sender;
+    this.maxQueuedEvents = maxQueuedEvents;
+  }
+
+  /**
+   * Send the log read from the database, then anything queued since the subscription was
+   * registered. If the job has already finished, close the stream.
+   *
+   * @param offset character offset the backlog starts at
+   * @param backlog the part of the log from {@code offset} that was already stored
+   * @param status the job's status if it has already finished, otherwise null
+   */
+  public synchronized void start(long offset, String backlog, String status) {
+    sentUpTo = offset;
+    sendLog(offset, backlog);
+    started = true;
+    for (PendingText pendingText : queued) {
+      sendLog(pendingText.startOffset(), pendingText.text());
+    }
+    queued.clear();
+
+    String endStatus = status != null ? status : finishedStatus;
+    if (endStatus != null) {
+      sendStatusAndClose(endStatus);
+    }
+  }
+
+  /**
+   * Send (or queue, if not yet started) text appended to the log.
+   *
+   * @param startOffset character offset where the text starts
+   * @param text the appended text
+   */
+  public synchronized void append(long startOffset, String text) {
+    if (!started) {
+      queued.add(new PendingText(startOffset, text));
+      return;
+    }
+    sendLog(startOffset, text);
+  }
+
+  /**
+   * Send the job's final status and close the stream (or remember it, if not yet started).
+   *
+   * @param status the job's final status
+   */
+  public synchronized void finish(String status) {
+    if (!started) {
+      finishedStatus = status;
+      return;
+    }
+    sendStatusAndClose(status);
+  }
+
+  private void sendLog(long startOffset, String text) {
+    long endOffset = startOffset + text.length();
+    if (closed || endOffset <= sentUpTo) {
+      return;
+    }
+    String unseen = text.substring((int) Math.max(0, sentUpTo - startOffset));
+    sentUpTo = endOffset;
+    send(
+        SseEmitter.event()
+            .id(Long.toString(endOffset))
+            .name("log")
+            .data(new LogEvent(endOffset - unseen.length(), unseen), MediaType.APPLICATION_JSON));
+  }
+
+  private void sendStatusAndClose(String status) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    completeWhenSent = true;
+    send(SseEmitter.event().name("status").data(status));
+  }
+
+  /** Queue an event for the sender; called with this subscription's lock held. */
+  private void send(SseEmitter.SseEventBuilder event) {
+    if (outbox.size() >= maxQueuedEvents) {
+      log.info("Job {}: log stream client is too slow; disconnecting it", jobId);
+      outbox.clear();
+      closed = true;
+      completeWhenSent = true;
+    } else {
+      outbox.add(event);
+    }
+    if (!draining) {
+      draining = true;
+      sender.execute(this::drain);
+    }
+  }
+
+  /** Write queued events to the client until there are none left, without holding the lock. */
+  private void drain() {
+    while (true) {
+      SseEmitter.SseEventBuilder event;
+      boolean complete = false;
+      synchronized (this) {
+        event = outbox.poll();
+        if (event == null) {
+          draining = false;
+          complete = completeWhenSent;
+          completeWhenSent = false;
+        }
+      }
+      if (event == null) {
+        if (complete) {
+          emitter.complete();
+        }
+        return;
+      }
+      try {
+        emitter.send(event);
+      } catch (IOException | IllegalStateException e) {
+        log.info("Job {}: log stream closed: {}", jobId, e.getMessage());
+        synchronized (this) {
+          outbox.clear();
+          closed = true;
+          completeWhenSent = false;
+          draining = false;
+        }
+        emitter.completeWithError(e);
+        return;
+      }
+    }
+  }
+}
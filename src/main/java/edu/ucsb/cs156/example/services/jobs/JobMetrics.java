@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for background jobs, tagged with the job's {@code type} (its simple class
+ * name):
+ *
+ * <ul>
+ *   <li>{@code jobs.queue.wait}: time from launch until the job starts running
+ *   <li>{@code jobs.run}: time spent running, also tagged with the final {@code status}
+ *   <li>{@code jobs.finished}: jobs finished, by {@code status} (including {@code rejected} jobs
+ *       that never ran)
+ *   <li>{@code jobs.active}: jobs running on this node right now
+ * </ul>
+ *
+ * <p>The timers publish percentiles and a histogram, so the actuator's {@code /actuator/metrics}
+ * endpoint shows the spread of wait and run times and not only their totals.
+ */
+@Component
+public class JobMetrics {
+  private final MeterRegistry registry;
+  private final AtomicInteger active = new AtomicInteger();
+
+  public JobMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    registry.gauge("jobs.active", active);
+  }
+
+  /**
+   * Record that a job has started running.
+   *
+   * @param job the job, with {@code startedAt} set
+   */
+  public void jobStarted(Job job) {
+    active.incrementAndGet();
+    if (job.getCreatedAt() != null) {
+      timer("jobs.queue.wait", "Time from launching a job until it starts running", job)
+          .register(registry)
+          .record(Duration.between(job.getCreatedAt(), job.getStartedAt()));
+    }
+  }
+
+  /**
+   * Record that a job that was running has finished.
+   *
+   * @param job the job, with its final status, {@code startedAt} and {@code finishedAt} set
+   */
+  public void jobFinished(Job job) {
+    active.decrementAndGet();
+    timer("jobs.run", "Time spent running a job", job)
+        .tag("status", job.getStatus())
+        .register(registry)
+        .record(Duration.between(job.getStartedAt(), job.getFinishedAt()));
+    countFinished(job);
+  }
+
+  /**
+   * Record that a job ended without running, e.g. because it was rejected.
+   *
+   * @param job the job, with its final status
+   */
+  public void jobEndedWithoutRunning(Job job) {
+    countFinished(job);
+  }
+
+  /**
+   * The number of jobs running on this node.
+   *
+   * @return the number of jobs
+   */
+  public int getActive() {
+    return active.get();
+  }
+
+  private void countFinished(Job job) {
+    Counter.builder("jobs.finished")
+        .description("Jobs finished, by final status")
+        .tag("type", typeTag(job))
+        .tag("status", job.getStatus())
+        .register(registry)
+        .increment();
+  }
+
+  private static Timer.Builder timer(String name, String description, Job job) {
+    return Timer.builder(name)
+        .description(description)
+        .tag("type", typeTag(job))
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram();
+  }
+
+  private static String typeTag(Job job) {
+    String type = job.getJobType();
+    if (type == null) {
+      return "unknown";
+    }
+    return type.substring(type.lastIndexOf('.') + 1);
+  }
+}
@@ -0,0 +1,221 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Runs jobs queued in the database by {@link JobService#runAsJob}. Only created when {@code
+ * app.jobs.queue.mode=database}.
+ *
+ * <p>Every {@code app.jobs.queue.pollMillis}, the worker claims as many jobs as the job executor
+ * has room for. Claiming locks the rows with {@code SELECT ... FOR UPDATE SKIP LOCKED} (supported
+ * by both Postgres and H2), so any number of nodes can poll the same table without two of them
+ * claiming the same job. A claimed job is marked {@code running} with a lease that this node renews
+ * every {@code app.jobs.queue.heartbeatMillis} while the job runs. If the node dies, the lease runs
+ * out and the job is claimed again by another node; a job is given up on (status {@code error})
+ * once it has been claimed more than {@code app.jobs.queue.maxAttempts} times.
+ *
+ * <p>Jobs are therefore run at least once: a node that stalls for longer than the lease may find
+ * its job has been started again elsewhere.
+ *
+ * <p>A job publishes its log to clients watching it on the node that runs it. Clients on other
+ * nodes are sent the job's new log text and final status by {@link #relayLogs}, which reads them
+ * from the database every {@code app.jobs.queue.pollMillis}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.jobs.queue.mode", havingValue = "database")
+public class JobQueueWorker {
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired
+  @Qualifier(JobExecutorConfig.JOB_EXECUTOR)
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  @Lazy @Autowired private JobQueueWorker self;
+
+  @Value("${app.jobs.queue.nodeId:${random.uuid}}")
+  private String nodeId;
+
+  @Value("${app.jobs.queue.leaseSeconds:60}")
+  private long leaseSeconds;
+
+  @Value("${app.jobs.queue.maxAttempts:3}")
+  private int maxAttempts;
+
+  private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+  /** How much of each relayed job's log has been sent to its watchers, by job id. */
+  private final Map<Long, Long> relayedUpTo = new ConcurrentHashMap<>();
+
+  /** Claim as many queued jobs as the executor has room for, and start them. */
+  @Scheduled(
+      fixedDelayString = "${app.jobs.queue.pollMillis:1000}",
+      initialDelayString =
+          "${app.jobs.queue.pollInitialDelayMillis:${app.jobs.queue.pollMillis:1000}}")
+  public void poll() {
+    int room =
+        jobExecutor.getMaxPoolSize() - jobExecutor.getActiveCount() - jobExecutor.getQueueSize();
+    if (room <= 0) {
+      return;
+    }
+    for (Job job : self.claimJobs(room)) {
+      dispatch(job);
+    }
+  }
+
+  /**
+   * Claim up to {@code limit} jobs for this node.
+   *
+   * @param limit the maximum number of jobs to claim
+   * @return the claimed jobs, oldest first
+   */
+  @Transactional
+  public List<Job> claimJobs(int limit) {
+    ZonedDateTime now = ZonedDateTime.now();
+    List<Long> ids = jobsRepository.lockClaimableJobIds(now, limit);
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    jobsRepository.claim(ids, nodeId, now.plusSeconds(leaseSeconds));
+
+    List<Job> jobs = new ArrayList<>();
+    jobsRepository.findAllById(ids).forEach(jobs::add);
+    jobs.sort(Comparator.comparingLong(Job::getId));
+    return jobs;
+  }
+
+  /**
+   * Extend the lease on the jobs this node is running, so other nodes leave them alone, and stop
+   * any of them that have been cancelled from another node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.heartbeatMillis:20000}")
+  public void heartbeat() {
+    if (running.isEmpty()) {
+      return;
+    }
+    self.renewLeases();
+    for (Long id : jobsRepository.findCancelledIds(Set.copyOf(running))) {
+      if (!jobService.stopRunningJob(id, "cancelled") && !jobService.isRunningHere(id)) {
+        // Cancelled while it waited for the executor: runJobAsync will not run it
+        running.remove(id);
+      }
+    }
+  }
+
+  /** Extend the lease on the jobs this node is running. */
+  @Transactional
+  public void renewLeases() {
+    jobsRepository.renewLeases(
+        Set.copyOf(running), nodeId, ZonedDateTime.now().plusSeconds(leaseSeconds));
+  }
+
+  /**
+   * Send new log text, and the final status, of watched jobs that are not running on this node to
+   * the clients on this node watching them.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.jobs.queue.pollMillis:1000}",
+      initialDelayString =
+          "${app.jobs.queue.pollInitialDelayMillis:${app.jobs.queue.pollMillis:1000}}")
+  public void relayLogs() {
+    Set<Long> watched = jobLogStreamService.watchedJobIds();
+    relayedUpTo.keySet().retainAll(watched);
+    for (Long id : watched) {
+      if (jobService.isRunningHere(id)) {
+        continue;
+      }
+      Optional<Job> job = jobsRepository.findById(id);
+      if (job.isEmpty()) {
+        relayedUpTo.remove(id);
+        jobLogStreamService.finish(id, "deleted");
+        continue;
+      }
+      // The status is read before the log, so the log of a job seen as finished is complete
+      long from = relayedUpTo.getOrDefault(id, 0L);
+      String text = jobService.getJobLogs(job.get(), from, null);
+      if (!text.isEmpty()) {
+        jobLogStreamService.publish(id, from, text);
+      }
+      String status = job.get().getStatus();
+      if (JobService.FINISHED_STATUSES.contains(status)) {
+        relayedUpTo.remove(id);
+        jobLogStreamService.finish(id, status);
+      } else {
+        relayedUpTo.put(id, from + text.length());
+      }
+    }
+  }
+
+  void dispatch(Job job) {
+    if (job.getAttempts() > maxAttempts) {
+      jobService.failJob(
+          job, "Job %d gave up after %d attempts".formatted(job.getId(), maxAttempts));
+      return;
+    }
+
+    JobContextConsumer jobFunction;
+    try {
+      jobFunction = jobService.restoreJobFunction(job);
+    } catch (IllegalArgumentException e) {
+      jobService.failJob(job, e.getMessage());
+      return;
+    }
+
+    long id = job.getId();
+    running.add(id);
+    try {
+      jobService.runJobAsync(
+          job,
+          context -> {
+            try {
+              jobFunction.accept(context);
+            } finally {
+              running.remove(id);
+            }
+          });
+    } catch (TaskRejectedException e) {
+      // The executor filled up since we polled; put the job back for the next poll
+      running.remove(id);
+      log.info("Job {}: executor full, returning it to the queue", id);
+      job.setStatus("queued");
+      job.setClaimedBy(null);
+      job.setLeaseExpiresAt(null);
+      jobsRepository.save(job);
+    }
+  }
+
+  /**
+   * Ids of the jobs this node is currently running.
+   *
+   * @return the ids
+   */
+  public Set<Long> getRunningJobIds() {
+    return Set.copyOf(running);
+  }
+}
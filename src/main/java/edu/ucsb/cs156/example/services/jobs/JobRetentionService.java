@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.config.JobRetentionProperties;
+import edu.ucsb.cs156.example.jobs.ExportJobFactory;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Deletes old job records. Every row is removed with set-based {@code DELETE} statements of at most
+ * {@code app.jobs.retention.batchSize} rows, each in its own transaction, so a large purge never
+ * loads the jobs into memory or holds locks on the whole table. Job log chunks go with their jobs
+ * through the foreign key's {@code ON DELETE CASCADE}.
+ *
+ * <p>Only finished jobs are purged; queued and running jobs are never touched. Export files whose
+ * jobs have gone are deleted from this node's export directory after each purge.
+ */
+@Slf4j
+@Service
+public class JobRetentionService {
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobRetentionProperties properties;
+
+  @Autowired private ExportJobFactory exportJobFactory;
+
+  /**
+   * Apply the retention limits to every finished status.
+   *
+   * @return the number of jobs deleted
+   */
+  @Scheduled(cron = "${app.jobs.retention.cron:0 15 3 * * *}")
+  public long purge() {
+    long total = 0;
+    for (String status : JobService.FINISHED_STATUSES) {
+      total += purge(status);
+    }
+    log.info("Job retention: deleted {} jobs", total);
+    deleteExportFiles();
+    return total;
+  }
+
+  /**
+   * Apply the retention limits to jobs with one status.
+   *
+   * @param status the status
+   * @return the number of jobs deleted
+   */
+  public long purge(String status) {
+    Duration maxAge = properties.maxAge();
+    int maxCount = properties.maxCount();
+    Map<String, JobRetentionProperties.Limits> statuses = properties.statuses();
+    JobRetentionProperties.Limits limits = statuses == null ? null : statuses.get(status);
+    if (limits != null && limits.maxAge() != null) {
+      maxAge = limits.maxAge();
+    }
+    if (limits != null && limits.maxCount() != null) {
+      maxCount = limits.maxCount();
+    }
+
+    long deleted = 0;
+    if (maxAge != null && maxAge.isPositive()) {
+      ZonedDateTime cutoff = ZonedDateTime.now().minus(maxAge);
+      deleted +=
+          deleteInBatches(limit -> jobsRepository.deleteCreatedBefore(status, cutoff, limit));
+    }
+    if (maxCount > 0) {
+      int keep = maxCount;
+      deleted +=
+          jobsRepository
+              .findIdAfterNewest(status, keep)
+              .map(
+                  maxId ->
+                      deleteInBatches(limit -> jobsRepository.deleteUpToId(status, maxId, limit)))
+              .orElse(0L);
+    }
+    return deleted;
+  }
+
+  /**
+   * Delete every job record, in batches.
+   *
+   * @return the number of jobs deleted
+   */
+  public long deleteAll() {
+    long total = deleteInBatches(jobsRepository::deleteOldest);
+    deleteExportFiles();
+    return total;
+  }
+
+  /** Delete the export files of deleted jobs; a failure is logged, the jobs stay deleted. */
+  private void deleteExportFiles() {
+    try {
+      long deleted = exportJobFactory.deleteExportFilesOfDeletedJobs();
+      log.info("Job retention: deleted {} export files", deleted);
+    } catch (IOException e) {
+      log.warn("Job retention: could not delete export files", e);
+    }
+  }
+
+  private long deleteInBatches(IntUnaryOperator deleteBatch) {
+    int batchSize = Math.max(1, properties.batchSize());
+    long total = 0;
+    int deleted;
+    do {
+      deleted = deleteBatch.applyAsInt(batchSize);
+      total += deleted;
+    } while (deleted == batchSize);
+    return total;
+  }
+}
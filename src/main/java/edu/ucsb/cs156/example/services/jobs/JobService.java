@@ -1,53 +1,416 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobRejectedException;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Service
 public class JobService {
+  /** Statuses of jobs that will not run (again). */
+  public static final Set<String> FINISHED_STATUSES =
+      Set.of("complete", "error", "rejected", "cancelled", "timed_out");
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired private JobLogStreamService jobLogStreamService;
+
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private ObjectMapper mapper;
+
   @Lazy @Autowired private JobService self;
 
+  @Value("${app.jobs.queue.mode:memory}")
+  private String queueMode;
+
+  private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+  private final ScheduledThreadPoolExecutor timeouts = newTimeoutScheduler();
+
+  private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(
+            1, Thread.ofPlatform().name("job-timeouts").daemon().factory());
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  @Value("${app.jobs.log.flushEveryLines:1}")
+  private int logFlushEveryLines;
+
+  @Value("${app.jobs.log.flushEveryMillis:0}")
+  private long logFlushEveryMillis;
+
+  /**
+   * Save a new job and hand it to the job executor.
+   *
+   * @param jobFunction the work the job does
+   * @return the job, with status {@code running} or {@code queued}
+   * @throws JobRejectedException if the executor's pool and queue are full
+   * @see #runAsJob(JobContextConsumer, Long)
+   */
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return runAsJob(jobFunction, null);
+  }
+
+  /**
+   * Save a new job and hand it to the job executor.
+   *
+   * <p>With {@code app.jobs.queue.mode=database}, a {@link QueueableJob} is instead saved with
+   * status {@code queued}, along with its class name and parameters, and is left for a {@link
+   * JobQueueWorker} on any node to claim and run. Other jobs still run on this node.
+   *
+   * @param jobFunction the work the job does
+   * @param timeoutMillis if positive, the job is stopped with status {@code timed_out} once it has
+   *     been running this long (null for no timeout)
+   * @return the job, with status {@code running} or {@code queued}
+   * @throws JobRejectedException if the executor's pool and queue are full; the job is saved with
+   *     status {@code rejected}
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Long timeoutMillis) {
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .status("running")
+            .jobType(typeName(jobFunction))
+            .timeoutMillis(timeoutMillis)
+            .build();
+
+    if ("database".equalsIgnoreCase(queueMode) && jobFunction instanceof QueueableJob) {
+      job.setStatus("queued");
+      job.setParams(writeParams(jobFunction));
+      jobsRepository.save(job);
+      return job;
+    }
 
     jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+    try {
+      self.runJobAsync(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      job.setStatus("rejected");
+      job.setFinishedAt(ZonedDateTime.now());
+      jobsRepository.save(job);
+      jobMetrics.jobEndedWithoutRunning(job);
+      throw new JobRejectedException(job.getId());
+    }
 
     return job;
   }
 
-  @Async
+  /**
+   * Rebuild the work a queued job does from its class name and parameters.
+   *
+   * @param job a job saved with status {@code queued}
+   * @return the job function
+   * @throws IllegalArgumentException if the class does not exist, is not a {@link QueueableJob}, or
+   *     the parameters cannot be read
+   */
+  public JobContextConsumer restoreJobFunction(Job job) {
+    try {
+      Class<?> type = Class.forName(job.getJobType(), false, JobService.class.getClassLoader());
+      if (!QueueableJob.class.isAssignableFrom(type)) {
+        throw new IllegalArgumentException("%s is not a QueueableJob".formatted(job.getJobType()));
+      }
+      return (JobContextConsumer) mapper.readValue(job.getParams(), type);
+    } catch (ClassNotFoundException | JsonProcessingException e) {
+      throw new IllegalArgumentException(
+          "Cannot restore job %d: %s".formatted(job.getId(), e.getMessage()), e);
+    }
+  }
+
+  private static String typeName(JobContextConsumer jobFunction) {
+    // Lambda class names end in an address that changes from run to run
+    String name = jobFunction.getClass().getName();
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : name.substring(0, lambda + "$$Lambda".length());
+  }
+
+  private String writeParams(JobContextConsumer jobFunction) {
+    try {
+      return mapper.writeValueAsString(jobFunction);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(
+          "Cannot queue %s: %s".formatted(jobFunction.getClass().getName(), e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Run a saved job on this thread, which is one of the job executor's. A job cancelled while it
+   * waited for the executor is not run. The job's final status is only written if the job is still
+   * {@code running} in the database, so a cancel written while it ran is not overwritten.
+   *
+   * @param job the job, with status {@code running}
+   * @param jobFunction the work the job does
+   */
+  @Async(JobExecutorConfig.JOB_EXECUTOR)
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    JobContext context = newContext(job);
+    long jobId = job.getId();
+    RunningJob running = new RunningJob(Thread.currentThread(), context);
+    // Registered before the status is read, so that a cancel that misses the status here finds the
+    // job in runningJobs instead (see cancelJob)
+    runningJobs.put(jobId, running);
+    if ("cancelled".equals(jobsRepository.findStatusById(jobId).orElse(null))) {
+      runningJobs.remove(jobId, running);
+      job.setStatus("cancelled");
+      job.setFinishedAt(ZonedDateTime.now());
+      context.log("Job cancelled before it started");
+      context.flush();
+      jobsRepository.finish(jobId, "cancelled", null, job.getFinishedAt());
+      jobMetrics.jobEndedWithoutRunning(job);
+      jobLogStreamService.finish(jobId, "cancelled");
+      return;
+    }
+    job.setStartedAt(ZonedDateTime.now());
+    jobMetrics.jobStarted(job);
+    Long timeoutMillis = job.getTimeoutMillis();
+    ScheduledFuture<?> timeout =
+        timeoutMillis != null && timeoutMillis > 0
+            ? timeouts.schedule(
+                () -> running.stop("timed_out"), timeoutMillis, TimeUnit.MILLISECONDS)
+            : null;
 
+    // Errors are caught too, so that the job is still cleaned up and given a final status; they
+    // are rethrown once that is done
+    Throwable failure = null;
     try {
       jobFunction.accept(context);
-    } catch (Exception e) {
+    } catch (Exception | Error e) {
+      failure = e;
+    }
+
+    String stopStatus = running.finish();
+    runningJobs.remove(jobId, running);
+    if (timeout != null) {
+      timeout.cancel(false);
+    }
+
+    if ("timed_out".equals(stopStatus)) {
+      job.setStatus(stopStatus);
+      context.log("Job timed out after %d ms".formatted(timeoutMillis));
+    } else if (stopStatus != null) {
+      job.setStatus(stopStatus);
+      context.log("Job cancelled");
+    } else if (failure instanceof Error) {
       job.setStatus("error");
-      context.log(e.getMessage());
-      return;
+      context.log(failure.toString());
+    } else if (failure != null) {
+      job.setStatus("error");
+      context.log(failure.getMessage());
+    } else {
+      job.setStatus("complete");
+    }
+    job.setFinishedAt(ZonedDateTime.now());
+    context.flush();
+    jobsRepository.finish(jobId, job.getStatus(), job.getStartedAt(), job.getFinishedAt());
+    jobsRepository.findStatusById(jobId).ifPresent(job::setStatus);
+    jobMetrics.jobFinished(job);
+    jobLogStreamService.finish(jobId, job.getStatus());
+    if (failure instanceof Error error) {
+      throw error;
     }
+  }
 
-    job.setStatus("complete");
-    jobsRepository.save(job);
+  /**
+   * Cancel a job. A job running on this node is interrupted and ends with status {@code cancelled}.
+   * A queued job, or one running on another node, is marked {@code cancelled} in the database; a
+   * job still waiting for the executor is then never run, and the node running one stops it at its
+   * next heartbeat.
+   *
+   * @param jobId id of the job
+   * @return true if the job was cancelled, false if it had already finished
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public boolean cancelJob(long jobId) {
+    if (!jobsRepository.existsById(jobId)) {
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+    if (stopRunningJob(jobId, "cancelled")) {
+      return true;
+    }
+    if (jobsRepository.cancelIfNotFinished(jobId) == 0) {
+      return false;
+    }
+    // A job that started here after the first try may have read its status before it was
+    // cancelled; it is in runningJobs by now, so stop it
+    stopRunningJob(jobId, "cancelled");
+    return true;
   }
 
+  /**
+   * Whether a job is running on this node.
+   *
+   * @param jobId id of the job
+   * @return true if the job is running here
+   */
+  public boolean isRunningHere(long jobId) {
+    return runningJobs.containsKey(jobId);
+  }
+
+  /**
+   * Stop a job if it is running on this node.
+   *
+   * @param jobId id of the job
+   * @param status the status to give the job, {@code cancelled} or {@code timed_out}
+   * @return true if the job was running here and has been told to stop
+   */
+  public boolean stopRunningJob(long jobId, String status) {
+    RunningJob running = runningJobs.get(jobId);
+    return running != null && running.stop(status);
+  }
+
+  /**
+   * Mark a job that cannot be run as failed, with the reason appended to its log.
+   *
+   * @param job the job
+   * @param message why the job failed
+   */
+  public void failJob(Job job, String message) {
+    JobContext context = newContext(job);
+    job.setStatus("error");
+    job.setFinishedAt(ZonedDateTime.now());
+    context.log(message);
+    context.save();
+    jobMetrics.jobEndedWithoutRunning(job);
+    jobLogStreamService.finish(job.getId(), job.getStatus());
+  }
+
+  private JobContext newContext(Job job) {
+    return new JobContext(
+        jobsRepository,
+        jobLogChunksRepository,
+        jobLogStreamService::publish,
+        job,
+        logFlushEveryLines,
+        logFlushEveryMillis);
+  }
+
+  /**
+   * Get the full log of a job.
+   *
+   * @param jobId id of the job
+   * @return the log, or an empty string if the job has not logged anything
+   */
   public String getJobLogs(Long jobId) {
+    return getJobLogs(jobId, 0, null);
+  }
+
+  /**
+   * Get the full log of a job that has already been read.
+   *
+   * @param job the job
+   * @return the log, or an empty string if the job has not logged anything
+   */
+  public String getJobLogs(Job job) {
+    return readLog(job, 0, null);
+  }
+
+  /**
+   * Get part of the log of a job that has already been read.
+   *
+   * @param job the job
+   * @param offset first character of the log to return
+   * @param limit maximum number of characters to return (null for no limit)
+   * @return the requested part of the log, or an empty string if there is nothing in that range
+   */
+  public String getJobLogs(Job job, long offset, Integer limit) {
+    return readLog(job, offset, limit);
+  }
+
+  /**
+   * Get part of the log of a job, starting at a character offset. Only the log chunks that overlap
+   * the requested range are read, so a client tailing a running job can pass the length of what it
+   * already has as {@code offset} and receive just the new text.
+   *
+   * <p>Jobs that were run before logs were stored in chunks keep their log in the job's {@code log}
+   * column; for those the range is taken from that column instead.
+   *
+   * @param jobId id of the job
+   * @param offset first character of the log to return
+   * @param limit maximum number of characters to return (null for no limit)
+   * @return the requested part of the log, or an empty string if there is nothing in that range
+   */
+  public String getJobLogs(Long jobId, long offset, Integer limit) {
     Job job =
         jobsRepository
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
 
+    return readLog(job, offset, limit);
+  }
+
+  /**
+   * Stream a job's log over Server-Sent Events, starting at a character offset. Text already stored
+   * is sent first, followed by new text as the job writes it. When the job finishes, a {@code
+   * status} event is sent and the stream is closed.
+   *
+   * @param jobId id of the job
+   * @param offset first character of the log to send
+   * @return the emitter for the stream
+   */
+  public SseEmitter streamJobLogs(Long jobId, long offset) {
+    // Subscribe before reading, so that nothing written in between is missed
+    JobLogSubscription subscription = jobLogStreamService.subscribe(jobId);
+
+    Optional<Job> job = jobsRepository.findById(jobId);
+    if (job.isEmpty()) {
+      jobLogStreamService.unsubscribe(subscription);
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+
+    long from = Math.max(0, offset);
+    String status = job.get().getStatus();
+    if (FINISHED_STATUSES.contains(status)) {
+      jobLogStreamService.unsubscribe(subscription);
+      subscription.start(from, readLog(job.get(), from, null), status);
+    } else {
+      subscription.start(from, readLog(job.get(), from, null), null);
+    }
+    return subscription.getEmitter();
+  }
+
+  private String readLog(Job job, long offset, Integer limit) {
+    long from = Math.max(0, offset);
+    long to = limit == null ? Long.MAX_VALUE : from + Math.max(0, limit);
+
     String log = job.getLog();
-    return log != null ? log : "";
+    if (log != null) {
+      return log.substring((int) Math.min(from, log.length()), (int) Math.min(to, log.length()));
+    }
+
+    StringBuilder result = new StringBuilder();
+    for (JobLogChunk chunk : jobLogChunksRepository.findChunksInRange(job.getId(), from, to)) {
+      String content = chunk.getContent();
+      int start = (int) Math.max(0, from - chunk.getStartOffset());
+      int end = (int) Math.min(content.length(), to - chunk.getStartOffset());
+      result.append(content, start, end);
+    }
+    return result.toString();
   }
 }
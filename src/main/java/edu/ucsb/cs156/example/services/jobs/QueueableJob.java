@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * A job that may be saved to the database queue and run on any node (see {@link
+ * JobService#runAsJob}). Jackson must be able to write it as JSON and read it back, so it should
+ * hold only its parameters, not services or local files. Jobs that do not implement this always run
+ * on the node that launched them.
+ */
+public interface QueueableJob extends JobContextConsumer {}
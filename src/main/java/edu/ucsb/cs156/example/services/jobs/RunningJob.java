@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * A job running on this node, and the thread running it, so that it can be stopped. Stopping and
+ * finishing are synchronized, so a job is never interrupted once it has finished its work and is
+ * saving its final status.
+ */
+class RunningJob {
+  private final Thread thread;
+  private final JobContext context;
+  private String stopStatus = null;
+  private boolean finished = false;
+
+  RunningJob(Thread thread, JobContext context) {
+    this.thread = thread;
+    this.context = context;
+  }
+
+  /**
+   * Ask the job to stop, and interrupt its thread.
+   *
+   * @param status the status to give the job, e.g. {@code cancelled}
+   * @return false if the job had already finished or been stopped
+   */
+  synchronized boolean stop(String status) {
+    if (finished || stopStatus != null) {
+      return false;
+    }
+    stopStatus = status;
+    context.cancel();
+    thread.interrupt();
+    return true;
+  }
+
+  /**
+   * Called on the job's thread once its work has returned. Clears any interrupt, so the thread goes
+   * back to the pool in a clean state.
+   *
+   * @return the status the job was stopped with, or null if it was not stopped
+   */
+  synchronized String finish() {
+    finished = true;
+    Thread.interrupted();
+    return stopStatus;
+  }
+}
@@ -1,22 +1,59 @@
 package edu.ucsb.cs156.example;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.aop.ConditionalGetAspect;
+import edu.ucsb.cs156.example.aop.TableVersionAspect;
+import edu.ucsb.cs156.example.config.WebAsyncConfig;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.services.BatchService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.JsonStreamService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManager;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ActiveProfiles("test")
-@Import(TestConfig.class)
+// Tests stub table versions per test; a version kept from an earlier test would hide the stub
+@TestPropertySource(properties = "app.tableVersions.cacheMillis=0")
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import({
+  TestConfig.class,
+  JsonStreamService.class,
+  BatchService.class,
+  PatchService.class,
+  TableVersionService.class,
+  ConditionalGetAspect.class,
+  TableVersionAspect.class
+})
 public abstract class ControllerTestCase {
   @Autowired public CurrentUserService currentUserService;
 
@@ -26,8 +63,51 @@ public abstract class ControllerTestCase {
 
   @Autowired public ObjectMapper mapper;
 
+  @Autowired
+  @Qualifier(WebAsyncConfig.STREAMING_EXECUTOR)
+  ThreadPoolTaskExecutor streamingExecutor;
+
   @MockBean WiremockService mockWiremockService;
 
+  @MockBean public EntityManager entityManager;
+
+  @MockBean PlatformTransactionManager transactionManager;
+
+  @MockBean public TableVersionRepository tableVersionRepository;
+
+  /**
+   * The migration inserts a table_versions row for every versioned table. Subclasses that do not
+   * start a Spring context have no repository to stub.
+   */
+  @BeforeEach
+  void seedTableVersions() {
+    if (tableVersionRepository != null) {
+      when(tableVersionRepository.increment(any())).thenReturn(1);
+    }
+  }
+
+  /**
+   * Perform a request whose response body is written asynchronously, e.g. a {@code
+   * StreamingResponseBody}, and wait for the body to be written.
+   *
+   * @param requestBuilder the request
+   * @return the result of the completed request
+   */
+  protected ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+    MvcResult started =
+        mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+    // The result is available slightly before the worker thread has finished dispatching and
+    // cleaning up the request; dispatching again before then races with it.
+    MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+    await()
+        .atMost(10, SECONDS)
+        .until(
+            () ->
+                asyncContext.getDispatchedPath() != null
+                    && streamingExecutor.getActiveCount() == 0);
+    return mockMvc.perform(asyncDispatch(started));
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result)
       throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
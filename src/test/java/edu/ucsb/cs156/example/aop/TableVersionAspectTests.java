@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.controllers.VersionedTable;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+public class TableVersionAspectTests {
+
+  @VersionedTable(Restaurant.class)
+  static class VersionedController {}
+
+  @VersionedTable(value = Restaurant.class, bumpAfterWrites = false)
+  static class SelfBumpingController {}
+
+  private final TransactionStatus transaction = mock(TransactionStatus.class);
+  private TableVersionService tableVersionService;
+  private PlatformTransactionManager transactionManager;
+  private ProceedingJoinPoint joinPoint;
+  private TableVersionAspect aspect;
+
+  @BeforeEach
+  public void setup() {
+    tableVersionService = mock(TableVersionService.class);
+    transactionManager = mock(PlatformTransactionManager.class);
+    joinPoint = mock(ProceedingJoinPoint.class);
+    when(transactionManager.getTransaction(any())).thenReturn(transaction);
+    aspect = new TableVersionAspect();
+    aspect.tableVersionService = tableVersionService;
+    aspect.transactionManager = transactionManager;
+  }
+
+  private static VersionedTable versionedTable(Class<?> controller) {
+    return controller.getAnnotation(VersionedTable.class);
+  }
+
+  @Test
+  public void writes_that_bump_the_version_themselves_are_left_alone() throws Throwable {
+    Object result = new Object();
+    when(joinPoint.proceed()).thenReturn(result);
+
+    assertSame(
+        result, aspect.bumpWithWrite(joinPoint, versionedTable(SelfBumpingController.class)));
+
+    verifyNoInteractions(tableVersionService, transactionManager);
+  }
+
+  @Test
+  public void a_write_and_its_bump_commit_together() throws Throwable {
+    Object result = new Object();
+    when(joinPoint.proceed()).thenReturn(result);
+
+    assertSame(result, aspect.bumpWithWrite(joinPoint, versionedTable(VersionedController.class)));
+
+    InOrder order = inOrder(transactionManager, joinPoint, tableVersionService);
+    order.verify(transactionManager).getTransaction(any());
+    order.verify(joinPoint).proceed();
+    order.verify(tableVersionService).bump(Restaurant.class);
+    order.verify(transactionManager).commit(transaction);
+    verify(transactionManager, never()).rollback(any());
+  }
+
+  @Test
+  public void a_failed_write_rolls_back_without_a_bump() throws Throwable {
+    IllegalArgumentException failure = new IllegalArgumentException("bad row");
+    when(joinPoint.proceed()).thenThrow(failure);
+
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> aspect.bumpWithWrite(joinPoint, versionedTable(VersionedController.class)));
+
+    assertSame(failure, thrown);
+    verify(tableVersionService, never()).bump(any());
+    verify(transactionManager).rollback(transaction);
+    verify(transactionManager, never()).commit(any());
+  }
+
+  @Test
+  public void a_failed_bump_rolls_back_the_write_and_is_reported() throws Throwable {
+    when(tableVersionService.bump(Restaurant.class))
+        .thenThrow(new IllegalStateException("table_versions has no row for Restaurant"));
+
+    IllegalStateException thrown =
+        assertThrows(
+            IllegalStateException.class,
+            () -> aspect.bumpWithWrite(joinPoint, versionedTable(VersionedController.class)));
+
+    assertEquals("table_versions has no row for Restaurant", thrown.getMessage());
+    verify(transactionManager).rollback(transaction);
+    verify(transactionManager, never()).commit(any());
+  }
+}
@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class WebAsyncConfigTests {
+
+  private WebAsyncConfig config(int poolSize, int connectionPoolSize) {
+    WebAsyncConfig config = new WebAsyncConfig();
+    ReflectionTestUtils.setField(config, "poolSize", poolSize);
+    ReflectionTestUtils.setField(config, "queueCapacity", 10);
+    ReflectionTestUtils.setField(config, "connectionPoolSize", connectionPoolSize);
+    return config;
+  }
+
+  @Test
+  public void pool_size_is_used_when_well_below_the_connection_pool() {
+    ThreadPoolTaskExecutor executor = config(2, 10).streamingExecutor();
+
+    assertEquals(2, executor.getCorePoolSize());
+    assertEquals(2, executor.getMaxPoolSize());
+  }
+
+  @Test
+  public void pool_size_is_capped_at_a_quarter_of_the_connection_pool() {
+    assertEquals(2, config(8, 10).threads());
+    assertEquals(5, config(8, 20).threads());
+    assertEquals(1, config(8, 2).threads());
+  }
+}
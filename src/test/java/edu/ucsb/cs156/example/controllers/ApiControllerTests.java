@@ -1,10 +1,18 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.Map;
@@ -12,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.CrudRepository;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = DummyController.class)
@@ -53,4 +62,158 @@ public class ApiControllerTests extends ControllerTestCase {
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("String with id 7 not found", json.get("message"));
   }
+
+  @Test
+  public void test_that_rejected_job_returns_service_unavailable() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/rejected?id=7"))
+            .andExpect(status().isServiceUnavailable())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobRejectedException", json.get("type"));
+    assertEquals(
+        "Job 7 rejected: too many jobs are already running or queued", json.get("message"));
+  }
+
+  @Test
+  public void test_that_version_conflict_returns_conflict() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/conflict?id=7"))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("VersionConflictException", json.get("type"));
+    assertEquals("String with id 7 is no longer at version 3", json.get("message"));
+  }
+
+  @Test
+  public void test_that_optimistic_locking_failure_returns_conflict() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/stale?id=7"))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("OptimisticLockingFailureException", json.get("type"));
+    assertEquals("String with id 7 was changed", json.get("message"));
+  }
+
+  @Test
+  public void test_that_precondition_failed_returns_precondition_failed() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/precondition?id=7"))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("PreconditionFailedException", json.get("type"));
+    assertEquals("String with id 7 is no longer at version 3", json.get("message"));
+  }
+
+  @Test
+  public void required_version_is_the_body_version_without_if_match() throws Exception {
+    MvcResult none =
+        mockMvc.perform(get("/dummycontroller/version")).andExpect(status().isOk()).andReturn();
+    MvcResult body =
+        mockMvc
+            .perform(get("/dummycontroller/version?version=5"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals("null", none.getResponse().getContentAsString());
+    assertEquals("5", body.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void required_version_comes_from_if_match() throws Exception {
+    MvcResult tagged =
+        mockMvc
+            .perform(get("/dummycontroller/version?version=5").header("If-Match", " \"12\" "))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult any =
+        mockMvc
+            .perform(get("/dummycontroller/version?version=5").header("If-Match", "*"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals("12", tagged.getResponse().getContentAsString());
+    assertEquals("null", any.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void required_version_rejects_a_malformed_if_match() throws Exception {
+    mockMvc
+        .perform(get("/dummycontroller/version").header("If-Match", "W/\"12\""))
+        .andExpect(status().isBadRequest());
+    mockMvc
+        .perform(get("/dummycontroller/version").header("If-Match", "12"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void check_written_accepts_a_changed_row() {
+    CrudRepository<String, Long> repository = mock(CrudRepository.class);
+
+    ApiController.checkWritten(1, repository, String.class, 7L, "\"3\"", 3L);
+
+    verify(repository, never()).existsById(7L);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void check_written_reports_a_missing_row() {
+    CrudRepository<String, Long> repository = mock(CrudRepository.class);
+    when(repository.existsById(7L)).thenReturn(false);
+
+    EntityNotFoundException unconditional =
+        assertThrows(
+            EntityNotFoundException.class,
+            () -> ApiController.checkWritten(0, repository, String.class, 7L, null, null));
+    assertThrows(
+        EntityNotFoundException.class,
+        () -> ApiController.checkWritten(0, repository, String.class, 7L, "\"3\"", 3L));
+
+    assertEquals("String with id 7 not found", unconditional.getMessage());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void check_written_reports_a_row_at_another_version() {
+    CrudRepository<String, Long> repository = mock(CrudRepository.class);
+    when(repository.existsById(7L)).thenReturn(true);
+
+    assertThrows(
+        PreconditionFailedException.class,
+        () -> ApiController.checkWritten(0, repository, String.class, 7L, "\"3\"", 3L));
+    VersionConflictException conflict =
+        assertThrows(
+            VersionConflictException.class,
+            () -> ApiController.checkWritten(0, repository, String.class, 7L, null, 3L));
+
+    assertEquals(VersionConflictException.class, conflict.getClass());
+  }
 }
@@ -2,31 +2,45 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -39,6 +53,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
   @MockBean UserRepository userRepository;
 
+  @MockBean ArticleSearchIndex articleSearchIndex;
+
   @Test
   public void logged_out_users_cannot_get_all() throws Exception {
     mockMvc
@@ -136,6 +152,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     // assert
     verify(articleRepository, times(1)).save(eq(article1));
+    verify(articleSearchIndex, times(1)).put(0L, article1);
     String expectedJson = mapper.writeValueAsString(article1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -236,20 +253,11 @@ public class ArticlesControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_article() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
     LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-    Article articleOrig =
-        Article.builder()
-            .title("title")
-            .url("url")
-            .explanation("explanation")
-            .email("email")
-            .localDateTime(ldt1)
-            .build();
-
     Article articleEdited =
         Article.builder()
+            .id(67L)
             .title("title1")
             .url("url1")
             .explanation("explanation1")
@@ -259,7 +267,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(articleEdited);
 
-    when(articleRepository.findById(eq(67L))).thenReturn(Optional.of(articleOrig));
+    when(articleRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(articleRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -274,10 +283,12 @@ public class ArticlesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(articleRepository, times(1)).findById(67L);
-    verify(articleRepository, times(1)).save(articleEdited); // should be saved with correct user
+    articleEdited.setVersion(3L);
+    verify(articleRepository, times(1))
+        .updateById(eq(67L), eq(2L), eq(articleEdited)); // should be saved with correct user
+    verify(articleSearchIndex, times(1)).put(67L, articleEdited);
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(articleEdited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -298,7 +309,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(articleEdited);
 
-    when(articleRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(articleRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -313,7 +324,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(articleRepository, times(1)).findById(67L);
+    verify(articleRepository, never()).updateById(eq(67L), any(), any());
+    verify(articleSearchIndex, never()).put(anyLong(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("Article with id 67 not found", json.get("message"));
   }
@@ -323,18 +335,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
   public void admin_can_delete_an_article() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-    Article article1 =
-        Article.builder()
-            .title("title")
-            .url("url")
-            .explanation("explanation")
-            .email("email")
-            .localDateTime(ldt1)
-            .build();
-
-    when(articleRepository.findById(eq(15L))).thenReturn(Optional.of(article1));
+    when(articleRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -344,8 +345,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(articleRepository, times(1)).findById(15L);
-    verify(articleRepository, times(1)).delete(any());
+    verify(articleRepository, times(1)).deleteRowById(15L, null);
+    verify(articleSearchIndex, times(1)).remove(15L);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Article with id 15 deleted", json.get("message"));
@@ -357,7 +358,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(articleRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(articleRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -367,8 +368,336 @@ public class ArticlesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(articleRepository, times(1)).findById(15L);
+    verify(articleRepository, times(1)).deleteRowById(15L, null);
+    verify(articleSearchIndex, never()).remove(anyLong());
     Map<String, Object> json = responseToJson(response);
     assertEquals("Article with id 15 not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/articles/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    Article article1 = Article.builder().id(1L).build();
+    Article article2 = Article.builder().id(2L).build();
+    Article article3 = Article.builder().id(3L).build();
+    when(articleRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(List.of(article1, article2, article3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/articles/all?limit=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("items", List.of(article1, article2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    Article article3 = Article.builder().id(3L).build();
+    when(articleRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(article3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/articles/all?after=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(article3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/articles/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/articles/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/articles/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    Article incoming1 = Article.builder().id(7L).title("First").build();
+    Article incoming2 = Article.builder().title("Second").build();
+    Article saved1 = Article.builder().id(1L).title("First").build();
+    Article saved2 = Article.builder().id(2L).title("Second").build();
+    when(articleRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/articles/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Article>> saved = ArgumentCaptor.forClass(List.class);
+    verify(articleRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            Article.builder().id(0L).title("First").build(),
+            Article.builder().id(0L).title("Second").build()),
+        saved.getValue());
+    verify(articleSearchIndex, times(1)).put(1L, saved.getValue().get(0));
+    verify(articleSearchIndex, times(1)).put(2L, saved.getValue().get(1));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    Article existing = Article.builder().id(1L).title("Old").build();
+    Article incoming1 = Article.builder().id(1L).title("New").build();
+    Article incoming2 = Article.builder().id(2L).title("Missing").build();
+    when(articleRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(articleRepository, times(1)).saveAll(List.of(existing));
+    verify(articleSearchIndex, times(1)).put(1L, existing);
+    verify(articleSearchIndex, never()).put(eq(2L), any());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    Article existing = Article.builder().id(1L).title("Doomed").build();
+    when(articleRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/articles/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articleRepository, times(1)).deleteAll(List.of(existing));
+    verify(articleSearchIndex, times(1)).remove(1L);
+    verify(articleSearchIndex, never()).remove(2L);
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_article_at_the_version_it_read() throws Exception {
+    // arrange
+
+    Article edited =
+        Article.builder().id(67L).title("Hello").url("https://example.org").version(3L).build();
+
+    when(articleRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articleRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_article() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+    Article patched = Article.builder().id(67L).title("Goodbye").build();
+    when(articleRepository.findById(67L)).thenReturn(Optional.of(patched));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/articles?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"title\": \"Goodbye\"}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE articles e SET e.title = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", "Goodbye");
+    verify(articleSearchIndex, times(1)).put(67L, patched);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Article with id 67 updated", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void patching_fields_that_are_not_searched_leaves_the_search_index_alone()
+      throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    mockMvc
+        .perform(
+            patch("/api/articles?id=67")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"url\": \"https://example.org\"}")
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(articleRepository, never()).findById(anyLong());
+    verify(articleSearchIndex, never()).put(anyLong(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void patching_an_article_deleted_meanwhile_leaves_the_search_index_alone()
+      throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+    when(articleRepository.findById(67L)).thenReturn(Optional.empty());
+
+    // act
+    mockMvc
+        .perform(
+            patch("/api/articles?id=67")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"explanation\": \"Gone\"}")
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(articleRepository, times(1)).findById(67L);
+    verify(articleSearchIndex, never()).put(anyLong(), any());
+  }
+
+  // Tests for GET /api/articles/search
+
+  @Test
+  public void logged_out_users_cannot_search() throws Exception {
+    mockMvc.perform(get("/api/articles/search?q=java")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_search_articles() throws Exception {
+    // arrange
+
+    Article java = Article.builder().id(2L).title("Java streams").build();
+    Article javascript = Article.builder().id(1L).title("JavaScript promises").build();
+    when(articleSearchIndex.search("java", ArticlesController.DEFAULT_SEARCH_LIMIT))
+        .thenReturn(List.of(java, javascript));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/articles/search?q=java")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    verify(articleSearchIndex, times(1)).search("java", ArticlesController.DEFAULT_SEARCH_LIMIT);
+    assertEquals(
+        mapper.writeValueAsString(List.of(java, javascript)),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void search_limit_is_kept_between_one_and_the_maximum() throws Exception {
+    when(articleSearchIndex.search(anyString(), anyInt())).thenReturn(List.of());
+
+    mockMvc.perform(get("/api/articles/search?q=java&limit=5")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/search?q=java&limit=0")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/search?q=java&limit=100000")).andExpect(status().isOk());
+
+    verify(articleSearchIndex, times(1)).search("java", 5);
+    verify(articleSearchIndex, times(1)).search("java", 1);
+    verify(articleSearchIndex, times(1)).search("java", ArticlesController.MAX_SEARCH_LIMIT);
+  }
 }
@@ -1,12 +1,20 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobRejectedException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-/** This class is used to test ApiController and EntityNotFoundException */
+/**
+ * This class is used to test ApiController, EntityNotFoundException, JobRejectedException,
+ * VersionConflictException and PreconditionFailedException
+ */
 @RequestMapping("/dummycontroller")
 @RestController
 public class DummyController extends ApiController {
@@ -18,4 +26,31 @@ public class DummyController extends ApiController {
     }
     throw new EntityNotFoundException(String.class, id);
   }
+
+  @GetMapping("/rejected")
+  public String rejected(@RequestParam Long id) throws JobRejectedException {
+    throw new JobRejectedException(id);
+  }
+
+  @GetMapping("/conflict")
+  public String conflict(@RequestParam Long id) throws VersionConflictException {
+    throw new VersionConflictException(String.class, id, 3);
+  }
+
+  @GetMapping("/stale")
+  public String stale(@RequestParam Long id) throws OptimisticLockingFailureException {
+    throw new OptimisticLockingFailureException("String with id %d was changed".formatted(id));
+  }
+
+  @GetMapping("/precondition")
+  public String precondition(@RequestParam Long id) throws PreconditionFailedException {
+    throw new PreconditionFailedException(String.class, id, 3);
+  }
+
+  @GetMapping("/version")
+  public String version(
+      @RequestHeader(name = "If-Match", required = false) String ifMatch,
+      @RequestParam(required = false) Long version) {
+    return String.valueOf(requiredVersion(ifMatch, version));
+  }
 }
@@ -2,30 +2,41 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -196,21 +207,11 @@ public class HelpRequestControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_helprequest() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
     LocalDateTime ldt2 = LocalDateTime.parse("2022-02-03T00:00:00");
 
-    HelpRequest helpRequest =
-        HelpRequest.builder()
-            .requesterEmail("kelvinfang@ucsb.edu")
-            .teamId("f25-5pm-15")
-            .tableOrBreakoutRoom("15")
-            .explanation("CrudHelp")
-            .solved(true)
-            .requestTime(ldt1)
-            .build();
-
     HelpRequest editedHelpRequest =
         HelpRequest.builder()
+            .id(67L)
             .requesterEmail("kelvinfang2@ucsb.edu")
             .teamId("f25-5pm-16")
             .tableOrBreakoutRoom("16")
@@ -221,7 +222,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(editedHelpRequest);
 
-    when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(helpRequest));
+    when(helpRequestRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(helpRequestRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -236,11 +238,11 @@ public class HelpRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(helpRequestRepository, times(1)).findById(67L);
+    editedHelpRequest.setVersion(3L);
     verify(helpRequestRepository, times(1))
-        .save(editedHelpRequest); // should be saved with correct user
+        .updateById(eq(67L), eq(2L), eq(editedHelpRequest)); // should be saved with correct user
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(editedHelpRequest), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -262,7 +264,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(helpRequest);
 
-    when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(helpRequestRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -277,7 +279,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(helpRequestRepository, times(1)).findById(67L);
+    verify(helpRequestRepository, never()).updateById(eq(67L), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 67 not found", json.get("message"));
   }
@@ -287,19 +289,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
   public void admin_can_delete_a_helprequest() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-    HelpRequest helpRequest =
-        HelpRequest.builder()
-            .requesterEmail("kelvinfang@ucsb.edu")
-            .teamId("f25-5pm-15")
-            .tableOrBreakoutRoom("15")
-            .explanation("CrudHelp")
-            .solved(true)
-            .requestTime(ldt1)
-            .build();
-
-    when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest));
+    when(helpRequestRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -309,8 +299,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(helpRequestRepository, times(1)).findById(15L);
-    verify(helpRequestRepository, times(1)).delete(any());
+    verify(helpRequestRepository, times(1)).deleteRowById(15L, null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -322,7 +311,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(helpRequestRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -332,8 +321,246 @@ public class HelpRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(helpRequestRepository, times(1)).findById(15L);
+    verify(helpRequestRepository, times(1)).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 15 not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/helprequests/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    HelpRequest helpRequest1 = HelpRequest.builder().id(1L).build();
+    HelpRequest helpRequest2 = HelpRequest.builder().id(2L).build();
+    HelpRequest helpRequest3 = HelpRequest.builder().id(3L).build();
+    when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(List.of(helpRequest1, helpRequest2, helpRequest3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/helprequests/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("items", List.of(helpRequest1, helpRequest2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    HelpRequest helpRequest3 = HelpRequest.builder().id(3L).build();
+    when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(helpRequest3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/helprequests/all?after=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(helpRequest3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/helprequests/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/helprequests/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/helprequests/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    HelpRequest incoming1 = HelpRequest.builder().id(7L).explanation("First").build();
+    HelpRequest incoming2 = HelpRequest.builder().explanation("Second").build();
+    HelpRequest saved1 = HelpRequest.builder().id(1L).explanation("First").build();
+    HelpRequest saved2 = HelpRequest.builder().id(2L).explanation("Second").build();
+    when(helpRequestRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/helprequests/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<HelpRequest>> saved = ArgumentCaptor.forClass(List.class);
+    verify(helpRequestRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            HelpRequest.builder().id(0L).explanation("First").build(),
+            HelpRequest.builder().id(0L).explanation("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    HelpRequest existing = HelpRequest.builder().id(1L).explanation("Old").build();
+    HelpRequest incoming1 = HelpRequest.builder().id(1L).explanation("New").build();
+    HelpRequest incoming2 = HelpRequest.builder().id(2L).explanation("Missing").build();
+    when(helpRequestRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/helprequests/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(helpRequestRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    HelpRequest existing = HelpRequest.builder().id(1L).explanation("Doomed").build();
+    when(helpRequestRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/helprequests/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_helprequest_at_the_version_it_read() throws Exception {
+    // arrange
+
+    HelpRequest edited =
+        HelpRequest.builder()
+            .id(67L)
+            .requesterEmail("kelvinfang@ucsb.edu")
+            .solved(false)
+            .version(3L)
+            .build();
+
+    when(helpRequestRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/helprequests?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_helprequest() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/helprequests?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"solved\": true}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE helprequests e SET e.solved = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", true);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("HelpRequest with id 67 updated", json.get("message"));
+  }
 }
@@ -3,55 +3,103 @@ package edu.ucsb.cs156.example.controllers;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.jobs.ExportJob;
+import edu.ucsb.cs156.example.jobs.ExportJobFactory;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobLogStreamService.class,
+  JobMetrics.class,
+  JobExecutorConfig.class,
+  SimpleMeterRegistry.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogChunksRepository jobLogChunksRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean JobRetentionService jobRetentionService;
+
+  @MockitoBean ExportJobFactory exportJobFactory;
+
+  @MockitoBean ArticleSearchIndex articleSearchIndex;
+
   @Autowired JobService jobService;
 
+  @Autowired JobLogStreamService jobLogStreamService;
+
   @Autowired ObjectMapper objectMapper;
 
+  @Autowired MeterRegistry meterRegistry;
+
+  private static final String TEST_JOB_TYPE = "edu.ucsb.cs156.example.jobs.TestJob";
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_get_all_jobs() throws Exception {
@@ -101,6 +149,44 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void api_getJobLogById__admin_logged_in__returns_chunked_log() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(4L).status("completed").build();
+    JobLogChunk first =
+        JobLogChunk.builder()
+            .jobId(4L)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(6)
+            .content("line 1")
+            .build();
+    JobLogChunk second =
+        JobLogChunk.builder()
+            .jobId(4L)
+            .seq(1)
+            .startOffset(6)
+            .endOffset(13)
+            .content("\nline 2")
+            .build();
+    when(jobsRepository.findById(eq(4L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.findChunksInRange(4L, 0L, Long.MAX_VALUE))
+        .thenReturn(List.of(first, second));
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs?id=4")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Job returned = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("line 1\nline 2", returned.getLog());
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_not_found_for_missing_job()
@@ -127,7 +213,7 @@ public class JobsControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    when(jobRetentionService.deleteAll()).thenReturn(2L);
 
     // act
     MvcResult response =
@@ -138,7 +224,8 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
+    verify(jobRetentionService, times(1)).deleteAll();
+    verify(jobsRepository, times(0)).deleteAll();
     String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -196,6 +283,7 @@ public class JobsControllerTests extends ControllerTestCase {
     // assert
 
     verify(jobsRepository, times(1)).deleteById(eq(1L));
+    verify(exportJobFactory).deleteExportFile(1L);
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -224,6 +312,30 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_can_get_range_of_chunked_log() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    JobLogChunk chunk =
+        JobLogChunk.builder()
+            .jobId(jobId)
+            .seq(1)
+            .startOffset(6)
+            .endOffset(13)
+            .content("\nline 2")
+            .build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.findChunksInRange(3L, 6L, 11L)).thenReturn(List.of(chunk));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}?offset=6&limit=5", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("\nline"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_launch_test_job() throws Exception {
@@ -239,20 +351,27 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("running")
-            .log("Hello World! from test job!")
             .build();
 
-    Job jobCompleted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
+    JobLogChunk helloChunk =
+        JobLogChunk.builder()
+            .jobId(0L)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(27)
+            .content("Hello World! from test job!")
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
+    JobLogChunk goodbyeChunk =
+        JobLogChunk.builder()
+            .jobId(0L)
+            .seq(1)
+            .startOffset(27)
+            .endOffset(50)
+            .content("\nGoodbye from test job!")
+            .build();
+
+    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted);
 
     // act
     MvcResult response =
@@ -269,10 +388,26 @@ public class JobsControllerTests extends ControllerTestCase {
 
     await()
         .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .untilAsserted(() -> verify(jobLogChunksRepository, times(1)).save(eq(helloChunk)));
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(
+            () -> verify(jobsRepository).finish(eq(0L), eq("complete"), notNull(), notNull()));
+    verify(jobLogChunksRepository, times(1)).save(eq(goodbyeChunk));
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tags("type", "TestJob", "status", "complete")
+            .counter()
+            .count());
+    assertTrue(
+        meterRegistry
+                .get("jobs.run")
+                .tags("type", "TestJob", "status", "complete")
+                .timer()
+                .totalTime(SECONDS)
+            >= 2.0);
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -290,20 +425,27 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("running")
-            .log("Hello World! from test job!")
             .build();
 
-    Job jobFailed =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("error")
-            .log("Hello World! from test job!\nFail!")
+    JobLogChunk helloChunk =
+        JobLogChunk.builder()
+            .jobId(0L)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(27)
+            .content("Hello World! from test job!")
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
+    JobLogChunk failChunk =
+        JobLogChunk.builder()
+            .jobId(0L)
+            .seq(1)
+            .startOffset(27)
+            .endOffset(33)
+            .content("\nFail!")
+            .build();
+
+    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted);
 
     // act
     MvcResult response =
@@ -319,10 +461,525 @@ public class JobsControllerTests extends ControllerTestCase {
 
     await()
         .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .untilAsserted(() -> verify(jobLogChunksRepository, times(1)).save(eq(helloChunk)));
 
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(
+            () -> verify(jobsRepository).finish(eq(0L), eq("error"), notNull(), notNull()));
+    verify(jobLogChunksRepository, times(1)).save(eq(failChunk));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_log_of_finished_job() throws Exception {
+    // arrange
+    Job job = Job.builder().id(4L).status("complete").log("line 1\nline 2").build();
+    when(jobsRepository.findById(eq(4L))).thenReturn(Optional.of(job));
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/4/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String body = response.getResponse().getContentAsString();
+    assertTrue(body.contains("id:13\nevent:log\ndata:"), body);
+    assertTrue(body.contains("\"text\":\"line 1\\nline 2\""), body);
+    assertTrue(body.contains("event:status\ndata:complete"), body);
+    assertEquals(0, jobLogStreamService.subscriberCount(4L));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_resume_log_stream_from_last_event_id() throws Exception {
+    // arrange
+    Job job = Job.builder().id(5L).status("error").log("0123456789").build();
+    when(jobsRepository.findById(eq(5L))).thenReturn(Optional.of(job));
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/5/stream").header("Last-Event-ID", "4"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String body = response.getResponse().getContentAsString();
+    assertTrue(body.contains("\"text\":\"456789\""), body);
+    assertTrue(body.contains("\"offset\":4"), body);
+    assertTrue(body.contains("event:status\ndata:error"), body);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void offset_parameter_takes_precedence_over_last_event_id() throws Exception {
+    // arrange
+    Job job = Job.builder().id(6L).status("complete").log("0123456789").build();
+    when(jobsRepository.findById(eq(6L))).thenReturn(Optional.of(job));
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/6/stream?offset=8").header("Last-Event-ID", "4"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String body = response.getResponse().getContentAsString();
+    assertTrue(body.contains("\"text\":\"89\""), body);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_receives_new_log_text_of_running_job_until_it_finishes() throws Exception {
+    // arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    JobLogChunk chunk =
+        JobLogChunk.builder()
+            .jobId(7L)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(6)
+            .content("line 1")
+            .build();
+    when(jobsRepository.findById(eq(7L))).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.findChunksInRange(7L, 0L, Long.MAX_VALUE))
+        .thenReturn(List.of(chunk));
+
+    // act
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/7/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    assertEquals(1, jobLogStreamService.subscriberCount(7L));
+    jobLogStreamService.publish(7L, 6, "\nline 2");
+    jobLogStreamService.finish(7L, "complete");
+
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String body = response.getResponse().getContentAsString();
+    assertTrue(body.contains("id:6\nevent:log"), body);
+    assertTrue(body.contains("\"text\":\"line 1\""), body);
+    assertTrue(body.contains("id:13\nevent:log"), body);
+    assertTrue(body.contains("\"text\":\"\\nline 2\""), body);
+    assertTrue(body.contains("event:status\ndata:complete"), body);
+    assertEquals(0, jobLogStreamService.subscriberCount(7L));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void streaming_log_of_missing_job_returns_not_found() throws Exception {
+    // arrange
+    when(jobsRepository.findById(eq(8L))).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/8/stream"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 8 not found", json.get("message"));
+    assertEquals(0, jobLogStreamService.subscriberCount(8L));
+  }
+
+  private JobLogChunk testJobChunk(int seq, long startOffset, String content) {
+    return JobLogChunk.builder()
+        .jobId(0L)
+        .seq(seq)
+        .startOffset(startOffset)
+        .endOffset(startOffset + content.length())
+        .content(content)
+        .build();
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_running_test_job() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(0L))).thenReturn(true);
+
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=30000").with(csrf()))
+        .andExpect(status().isOk());
+    await()
+        .atMost(1, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobLogChunksRepository, times(1))
+                    .save(eq(testJobChunk(0, 0, "Hello World! from test job!"))));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job with id 0 cancelled")),
+        response.getResponse().getContentAsString());
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () -> verify(jobsRepository).finish(eq(0L), eq("cancelled"), notNull(), notNull()));
+    verify(jobLogChunksRepository, times(1)).save(eq(testJobChunk(1, 27, "\nJob cancelled")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_job_is_stopped_when_it_times_out() throws Exception {
+    // arrange
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=30000&timeoutMs=200")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(200L, jobReturned.getTimeoutMillis());
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () -> verify(jobsRepository).finish(eq(0L), eq("timed_out"), notNull(), notNull()));
+    verify(jobLogChunksRepository, times(1))
+        .save(eq(testJobChunk(1, 27, "\nJob timed out after 200 ms")));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_job_that_is_not_running_on_this_node() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(3L))).thenReturn(true);
+    when(jobsRepository.cancelIfNotFinished(eq(3L))).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=3").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobsRepository, times(1)).cancelIfNotFinished(3L);
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job with id 3 cancelled")),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_finished_job_reports_that_it_has_finished() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(4L))).thenReturn(true);
+    when(jobsRepository.cancelIfNotFinished(eq(4L))).thenReturn(0);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=4").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job with id 4 has already finished")),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_missing_job_returns_not_found() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(eq(5L))).thenReturn(false);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=5").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 5 not found", json.get("message"));
+    verify(jobsRepository, times(0)).cancelIfNotFinished(5L);
+  }
+
+  private final SpelAwareProxyProjectionFactory projectionFactory =
+      new SpelAwareProxyProjectionFactory();
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_page_of_jobs_without_logs() throws Exception {
+    // arrange
+    Job job1 = Job.builder().id(1L).status("complete").log("this is job 1").build();
+    Job job2 = Job.builder().id(2L).status("running").log("this is job 2").build();
+    List<JobSummary> summaries =
+        List.of(
+            projectionFactory.createProjection(JobSummary.class, job2),
+            projectionFactory.createProjection(JobSummary.class, job1));
+    when(jobsRepository.findAllProjectedBy(any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(summaries, PageRequest.of(0, 2), true));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/paged?size=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+    verify(jobsRepository).findAllProjectedBy(pageable.capture());
+    assertEquals(
+        PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "createdAt", "id")), pageable.getValue());
+
+    Map<String, Object> json = responseToJson(response);
+    List<?> content = (List<?>) json.get("content");
+    assertEquals(2, content.size());
+    Map<?, ?> first = (Map<?, ?>) content.get(0);
+    assertEquals(2, first.get("id"));
+    assertEquals("running", first.get("status"));
+    assertEquals(false, first.containsKey("log"));
+    assertEquals(false, json.get("last"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_can_be_filtered_and_sorted_by_status() throws Exception {
+    // arrange
+    when(jobsRepository.findByStatus(eq("error"), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(3, 10), false));
+
+    // act
+    mockMvc
+        .perform(get("/api/jobs/paged?status=error&page=3&size=10&sort=status,asc&sort=log,desc"))
+        .andExpect(status().isOk());
+
+    // assert
+    ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+    verify(jobsRepository).findByStatus(eq("error"), pageable.capture());
+    assertEquals(
+        PageRequest.of(3, 10, Sort.by(Sort.Direction.ASC, "status", "id")), pageable.getValue());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_sorted_by_id_need_no_tiebreak() throws Exception {
+    // arrange
+    when(jobsRepository.findAllProjectedBy(any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 20), false));
+
+    // act
+    mockMvc.perform(get("/api/jobs/paged?sort=id,asc")).andExpect(status().isOk());
+
+    // assert
+    ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+    verify(jobsRepository).findAllProjectedBy(pageable.capture());
+    assertEquals(PageRequest.of(0, 20, Sort.by(Sort.Direction.ASC, "id")), pageable.getValue());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_fall_back_to_newest_first_when_no_sort_field_is_allowed()
+      throws Exception {
+    // arrange
+    when(jobsRepository.findAllProjectedBy(any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 20), false));
+
+    // act
+    mockMvc.perform(get("/api/jobs/paged?sort=log,asc")).andExpect(status().isOk());
+
+    // assert
+    ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+    verify(jobsRepository).findAllProjectedBy(pageable.capture());
+    assertEquals(
+        PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt", "id")),
+        pageable.getValue());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_count_jobs() throws Exception {
+    // arrange
+    when(jobsRepository.count()).thenReturn(1000000L);
+    when(jobsRepository.countByStatus(eq("running"))).thenReturn(3L);
+
+    // act
+    MvcResult all = mockMvc.perform(get("/api/jobs/count")).andExpect(status().isOk()).andReturn();
+    MvcResult running =
+        mockMvc
+            .perform(get("/api/jobs/count?status=running"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals("{\"count\":1000000}", all.getResponse().getContentAsString());
+    assertEquals("{\"count\":3}", running.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_list_or_count_jobs() throws Exception {
+    mockMvc.perform(get("/api/jobs/paged")).andExpect(status().isForbidden());
+    mockMvc.perform(get("/api/jobs/count")).andExpect(status().isForbidden());
+  }
+
+  @TempDir Path tempDir;
+
+  private static final String EXPORT_JOB_TYPE = "edu.ucsb.cs156.example.jobs.ExportJob";
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_exportable_tables() throws Exception {
+    // arrange
+    when(exportJobFactory.getTables())
+        .thenReturn(new TreeSet<>(List.of("restaurants", "articles")));
+
+    // act & assert
+    mockMvc
+        .perform(get("/api/jobs/export/tables"))
+        .andExpect(status().isOk())
+        .andExpect(content().json("[\"articles\",\"restaurants\"]", true));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_export_job() throws Exception {
+    // arrange
+    when(exportJobFactory.create("articles")).thenReturn(ExportJob.builder().build());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/export?table=articles").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(EXPORT_JOB_TYPE, job.getJobType());
+    verify(exportJobFactory).create("articles");
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_article_index_job() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/articleindex").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("edu.ucsb.cs156.example.jobs.ArticleIndexJob", job.getJobType());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_launch_article_index_job() throws Exception {
+    mockMvc.perform(post("/api/jobs/launch/articleindex").with(csrf())).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void exporting_unknown_table_is_a_bad_request() throws Exception {
+    // arrange
+    when(exportJobFactory.create("nope"))
+        .thenThrow(new IllegalArgumentException("Cannot export nope"));
+
+    // act & assert
+    mockMvc
+        .perform(post("/api/jobs/launch/export?table=nope").with(csrf()))
+        .andExpect(status().isBadRequest());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_completed_export() throws Exception {
+    // arrange
+    Path file = tempDir.resolve("export-7.ndjson.gz");
+    Files.write(file, new byte[] {1, 2, 3});
+    when(jobsRepository.findById(7L))
+        .thenReturn(
+            Optional.of(Job.builder().id(7).jobType(EXPORT_JOB_TYPE).status("complete").build()));
+    when(exportJobFactory.exportFile(7L)).thenReturn(file);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/export/7"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/gzip"))
+            .andExpect(
+                header()
+                    .string("Content-Disposition", "attachment; filename=\"export-7.ndjson.gz\""))
+            .andExpect(header().longValue("Content-Length", 3))
+            .andReturn();
+
+    // assert
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3}, response.getResponse().getContentAsByteArray()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void download_is_refused_unless_export_is_complete_and_present() throws Exception {
+    // arrange
+    when(jobsRepository.findById(1L)).thenReturn(Optional.empty());
+    when(jobsRepository.findById(2L))
+        .thenReturn(
+            Optional.of(Job.builder().id(2).jobType(TEST_JOB_TYPE).status("complete").build()));
+    when(jobsRepository.findById(3L))
+        .thenReturn(
+            Optional.of(Job.builder().id(3).jobType(EXPORT_JOB_TYPE).status("running").build()));
+    when(jobsRepository.findById(4L))
+        .thenReturn(
+            Optional.of(Job.builder().id(4).jobType(EXPORT_JOB_TYPE).status("complete").build()));
+    when(exportJobFactory.exportFile(4L)).thenReturn(tempDir.resolve("export-4.ndjson.gz"));
+
+    // act & assert
+    mockMvc.perform(get("/api/jobs/export/1")).andExpect(status().isNotFound());
+    MvcResult notExport =
+        mockMvc.perform(get("/api/jobs/export/2")).andExpect(status().isNotFound()).andReturn();
+    MvcResult running =
+        mockMvc.perform(get("/api/jobs/export/3")).andExpect(status().isConflict()).andReturn();
+    MvcResult missing =
+        mockMvc.perform(get("/api/jobs/export/4")).andExpect(status().isNotFound()).andReturn();
+
+    assertEquals("Job 2 is not an export job", notExport.getResponse().getErrorMessage());
+    assertEquals("Job 3 is running, not complete", running.getResponse().getErrorMessage());
+    assertEquals("The file for job 4 no longer exists", missing.getResponse().getErrorMessage());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/jobs/export/tables")).andExpect(status().isForbidden());
+    mockMvc
+        .perform(post("/api/jobs/launch/export?table=articles").with(csrf()))
+        .andExpect(status().isForbidden());
+    mockMvc.perform(get("/api/jobs/export/7")).andExpect(status().isForbidden());
   }
 }
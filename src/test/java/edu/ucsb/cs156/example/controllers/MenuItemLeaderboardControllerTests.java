@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboard;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = MenuItemLeaderboardController.class)
+@Import(TestConfig.class)
+public class MenuItemLeaderboardControllerTests extends ControllerTestCase {
+
+  @MockBean MenuItemLeaderboard menuItemLeaderboard;
+
+  @MockBean UserRepository userRepository;
+
+  @Test
+  public void logged_out_users_cannot_get_the_top_items() throws Exception {
+    mockMvc
+        .perform(get("/api/UCSBDiningCommonsMenuItem/top?commons=ortega"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_the_top_items_of_a_commons() throws Exception {
+    // arrange
+
+    TopMenuItem tacos = new TopMenuItem(1, "ortega", "Grill", "Tacos", 2, 9);
+    when(menuItemLeaderboard.top("ortega", null, 10)).thenReturn(List.of(tacos));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/UCSBDiningCommonsMenuItem/top?commons=ortega"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+            .andReturn();
+
+    // assert
+    verify(menuItemLeaderboard, times(1)).top("ortega", null, 10);
+    verifyNoInteractions(tableVersionRepository);
+    assertEquals(
+        mapper.writeValueAsString(List.of(tacos)), response.getResponse().getContentAsString());
+    JsonNode json = mapper.readTree(response.getResponse().getContentAsString()).get(0);
+    assertEquals(4.5, json.get("averageStars").asDouble());
+    assertEquals("ortega", json.get("dining_commons_code").asText());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_the_top_items_of_a_station() throws Exception {
+    mockMvc
+        .perform(get("/api/UCSBDiningCommonsMenuItem/top?commons=ortega&station=Grill&n=3"))
+        .andExpect(status().isOk());
+
+    verify(menuItemLeaderboard, times(1)).top("ortega", "Grill", 3);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void n_is_kept_between_1_and_the_maximum() throws Exception {
+    mockMvc
+        .perform(get("/api/UCSBDiningCommonsMenuItem/top?commons=ortega&n=0"))
+        .andExpect(status().isOk());
+    mockMvc
+        .perform(get("/api/UCSBDiningCommonsMenuItem/top?commons=ortega&n=5000"))
+        .andExpect(status().isOk());
+
+    verify(menuItemLeaderboard, times(1)).top("ortega", null, 1);
+    verify(menuItemLeaderboard, times(1))
+        .top("ortega", null, MenuItemLeaderboardController.MAX_TOP);
+  }
+}
@@ -1,40 +1,61 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboard;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = MenuItemReviewsController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, MenuItemReviewService.class})
 public class MenuItemReviewsControllerTests extends ControllerTestCase {
 
   @MockBean MenuItemReviewRepository menuItemReviewRepository;
 
+  @MockBean MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @MockBean MenuItemLeaderboard menuItemLeaderboard;
+
   @MockBean UserRepository userRepository;
 
   // add your tests here
@@ -97,6 +118,39 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/menuitemreviews/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_export_all_menuitemreviews() throws Exception {
+
+    // arrange
+    MenuItemReview menuItemReview1 =
+        MenuItemReview.builder()
+            .itemId(1)
+            .reviewerEmail("jaydenli@ucsb.edu")
+            .stars(5)
+            .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .comments("Great food!")
+            .build();
+
+    when(menuItemReviewRepository.streamAllBy()).thenReturn(Stream.of(menuItemReview1));
+
+    // act
+    MvcResult response =
+        performAsync(get("/api/menuitemreviews/export")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(menuItemReviewRepository, never()).findAll();
+    String expectedJson = mapper.writeValueAsString(List.of(menuItemReview1));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_menuitemreview() throws Exception {
@@ -198,20 +252,11 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_menuitemreview() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
     LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-    MenuItemReview menuItemReviewOrig =
-        MenuItemReview.builder()
-            .itemId(1)
-            .reviewerEmail("jaydenli@ucsb.edu")
-            .stars(5)
-            .dateReviewed(ldt1)
-            .comments("Great!")
-            .build();
-
     MenuItemReview menuItemReviewEdited =
         MenuItemReview.builder()
+            .id(67L)
             .itemId(2)
             .reviewerEmail("tvn@ucsb.edu")
             .stars(1)
@@ -221,7 +266,11 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(menuItemReviewEdited);
 
-    when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(menuItemReviewOrig));
+    when(menuItemReviewRepository.findForUpdateById(67L))
+        .thenReturn(Optional.of(MenuItemReview.builder().id(67L).itemId(2).stars(4).build()));
+    when(menuItemReviewRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(menuItemReviewRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
+    when(menuItemReviewStatsRepository.add(any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -236,10 +285,19 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(menuItemReviewRepository, times(1)).findById(67L);
-    verify(menuItemReviewRepository, times(1)).save(menuItemReviewEdited);
+    menuItemReviewEdited.setVersion(3L);
+    verify(menuItemReviewRepository, times(1))
+        .updateById(eq(67L), eq(2L), eq(menuItemReviewEdited));
+    verify(menuItemReviewStatsRepository, times(1))
+        .add(
+            MenuItemReviewStats.builder()
+                .itemId(2)
+                .starsTotal(-3)
+                .oneStar(1)
+                .fourStars(-1)
+                .build());
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(menuItemReviewEdited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -260,7 +318,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(menuItemReviewEdited);
 
-    when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(menuItemReviewRepository.findForUpdateById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -275,7 +333,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(menuItemReviewRepository, times(1)).findById(67L);
+    verify(menuItemReviewRepository, never()).updateById(eq(67L), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 67 not found", json.get("message"));
   }
@@ -285,18 +343,10 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
   public void admin_can_delete_a_menuitemreview() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-    MenuItemReview menuItemReview =
-        MenuItemReview.builder()
-            .itemId(1)
-            .reviewerEmail("jaydenli@ucsb.edu")
-            .stars(5)
-            .dateReviewed(ldt1)
-            .comments("Great!")
-            .build();
-
-    when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.of(menuItemReview));
+    when(menuItemReviewRepository.findForUpdateById(15L))
+        .thenReturn(Optional.of(MenuItemReview.builder().id(15L).itemId(3).stars(5).build()));
+    when(menuItemReviewRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
+    when(menuItemReviewStatsRepository.add(any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -306,8 +356,15 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(menuItemReviewRepository, times(1)).findById(15L);
-    verify(menuItemReviewRepository, times(1)).delete(eq(menuItemReview));
+    verify(menuItemReviewRepository, times(1)).deleteRowById(15L, null);
+    verify(menuItemReviewStatsRepository, times(1))
+        .add(
+            MenuItemReviewStats.builder()
+                .itemId(3)
+                .reviewCount(-1)
+                .starsTotal(-5)
+                .fiveStars(-1)
+                .build());
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 15 deleted", json.get("message"));
@@ -319,7 +376,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(menuItemReviewRepository.findForUpdateById(15L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -329,8 +386,302 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(menuItemReviewRepository, times(1)).findById(15L);
+    verify(menuItemReviewRepository, never()).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 15 not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/menuitemreviews/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    MenuItemReview menuItemReview1 = MenuItemReview.builder().id(1L).build();
+    MenuItemReview menuItemReview2 = MenuItemReview.builder().id(2L).build();
+    MenuItemReview menuItemReview3 = MenuItemReview.builder().id(3L).build();
+    when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(List.of(menuItemReview1, menuItemReview2, menuItemReview3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of("items", List.of(menuItemReview1, menuItemReview2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    MenuItemReview menuItemReview3 = MenuItemReview.builder().id(3L).build();
+    when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(menuItemReview3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/all?after=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(menuItemReview3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/menuitemreviews/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/menuitemreviews/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/menuitemreviews/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    MenuItemReview incoming1 = MenuItemReview.builder().id(7L).comments("First").build();
+    MenuItemReview incoming2 = MenuItemReview.builder().comments("Second").build();
+    MenuItemReview saved1 = MenuItemReview.builder().id(1L).comments("First").build();
+    MenuItemReview saved2 = MenuItemReview.builder().id(2L).comments("Second").build();
+    when(menuItemReviewRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/menuitemreviews/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<MenuItemReview>> saved = ArgumentCaptor.forClass(List.class);
+    verify(menuItemReviewRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            MenuItemReview.builder().id(0L).comments("First").build(),
+            MenuItemReview.builder().id(0L).comments("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    MenuItemReview existing = MenuItemReview.builder().id(1L).comments("Old").build();
+    MenuItemReview incoming1 = MenuItemReview.builder().id(1L).comments("New").build();
+    MenuItemReview incoming2 = MenuItemReview.builder().id(2L).comments("Missing").build();
+    when(menuItemReviewRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/menuitemreviews/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(menuItemReviewRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    MenuItemReview existing = MenuItemReview.builder().id(1L).comments("Doomed").build();
+    when(menuItemReviewRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/menuitemreviews/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_menuitemreview_at_the_version_it_read() throws Exception {
+    // arrange
+
+    MenuItemReview edited =
+        MenuItemReview.builder().id(67L).itemId(7L).stars(3).version(3L).build();
+
+    when(menuItemReviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(edited));
+    when(menuItemReviewRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/menuitemreviews?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_menuitemreview() throws Exception {
+    // arrange
+
+    when(menuItemReviewRepository.findForUpdateById(67L))
+        .thenReturn(Optional.of(MenuItemReview.builder().id(67L).itemId(7L).stars(5).build()));
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/menuitemreviews?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"stars\": 5}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE menuitemreviews e SET e.stars = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", 5);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("MenuItemReview with id 67 updated", json.get("message"));
+  }
+
+  // Tests for GET /api/menuitemreviews/stats
+
+  @Test
+  public void logged_out_users_cannot_get_stats() throws Exception {
+    mockMvc.perform(get("/api/menuitemreviews/stats?itemId=7")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_the_stats_of_an_item() throws Exception {
+    // arrange
+
+    MenuItemReviewStats stats =
+        MenuItemReviewStats.builder()
+            .itemId(7)
+            .reviewCount(3)
+            .starsTotal(10)
+            .threeStars(2)
+            .fourStars(1)
+            .build();
+    when(menuItemReviewStatsRepository.findById(7L)).thenReturn(Optional.of(stats));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/stats?itemId=7"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewStatsRepository, times(1)).findById(7L);
+    verify(menuItemReviewRepository, never()).findAll();
+    assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+    assertEquals(10.0 / 3, responseToJson(response).get("averageStars"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void an_item_with_no_reviews_has_zero_stats() throws Exception {
+    // arrange
+
+    when(menuItemReviewStatsRepository.findById(8L)).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/stats?itemId=8"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(8, json.get("itemId"));
+    assertEquals(0, json.get("reviewCount"));
+    assertEquals(null, json.get("averageStars"));
+  }
 }
@@ -2,32 +2,43 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -262,23 +273,12 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_edit_an_existing_recommendationrequest() throws Exception {
     // arrange
-    LocalDateTime dateRequested1 = LocalDateTime.parse("2025-10-28T10:00:00");
-    LocalDateTime dateNeeded1 = LocalDateTime.parse("2025-11-01T10:00:00");
     LocalDateTime dateRequested2 = LocalDateTime.parse("2025-10-29T11:00:00");
     LocalDateTime dateNeeded2 = LocalDateTime.parse("2025-11-05T12:00:00");
 
-    RecommendationRequest recommendationRequestOrig =
-        RecommendationRequest.builder()
-            .requesterEmail("student1@ucsb.edu")
-            .professorEmail("prof1@ucsb.edu")
-            .explanation("Need recommendation for internship")
-            .dateRequested(dateRequested1)
-            .dateNeeded(dateNeeded1)
-            .done(false)
-            .build();
-
     RecommendationRequest recommendationRequestEdited =
         RecommendationRequest.builder()
+            .id(67L)
             .requesterEmail("student2@ucsb.edu")
             .professorEmail("prof2@ucsb.edu")
             .explanation("Need recommendation for graduate school")
@@ -289,8 +289,8 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(recommendationRequestEdited);
 
-    when(recommendationRequestRepository.findById(eq(67L)))
-        .thenReturn(Optional.of(recommendationRequestOrig));
+    when(recommendationRequestRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(recommendationRequestRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -305,11 +305,11 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findById(67L);
+    recommendationRequestEdited.setVersion(3L);
     verify(recommendationRequestRepository, times(1))
-        .save(argThat(saved -> saved.getDone() == true));
+        .updateById(eq(67L), eq(2L), argThat(saved -> saved.getDone() == true));
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(recommendationRequestEdited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -331,7 +331,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(recommendationRequestEdited);
 
-    when(recommendationRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(recommendationRequestRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -346,7 +346,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findById(67L);
+    verify(recommendationRequestRepository, never()).updateById(eq(67L), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 67 not found", json.get("message"));
   }
@@ -358,18 +358,9 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     LocalDateTime dateRequested = LocalDateTime.parse("2025-10-28T10:00:00");
     LocalDateTime dateNeeded = LocalDateTime.parse("2025-11-01T10:00:00");
 
-    RecommendationRequest recommendationRequestOrig =
-        RecommendationRequest.builder()
-            .requesterEmail("student1@ucsb.edu")
-            .professorEmail("prof1@ucsb.edu")
-            .explanation("Need recommendation for internship")
-            .dateRequested(dateRequested)
-            .dateNeeded(dateNeeded)
-            .done(true) // Starting as TRUE
-            .build();
-
     RecommendationRequest recommendationRequestEdited =
         RecommendationRequest.builder()
+            .id(67L)
             .requesterEmail("student1@ucsb.edu")
             .professorEmail("prof1@ucsb.edu")
             .explanation("Need recommendation for internship")
@@ -380,8 +371,8 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(recommendationRequestEdited);
 
-    when(recommendationRequestRepository.findById(eq(67L)))
-        .thenReturn(Optional.of(recommendationRequestOrig));
+    when(recommendationRequestRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(recommendationRequestRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -396,11 +387,11 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findById(67L);
+    recommendationRequestEdited.setVersion(3L);
     verify(recommendationRequestRepository, times(1))
-        .save(argThat(saved -> saved.getDone() == false));
+        .updateById(eq(67L), eq(2L), argThat(saved -> saved.getDone() == false));
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(recommendationRequestEdited), responseString);
   }
 
   @Test
@@ -418,21 +409,8 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_delete_a_recommendation_request() throws Exception {
     // arrange
-    LocalDateTime dateRequested = LocalDateTime.parse("2025-10-28T10:00:00");
-    LocalDateTime dateNeeded = LocalDateTime.parse("2025-11-01T10:00:00");
 
-    RecommendationRequest recommendationRequest =
-        RecommendationRequest.builder()
-            .requesterEmail("student1@ucsb.edu")
-            .professorEmail("prof1@ucsb.edu")
-            .explanation("Need recommendation for internship")
-            .dateRequested(dateRequested)
-            .dateNeeded(dateNeeded)
-            .done(false)
-            .build();
-
-    when(recommendationRequestRepository.findById(eq(15L)))
-        .thenReturn(Optional.of(recommendationRequest));
+    when(recommendationRequestRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -442,8 +420,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findById(15L);
-    verify(recommendationRequestRepository, times(1)).delete(any());
+    verify(recommendationRequestRepository, times(1)).deleteRowById(15L, null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
@@ -455,7 +432,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
       admin_tries_to_delete_non_existant_recommendation_request_and_gets_right_error_message()
           throws Exception {
     // arrange
-    when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(recommendationRequestRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -465,8 +442,260 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findById(15L);
+    verify(recommendationRequestRepository, times(1)).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/recommendationrequest/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    RecommendationRequest recommendationRequest1 = RecommendationRequest.builder().id(1L).build();
+    RecommendationRequest recommendationRequest2 = RecommendationRequest.builder().id(2L).build();
+    RecommendationRequest recommendationRequest3 = RecommendationRequest.builder().id(3L).build();
+    when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(
+            Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(
+            List.of(recommendationRequest1, recommendationRequest2, recommendationRequest3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recommendationrequest/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of("items", List.of(recommendationRequest1, recommendationRequest2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    RecommendationRequest recommendationRequest3 = RecommendationRequest.builder().id(3L).build();
+    when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(recommendationRequest3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recommendationrequest/all?after=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":"
+            + mapper.writeValueAsString(List.of(recommendationRequest3))
+            + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/recommendationrequest/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/recommendationrequest/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/recommendationrequest/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    RecommendationRequest incoming1 =
+        RecommendationRequest.builder().id(7L).explanation("First").build();
+    RecommendationRequest incoming2 = RecommendationRequest.builder().explanation("Second").build();
+    RecommendationRequest saved1 =
+        RecommendationRequest.builder().id(1L).explanation("First").build();
+    RecommendationRequest saved2 =
+        RecommendationRequest.builder().id(2L).explanation("Second").build();
+    when(recommendationRequestRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/recommendationrequest/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<RecommendationRequest>> saved = ArgumentCaptor.forClass(List.class);
+    verify(recommendationRequestRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            RecommendationRequest.builder().id(0L).explanation("First").build(),
+            RecommendationRequest.builder().id(0L).explanation("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    RecommendationRequest existing =
+        RecommendationRequest.builder().id(1L).explanation("Old").build();
+    RecommendationRequest incoming1 =
+        RecommendationRequest.builder().id(1L).explanation("New").build();
+    RecommendationRequest incoming2 =
+        RecommendationRequest.builder().id(2L).explanation("Missing").build();
+    when(recommendationRequestRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/recommendationrequest/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(recommendationRequestRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    RecommendationRequest existing =
+        RecommendationRequest.builder().id(1L).explanation("Doomed").build();
+    when(recommendationRequestRepository.findAllById(List.of(1L, 2L, 1L)))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/recommendationrequest/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationRequestRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_recommendationrequest_at_the_version_it_read() throws Exception {
+    // arrange
+
+    RecommendationRequest edited =
+        RecommendationRequest.builder()
+            .id(67L)
+            .requesterEmail("student@ucsb.edu")
+            .done(false)
+            .version(3L)
+            .build();
+
+    when(recommendationRequestRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/recommendationrequest?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationRequestRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_recommendationrequest() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/recommendationrequest?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"done\": true}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE recommendationrequest e SET e.done = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", true);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("RecommendationRequest with id 67 updated", json.get("message"));
+  }
 }
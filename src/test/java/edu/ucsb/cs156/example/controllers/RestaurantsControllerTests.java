@@ -1,31 +1,44 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -176,9 +189,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
   public void admin_can_delete_a_restaurant() throws Exception {
     // arrange
 
-    Restaurant restaurant = Restaurant.builder().name("Taco Bell").description("Mexican").build();
-
-    when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.of(restaurant));
+    when(restaurantRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -188,8 +199,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(restaurantRepository, times(1)).findById(15L);
-    verify(restaurantRepository, times(1)).delete(any());
+    verify(restaurantRepository, times(1)).deleteRowById(15L, null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -201,7 +211,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(restaurantRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -211,7 +221,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(restaurantRepository, times(1)).findById(15L);
+    verify(restaurantRepository, times(1)).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 15 not found", json.get("message"));
   }
@@ -221,15 +231,13 @@ public class RestaurantsControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_restaurant() throws Exception {
     // arrange
 
-    Restaurant restaurantOrig =
-        Restaurant.builder().id(67L).name("Chipotle").description("Mexican").build();
-
     Restaurant restaurantEdited =
         Restaurant.builder().id(67L).name("Taco Bell").description("American").build();
 
     String requestBody = mapper.writeValueAsString(restaurantEdited);
 
-    when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(restaurantOrig));
+    when(restaurantRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(restaurantRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -244,11 +252,11 @@ public class RestaurantsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(restaurantRepository, times(1)).findById(67L);
+    restaurantEdited.setVersion(3L);
     verify(restaurantRepository, times(1))
-        .save(restaurantEdited); // should be saved with correct user
+        .updateById(eq(67L), eq(2L), eq(restaurantEdited)); // should be saved with correct user
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(restaurantEdited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -261,7 +269,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(editedRestaurant);
 
-    when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(restaurantRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -276,8 +284,546 @@ public class RestaurantsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(restaurantRepository, times(1)).findById(67L);
+    verify(restaurantRepository, never()).updateById(eq(67L), any(), any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Restaurant with id 67 not found", json.get("message"));
+  }
+
+  // Tests for keyset pagination of GET /api/restaurants/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    Restaurant restaurant1 = Restaurant.builder().id(1L).build();
+    Restaurant restaurant2 = Restaurant.builder().id(2L).build();
+    Restaurant restaurant3 = Restaurant.builder().id(3L).build();
+    when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(List.of(restaurant1, restaurant2, restaurant3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants/all?limit=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("items", List.of(restaurant1, restaurant2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    Restaurant restaurant3 = Restaurant.builder().id(3L).build();
+    when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(restaurant3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants/all?after=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(restaurant3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void page_size_is_kept_between_1_and_the_maximum() throws Exception {
+    // act
+    mockMvc.perform(get("/api/restaurants/all?limit=0")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/restaurants/all?limit=5000")).andExpect(status().isOk());
+
+    // assert
+    verify(restaurantRepository).findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(2));
+    verify(restaurantRepository).findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(1001));
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/restaurants/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/restaurants/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/restaurants/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    Restaurant incoming1 = Restaurant.builder().id(7L).name("First").build();
+    Restaurant incoming2 = Restaurant.builder().name("Second").build();
+    Restaurant saved1 = Restaurant.builder().id(1L).name("First").build();
+    Restaurant saved2 = Restaurant.builder().id(2L).name("Second").build();
+    when(restaurantRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/restaurants/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Restaurant>> saved = ArgumentCaptor.forClass(List.class);
+    verify(restaurantRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            Restaurant.builder().id(0L).name("First").build(),
+            Restaurant.builder().id(0L).name("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    Restaurant existing = Restaurant.builder().id(1L).name("Old").build();
+    Restaurant incoming1 = Restaurant.builder().id(1L).name("New").build();
+    Restaurant incoming2 = Restaurant.builder().id(2L).name("Missing").build();
+    when(restaurantRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(restaurantRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    Restaurant existing = Restaurant.builder().id(1L).name("Doomed").build();
+    when(restaurantRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/restaurants/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for conditional GETs
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_by_id_returns_an_etag_from_the_table_version() throws Exception {
+    // arrange
+
+    Restaurant restaurant = Restaurant.builder().id(7L).name("Taco Bell").build();
+    when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.of(restaurant));
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(3).build()));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants?id=7")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    assertEquals("\"Restaurant-3\"", response.getResponse().getHeader("ETag"));
+    assertEquals("no-cache, private", response.getResponse().getHeader("Cache-Control"));
+    assertEquals(
+        mapper.writeValueAsString(restaurant), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_all_with_a_current_etag_is_not_modified_and_reads_no_rows() throws Exception {
+    // arrange
+
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(3).build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all").header("If-None-Match", "\"Restaurant-3\""))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+    // assert
+
+    assertEquals("\"Restaurant-3\"", response.getResponse().getHeader("ETag"));
+    assertEquals("", response.getResponse().getContentAsString());
+    verify(restaurantRepository, never()).findAll();
+  }
+
+  @Test
+  public void logged_out_users_with_a_current_etag_are_refused_not_told_it_is_current()
+      throws Exception {
+    // arrange
+
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(3).build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all").header("If-None-Match", "\"Restaurant-3\""))
+            .andExpect(status().isForbidden())
+            .andReturn();
+
+    // assert
+
+    assertNull(response.getResponse().getHeader("ETag"));
+    verify(tableVersionRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_by_id_with_a_current_etag_is_not_modified() throws Exception {
+    // arrange
+
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(3).build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants?id=7").header("If-None-Match", "\"Restaurant-3\""))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+    // assert
+
+    assertEquals("", response.getResponse().getContentAsString());
+    verify(restaurantRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_all_with_a_stale_etag_returns_the_rows() throws Exception {
+    // arrange
+
+    when(restaurantRepository.findAll()).thenReturn(List.of());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all").header("If-None-Match", "\"Restaurant-3\""))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    assertEquals("\"Restaurant-0\"", response.getResponse().getHeader("ETag"));
+    assertEquals("[]", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_successful_write_bumps_the_table_version() throws Exception {
+    // arrange
+
+    when(restaurantRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(1);
+
+    // act
+    mockMvc
+        .perform(post("/api/restaurants/post?name=Chipotle&description=Mexican").with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+
+    verify(tableVersionRepository, times(1)).increment("Restaurant");
+    verify(tableVersionRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_failed_write_does_not_bump_the_table_version() throws Exception {
+    // arrange
+
+    when(restaurantRepository.findVersionById(67L)).thenReturn(Optional.empty());
+
+    // act
+    mockMvc
+        .perform(
+            put("/api/restaurants?id=67")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}")
+                .with(csrf()))
+        .andExpect(status().isNotFound());
+
+    // assert
+
+    verify(tableVersionRepository, never()).increment(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_restaurant_at_the_version_in_if_match() throws Exception {
+    // arrange
+
+    Restaurant edited =
+        Restaurant.builder().id(67L).name("Taco Bell").description("Mexican").build();
+
+    when(restaurantRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=67")
+                    .header("If-Match", "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    verify(restaurantRepository, never()).existsById(67L);
+    edited.setVersion(4L);
+    assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void edit_with_a_stale_if_match_is_precondition_failed() throws Exception {
+    // arrange
+
+    Restaurant edited = Restaurant.builder().name("Taco Bell").description("Mexican").build();
+
+    when(restaurantRepository.updateById(eq(67L), eq(3L), any())).thenReturn(0);
+    when(restaurantRepository.existsById(67L)).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=67")
+                    .header("If-Match", "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("PreconditionFailedException", json.get("type"));
+    assertEquals("Restaurant with id 67 is no longer at version 3", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void edit_with_a_stale_version_in_the_body_is_a_conflict() throws Exception {
+    // arrange
+
+    Restaurant edited =
+        Restaurant.builder().name("Taco Bell").description("Mexican").version(3L).build();
+
+    when(restaurantRepository.updateById(eq(67L), eq(3L), any())).thenReturn(0);
+    when(restaurantRepository.existsById(67L)).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("VersionConflictException", json.get("type"));
+    assertEquals("Restaurant with id 67 is no longer at version 3", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void edit_with_a_malformed_if_match_is_a_bad_request() throws Exception {
+    Restaurant edited = Restaurant.builder().name("Taco Bell").description("Mexican").build();
+
+    mockMvc
+        .perform(
+            put("/api/restaurants?id=67")
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(edited))
+                .with(csrf()))
+        .andExpect(status().isBadRequest());
+
+    verify(restaurantRepository, never()).updateById(eq(67L), any(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void delete_with_a_stale_if_match_is_precondition_failed() throws Exception {
+    // arrange
+
+    when(restaurantRepository.deleteRowById(eq(15L), eq(2L))).thenReturn(0);
+    when(restaurantRepository.existsById(15L)).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/restaurants?id=15").header("If-Match", "\"2\"").with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).deleteRowById(15L, 2L);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Restaurant with id 15 is no longer at version 2", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_patch() throws Exception {
+    mockMvc
+        .perform(
+            patch("/api/restaurants?id=67")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Taco Bell\"}")
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_restaurant_at_the_version_in_if_match() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/restaurants?id=67")
+                    .header("If-Match", "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"description\": \"Mexican\"}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE restaurants e SET e.description = :v0, e.version = e.version + 1 "
+                + "WHERE e.id = :key AND e.version = :version");
+    verify(query, times(1)).setParameter("key", 67L);
+    verify(query, times(1)).setParameter("v0", "Mexican");
+    verify(query, times(1)).setParameter("version", 3L);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Restaurant with id 67 updated", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_patch_a_restaurant_that_does_not_exist() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(0);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/restaurants?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"description\": \"Mexican\"}")
+                    .with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void patch_of_a_field_that_cannot_be_changed_is_a_bad_request() throws Exception {
+    mockMvc
+        .perform(
+            patch("/api/restaurants?id=67")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": 68}")
+                .with(csrf()))
+        .andExpect(status().isBadRequest());
+
+    verify(entityManager, never()).createQuery(anyString());
+  }
 }
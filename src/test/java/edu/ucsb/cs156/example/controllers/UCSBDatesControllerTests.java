@@ -2,31 +2,42 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -204,16 +215,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
   public void admin_can_delete_a_date() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-    UCSBDate ucsbDate1 =
-        UCSBDate.builder()
-            .name("firstDayOfClasses")
-            .quarterYYYYQ("20222")
-            .localDateTime(ldt1)
-            .build();
-
-    when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+    when(ucsbDateRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -223,8 +225,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDateRepository, times(1)).findById(15L);
-    verify(ucsbDateRepository, times(1)).delete(any());
+    verify(ucsbDateRepository, times(1)).deleteRowById(15L, null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -236,7 +237,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(ucsbDateRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -246,7 +247,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDateRepository, times(1)).findById(15L);
+    verify(ucsbDateRepository, times(1)).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 15 not found", json.get("message"));
   }
@@ -256,18 +257,11 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_ucsbdate() throws Exception {
     // arrange
 
-    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
     LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-    UCSBDate ucsbDateOrig =
-        UCSBDate.builder()
-            .name("firstDayOfClasses")
-            .quarterYYYYQ("20222")
-            .localDateTime(ldt1)
-            .build();
-
     UCSBDate ucsbDateEdited =
         UCSBDate.builder()
+            .id(67L)
             .name("firstDayOfFestivus")
             .quarterYYYYQ("20232")
             .localDateTime(ldt2)
@@ -275,7 +269,8 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
-    when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+    when(ucsbDateRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(ucsbDateRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -290,10 +285,49 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDateRepository, times(1)).findById(67L);
-    verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+    ucsbDateEdited.setVersion(3L);
+    verify(ucsbDateRepository, times(1))
+        .updateById(eq(67L), eq(2L), eq(ucsbDateEdited)); // should be saved with correct user
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(ucsbDateEdited), responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void edit_racing_another_write_is_applied_at_the_newer_version() throws Exception {
+    // arrange
+
+    UCSBDate ucsbDateEdited =
+        UCSBDate.builder()
+            .id(67L)
+            .name("firstDayOfFestivus")
+            .quarterYYYYQ("20232")
+            .localDateTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+            .build();
+
+    when(ucsbDateRepository.findVersionById(67L))
+        .thenReturn(Optional.of(2L))
+        .thenReturn(Optional.of(3L));
+    when(ucsbDateRepository.updateById(eq(67L), eq(2L), any())).thenReturn(0);
+    when(ucsbDateRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdates?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(ucsbDateEdited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, times(2)).findVersionById(67L);
+    verify(ucsbDateRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    ucsbDateEdited.setVersion(4L);
+    assertEquals(
+        mapper.writeValueAsString(ucsbDateEdited), response.getResponse().getContentAsString());
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -312,7 +346,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-    when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(ucsbDateRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -327,8 +361,240 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDateRepository, times(1)).findById(67L);
+    verify(ucsbDateRepository, never()).updateById(eq(67L), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 67 not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/ucsbdates/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    UCSBDate uCSBDate1 = UCSBDate.builder().id(1L).build();
+    UCSBDate uCSBDate2 = UCSBDate.builder().id(2L).build();
+    UCSBDate uCSBDate3 = UCSBDate.builder().id(3L).build();
+    when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(List.of(uCSBDate1, uCSBDate2, uCSBDate3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/ucsbdates/all?limit=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("items", List.of(uCSBDate1, uCSBDate2), "next", 2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    UCSBDate uCSBDate3 = UCSBDate.builder().id(3L).build();
+    when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(uCSBDate3));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/ucsbdates/all?after=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(uCSBDate3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/ucsbdates/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/ucsbdates/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/ucsbdates/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    UCSBDate incoming1 = UCSBDate.builder().id(7L).name("First").build();
+    UCSBDate incoming2 = UCSBDate.builder().name("Second").build();
+    UCSBDate saved1 = UCSBDate.builder().id(1L).name("First").build();
+    UCSBDate saved2 = UCSBDate.builder().id(2L).name("Second").build();
+    when(ucsbDateRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdates/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UCSBDate>> saved = ArgumentCaptor.forClass(List.class);
+    verify(ucsbDateRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            UCSBDate.builder().id(0L).name("First").build(),
+            UCSBDate.builder().id(0L).name("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    UCSBDate existing = UCSBDate.builder().id(1L).name("Old").build();
+    UCSBDate incoming1 = UCSBDate.builder().id(1L).name("New").build();
+    UCSBDate incoming2 = UCSBDate.builder().id(2L).name("Missing").build();
+    when(ucsbDateRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdates/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(ucsbDateRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    UCSBDate existing = UCSBDate.builder().id(1L).name("Doomed").build();
+    when(ucsbDateRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/ucsbdates/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_ucsbdate_at_the_version_it_read() throws Exception {
+    // arrange
+
+    UCSBDate edited =
+        UCSBDate.builder()
+            .id(67L)
+            .quarterYYYYQ("20221")
+            .name("firstDayOfClasses")
+            .version(3L)
+            .build();
+
+    when(ucsbDateRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdates?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_ucsbdate() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/ucsbdates?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"lastDayOfClasses\"}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE ucsbdates e SET e.name = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", "lastDayOfClasses");
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("UCSBDate with id 67 updated", json.get("message"));
+  }
 }
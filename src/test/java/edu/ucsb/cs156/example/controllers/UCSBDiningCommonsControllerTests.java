@@ -2,40 +2,56 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ReferenceDataCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, ReferenceDataCache.class})
 public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
   @MockBean UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+  // ReferenceDataCache reads both reference tables
+  @MockBean UCSBOrganizationRepository ucsbOrganizationRepository;
+
   @MockBean UserRepository userRepository;
 
   // Authorization tests for /api/ucsbdiningcommons/admin/all
@@ -214,6 +230,31 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void posting_a_commons_whose_code_is_taken_is_a_conflict() throws Exception {
+    // arrange
+
+    when(ucsbDiningCommonsRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("duplicate key value"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdiningcommons/post?name=Ortega&code=ortega&hasSackMeal=true&hasTakeOutMeal=true&hasDiningCam=true&latitude=34.410987&longitude=-119.84709")
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("DataIntegrityViolationException", json.get("type"));
+    assertEquals(
+        "The write conflicts with an existing row, e.g. its key is already taken",
+        json.get("message"));
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_delete_a_date() throws Exception {
@@ -230,7 +271,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .longitude(-119.867427)
             .build();
 
-    when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+    when(ucsbDiningCommonsRepository.deleteRowByCode(eq("portola"), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -240,8 +281,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-    verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+    verify(ucsbDiningCommonsRepository, times(1)).deleteRowByCode("portola", null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -253,7 +293,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
       throws Exception {
     // arrange
 
-    when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+    when(ucsbDiningCommonsRepository.deleteRowByCode(eq("munger-hall"), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -263,7 +303,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+    verify(ucsbDiningCommonsRepository, times(1)).deleteRowByCode("munger-hall", null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
   }
@@ -273,17 +313,6 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
   public void admin_can_edit_an_existing_commons() throws Exception {
     // arrange
 
-    UCSBDiningCommons carrilloOrig =
-        UCSBDiningCommons.builder()
-            .name("Carrillo")
-            .code("carrillo")
-            .hasSackMeal(false)
-            .hasTakeOutMeal(false)
-            .hasDiningCam(true)
-            .latitude(34.409953)
-            .longitude(-119.85277)
-            .build();
-
     UCSBDiningCommons carrilloEdited =
         UCSBDiningCommons.builder()
             .name("Carrillo Dining Hall")
@@ -297,8 +326,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-    when(ucsbDiningCommonsRepository.findById(eq("carrillo")))
-        .thenReturn(Optional.of(carrilloOrig));
+    when(ucsbDiningCommonsRepository.findVersionByCode("carrillo")).thenReturn(Optional.of(2L));
+    when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -313,11 +342,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+    carrilloEdited.setVersion(3L);
     verify(ucsbDiningCommonsRepository, times(1))
-        .save(carrilloEdited); // should be saved with updated info
+        .updateByCode(
+            eq("carrillo"), eq(2L), eq(carrilloEdited)); // should be saved with updated info
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(carrilloEdited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -338,7 +368,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(editedCommons);
 
-    when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+    when(ucsbDiningCommonsRepository.findVersionByCode("munger-hall")).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -353,8 +383,240 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+    verify(ucsbDiningCommonsRepository, never()).updateByCode(eq("munger-hall"), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/ucsbdiningcommons/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    UCSBDiningCommons uCSBDiningCommons1 = UCSBDiningCommons.builder().code("a").build();
+    UCSBDiningCommons uCSBDiningCommons2 = UCSBDiningCommons.builder().code("b").build();
+    UCSBDiningCommons uCSBDiningCommons3 = UCSBDiningCommons.builder().code("c").build();
+    when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc("", Limit.of(3)))
+        .thenReturn(List.of(uCSBDiningCommons1, uCSBDiningCommons2, uCSBDiningCommons3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommons/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of("items", List.of(uCSBDiningCommons1, uCSBDiningCommons2), "next", "b"));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    UCSBDiningCommons uCSBDiningCommons3 = UCSBDiningCommons.builder().code("c").build();
+    when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc("b", Limit.of(101)))
+        .thenReturn(List.of(uCSBDiningCommons3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommons/all?after=b"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(uCSBDiningCommons3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/ucsbdiningcommons/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/ucsbdiningcommons/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/ucsbdiningcommons/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommons incoming1 = UCSBDiningCommons.builder().code("one").name("First").build();
+    UCSBDiningCommons incoming2 = UCSBDiningCommons.builder().code("two").name("Second").build();
+    when(ucsbDiningCommonsRepository.saveAll(any())).thenReturn(List.of(incoming1, incoming2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdiningcommons/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsRepository, times(1)).saveAll(List.of(incoming1, incoming2));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommons existing = UCSBDiningCommons.builder().code("one").name("Old").build();
+    UCSBDiningCommons incoming1 = UCSBDiningCommons.builder().code("one").name("New").build();
+    UCSBDiningCommons incoming2 = UCSBDiningCommons.builder().code("two").name("Missing").build();
+    when(ucsbDiningCommonsRepository.findAllById(List.of("one", "two")))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdiningcommons/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(ucsbDiningCommonsRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommons existing = UCSBDiningCommons.builder().code("one").name("Doomed").build();
+    when(ucsbDiningCommonsRepository.findAllById(List.of("one", "two", "one")))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/ucsbdiningcommons/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[\"one\",\"two\",\"one\"]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, "one", BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_commons_at_the_version_it_read() throws Exception {
+    // arrange
+
+    UCSBDiningCommons edited =
+        UCSBDiningCommons.builder()
+            .code("carrillo")
+            .name("Carrillo")
+            .hasDiningCam(true)
+            .version(3L)
+            .build();
+
+    when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdiningcommons?code=carrillo")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsRepository, times(1)).updateByCode(eq("carrillo"), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_commons() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/ucsbdiningcommons?code=carrillo")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"hasDiningCam\": false}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE ucsbdiningcommons e SET e.hasDiningCam = :v0, e.version = e.version + 1 WHERE e.code = :key");
+    verify(query, times(1)).setParameter("v0", false);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("UCSBDiningCommons with id carrillo updated", json.get("message"));
+  }
 }
@@ -1,32 +1,53 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.errors.JobRejectedException;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJob;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJobFactory;
+import edu.ucsb.cs156.example.models.BatchItemResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -38,6 +59,10 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
   @MockBean UserRepository userRepository;
 
+  @MockBean JobService jobService;
+
+  @MockBean MenuItemImportJobFactory menuItemImportJobFactory;
+
   // Authorization tests for /api/UCSBDiningCommonsMenuItem/admin/all
 
   @Test
@@ -188,15 +213,9 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
   @Test
   public void admin_can_edit_an_existing_menu_item() throws Exception {
     // arrange
-    UCSBDiningCommonsMenuItem menu_item_Orig =
-        UCSBDiningCommonsMenuItem.builder()
-            .dining_commons_code("ortega")
-            .name("Pizza")
-            .station("Blue Plate")
-            .build();
-
     UCSBDiningCommonsMenuItem menu_item_Edited =
         UCSBDiningCommonsMenuItem.builder()
+            .id(67L)
             .dining_commons_code("carrillo")
             .name("pizza")
             .station("Blue Plate")
@@ -204,8 +223,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     String requestBody = mapper.writeValueAsString(menu_item_Edited);
 
-    when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L)))
-        .thenReturn(Optional.of(menu_item_Orig));
+    when(ucsbDiningCommonsMenuItemRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -220,11 +239,11 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
+    menu_item_Edited.setVersion(3L);
     verify(ucsbDiningCommonsMenuItemRepository, times(1))
-        .save(menu_item_Edited); // should be saved with correct user
+        .updateById(eq(67L), eq(2L), eq(menu_item_Edited)); // should be saved with correct user
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(menu_item_Edited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -240,7 +259,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     String requestBody = mapper.writeValueAsString(edited_menu_item);
 
-    when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.empty());
+    when(ucsbDiningCommonsMenuItemRepository.findVersionById(67L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -255,7 +274,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
+    verify(ucsbDiningCommonsMenuItemRepository, never()).updateById(eq(67L), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 67 not found", json.get("message"));
   }
@@ -264,15 +283,9 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
   @Test
   public void admin_can_edit_all_fields_of_existing_menu_item() throws Exception {
     // arrange
-    UCSBDiningCommonsMenuItem menu_item_Orig =
-        UCSBDiningCommonsMenuItem.builder()
-            .dining_commons_code("ortega")
-            .name("Pizza")
-            .station("Blue Plate")
-            .build();
-
     UCSBDiningCommonsMenuItem menu_item_Edited =
         UCSBDiningCommonsMenuItem.builder()
+            .id(67L)
             .dining_commons_code("carrillo") // changed
             .name("Pasta") // changed
             .station("Red Plate") // changed
@@ -280,8 +293,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     String requestBody = mapper.writeValueAsString(menu_item_Edited);
 
-    when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L)))
-        .thenReturn(Optional.of(menu_item_Orig));
+    when(ucsbDiningCommonsMenuItemRepository.findVersionById(67L)).thenReturn(Optional.of(2L));
+    when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), eq(2L), any())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -296,25 +309,18 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(menu_item_Edited);
+    menu_item_Edited.setVersion(3L);
+    verify(ucsbDiningCommonsMenuItemRepository, times(1))
+        .updateById(eq(67L), eq(2L), eq(menu_item_Edited));
     String responseString = response.getResponse().getContentAsString();
-    assertEquals(requestBody, responseString);
+    assertEquals(mapper.writeValueAsString(menu_item_Edited), responseString);
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_delete_a_menu_item() throws Exception {
     // arrange
-    UCSBDiningCommonsMenuItem menu_item_1 =
-        UCSBDiningCommonsMenuItem.builder()
-            .dining_commons_code("portola")
-            .name("sushi")
-            .station("South Plate")
-            .build();
-
-    when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L)))
-        .thenReturn(Optional.of(menu_item_1));
+    when(ucsbDiningCommonsMenuItemRepository.deleteRowById(eq(15L), isNull())).thenReturn(1);
 
     // act
     MvcResult response =
@@ -324,8 +330,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRowById(15L, null);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 15 deleted", json.get("message"));
@@ -336,7 +341,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
   public void admin_tries_to_delete_non_existant_menu_item_and_gets_right_error_message()
       throws Exception {
     // arrange
-    when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.empty());
+    when(ucsbDiningCommonsMenuItemRepository.deleteRowById(eq(15L), isNull())).thenReturn(0);
 
     // act
     MvcResult response =
@@ -346,8 +351,378 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
             .andReturn();
 
     // assert
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRowById(15L, null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
   }
+
+  // Tests for POST /api/UCSBDiningCommonsMenuItem/import
+
+  private static final String CSV =
+      "dining_commons_code,name,station\nortega,Mac-n-Cheese,East Plate\n";
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/UCSBDiningCommonsMenuItem/import")
+                .file(new MockMultipartFile("file", "menus.csv", "text/csv", CSV.getBytes()))
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_import_a_file_as_a_job() throws Exception {
+    // arrange
+    MenuItemImportJob importJob = MenuItemImportJob.builder().build();
+    Job job = Job.builder().id(5).status("running").build();
+    ArgumentCaptor<Path> upload = ArgumentCaptor.forClass(Path.class);
+    when(menuItemImportJobFactory.create(upload.capture(), eq(MenuItemImportJob.Format.CSV)))
+        .thenReturn(importJob);
+    when(jobService.runAsJob(importJob)).thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/UCSBDiningCommonsMenuItem/import")
+                    .file(new MockMultipartFile("file", "menus.csv", "text/csv", CSV.getBytes()))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+    assertEquals(CSV, Files.readString(upload.getValue()));
+    Files.delete(upload.getValue());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void format_parameter_overrides_file_name() throws Exception {
+    // arrange
+    MenuItemImportJob importJob = MenuItemImportJob.builder().build();
+    ArgumentCaptor<Path> upload = ArgumentCaptor.forClass(Path.class);
+    when(menuItemImportJobFactory.create(upload.capture(), eq(MenuItemImportJob.Format.NDJSON)))
+        .thenReturn(importJob);
+    when(jobService.runAsJob(importJob)).thenReturn(Job.builder().id(5).build());
+
+    // act
+    mockMvc
+        .perform(
+            multipart("/api/UCSBDiningCommonsMenuItem/import")
+                .file(new MockMultipartFile("file", "menus.txt", "text/plain", "{}".getBytes()))
+                .param("format", "ndjson")
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    assertEquals(true, upload.getValue().toString().endsWith(".ndjson"));
+    Files.delete(upload.getValue());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void unknown_format_is_a_bad_request() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/UCSBDiningCommonsMenuItem/import")
+                .file(new MockMultipartFile("file", "menus.xml", "text/xml", "<a/>".getBytes()))
+                .with(csrf()))
+        .andExpect(status().isBadRequest());
+
+    verify(menuItemImportJobFactory, never()).create(any(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void rejected_import_deletes_the_upload() throws Exception {
+    // arrange
+    MenuItemImportJob importJob = MenuItemImportJob.builder().build();
+    ArgumentCaptor<Path> upload = ArgumentCaptor.forClass(Path.class);
+    when(menuItemImportJobFactory.create(upload.capture(), eq(MenuItemImportJob.Format.CSV)))
+        .thenReturn(importJob);
+    when(jobService.runAsJob(importJob)).thenThrow(new JobRejectedException(5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/UCSBDiningCommonsMenuItem/import")
+                    .file(new MockMultipartFile("file", "menus.csv", "text/csv", CSV.getBytes()))
+                    .with(csrf()))
+            .andExpect(status().isServiceUnavailable())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobRejectedException", json.get("type"));
+    assertFalse(Files.exists(upload.getValue()));
+  }
+
+  // Tests for keyset pagination of GET /api/UCSBDiningCommonsMenuItem/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem1 =
+        UCSBDiningCommonsMenuItem.builder().id(1L).build();
+    UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem2 =
+        UCSBDiningCommonsMenuItem.builder().id(2L).build();
+    UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem3 =
+        UCSBDiningCommonsMenuItem.builder().id(3L).build();
+    when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(
+            Long.MIN_VALUE, Limit.of(3)))
+        .thenReturn(
+            List.of(
+                uCSBDiningCommonsMenuItem1,
+                uCSBDiningCommonsMenuItem2,
+                uCSBDiningCommonsMenuItem3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/UCSBDiningCommonsMenuItem/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of(
+                "items",
+                List.of(uCSBDiningCommonsMenuItem1, uCSBDiningCommonsMenuItem2),
+                "next",
+                2L));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem3 =
+        UCSBDiningCommonsMenuItem.builder().id(3L).build();
+    when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(101)))
+        .thenReturn(List.of(uCSBDiningCommonsMenuItem3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/UCSBDiningCommonsMenuItem/all?after=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":"
+            + mapper.writeValueAsString(List.of(uCSBDiningCommonsMenuItem3))
+            + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/UCSBDiningCommonsMenuItem/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/UCSBDiningCommonsMenuItem/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/UCSBDiningCommonsMenuItem/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommonsMenuItem incoming1 =
+        UCSBDiningCommonsMenuItem.builder().id(7L).name("First").build();
+    UCSBDiningCommonsMenuItem incoming2 =
+        UCSBDiningCommonsMenuItem.builder().name("Second").build();
+    UCSBDiningCommonsMenuItem saved1 =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("First").build();
+    UCSBDiningCommonsMenuItem saved2 =
+        UCSBDiningCommonsMenuItem.builder().id(2L).name("Second").build();
+    when(ucsbDiningCommonsMenuItemRepository.saveAll(any())).thenReturn(List.of(saved1, saved2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/UCSBDiningCommonsMenuItem/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UCSBDiningCommonsMenuItem>> saved = ArgumentCaptor.forClass(List.class);
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(saved.capture());
+    assertEquals(
+        List.of(
+            UCSBDiningCommonsMenuItem.builder().id(0L).name("First").build(),
+            UCSBDiningCommonsMenuItem.builder().id(0L).name("Second").build()),
+        saved.getValue());
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommonsMenuItem existing =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("Old").build();
+    UCSBDiningCommonsMenuItem incoming1 =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("New").build();
+    UCSBDiningCommonsMenuItem incoming2 =
+        UCSBDiningCommonsMenuItem.builder().id(2L).name("Missing").build();
+    when(ucsbDiningCommonsMenuItemRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/UCSBDiningCommonsMenuItem/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    UCSBDiningCommonsMenuItem existing =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("Doomed").build();
+    when(ucsbDiningCommonsMenuItemRepository.findAllById(List.of(1L, 2L, 1L)))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/UCSBDiningCommonsMenuItem/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,1]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, 1L, BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, 2L, BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, 1L, BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_menu_item_at_the_version_it_read() throws Exception {
+    // arrange
+
+    UCSBDiningCommonsMenuItem edited =
+        UCSBDiningCommonsMenuItem.builder()
+            .id(67L)
+            .name("Baked Pesto Pasta")
+            .station("Entrees")
+            .version(3L)
+            .build();
+
+    when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/UCSBDiningCommonsMenuItem?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateById(eq(67L), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_menu_item() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/UCSBDiningCommonsMenuItem?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"station\": \"Desserts\"}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE ucsbdiningcommonsmenuitem e SET e.station = :v0, e.version = e.version + 1 WHERE e.id = :key");
+    verify(query, times(1)).setParameter("v0", "Desserts");
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("UCSBDiningCommonsMenuItem with id 67 updated", json.get("message"));
+  }
 }
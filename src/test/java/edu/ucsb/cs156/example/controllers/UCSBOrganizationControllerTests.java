@@ -4,24 +4,35 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ReferenceDataCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
@@ -29,15 +40,20 @@ import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, ReferenceDataCache.class})
 public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
   @MockBean UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  // ReferenceDataCache reads both reference tables
+  @MockBean UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
   @MockBean UserRepository userRepository;
 
   @Test
@@ -62,6 +78,31 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     mockMvc.perform(post("/api/ucsborganizations/post")).andExpect(status().is(403));
   }
 
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void posting_an_organization_whose_code_is_taken_is_a_conflict() throws Exception {
+    // arrange
+
+    when(ucsbOrganizationRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("duplicate key value"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsborganizations/post?orgCode=ZPR&orgTranslationShort=ZETA&orgTranslation=ZETA%20PHI%20RHO&inactive=false")
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("DataIntegrityViolationException", json.get("type"));
+    assertEquals(
+        "The write conflicts with an existing row, e.g. its key is already taken",
+        json.get("message"));
+  }
+
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_user_can_get_all_organizations() throws Exception {
@@ -208,14 +249,6 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_edit_existing_organization() throws Exception {
-    UCSBOrganization existing =
-        UCSBOrganization.builder()
-            .orgCode("ZPR")
-            .orgTranslationShort("ZETA PHI RHO")
-            .orgTranslation("ZETA PHI RHO")
-            .inactive(false)
-            .build();
-
     UCSBOrganization edited =
         UCSBOrganization.builder()
             .orgCode("ZPR")
@@ -226,8 +259,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(edited);
 
-    when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(existing));
-    when(ucsbOrganizationRepository.save(any(UCSBOrganization.class))).thenReturn(edited);
+    when(ucsbOrganizationRepository.findVersionByOrgCode("ZPR")).thenReturn(Optional.of(2L));
+    when(ucsbOrganizationRepository.updateByOrgCode(eq("ZPR"), eq(2L), any())).thenReturn(1);
 
     MvcResult response =
         mockMvc
@@ -241,8 +274,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .andExpect(status().isOk())
             .andReturn();
 
-    verify(ucsbOrganizationRepository, times(1)).findById("ZPR");
-    verify(ucsbOrganizationRepository, times(1)).save(any(UCSBOrganization.class));
+    verify(ucsbOrganizationRepository, times(1))
+        .updateByOrgCode(eq("ZPR"), eq(2L), any(UCSBOrganization.class));
+    edited.setVersion(3L);
     String expectedJson = mapper.writeValueAsString(edited);
     assertEquals(expectedJson, response.getResponse().getContentAsString());
   }
@@ -260,7 +294,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(edited);
 
-    when(ucsbOrganizationRepository.findById(eq("NOPE"))).thenReturn(Optional.empty());
+    when(ucsbOrganizationRepository.findVersionByOrgCode("NOPE")).thenReturn(Optional.empty());
 
     MvcResult response =
         mockMvc
@@ -274,7 +308,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .andExpect(status().isNotFound())
             .andReturn();
 
-    verify(ucsbOrganizationRepository, times(1)).findById("NOPE");
+    verify(ucsbOrganizationRepository, never()).updateByOrgCode(eq("NOPE"), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("UCSBOrganization with id NOPE not found", json.get("message"));
@@ -283,14 +317,6 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_edit_existing_org_and_fields_are_updated() throws Exception {
-    UCSBOrganization original =
-        UCSBOrganization.builder()
-            .orgCode("ZPR")
-            .orgTranslationShort("ZETA PHI RHO")
-            .orgTranslation("ZETA PHI RHO")
-            .inactive(false)
-            .build();
-
     UCSBOrganization edited =
         UCSBOrganization.builder()
             .orgCode("ZPR")
@@ -301,9 +327,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(edited);
 
-    when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(original));
-    when(ucsbOrganizationRepository.save(any(UCSBOrganization.class)))
-        .thenAnswer(inv -> inv.getArgument(0));
+    when(ucsbOrganizationRepository.findVersionByOrgCode("ZPR")).thenReturn(Optional.of(2L));
+    when(ucsbOrganizationRepository.updateByOrgCode(eq("ZPR"), eq(2L), any())).thenReturn(1);
 
     MvcResult response =
         mockMvc
@@ -317,9 +342,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .andExpect(status().isOk())
             .andReturn();
 
-    verify(ucsbOrganizationRepository, times(1)).findById(eq("ZPR"));
     ArgumentCaptor<UCSBOrganization> captor = ArgumentCaptor.forClass(UCSBOrganization.class);
-    verify(ucsbOrganizationRepository, times(1)).save(captor.capture());
+    verify(ucsbOrganizationRepository, times(1))
+        .updateByOrgCode(eq("ZPR"), eq(2L), captor.capture());
     UCSBOrganization saved = captor.getValue();
 
     assertEquals("ZPR", saved.getOrgCode());
@@ -327,7 +352,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     assertEquals("ZETA PHI RHO UPDATED", saved.getOrgTranslation());
     assertTrue(saved.getInactive());
 
-    assertEquals(requestBody, response.getResponse().getContentAsString());
+    edited.setVersion(3L);
+    assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
   }
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -343,7 +369,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(edited);
 
-    when(ucsbOrganizationRepository.findById(eq("NOPE"))).thenReturn(Optional.empty());
+    when(ucsbOrganizationRepository.findVersionByOrgCode("NOPE")).thenReturn(Optional.empty());
 
     MvcResult response =
         mockMvc
@@ -357,7 +383,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .andExpect(status().isNotFound())
             .andReturn();
 
-    verify(ucsbOrganizationRepository, times(1)).findById(eq("NOPE"));
+    verify(ucsbOrganizationRepository, never()).updateByOrgCode(eq("NOPE"), any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("UCSBOrganization with id NOPE not found", json.get("message"));
@@ -382,21 +408,13 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_delete_an_organization() throws Exception {
-    UCSBOrganization osli =
-        UCSBOrganization.builder()
-            .orgCode("OSLI")
-            .orgTranslationShort("STUDENT LIFE")
-            .orgTranslation("OFFICE OF STUDENT LIFE")
-            .inactive(false)
-            .build();
-    when(ucsbOrganizationRepository.findById(eq("OSLI"))).thenReturn(Optional.of(osli));
+    when(ucsbOrganizationRepository.deleteRowByOrgCode(eq("OSLI"), isNull())).thenReturn(1);
     MvcResult response =
         mockMvc
             .perform(delete("/api/ucsborganizations").param("orgCode", "OSLI").with(csrf()))
             .andExpect(status().isOk())
             .andReturn();
-    verify(ucsbOrganizationRepository, times(1)).findById("OSLI");
-    verify(ucsbOrganizationRepository, times(1)).delete(any());
+    verify(ucsbOrganizationRepository, times(1)).deleteRowByOrgCode("OSLI", null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id OSLI deleted", json.get("message"));
   }
@@ -404,15 +422,253 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_tries_to_delete_nonexistent_org_and_gets_404() throws Exception {
-    when(ucsbOrganizationRepository.findById(eq("NOPE"))).thenReturn(Optional.empty());
+    when(ucsbOrganizationRepository.deleteRowByOrgCode(eq("NOPE"), isNull())).thenReturn(0);
     MvcResult response =
         mockMvc
             .perform(delete("/api/ucsborganizations").param("orgCode", "NOPE").with(csrf()))
             .andExpect(status().isNotFound())
             .andReturn();
 
-    verify(ucsbOrganizationRepository, times(1)).findById("NOPE");
+    verify(ucsbOrganizationRepository, times(1)).deleteRowByOrgCode("NOPE", null);
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id NOPE not found", json.get("message"));
   }
+
+  // Tests for keyset pagination of GET /api/ucsborganizations/all
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_first_page_with_next_cursor() throws Exception {
+    // arrange
+    UCSBOrganization uCSBOrganization1 = UCSBOrganization.builder().orgCode("a").build();
+    UCSBOrganization uCSBOrganization2 = UCSBOrganization.builder().orgCode("b").build();
+    UCSBOrganization uCSBOrganization3 = UCSBOrganization.builder().orgCode("c").build();
+    when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc("", Limit.of(3)))
+        .thenReturn(List.of(uCSBOrganization1, uCSBOrganization2, uCSBOrganization3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsborganizations/all?limit=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of("items", List.of(uCSBOrganization1, uCSBOrganization2), "next", "b"));
+    assertEquals(
+        mapper.readTree(expectedJson),
+        mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_last_page_after_cursor() throws Exception {
+    // arrange
+    UCSBOrganization uCSBOrganization3 = UCSBOrganization.builder().orgCode("c").build();
+    when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc("b", Limit.of(101)))
+        .thenReturn(List.of(uCSBOrganization3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsborganizations/all?after=b"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(uCSBOrganization3)) + ",\"next\":null}";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  // Tests for the /batch endpoints
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_use_batch_endpoints() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/ucsborganizations/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            put("/api/ucsborganizations/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+    mockMvc
+        .perform(
+            delete("/api/ucsborganizations/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch() throws Exception {
+    // arrange
+
+    UCSBOrganization incoming1 =
+        UCSBOrganization.builder().orgCode("one").orgTranslation("First").build();
+    UCSBOrganization incoming2 =
+        UCSBOrganization.builder().orgCode("two").orgTranslation("Second").build();
+    when(ucsbOrganizationRepository.saveAll(any())).thenReturn(List.of(incoming1, incoming2));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsborganizations/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbOrganizationRepository, times(1)).saveAll(List.of(incoming1, incoming2));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.CREATED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.CREATED)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_a_batch() throws Exception {
+    // arrange
+
+    UCSBOrganization existing =
+        UCSBOrganization.builder().orgCode("one").orgTranslation("Old").build();
+    UCSBOrganization incoming1 =
+        UCSBOrganization.builder().orgCode("one").orgTranslation("New").build();
+    UCSBOrganization incoming2 =
+        UCSBOrganization.builder().orgCode("two").orgTranslation("Missing").build();
+    when(ucsbOrganizationRepository.findAllById(List.of("one", "two")))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsborganizations/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(incoming1, incoming2))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(incoming1, existing);
+    verify(ucsbOrganizationRepository, times(1)).saveAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.UPDATED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_a_batch() throws Exception {
+    // arrange
+
+    UCSBOrganization existing =
+        UCSBOrganization.builder().orgCode("one").orgTranslation("Doomed").build();
+    when(ucsbOrganizationRepository.findAllById(List.of("one", "two", "one")))
+        .thenReturn(List.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                delete("/api/ucsborganizations/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[\"one\",\"two\",\"one\"]"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbOrganizationRepository, times(1)).deleteAll(List.of(existing));
+    String expectedJson =
+        mapper.writeValueAsString(
+            List.of(
+                new BatchItemResult(0, "one", BatchItemResult.Status.DELETED),
+                new BatchItemResult(1, "two", BatchItemResult.Status.NOT_FOUND),
+                new BatchItemResult(2, "one", BatchItemResult.Status.NOT_FOUND)));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_organization_at_the_version_it_read() throws Exception {
+    // arrange
+
+    UCSBOrganization edited =
+        UCSBOrganization.builder()
+            .orgCode("ZPR")
+            .orgTranslationShort("ZETA PHI RHO")
+            .inactive(false)
+            .version(3L)
+            .build();
+
+    when(ucsbOrganizationRepository.updateByOrgCode(eq("ZPR"), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsborganizations?orgCode=ZPR")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbOrganizationRepository, times(1)).updateByOrgCode(eq("ZPR"), eq(3L), any());
+    assertEquals(4, responseToJson(response).get("version"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_patch_a_organization() throws Exception {
+    // arrange
+
+    Query query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                patch("/api/ucsborganizations?orgCode=ZPR")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"inactive\": true}")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(entityManager, times(1))
+        .createQuery(
+            "UPDATE ucsborganizations e SET e.inactive = :v0, e.version = e.version + 1 WHERE e.orgCode = :key");
+    verify(query, times(1)).setParameter("v0", true);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("UCSBOrganization with id ZPR updated", json.get("message"));
+  }
 }
@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ArticleSearchIT {
+  @Autowired ArticleSearchIndex articleSearchIndex;
+
+  @Autowired ArticleRepository articleRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockBean UserRepository userRepository;
+
+  private long postArticle(String title, String explanation) throws Exception {
+    String json =
+        mockMvc
+            .perform(
+                post("/api/articles/post")
+                    .param("title", title)
+                    .param("url", "https://example.org")
+                    .param("explanation", explanation)
+                    .param("email", "cgaucho@ucsb.edu")
+                    .param("localDateTime", "2022-01-03T00:00:00")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return mapper.readTree(json).get("id").asLong();
+  }
+
+  private List<String> search(String q) throws Exception {
+    String json =
+        mockMvc
+            .perform(get("/api/articles/search").param("q", q))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    List<String> titles = new ArrayList<>();
+    for (JsonNode article : mapper.readTree(json)) {
+      titles.add(article.get("title").asText());
+    }
+    return titles;
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void search_follows_writes_and_rebuilds_from_the_database() throws Exception {
+    postArticle("Java records", "Records in Java are immutable data carriers");
+    long streams = postArticle("Streams", "Lazy pipelines over collections, in Java");
+    postArticle("Python", "Snakes and ladders");
+    assertEquals(List.of("Java records", "Streams"), search("java"));
+    assertEquals(List.of("Java records", "Python"), search("rec snake"));
+
+    // deletes leave the index too
+    mockMvc
+        .perform(delete("/api/articles").param("id", Long.toString(streams)).with(csrf()))
+        .andExpect(status().isOk());
+    assertEquals(List.of("Java records"), search("java"));
+
+    // rows written behind the index's back show up after a rebuild
+    articleRepository.save(Article.builder().title("Kotlin").explanation("Java interop").build());
+    assertEquals(List.of("Java records"), search("java"));
+    assertEquals(3, articleSearchIndex.rebuild(() -> false, n -> {}));
+    assertEquals(List.of("Kotlin", "Java records"), search("java"));
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks that the lookups the app makes on every request, or that filter a whole table, are
+ * answered from the indexes created by the Liquibase changelog rather than by scanning the table.
+ *
+ * <p>Runs against H2 by default. To check the plans on Postgres as well, point the datasource at a
+ * Postgres database, e.g.
+ *
+ * <pre>
+ * INTEGRATION=true mvn test-compile failsafe:integration-test -Dit.test=IndexPlanIT \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/team01 \
+ *   -Dspring.datasource.username=postgres -Dspring.datasource.password=postgres \
+ *   -Dspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect
+ * </pre>
+ *
+ * <p>On a nearly empty table Postgres prefers a sequential scan however good the index is, so
+ * sequential scans are turned off while the plans are read; an index that cannot be used still
+ * shows up as a sequential scan.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+public class IndexPlanIT {
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Autowired TransactionTemplate transactionTemplate;
+
+  private boolean postgres;
+
+  @BeforeEach
+  public void setUp() {
+    postgres =
+        jdbcTemplate
+            .execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName())
+            .equalsIgnoreCase("PostgreSQL");
+  }
+
+  private String plan(String sql) {
+    return transactionTemplate.execute(
+        status -> {
+          if (postgres) {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+          }
+          List<String> lines = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+          return String.join("\n", lines);
+        });
+  }
+
+  private void assertUsesIndex(String index, String sql) {
+    String plan = plan(sql);
+    assertTrue(
+        plan.toUpperCase().contains(index),
+        "expected %s to use %s, but the plan was:%n%s".formatted(sql, index, plan));
+  }
+
+  @Test
+  public void users_are_looked_up_by_email_with_an_index() {
+    assertUsesIndex("USERS_EMAIL_IDX", "SELECT * FROM users WHERE email = 'cgaucho@ucsb.edu'");
+  }
+
+  @Test
+  public void ucsb_dates_are_filtered_by_quarter_with_an_index() {
+    assertUsesIndex(
+        "UCSBDATES_QUARTERYYYYQ_IDX", "SELECT * FROM ucsbdates WHERE quarteryyyyq = '20251'");
+  }
+
+  @Test
+  public void menu_item_reviews_are_filtered_by_item_with_an_index() {
+    assertUsesIndex(
+        "MENUITEMREVIEWS_ITEM_ID_IDX", "SELECT * FROM menuitemreviews WHERE item_id = 1");
+  }
+
+  @Test
+  public void menu_item_reviews_are_filtered_by_reviewer_with_an_index() {
+    assertUsesIndex(
+        "MENUITEMREVIEWS_REVIEWER_EMAIL_IDX",
+        "SELECT * FROM menuitemreviews WHERE reviewer_email = 'cgaucho@ucsb.edu'");
+  }
+
+  @Test
+  public void help_requests_are_filtered_by_solved_in_request_time_order_with_an_index() {
+    assertUsesIndex(
+        "HELPREQUESTS_SOLVED_REQUEST_TIME_IDX",
+        "SELECT * FROM helprequests WHERE solved = false ORDER BY request_time");
+  }
+}
@@ -0,0 +1,194 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobQueueWorker;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    properties = {
+      "app.jobs.queue.mode=database",
+      "app.jobs.queue.nodeId=it-node",
+      // Polls are driven by the tests, not the scheduler
+      "app.jobs.queue.pollMillis=3600000",
+      "app.jobs.queue.pollInitialDelayMillis=3600000"
+    })
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobQueueIT {
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired JobQueueWorker worker;
+
+  @Autowired JobLogStreamService jobLogStreamService;
+
+  @Autowired TransactionTemplate transactionTemplate;
+
+  private Job queuedTestJob() {
+    return jobsRepository.save(
+        Job.builder()
+            .status("queued")
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .params("{\"fail\":false,\"sleepMs\":0}")
+            .build());
+  }
+
+  private Job awaitFinished(long id) throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      Job job = jobsRepository.findById(id).get();
+      if (!job.getStatus().equals("queued") && !job.getStatus().equals("running")) {
+        return job;
+      }
+      Thread.sleep(50);
+    }
+    throw new AssertionError("job %d did not finish".formatted(id));
+  }
+
+  @Test
+  public void queued_job_is_claimed_and_run() throws Exception {
+    // arrange
+    Job job = queuedTestJob();
+
+    // act
+    worker.poll();
+
+    // assert
+    Job finished = awaitFinished(job.getId());
+    assertEquals("complete", finished.getStatus());
+    assertEquals("it-node", finished.getClaimedBy());
+    assertEquals(1, finished.getAttempts());
+    assertEquals(
+        "Hello World! from test job!\nGoodbye from test job!", jobService.getJobLogs(job.getId()));
+  }
+
+  @Test
+  public void job_whose_node_stopped_heartbeating_is_claimed_again() throws Exception {
+    // arrange
+    Job job = queuedTestJob();
+    job.setStatus("running");
+    job.setClaimedBy("dead-node");
+    job.setLeaseExpiresAt(ZonedDateTime.now().minusMinutes(1));
+    job.setAttempts(1);
+    jobsRepository.save(job);
+
+    Job live = queuedTestJob();
+    live.setStatus("running");
+    live.setClaimedBy("live-node");
+    live.setLeaseExpiresAt(ZonedDateTime.now().plusMinutes(1));
+    jobsRepository.save(live);
+
+    // act
+    List<Job> claimed = worker.claimJobs(10);
+
+    // assert
+    assertEquals(List.of(job.getId()), claimed.stream().map(Job::getId).toList());
+    assertEquals("it-node", claimed.get(0).getClaimedBy());
+    assertEquals(2, claimed.get(0).getAttempts());
+  }
+
+  @Test
+  public void job_cancelled_after_it_was_claimed_but_before_it_started_never_runs()
+      throws Exception {
+    // arrange
+    Job job = queuedTestJob();
+    Job claimed = worker.claimJobs(1).get(0);
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    // act
+    boolean cancelled = jobService.cancelJob(job.getId());
+    jobService.runJobAsync(claimed, ctx -> ran.set(true));
+
+    // assert: the run is over once it has logged why it skipped the job
+    assertTrue(cancelled);
+    for (int i = 0; i < 100 && jobService.getJobLogs(job.getId()).isEmpty(); i++) {
+      Thread.sleep(50);
+    }
+    assertEquals("Job cancelled before it started", jobService.getJobLogs(job.getId()));
+    assertEquals("cancelled", jobsRepository.findById(job.getId()).get().getStatus());
+    assertFalse(ran.get());
+  }
+
+  @Test
+  public void concurrent_claims_skip_rows_locked_by_each_other() throws Exception {
+    // arrange
+    Job first = queuedTestJob();
+    Job second = queuedTestJob();
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    // act: one transaction claims a job and holds its lock while another claims
+    CompletableFuture<List<Long>> holder =
+        CompletableFuture.supplyAsync(
+            () ->
+                transactionTemplate.execute(
+                    status -> {
+                      List<Long> ids = jobsRepository.lockClaimableJobIds(ZonedDateTime.now(), 1);
+                      locked.countDown();
+                      try {
+                        release.await(10, TimeUnit.SECONDS);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      return ids;
+                    }));
+    assertTrue(locked.await(10, TimeUnit.SECONDS));
+    List<Long> other =
+        transactionTemplate.execute(
+            status -> jobsRepository.lockClaimableJobIds(ZonedDateTime.now(), 2));
+    release.countDown();
+
+    // assert
+    assertEquals(List.of(first.getId()), holder.get(10, TimeUnit.SECONDS));
+    assertEquals(List.of(second.getId()), other);
+  }
+
+  @Test
+  public void watchers_of_a_job_running_on_another_node_are_closed_when_it_finishes()
+      throws Exception {
+    // arrange
+    Job job = queuedTestJob();
+    job.setStatus("running");
+    job.setClaimedBy("other-node");
+    job.setLeaseExpiresAt(ZonedDateTime.now().plusMinutes(1));
+    jobsRepository.save(job);
+    jobService.streamJobLogs(job.getId(), 0);
+
+    // act
+    worker.relayLogs();
+    int watchingWhileRunning = jobLogStreamService.subscriberCount(job.getId());
+    job.setStatus("complete");
+    jobsRepository.save(job);
+    worker.relayLogs();
+
+    // assert
+    assertEquals(1, watchingWhileRunning);
+    assertEquals(0, jobLogStreamService.subscriberCount(job.getId()));
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    properties = {
+      "app.jobs.retention.maxAge=0",
+      "app.jobs.retention.maxCount=2",
+      "app.jobs.retention.batchSize=2",
+      "app.jobs.retention.statuses.error.maxCount=0"
+    })
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobRetentionIT {
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobLogChunksRepository jobLogChunksRepository;
+
+  @Autowired JobRetentionService jobRetentionService;
+
+  private Job saveJob(String status) {
+    Job job = jobsRepository.save(Job.builder().status(status).build());
+    jobLogChunksRepository.save(
+        JobLogChunk.builder()
+            .jobId(job.getId())
+            .seq(0)
+            .startOffset(0)
+            .endOffset(4)
+            .content("line")
+            .build());
+    return job;
+  }
+
+  private List<Long> remainingIds() {
+    return StreamSupport.stream(jobsRepository.findAll().spliterator(), false)
+        .map(Job::getId)
+        .sorted()
+        .toList();
+  }
+
+  @Test
+  public void purge_keeps_newest_jobs_of_each_status_and_never_touches_running_jobs()
+      throws Exception {
+    // arrange
+    Job complete1 = saveJob("complete");
+    Job running = saveJob("running");
+    Job complete2 = saveJob("complete");
+    Job error1 = saveJob("error");
+    Job complete3 = saveJob("complete");
+    Job complete4 = saveJob("complete");
+    Job error2 = saveJob("error");
+
+    // act
+    long deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(2, deleted);
+    assertEquals(
+        List.of(
+            running.getId(), error1.getId(), complete3.getId(), complete4.getId(), error2.getId()),
+        remainingIds());
+    assertEquals(5, jobLogChunksRepository.count());
+    assertEquals(List.of(), jobLogChunksRepository.findChunksInRange(complete1.getId(), 0, 10));
+    assertEquals(List.of(), jobLogChunksRepository.findChunksInRange(complete2.getId(), 0, 10));
+  }
+
+  @Test
+  public void deleteAll_removes_every_job_and_its_log() throws Exception {
+    // arrange
+    for (int i = 0; i < 5; i++) {
+      saveJob(i == 0 ? "running" : "complete");
+    }
+
+    // act
+    long deleted = jobRetentionService.deleteAll();
+
+    // assert
+    assertEquals(5, deleted);
+    assertEquals(0, jobsRepository.count());
+    assertEquals(0, jobLogChunksRepository.count());
+  }
+}
@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJob;
+import edu.ucsb.cs156.example.jobs.MenuItemImportJobFactory;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemImportIT {
+  @Autowired MenuItemImportJobFactory menuItemImportJobFactory;
+
+  @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @MockBean UserRepository userRepository;
+
+  @Test
+  public void imported_rows_take_consecutive_ids_that_later_saves_do_not_reuse() throws Exception {
+    // arrange
+    StringBuilder csv = new StringBuilder("dining_commons_code,name,station\n");
+    for (int i = 0; i < 120; i++) {
+      csv.append("ortega,Item %d,Grill\n".formatted(i));
+    }
+    Path file = Files.createTempFile("menu-items", ".csv");
+    Files.writeString(file, csv, StandardCharsets.UTF_8);
+    Job job = Job.builder().id(1).build();
+
+    // act
+    menuItemImportJobFactory
+        .create(file, MenuItemImportJob.Format.CSV)
+        .accept(new JobContext(null, job));
+    UCSBDiningCommonsMenuItem saved =
+        ucsbDiningCommonsMenuItemRepository.save(
+            UCSBDiningCommonsMenuItem.builder()
+                .dining_commons_code("ortega")
+                .name("Saved")
+                .station("Grill")
+                .build());
+
+    // assert
+    List<Long> imported =
+        StreamSupport.stream(ucsbDiningCommonsMenuItemRepository.findAll().spliterator(), false)
+            .filter(item -> item.getName().startsWith("Item "))
+            .map(UCSBDiningCommonsMenuItem::getId)
+            .sorted()
+            .toList();
+    assertEquals(120, imported.size());
+    // one block of 50 ids per 50 rows, not 50 ids per row
+    assertEquals(119, imported.get(119) - imported.get(0));
+    assertFalse(imported.contains(saved.getId()));
+  }
+}
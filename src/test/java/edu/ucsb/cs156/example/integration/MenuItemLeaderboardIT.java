@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboard;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    // Rebuilds are driven by the tests, not the scheduler
+    properties = "app.leaderboard.refreshMillis=3600000")
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemLeaderboardIT {
+  @Autowired MenuItemLeaderboard menuItemLeaderboard;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @Autowired MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @Autowired TableVersionService tableVersionService;
+
+  @SpyBean UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @MockBean UserRepository userRepository;
+
+  private long postMenuItem(String commons, String station, String name) throws Exception {
+    String json =
+        mockMvc
+            .perform(
+                post("/api/UCSBDiningCommonsMenuItem/post")
+                    .param("dining_commons_code", commons)
+                    .param("name", name)
+                    .param("station", station)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return mapper.readTree(json).get("id").asLong();
+  }
+
+  private void postReview(long itemId, int stars) throws Exception {
+    mockMvc
+        .perform(
+            post("/api/menuitemreviews/post")
+                .param("itemId", Long.toString(itemId))
+                .param("reviewerEmail", "cgaucho@ucsb.edu")
+                .param("stars", Integer.toString(stars))
+                .param("dateReviewed", "2022-01-03T00:00:00")
+                .param("comments", "ok")
+                .with(csrf()))
+        .andExpect(status().isOk());
+  }
+
+  private List<String> top(String query) throws Exception {
+    String json =
+        mockMvc
+            .perform(get("/api/UCSBDiningCommonsMenuItem/top?" + query))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    List<String> names = new ArrayList<>();
+    for (JsonNode item : mapper.readTree(json)) {
+      names.add(item.get("name").asText());
+    }
+    return names;
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void the_leaderboard_follows_reviews_and_rebuilds_from_the_database() throws Exception {
+    long tacos = postMenuItem("ortega", "Grill", "Tacos");
+    long salad = postMenuItem("ortega", "Grill", "Salad");
+    long pizza = postMenuItem("ortega", "Pizza", "Pizza");
+    long pasta = postMenuItem("dlg", "Pasta", "Pasta");
+    postReview(tacos, 3);
+    menuItemLeaderboard.refresh();
+    assertEquals(List.of("Tacos"), top("commons=ortega"));
+
+    // reviews written on this node show up without a rebuild
+    postReview(salad, 5);
+    postReview(pizza, 4);
+    postReview(pizza, 5);
+    postReview(pasta, 1);
+    assertEquals(List.of("Salad", "Pizza", "Tacos"), top("commons=ortega"));
+    assertEquals(List.of("Salad", "Tacos"), top("commons=ortega&station=Grill"));
+    assertEquals(List.of("Salad", "Pizza"), top("commons=ortega&n=2"));
+    assertEquals(List.of("Pasta"), top("commons=dlg"));
+
+    // a rebuild from the stats table ranks them the same way
+    menuItemLeaderboard.refresh();
+    assertEquals(List.of("Salad", "Pizza", "Tacos"), top("commons=ortega"));
+    assertEquals(List.of("Pasta"), top("commons=dlg"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void only_review_writes_made_elsewhere_cause_a_rebuild() throws Exception {
+    long tacos = postMenuItem("ortega", "Grill", "Tacos");
+    long salad = postMenuItem("ortega", "Grill", "Salad");
+    postReview(tacos, 3);
+    menuItemLeaderboard.refresh();
+    clearInvocations(ucsbDiningCommonsMenuItemRepository);
+
+    // reviews written on this node are already on the board
+    postReview(salad, 5);
+    postReview(tacos, 4);
+    menuItemLeaderboard.refresh();
+    verify(ucsbDiningCommonsMenuItemRepository, never()).findAllWithReviewTotals();
+    assertEquals(List.of("Salad", "Tacos"), top("commons=ortega"));
+
+    // a review written by another node only shows up in the stats and the table version
+    menuItemReviewStatsRepository.add(
+        MenuItemReviewStats.builder().itemId(salad).reviewCount(3).starsTotal(3).build());
+    tableVersionService.bump(MenuItemReview.class);
+    menuItemLeaderboard.refresh();
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllWithReviewTotals();
+    assertEquals(List.of("Tacos", "Salad"), top("commons=ortega"));
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Inserts 100,000 MenuItemReviews one statement at a time, as Hibernate had to while ids came from
+ * identity columns, and then again with JDBC batching, which sequence ids allow. The rows/sec of
+ * each run are logged for reference; the assertions check the number of statements prepared, which
+ * is what drives round trips to the database.
+ */
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemReviewInsertBenchmarkIT {
+
+  private static final int ROWS = 100_000;
+  private static final int FLUSH_EVERY = 1_000;
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired EntityManagerFactory entityManagerFactory;
+
+  @Autowired TransactionTemplate transactionTemplate;
+
+  @Autowired MenuItemReviewRepository menuItemReviewRepository;
+
+  private record Run(long nanos, long statements) {
+    double rowsPerSecond() {
+      return ROWS * 1e9 / nanos;
+    }
+  }
+
+  private Run insert(int jdbcBatchSize) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    LocalDateTime reviewed = LocalDateTime.parse("2025-10-01T12:00:00");
+
+    long start = System.nanoTime();
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+          for (int i = 1; i <= ROWS; i++) {
+            entityManager.persist(
+                MenuItemReview.builder()
+                    .itemId(i % 100)
+                    .reviewerEmail("reviewer%d@ucsb.edu".formatted(i % 500))
+                    .stars(i % 5 + 1)
+                    .dateReviewed(reviewed)
+                    .comments("Review %d".formatted(i))
+                    .build());
+            if (i % FLUSH_EVERY == 0) {
+              entityManager.flush();
+              entityManager.clear();
+            }
+          }
+        });
+    return new Run(System.nanoTime() - start, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  public void batched_inserts_of_100k_reviews_use_far_fewer_statements() {
+    Run unbatched = insert(1);
+    Run batched = insert(50);
+
+    log.info(
+        "{} MenuItemReview inserts: one at a time {} rows/sec ({} statements), batched {} rows/sec"
+            + " ({} statements)",
+        ROWS,
+        Math.round(unbatched.rowsPerSecond()),
+        unbatched.statements(),
+        Math.round(batched.rowsPerSecond()),
+        batched.statements());
+
+    assertEquals(2L * ROWS, menuItemReviewRepository.count());
+    assertTrue(unbatched.statements() >= ROWS);
+    assertTrue(batched.statements() < ROWS / 10);
+  }
+}
@@ -0,0 +1,224 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class MenuItemReviewStatsIT {
+  @Autowired MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired MenuItemReviewService menuItemReviewService;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockBean UserRepository userRepository;
+
+  private MenuItemReviewStats stats(long itemId) throws Exception {
+    String json =
+        mockMvc
+            .perform(get("/api/menuitemreviews/stats?itemId=" + itemId))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return mapper.readValue(json, MenuItemReviewStats.class);
+  }
+
+  private long postReview(long itemId, int stars) throws Exception {
+    String json =
+        mockMvc
+            .perform(
+                post("/api/menuitemreviews/post")
+                    .param("itemId", Long.toString(itemId))
+                    .param("reviewerEmail", "cgaucho@ucsb.edu")
+                    .param("stars", Integer.toString(stars))
+                    .param("dateReviewed", "2022-01-03T00:00:00")
+                    .param("comments", "ok")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return mapper.readTree(json).get("id").asLong();
+  }
+
+  private MenuItemReview review(long itemId, int stars) {
+    return MenuItemReview.builder()
+        .itemId(itemId)
+        .reviewerEmail("cgaucho@ucsb.edu")
+        .stars(stars)
+        .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .comments("ok")
+        .build();
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void stats_follow_every_kind_of_review_write() throws Exception {
+    assertEquals(MenuItemReviewStats.builder().itemId(1).build(), stats(1));
+
+    // post two reviews of item 1
+    long first = postReview(1, 5);
+    long second = postReview(1, 2);
+    assertEquals(
+        MenuItemReviewStats.builder()
+            .itemId(1)
+            .reviewCount(2)
+            .starsTotal(7)
+            .twoStars(1)
+            .fiveStars(1)
+            .build(),
+        stats(1));
+    assertEquals(3.5, stats(1).getAverageStars());
+
+    // move the second review to item 2
+    mockMvc
+        .perform(
+            put("/api/menuitemreviews?id=" + second)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(review(2, 4))))
+        .andExpect(status().isOk());
+    assertEquals(
+        MenuItemReviewStats.builder().itemId(1).reviewCount(1).starsTotal(5).fiveStars(1).build(),
+        stats(1));
+    assertEquals(
+        MenuItemReviewStats.builder().itemId(2).reviewCount(1).starsTotal(4).fourStars(1).build(),
+        stats(2));
+
+    // patch the first review down to 3 stars
+    mockMvc
+        .perform(
+            patch("/api/menuitemreviews?id=" + first)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"stars\": 3}"))
+        .andExpect(status().isOk());
+    assertEquals(
+        MenuItemReviewStats.builder().itemId(1).reviewCount(1).starsTotal(3).threeStars(1).build(),
+        stats(1));
+
+    // a stale If-Match changes nothing
+    mockMvc
+        .perform(
+            delete("/api/menuitemreviews?id=" + first).header("If-Match", "\"0\"").with(csrf()))
+        .andExpect(status().isPreconditionFailed());
+    assertEquals(1, stats(1).getReviewCount());
+
+    // delete the first review
+    mockMvc
+        .perform(delete("/api/menuitemreviews?id=" + first).with(csrf()))
+        .andExpect(status().isOk());
+    assertEquals(MenuItemReviewStats.builder().itemId(1).build(), stats(1));
+
+    // batch create, update and delete
+    String created =
+        mockMvc
+            .perform(
+                post("/api/menuitemreviews/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(review(3, 1), review(3, 5)))))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    JsonNode results = mapper.readTree(created);
+    long a = results.get(0).get("key").asLong();
+    long b = results.get(1).get("key").asLong();
+    MenuItemReview updated = review(3, 2);
+    updated.setId(a);
+    mockMvc
+        .perform(
+            put("/api/menuitemreviews/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(updated))))
+        .andExpect(status().isOk());
+    mockMvc
+        .perform(
+            delete("/api/menuitemreviews/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + b + "," + second + "]"))
+        .andExpect(status().isOk());
+
+    assertEquals(
+        MenuItemReviewStats.builder().itemId(3).reviewCount(1).starsTotal(2).twoStars(1).build(),
+        stats(3));
+    assertEquals(MenuItemReviewStats.builder().itemId(2).build(), stats(2));
+    assertEquals(1, menuItemReviewRepository.count());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void first_reviews_of_an_item_written_at_once_are_all_counted() throws Exception {
+    int writers = 4;
+    CyclicBarrier start = new CyclicBarrier(writers);
+    List<CompletableFuture<MenuItemReview>> futures =
+        IntStream.range(0, writers)
+            .mapToObj(
+                i ->
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                          try {
+                            start.await();
+                          } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                          }
+                          return menuItemReviewService.create(review(9, 4));
+                        }))
+            .toList();
+    futures.forEach(CompletableFuture::join);
+
+    assertEquals(
+        MenuItemReviewStats.builder()
+            .itemId(9)
+            .reviewCount(writers)
+            .starsTotal(4L * writers)
+            .fourStars(writers)
+            .build(),
+        stats(9));
+  }
+}
@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ReferenceDataCache;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ReferenceDataCacheIT {
+
+  @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired MeterRegistry meterRegistry;
+
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockBean UserRepository userRepository;
+
+  private double gets(String result) {
+    return meterRegistry
+        .get("cache.gets")
+        .tag("cache", ReferenceDataCache.DINING_COMMONS)
+        .tag("result", result)
+        .functionCounter()
+        .count();
+  }
+
+  private String getCarrillo() throws Exception {
+    return mockMvc
+        .perform(get("/api/ucsbdiningcommons?code=carrillo"))
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse()
+        .getContentAsString();
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void dining_commons_are_served_from_the_cache_until_they_are_updated() throws Exception {
+    UCSBDiningCommons carrillo =
+        ucsbDiningCommonsRepository.save(
+            UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build());
+
+    assertEquals(mapper.writeValueAsString(carrillo), getCarrillo());
+    assertEquals(mapper.writeValueAsString(carrillo), getCarrillo());
+    assertEquals(1.0, gets("miss"));
+    assertEquals(1.0, gets("hit"));
+
+    carrillo.setName("Carrillo Dining Commons");
+    mockMvc
+        .perform(
+            put("/api/ucsbdiningcommons?code=carrillo")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(carrillo))
+                .with(csrf()))
+        .andExpect(status().isOk());
+    carrillo.setVersion(1L);
+
+    assertEquals(mapper.writeValueAsString(carrillo), getCarrillo());
+    assertEquals(2.0, gets("miss"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_write_made_on_another_node_is_seen_without_clearing_the_cache() throws Exception {
+    UCSBDiningCommons carrillo =
+        ucsbDiningCommonsRepository.save(
+            UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build());
+    assertEquals(mapper.writeValueAsString(carrillo), getCarrillo());
+
+    // another node writes the row and bumps the version; this node's cache is never cleared
+    carrillo.setName("Carrillo Dining Commons");
+    carrillo = ucsbDiningCommonsRepository.save(carrillo);
+    tableVersionService.bump(UCSBDiningCommons.class);
+
+    assertEquals(mapper.writeValueAsString(carrillo), getCarrillo());
+    assertEquals(2.0, gets("miss"));
+  }
+}
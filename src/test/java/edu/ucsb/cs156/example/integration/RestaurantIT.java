@@ -1,9 +1,14 @@
 package edu.ucsb.cs156.example.integration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,6 +25,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -72,7 +78,7 @@ public class RestaurantIT {
     // arrange
 
     Restaurant restaurant1 =
-        Restaurant.builder().id(1L).name("Chipotle").description("Mexican").build();
+        Restaurant.builder().id(1L).name("Chipotle").description("Mexican").version(0L).build();
 
     // act
     MvcResult response =
@@ -86,4 +92,233 @@ public class RestaurantIT {
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void test_that_logged_in_user_can_get_all_restaurants() throws Exception {
+    // arrange
+
+    for (int i = 1; i <= 1200; i++) {
+      restaurantRepository.save(
+          Restaurant.builder().name("Restaurant " + i).description("Number " + i).build());
+    }
+
+    // act: written by the request thread, not the streaming executor
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all"))
+            .andExpect(request().asyncNotStarted())
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(restaurantRepository.findAll());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_create_update_and_delete_restaurants_in_batches() throws Exception {
+    // act: create three
+    String created =
+        mockMvc
+            .perform(
+                post("/api/restaurants/batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(
+                        "[{\"name\":\"A\",\"description\":\"a\"},"
+                            + "{\"name\":\"B\",\"description\":\"b\"},"
+                            + "{\"name\":\"C\",\"description\":\"c\"}]"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    long[] ids =
+        mapper.readTree(created).findValues("key").stream().mapToLong(n -> n.asLong()).toArray();
+
+    // act: update two of them and one that does not exist
+    mockMvc
+        .perform(
+            put("/api/restaurants/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    "[{\"id\":%d,\"name\":\"A2\",\"description\":\"a2\"},".formatted(ids[0])
+                        + "{\"id\":%d,\"name\":\"B2\",\"description\":\"b2\"},".formatted(ids[1])
+                        + "{\"id\":999999,\"name\":\"X\",\"description\":\"x\"}]"))
+        .andExpect(status().isOk());
+
+    // act: delete the third
+    mockMvc
+        .perform(
+            delete("/api/restaurants/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[%d]".formatted(ids[2])))
+        .andExpect(status().isOk());
+
+    // assert
+    assertEquals(3, ids.length);
+    assertEquals(2, restaurantRepository.count());
+    assertEquals("A2", restaurantRepository.findById(ids[0]).get().getName());
+    assertEquals("B2", restaurantRepository.findById(ids[1]).get().getName());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_update_and_delete_a_restaurant_by_id() throws Exception {
+    // arrange
+
+    Restaurant restaurant =
+        restaurantRepository.save(Restaurant.builder().name("Chipotle").description("x").build());
+    Restaurant edited =
+        Restaurant.builder()
+            .id(restaurant.getId())
+            .name("Taco Bell")
+            .description("Mexican")
+            .build();
+
+    // act and assert
+
+    MvcResult updated =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=" + restaurant.getId())
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(edited)))
+            .andExpect(status().isOk())
+            .andReturn();
+    edited.setVersion(1L);
+    assertEquals(mapper.writeValueAsString(edited), updated.getResponse().getContentAsString());
+    assertEquals(edited, restaurantRepository.findById(restaurant.getId()).get());
+
+    mockMvc
+        .perform(delete("/api/restaurants?id=" + restaurant.getId()).with(csrf()))
+        .andExpect(status().isOk());
+    assertEquals(0, restaurantRepository.count());
+
+    mockMvc
+        .perform(delete("/api/restaurants?id=" + restaurant.getId()).with(csrf()))
+        .andExpect(status().isNotFound());
+    mockMvc
+        .perform(
+            put("/api/restaurants?id=" + restaurant.getId())
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(edited)))
+        .andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_get_is_not_modified_until_the_table_is_written_to() throws Exception {
+    // arrange
+
+    Restaurant restaurant =
+        restaurantRepository.save(Restaurant.builder().name("Taco Bell").build());
+    String url = "/api/restaurants?id=" + restaurant.getId();
+    String etag =
+        mockMvc
+            .perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    // act and assert
+
+    mockMvc.perform(get(url).header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+    mockMvc
+        .perform(post("/api/restaurants/post?name=Chipotle&description=Mexican").with(csrf()))
+        .andExpect(status().isOk());
+
+    MvcResult response =
+        mockMvc
+            .perform(get(url).header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertNotEquals(etag, response.getResponse().getHeader("ETag"));
+    assertEquals(
+        mapper.writeValueAsString(restaurant), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_failed_write_leaves_the_version_alone() throws Exception {
+    // arrange
+
+    String etag =
+        mockMvc
+            .perform(get("/api/restaurants/all"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    // act
+
+    mockMvc
+        .perform(delete("/api/restaurants?id=12345").with(csrf()))
+        .andExpect(status().isNotFound());
+
+    // assert
+
+    mockMvc
+        .perform(get("/api/restaurants/all").header("If-None-Match", etag))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void writes_with_a_stale_if_match_are_refused() throws Exception {
+    // arrange
+
+    Restaurant restaurant =
+        restaurantRepository.save(Restaurant.builder().name("Chipotle").description("x").build());
+    String url = "/api/restaurants?id=" + restaurant.getId();
+
+    // act and assert
+
+    mockMvc
+        .perform(
+            patch(url)
+                .header("If-Match", "\"0\"")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"description\": \"Mexican\"}"))
+        .andExpect(status().isOk());
+    Restaurant patched = restaurantRepository.findById(restaurant.getId()).get();
+    assertEquals("Chipotle", patched.getName());
+    assertEquals("Mexican", patched.getDescription());
+    assertEquals(1L, patched.getVersion());
+
+    mockMvc
+        .perform(
+            put(url)
+                .header("If-Match", "\"0\"")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(restaurant)))
+        .andExpect(status().isPreconditionFailed());
+    mockMvc
+        .perform(
+            put(url)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(restaurant)))
+        .andExpect(status().isConflict());
+    mockMvc
+        .perform(delete(url).header("If-Match", "\"0\"").with(csrf()))
+        .andExpect(status().isPreconditionFailed());
+    assertEquals(patched, restaurantRepository.findById(restaurant.getId()).get());
+
+    mockMvc
+        .perform(delete(url).header("If-Match", "\"1\"").with(csrf()))
+        .andExpect(status().isOk());
+    assertEquals(0, restaurantRepository.count());
+  }
 }
@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.controllers.VersionedTable;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+public class TableVersionIT {
+
+  @Autowired ApplicationContext applicationContext;
+
+  @Autowired TableVersionRepository tableVersionRepository;
+
+  @MockBean UserRepository userRepository;
+
+  @Test
+  public void the_migration_seeds_a_row_for_every_versioned_table() {
+    Map<String, Object> controllers =
+        applicationContext.getBeansWithAnnotation(VersionedTable.class);
+    assertEquals(9, controllers.size());
+    for (Object controller : controllers.values()) {
+      Class<?> entity =
+          AnnotatedElementUtils.findMergedAnnotation(
+                  AopUtils.getTargetClass(controller), VersionedTable.class)
+              .value();
+      assertTrue(
+          tableVersionRepository.existsById(entity.getSimpleName()),
+          "no table_versions row for " + entity.getSimpleName());
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UCSBDiningCommonsIT {
+  @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired public MockMvc mockMvc;
+
+  @MockBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void posting_a_commons_whose_code_is_taken_is_a_conflict_and_changes_nothing()
+      throws Exception {
+    // arrange
+
+    String url =
+        "/api/ucsbdiningcommons/post?code=ortega&hasSackMeal=true&hasTakeOutMeal=true"
+            + "&hasDiningCam=true&latitude=34.410987&longitude=-119.84709&name=";
+    mockMvc.perform(post(url + "Ortega").with(csrf())).andExpect(status().isOk());
+
+    // act
+    mockMvc.perform(post(url + "Renamed").with(csrf())).andExpect(status().isConflict());
+
+    // assert
+    UCSBDiningCommons ortega = ucsbDiningCommonsRepository.findById("ortega").get();
+    assertEquals("Ortega", ortega.getName());
+  }
+}
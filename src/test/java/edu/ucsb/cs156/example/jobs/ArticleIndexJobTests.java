@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.ArticleSearchIndex;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import org.junit.jupiter.api.Test;
+
+public class ArticleIndexJobTests {
+
+  private final ArticleSearchIndex articleSearchIndex = mock(ArticleSearchIndex.class);
+
+  private final ArticleIndexJob job =
+      ArticleIndexJob.builder().articleSearchIndex(articleSearchIndex).build();
+
+  @Test
+  public void rebuild_logs_progress_and_the_total() throws Exception {
+    // arrange
+    when(articleSearchIndex.rebuild(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              BooleanSupplier cancelled = invocation.getArgument(0);
+              LongConsumer progress = invocation.getArgument(1);
+              long count = 0;
+              while (count < 25_000 && !cancelled.getAsBoolean()) {
+                progress.accept(++count);
+              }
+              return count;
+            });
+    Job jobEntity = Job.builder().build();
+    JobContext ctx = new JobContext(null, jobEntity);
+
+    // act
+    job.accept(ctx);
+
+    // assert
+    assertEquals(
+        """
+        Rebuilding the article search index
+        Indexed 10000 articles so far
+        Indexed 20000 articles so far
+        Indexed 25000 articles""",
+        jobEntity.getLog());
+  }
+
+  @Test
+  public void cancelled_rebuild_says_the_old_index_is_kept() throws Exception {
+    // arrange
+    JobContext ctx = mock(JobContext.class);
+    when(ctx.isCancelled()).thenReturn(true);
+    when(articleSearchIndex.rebuild(any(), any())).thenReturn(3L);
+
+    // act
+    job.accept(ctx);
+
+    // assert
+    verify(ctx).log("Rebuild stopped after 3 articles; the old index is still in use");
+  }
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CsvReaderTests {
+
+  private static CsvReader reader(String text) {
+    return new CsvReader(new BufferedReader(new StringReader(text)));
+  }
+
+  @Test
+  public void reads_plain_records_and_line_numbers() throws Exception {
+    CsvReader csv = reader("a,b,c\r\n1,,3\nlast");
+
+    assertEquals(List.of("a", "b", "c"), csv.next());
+    assertEquals(1, csv.getRecordLine());
+    assertEquals(List.of("1", "", "3"), csv.next());
+    assertEquals(2, csv.getRecordLine());
+    assertEquals(List.of("last"), csv.next());
+    assertEquals(3, csv.getRecordLine());
+    assertNull(csv.next());
+  }
+
+  @Test
+  public void reads_quoted_fields() throws Exception {
+    CsvReader csv = reader("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"\"\nx\"y\",z\n");
+
+    assertEquals(List.of("a,b", "say \"hi\"", "two\nlines", ""), csv.next());
+    assertEquals(1, csv.getRecordLine());
+    assertEquals(List.of("x\"y\"", "z"), csv.next());
+    assertEquals(3, csv.getRecordLine());
+    assertNull(csv.next());
+  }
+
+  @Test
+  public void unclosed_quote_is_an_error() throws Exception {
+    CsvReader csv = reader("ok\n\"never closed,\n");
+    csv.next();
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, csv::next);
+
+    assertEquals("Line 2: quoted field is not closed", e.getMessage());
+  }
+}
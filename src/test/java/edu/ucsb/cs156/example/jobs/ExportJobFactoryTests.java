@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class ExportJobFactoryTests {
+
+  private final ExportJobFactory factory = new ExportJobFactory();
+  private final EntityManager entityManager = mock(EntityManager.class);
+  private final PlatformTransactionManager transactionManager =
+      mock(PlatformTransactionManager.class);
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final JobsRepository jobsRepository = mock(JobsRepository.class);
+
+  @SuppressWarnings("unchecked")
+  private static <T> EntityType<T> entity(String name, Class<T> type) {
+    EntityType<T> entity = mock(EntityType.class);
+    when(entity.getName()).thenReturn(name);
+    when(entity.getJavaType()).thenReturn(type);
+    return entity;
+  }
+
+  @BeforeEach
+  public void setup() {
+    Metamodel metamodel = mock(Metamodel.class);
+    when(entityManager.getMetamodel()).thenReturn(metamodel);
+    Set<EntityType<?>> entities =
+        Set.of(
+            entity("restaurants", Restaurant.class),
+            entity("articles", Article.class),
+            entity("jobs", Job.class));
+    when(metamodel.getEntities()).thenReturn(entities);
+    ReflectionTestUtils.setField(factory, "directory", Path.of("/tmp/exports"));
+    ReflectionTestUtils.setField(factory, "fetchSize", 100);
+    ReflectionTestUtils.setField(factory, "bufferSize", 4096);
+    ReflectionTestUtils.setField(factory, "entityManager", entityManager);
+    ReflectionTestUtils.setField(factory, "transactionManager", transactionManager);
+    ReflectionTestUtils.setField(factory, "mapper", mapper);
+    ReflectionTestUtils.setField(factory, "jobsRepository", jobsRepository);
+    factory.findTables();
+  }
+
+  @Test
+  public void lists_entities_except_jobs() {
+    assertEquals(List.of("articles", "restaurants"), List.copyOf(factory.getTables()));
+  }
+
+  @Test
+  public void create_wires_job_to_table() {
+    // act
+    ExportJob job = factory.create("restaurants");
+
+    // assert
+    assertEquals("restaurants", ReflectionTestUtils.getField(job, "entityName"));
+    assertEquals(Restaurant.class, ReflectionTestUtils.getField(job, "entityType"));
+    assertEquals(Path.of("/tmp/exports"), ReflectionTestUtils.getField(job, "directory"));
+    assertEquals(100, ReflectionTestUtils.getField(job, "fetchSize"));
+    assertEquals(4096, ReflectionTestUtils.getField(job, "bufferSize"));
+    assertSame(entityManager, ReflectionTestUtils.getField(job, "entityManager"));
+    assertSame(mapper, ReflectionTestUtils.getField(job, "mapper"));
+    TransactionTemplate transactionTemplate =
+        (TransactionTemplate) ReflectionTestUtils.getField(job, "transactionTemplate");
+    assertSame(transactionManager, transactionTemplate.getTransactionManager());
+    assertTrue(transactionTemplate.isReadOnly());
+  }
+
+  @Test
+  public void create_refuses_unknown_and_job_tables() {
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> factory.create("jobs"));
+    assertEquals("Cannot export jobs; choose one of [articles, restaurants]", e.getMessage());
+  }
+
+  @Test
+  public void export_file_is_named_after_job() {
+    assertEquals(Path.of("/tmp/exports/export-9.ndjson.gz"), factory.exportFile(9));
+  }
+
+  @Test
+  public void export_file_of_a_job_is_deleted(@TempDir Path directory) throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(factory, "directory", directory);
+    Path file = Files.createFile(directory.resolve("export-9.ndjson.gz"));
+
+    // act
+    factory.deleteExportFile(9);
+    factory.deleteExportFile(10);
+
+    // assert
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void export_files_of_deleted_jobs_are_deleted(@TempDir Path directory) throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(factory, "directory", directory);
+    Path kept = Files.createFile(directory.resolve("export-1.ndjson.gz"));
+    Path keptPart = Files.createFile(directory.resolve("export-2.ndjson.gz.part"));
+    Path deleted = Files.createFile(directory.resolve("export-3.ndjson.gz"));
+    Path deletedPart = Files.createFile(directory.resolve("export-3.ndjson.gz.part"));
+    Path other = Files.createFile(directory.resolve("export-notes.txt"));
+    when(jobsRepository.findExistingIds(any()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgument(0);
+              assertEquals(Set.of(1L, 2L, 3L), Set.copyOf(ids));
+              return List.of(1L, 2L);
+            });
+
+    // act
+    long count = factory.deleteExportFilesOfDeletedJobs();
+
+    // assert
+    assertEquals(2, count);
+    assertTrue(Files.exists(kept));
+    assertTrue(Files.exists(keptPart));
+    assertFalse(Files.exists(deleted));
+    assertFalse(Files.exists(deletedPart));
+    assertTrue(Files.exists(other));
+  }
+
+  @Test
+  public void a_file_already_gone_is_not_counted(@TempDir Path directory) throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(factory, "directory", directory);
+    Path file = Files.createFile(directory.resolve("export-3.ndjson.gz"));
+    when(jobsRepository.findExistingIds(any()))
+        .thenAnswer(
+            invocation -> {
+              // another node's purge, sharing the directory, got there first
+              Files.delete(file);
+              return List.of();
+            });
+
+    // act
+    long count = factory.deleteExportFilesOfDeletedJobs();
+
+    // assert
+    assertEquals(0, count);
+  }
+
+  @Test
+  public void no_export_files_means_no_query(@TempDir Path directory) throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(factory, "directory", directory.resolve("missing"));
+
+    // act and assert
+    assertEquals(0, factory.deleteExportFilesOfDeletedJobs());
+    ReflectionTestUtils.setField(factory, "directory", directory);
+    assertEquals(0, factory.deleteExportFilesOfDeletedJobs());
+    verify(jobsRepository, never()).findExistingIds(any());
+  }
+}
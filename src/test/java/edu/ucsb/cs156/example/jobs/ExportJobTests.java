@@ -0,0 +1,197 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.hibernate.jpa.AvailableHints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class ExportJobTests {
+
+  @TempDir Path tempDir;
+
+  private EntityManager entityManager;
+  private TypedQuery<Restaurant> query;
+  private Job job;
+  private JobContext ctx;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    entityManager = mock(EntityManager.class);
+    query = mock(TypedQuery.class, RETURNS_SELF);
+    when(entityManager.createQuery("SELECT e FROM restaurants e", Restaurant.class))
+        .thenReturn(query);
+    job = Job.builder().id(7).build();
+    ctx = new JobContext(null, job);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ExportJob exportJob(ObjectMapper mapper) {
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(
+            invocation ->
+                ((TransactionCallback<Long>) invocation.getArgument(0)).doInTransaction(null));
+    return ExportJob.builder()
+        .entityName("restaurants")
+        .entityType(Restaurant.class)
+        .directory(tempDir.resolve("exports"))
+        .fetchSize(50)
+        .bufferSize(512)
+        .entityManager(entityManager)
+        .transactionTemplate(transactionTemplate)
+        .mapper(mapper)
+        .build();
+  }
+
+  private static String gunzip(Path file) throws IOException {
+    try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      in.transferTo(out);
+      return out.toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static Restaurant restaurant(long id) {
+    return Restaurant.builder().id(id).name("R" + id).description("D" + id).build();
+  }
+
+  @Test
+  public void writes_each_row_as_a_line_of_gzipped_json() throws Exception {
+    // arrange
+    List<Restaurant> rows = List.of(restaurant(1), restaurant(2));
+    when(query.getResultStream()).thenReturn(rows.stream());
+    ObjectMapper mapper = new ObjectMapper();
+
+    // act
+    exportJob(mapper).accept(ctx);
+
+    // assert
+    Path file = ExportJob.fileFor(tempDir.resolve("exports"), 7);
+    assertEquals(tempDir.resolve("exports").resolve("export-7.ndjson.gz"), file);
+    String expected =
+        mapper.writeValueAsString(rows.get(0))
+            + "\n"
+            + mapper.writeValueAsString(rows.get(1))
+            + "\n";
+    assertEquals(expected, gunzip(file));
+    assertFalse(Files.exists(tempDir.resolve("exports").resolve("export-7.ndjson.gz.part")));
+    verify(query).setHint(AvailableHints.HINT_FETCH_SIZE, 50);
+    verify(query).setHint(AvailableHints.HINT_READ_ONLY, true);
+    verify(entityManager).detach(rows.get(0));
+    verify(entityManager).detach(rows.get(1));
+    assertEquals(
+        "Exporting restaurants\nExported 2 rows (%d bytes compressed)".formatted(Files.size(file)),
+        job.getLog());
+  }
+
+  @Test
+  public void logs_progress_on_large_tables() throws Exception {
+    // arrange
+    when(query.getResultStream())
+        .thenReturn(IntStream.range(0, ExportJob.PROGRESS_EVERY + 1).mapToObj(i -> restaurant(i)));
+
+    // act
+    exportJob(new ObjectMapper()).accept(ctx);
+
+    // assert
+    String[] lines = job.getLog().split("\n");
+    assertEquals("Exported 10000 rows so far", lines[1]);
+    assertTrue(lines[2].startsWith("Exported 10001 rows ("));
+    String content = gunzip(ExportJob.fileFor(tempDir.resolve("exports"), 7));
+    assertEquals(ExportJob.PROGRESS_EVERY + 1, content.lines().count());
+  }
+
+  @Test
+  public void cancelled_export_leaves_no_file() throws Exception {
+    // arrange
+    JobContext cancelled = mock(JobContext.class);
+    when(cancelled.getJobId()).thenReturn(7L);
+    when(cancelled.isCancelled()).thenReturn(false, true);
+    when(query.getResultStream()).thenReturn(Stream.of(restaurant(1), restaurant(2)));
+
+    // act
+    exportJob(new ObjectMapper()).accept(cancelled);
+
+    // assert
+    verify(cancelled).log("Export stopped after 1 rows");
+    verify(entityManager, times(1)).detach(any());
+    try (Stream<Path> files = Files.list(tempDir.resolve("exports"))) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void failed_export_leaves_no_file() throws Exception {
+    // arrange
+    ObjectMapper mapper = mock(ObjectMapper.class);
+    when(mapper.getFactory()).thenReturn(new ObjectMapper().getFactory());
+    when(mapper.writer()).thenThrow(new IllegalStateException("broken"));
+
+    // act
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> exportJob(mapper).accept(ctx));
+
+    // assert
+    assertEquals("broken", e.getMessage());
+    try (Stream<Path> files = Files.list(tempDir.resolve("exports"))) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void write_errors_fail_the_export() throws Exception {
+    // arrange
+    when(query.getResultStream()).thenReturn(Stream.of(restaurant(1)));
+    ObjectMapper mapper = new ObjectMapper();
+    ObjectMapper failing = mock(ObjectMapper.class);
+    when(failing.getFactory()).thenReturn(mapper.getFactory());
+    ObjectWriter writer = mock(ObjectWriter.class, RETURNS_SELF);
+    when(failing.writer()).thenReturn(writer);
+    doAnswer(
+            invocation -> {
+              throw new IOException("disk full");
+            })
+        .when(writer)
+        .writeValue(any(JsonGenerator.class), any());
+
+    // act
+    UncheckedIOException e =
+        assertThrows(UncheckedIOException.class, () -> exportJob(failing).accept(ctx));
+
+    // assert
+    assertEquals("disk full", e.getCause().getMessage());
+  }
+}
@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class MenuItemImportJobFactoryTests {
+
+  @Test
+  public void create_wires_job_to_database() throws Exception {
+    // arrange
+    MenuItemImportJobFactory factory = new MenuItemImportJobFactory();
+    UCSBDiningCommonsMenuItemRepository repository =
+        mock(UCSBDiningCommonsMenuItemRepository.class);
+    TransactionTemplate transactionTemplate = new TransactionTemplate();
+    ObjectMapper mapper = new ObjectMapper();
+    TableVersionService tableVersionService = new TableVersionService();
+    ReflectionTestUtils.setField(factory, "batchSize", 0);
+    ReflectionTestUtils.setField(factory, "repository", repository);
+    ReflectionTestUtils.setField(factory, "transactionTemplate", transactionTemplate);
+    ReflectionTestUtils.setField(factory, "mapper", mapper);
+    ReflectionTestUtils.setField(factory, "tableVersionService", tableVersionService);
+    Path file = Path.of("menus.csv");
+
+    // act
+    MenuItemImportJob job = factory.create(file, MenuItemImportJob.Format.CSV);
+
+    // assert
+    assertSame(file, ReflectionTestUtils.getField(job, "file"));
+    assertEquals(MenuItemImportJob.Format.CSV, ReflectionTestUtils.getField(job, "format"));
+    assertEquals(1, ReflectionTestUtils.getField(job, "batchSize"));
+    assertSame(repository, ReflectionTestUtils.getField(job, "repository"));
+    assertSame(transactionTemplate, ReflectionTestUtils.getField(job, "transactionTemplate"));
+    assertSame(mapper, ReflectionTestUtils.getField(job, "mapper"));
+    assertSame(tableVersionService, ReflectionTestUtils.getField(job, "tableVersionService"));
+  }
+}
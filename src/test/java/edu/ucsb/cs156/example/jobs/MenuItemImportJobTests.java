@@ -0,0 +1,284 @@
+package edu.ucsb.cs156.example.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class MenuItemImportJobTests {
+
+  @TempDir Path tempDir;
+
+  private UCSBDiningCommonsMenuItemRepository repository;
+  private TransactionTemplate transactionTemplate;
+  private TableVersionService tableVersionService;
+  private final List<List<UCSBDiningCommonsMenuItem>> batches = new ArrayList<>();
+  private Job job;
+  private JobContext ctx;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    repository = mock(UCSBDiningCommonsMenuItemRepository.class);
+    transactionTemplate = mock(TransactionTemplate.class);
+    tableVersionService = mock(TableVersionService.class);
+    doAnswer(
+            invocation -> {
+              ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(repository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              List<UCSBDiningCommonsMenuItem> batch =
+                  new ArrayList<>((List<UCSBDiningCommonsMenuItem>) invocation.getArgument(0));
+              batches.add(batch);
+              return batch;
+            });
+    job = Job.builder().id(1).build();
+    ctx = new JobContext(null, job);
+  }
+
+  private MenuItemImportJob importJob(
+      String content, MenuItemImportJob.Format format, int batchSize) throws Exception {
+    Path file = Files.createTempFile(tempDir, "upload", ".txt");
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+    return MenuItemImportJob.builder()
+        .file(file)
+        .format(format)
+        .batchSize(batchSize)
+        .repository(repository)
+        .transactionTemplate(transactionTemplate)
+        .mapper(new ObjectMapper())
+        .tableVersionService(tableVersionService)
+        .build();
+  }
+
+  private static UCSBDiningCommonsMenuItem item(String commons, String name, String station) {
+    return UCSBDiningCommonsMenuItem.builder()
+        .dining_commons_code(commons)
+        .name(name)
+        .station(station)
+        .build();
+  }
+
+  private void assertNoFilesLeft() throws Exception {
+    try (var files = Files.list(tempDir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void imports_csv_in_batches_and_reports_bad_rows() throws Exception {
+    // arrange
+    String csv =
+        """
+        Station,NAME,extra,dining_commons_code
+        East Plate,Mac-n-Cheese,x,ortega
+        "Grill, North",Burger,x,portola
+
+        Salad Bar,,x,carrillo
+        Deli,"%s",x,de-la-guerra
+        Pizza,Pepperoni
+        Lonely
+        Bakery,Cookie,x,ortega
+        """
+            .formatted("a".repeat(256));
+    MenuItemImportJob importJob = importJob(csv, MenuItemImportJob.Format.CSV, 2);
+
+    // act
+    importJob.accept(ctx);
+
+    // assert
+    assertEquals(2, batches.size());
+    verify(tableVersionService, times(2)).bump(UCSBDiningCommonsMenuItem.class);
+    assertEquals(item("ortega", "Mac-n-Cheese", "East Plate"), batches.get(0).get(0));
+    assertEquals(item("portola", "Burger", "Grill, North"), batches.get(0).get(1));
+    assertEquals(1, batches.get(1).size());
+    assertEquals(item("ortega", "Cookie", "Bakery"), batches.get(1).get(0));
+
+    String expectedLog =
+        """
+        Importing menu items from CSV file
+        Imported 2 rows so far (0 rejected)
+        Line 5: name is missing
+        Line 6: name is longer than 255 characters
+        Line 7: dining_commons_code is missing
+        Line 8: dining_commons_code is missing
+        Imported 3 rows so far (4 rejected)
+        Import finished: 3 rows imported, 4 rejected""";
+    assertEquals(expectedLog, job.getLog());
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void csv_without_required_columns_fails() throws Exception {
+    // arrange
+    MenuItemImportJob importJob =
+        importJob("name,code\nBurger,ortega\n", MenuItemImportJob.Format.CSV, 10);
+
+    // act
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> importJob.accept(ctx));
+
+    // assert
+    assertEquals("CSV header is missing dining_commons_code, station", e.getMessage());
+    verify(repository, never()).saveAll(any());
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void empty_file_imports_nothing() throws Exception {
+    // arrange
+    MenuItemImportJob importJob = importJob("", MenuItemImportJob.Format.CSV, 10);
+
+    // act
+    importJob.accept(ctx);
+
+    // assert
+    assertEquals(0, batches.size());
+    assertEquals(
+        "Importing menu items from CSV file\nImport finished: 0 rows imported, 0 rejected",
+        job.getLog());
+  }
+
+  @Test
+  public void imports_ndjson_and_reports_bad_lines() throws Exception {
+    // arrange
+    String ndjson =
+        """
+        {"dining_commons_code": "ortega", "name": " Mac-n-Cheese ", "station": "East Plate"}
+
+        {"dining_commons_code": "portola", "name": null, "station": "Grill"}
+        [1, 2]
+        {"dining_commons_code":
+        {"dining_commons_code": "carrillo", "name": "Tacos", "station": 7, "extra": true}
+        """;
+    MenuItemImportJob importJob = importJob(ndjson, MenuItemImportJob.Format.NDJSON, 10);
+
+    // act
+    importJob.accept(ctx);
+
+    // assert
+    assertEquals(1, batches.size());
+    assertEquals(item("ortega", "Mac-n-Cheese", "East Plate"), batches.get(0).get(0));
+    assertEquals(item("carrillo", "Tacos", "7"), batches.get(0).get(1));
+    String[] lines = job.getLog().split("\n");
+    assertEquals("Line 3: name is missing", lines[1]);
+    assertEquals("Line 4: not a JSON object", lines[2]);
+    assertEquals(true, lines[3].startsWith("Line 5: not valid JSON: "));
+    assertEquals("Import finished: 2 rows imported, 3 rejected", lines[5]);
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void only_the_first_errors_are_logged() throws Exception {
+    // arrange
+    String ndjson = "{}\n".repeat(MenuItemImportJob.MAX_ERRORS_LOGGED + 5);
+    MenuItemImportJob importJob = importJob(ndjson, MenuItemImportJob.Format.NDJSON, 10);
+
+    // act
+    importJob.accept(ctx);
+
+    // assert
+    String[] lines = job.getLog().split("\n");
+    assertEquals(MenuItemImportJob.MAX_ERRORS_LOGGED + 3, lines.length);
+    assertEquals("(only the first 100 rejected rows are listed)", lines[lines.length - 2]);
+    assertEquals("Import finished: 0 rows imported, 105 rejected", lines[lines.length - 1]);
+  }
+
+  @Test
+  public void cancelled_import_stops_reading() throws Exception {
+    // arrange
+    JobContext cancelled = mock(JobContext.class);
+    when(cancelled.isCancelled()).thenReturn(false, true);
+    String csv = "dining_commons_code,name,station\nortega,A,B\nortega,C,D\nortega,E,F\n";
+    MenuItemImportJob importJob = importJob(csv, MenuItemImportJob.Format.CSV, 1);
+
+    // act
+    importJob.accept(cancelled);
+
+    // assert
+    assertEquals(1, batches.size());
+    verify(cancelled).log("Import stopped; 1 rows were imported before it was cancelled");
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void cancelled_ndjson_import_stops_reading() throws Exception {
+    // arrange
+    JobContext cancelled = mock(JobContext.class);
+    when(cancelled.isCancelled()).thenReturn(true);
+    String ndjson = "{\"dining_commons_code\": \"ortega\", \"name\": \"A\", \"station\": \"B\"}\n";
+    MenuItemImportJob importJob = importJob(ndjson, MenuItemImportJob.Format.NDJSON, 1);
+
+    // act
+    importJob.accept(cancelled);
+
+    // assert
+    assertEquals(0, batches.size());
+    verify(cancelled).log("Import stopped; 0 rows were imported before it was cancelled");
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void failed_insert_fails_the_job_and_deletes_the_file() throws Exception {
+    // arrange
+    doThrow(new IllegalStateException("database is down")).when(repository).saveAll(any());
+    String csv = "dining_commons_code,name,station\nortega,A,B\n";
+    MenuItemImportJob importJob = importJob(csv, MenuItemImportJob.Format.CSV, 10);
+
+    // act
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> importJob.accept(ctx));
+
+    // assert
+    assertEquals("database is down", e.getMessage());
+    assertFalse(job.getLog().contains("Import finished"));
+    assertNoFilesLeft();
+  }
+
+  @Test
+  public void format_is_found_by_name_or_extension() throws Exception {
+    assertEquals(MenuItemImportJob.Format.CSV, MenuItemImportJob.Format.of("CSV"));
+    assertEquals(MenuItemImportJob.Format.CSV, MenuItemImportJob.Format.of("menus.csv"));
+    assertEquals(MenuItemImportJob.Format.NDJSON, MenuItemImportJob.Format.of("ndjson"));
+    assertEquals(MenuItemImportJob.Format.NDJSON, MenuItemImportJob.Format.of("jsonl"));
+    assertEquals(MenuItemImportJob.Format.NDJSON, MenuItemImportJob.Format.of("menus.NDJSON"));
+    assertEquals(MenuItemImportJob.Format.NDJSON, MenuItemImportJob.Format.of("menus.jsonl"));
+
+    IllegalArgumentException e1 =
+        assertThrows(IllegalArgumentException.class, () -> MenuItemImportJob.Format.of("a.xml"));
+    IllegalArgumentException e2 =
+        assertThrows(IllegalArgumentException.class, () -> MenuItemImportJob.Format.of(null));
+    assertEquals("Cannot tell the format of a.xml; use csv or ndjson", e1.getMessage());
+    assertEquals("Cannot tell the format of null; use csv or ndjson", e2.getMessage());
+  }
+}
@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsb.cs156.example.config.CacheConfig;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@Import({AdminService.class, AdminServiceTests.CacheTestConfig.class})
+@TestPropertySource(properties = "app.admin.emails=admin@ucsb.edu, other-admin@ucsb.edu")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class AdminServiceTests {
+
+  @TestConfiguration
+  static class CacheTestConfig {
+    @Bean
+    CacheManager cacheManager() {
+      CaffeineCacheManager cacheManager = new CaffeineCacheManager(CacheConfig.CURRENT_USERS);
+      cacheManager.setCaffeine(Caffeine.newBuilder());
+      return cacheManager;
+    }
+  }
+
+  @MockBean UserRepository userRepository;
+
+  @Autowired AdminService adminService;
+
+  @Test
+  public void configured_admins_are_admins_without_a_query() {
+    assertTrue(adminService.isAdmin("admin@ucsb.edu"));
+    assertTrue(adminService.isAdmin("other-admin@ucsb.edu"));
+    assertTrue(adminService.isConfiguredAdmin("other-admin@ucsb.edu"));
+    verify(userRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  public void users_flagged_as_admins_are_looked_up_once() {
+    User promoted = User.builder().email("promoted@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail("promoted@ucsb.edu")).thenReturn(Optional.of(promoted));
+
+    assertTrue(adminService.isAdmin("promoted@ucsb.edu"));
+    assertTrue(adminService.isAdmin("promoted@ucsb.edu"));
+    assertFalse(adminService.isConfiguredAdmin("promoted@ucsb.edu"));
+
+    verify(userRepository, times(1)).findByEmail("promoted@ucsb.edu");
+  }
+
+  @Test
+  public void unknown_users_are_not_admins_and_are_looked_up_once() {
+    when(userRepository.findByEmail("nobody@ucsb.edu")).thenReturn(Optional.empty());
+
+    assertFalse(adminService.isAdmin("nobody@ucsb.edu"));
+    assertTrue(adminService.findUser("nobody@ucsb.edu").isEmpty());
+
+    verify(userRepository, times(1)).findByEmail("nobody@ucsb.edu");
+  }
+
+  @Test
+  public void a_changed_user_replaces_the_cached_one() {
+    User before = User.builder().email("cgaucho@ucsb.edu").admin(false).build();
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(before));
+    assertFalse(adminService.isAdmin("cgaucho@ucsb.edu"));
+
+    adminService.userChanged(User.builder().email("cgaucho@ucsb.edu").admin(true).build());
+
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  public void concurrent_lookups_of_the_same_user_share_one_query() throws Exception {
+    User cgaucho = User.builder().email("cgaucho@ucsb.edu").build();
+    when(userRepository.findByEmail("cgaucho@ucsb.edu"))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(200);
+              return Optional.of(cgaucho);
+            });
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> adminService.isAdmin("cgaucho@ucsb.edu")));
+      }
+      for (Future<Boolean> result : results) {
+        assertFalse(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+}
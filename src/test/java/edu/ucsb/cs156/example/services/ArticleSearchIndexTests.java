@@ -0,0 +1,285 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ArticleSearchIndexTests {
+
+  private ArticleRepository articleRepository;
+  private EntityManager entityManager;
+  private ArticleSearchIndex index;
+
+  /** The rows findAllById can see, by id. */
+  private final Map<Long, Article> rows = new HashMap<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    articleRepository = mock(ArticleRepository.class);
+    entityManager = mock(EntityManager.class);
+    index = new ArticleSearchIndex();
+    index.articleRepository = articleRepository;
+    index.entityManager = entityManager;
+    index.transactionManager = mock(PlatformTransactionManager.class);
+
+    when(articleRepository.findAllById(any()))
+        .thenAnswer(
+            invocation -> {
+              List<Article> found = new ArrayList<>();
+              for (Long id : (Iterable<Long>) invocation.getArgument(0)) {
+                if (rows.containsKey(id)) {
+                  found.add(rows.get(id));
+                }
+              }
+              return found;
+            });
+  }
+
+  private Article article(long id, String title, String explanation) {
+    Article article = Article.builder().id(id).title(title).explanation(explanation).build();
+    rows.put(id, article);
+    return article;
+  }
+
+  private void put(long id, String title, String explanation) {
+    index.put(id, article(id, title, explanation));
+  }
+
+  private List<Long> search(String query, int limit) {
+    return index.search(query, limit).stream().map(Article::getId).toList();
+  }
+
+  @Test
+  public void text_is_split_into_lower_cased_words() {
+    assertEquals(
+        List.of("hello", "world", "café", "42x", "it", "s"),
+        ArticleSearchIndex.tokenize("  Hello, WORLD! Café 42x -- it's"));
+    assertEquals(List.of(), ArticleSearchIndex.tokenize(""));
+  }
+
+  @Test
+  public void articles_are_ranked_by_bm25() {
+    put(1, "Java", "java java");
+    put(2, "Coffee", "beans from java and a long story about coffee farming in the hills");
+    put(3, "Python", "snakes");
+
+    // more occurrences in a shorter document rank higher
+    assertEquals(List.of(1L, 2L), search("java", 10));
+    // matching more of the query's words ranks higher
+    assertEquals(List.of(2L, 1L), search("coffee java", 10));
+    // a rare word in a short document outranks a common one
+    assertEquals(List.of(3L, 1L, 2L), search("Java, python", 10));
+    assertEquals(List.of(1L), search("java", 1));
+  }
+
+  @Test
+  public void rarer_words_count_for_more() {
+    put(1, "common rare", null);
+    put(2, "common common", null);
+    put(3, "common", null);
+
+    assertEquals(List.of(1L, 2L, 3L), search("common rare", 10));
+  }
+
+  @Test
+  public void equal_scores_are_ordered_by_id() {
+    put(5, "Same", "text");
+    put(4, "Same", "text");
+
+    assertEquals(List.of(4L, 5L), search("same", 10));
+  }
+
+  @Test
+  public void query_words_match_the_words_they_are_a_prefix_of() {
+    put(1, "Java", null);
+    put(2, "JavaScript", null);
+    put(3, "Jam", null);
+
+    assertEquals(List.of(1L, 2L), search("jav", 10));
+    assertEquals(List.of(2L), search("javas", 10));
+    assertEquals(List.of(), search("javascripts", 10));
+  }
+
+  @Test
+  public void a_prefix_matches_a_limited_number_of_words() {
+    int words = ArticleSearchIndex.MAX_EXPANSIONS + 1;
+    IntStream.range(0, words).forEach(i -> put(i, "w%03d".formatted(i), null));
+
+    List<Long> found = search("w", 100);
+    assertEquals(ArticleSearchIndex.MAX_EXPANSIONS, found.size());
+    assertEquals(List.of((long) words - 1), search("w%03d".formatted(words - 1), 100));
+  }
+
+  @Test
+  public void a_prefix_keeps_its_shortest_expansions() {
+    IntStream.range(0, ArticleSearchIndex.MAX_EXPANSIONS)
+        .forEach(i -> put(i, "wa%03d".formatted(i), null));
+    put(100, "wz", null);
+
+    List<Long> found = search("w", 100);
+    assertEquals(ArticleSearchIndex.MAX_EXPANSIONS, found.size());
+    assertTrue(found.contains(100L));
+    assertFalse(found.contains((long) ArticleSearchIndex.MAX_EXPANSIONS - 1));
+  }
+
+  @Test
+  public void missing_text_is_not_indexed() {
+    put(1, null, "Java");
+
+    assertEquals(List.of(1L), search("java", 10));
+    assertEquals(List.of(), search("null", 10));
+  }
+
+  @Test
+  public void empty_indexes_and_queries_find_nothing() {
+    assertEquals(List.of(), search("java", 10));
+
+    put(1, "Java", null);
+    assertEquals(List.of(), search("?!", 10));
+  }
+
+  @Test
+  public void put_replaces_an_article_and_remove_drops_it() {
+    put(1, "Java", "streams");
+    put(2, "Java", "records");
+    put(1, "Python", null);
+
+    assertEquals(List.of(2L), search("java", 10));
+    assertEquals(List.of(1L), search("python", 10));
+    assertEquals(List.of(), search("streams", 10));
+
+    index.remove(2);
+    index.remove(42);
+    assertEquals(List.of(), search("java", 10));
+    assertEquals(List.of(1L), search("python", 10));
+  }
+
+  @Test
+  public void writes_made_in_a_transaction_are_applied_when_it_commits() {
+    put(1, "Java", null);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      put(2, "Java", null);
+      index.remove(1);
+      assertEquals(List.of(1L), search("java", 10));
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(List.of(2L), search("java", 10));
+  }
+
+  @Test
+  public void articles_no_longer_in_the_database_are_left_out() {
+    put(1, "Java", null);
+    put(2, "Java", null);
+    rows.remove(1L);
+
+    assertEquals(List.of(2L), search("java", 10));
+  }
+
+  @Test
+  public void rebuild_reads_every_article_and_replaces_the_index() {
+    put(99, "Stale", null);
+    Article java = article(1, "Java", null);
+    Article python = article(2, "Python", null);
+    when(articleRepository.streamAllBy()).thenReturn(Stream.of(java, python));
+    List<Long> progress = new ArrayList<>();
+
+    long count = index.rebuild(() -> false, progress::add);
+
+    assertEquals(2, count);
+    assertEquals(List.of(1L, 2L), progress);
+    assertEquals(List.of(1L), search("java", 10));
+    assertEquals(List.of(2L), search("python", 10));
+    assertEquals(List.of(), search("stale", 10));
+    verify(entityManager).detach(java);
+    verify(entityManager).detach(python);
+  }
+
+  @Test
+  public void writes_made_during_a_rebuild_are_kept() {
+    Article java = article(1, "Java", null);
+    Article python = article(2, "Python", null);
+    when(articleRepository.streamAllBy()).thenReturn(Stream.of(java, python));
+
+    index.rebuild(
+        () -> false,
+        n -> {
+          if (n == 1) {
+            // article 2 is deleted and article 3 added before the rebuild reads them
+            index.remove(2);
+            put(3, "Rust", null);
+            // searches still see the old index, with the writes applied
+            assertEquals(List.of(3L), search("rust", 10));
+            assertEquals(List.of(), search("java", 10));
+          }
+        });
+
+    assertEquals(List.of(1L), search("java", 10));
+    assertEquals(List.of(), search("python", 10));
+    assertEquals(List.of(3L), search("rust", 10));
+  }
+
+  @Test
+  public void a_cancelled_rebuild_keeps_the_old_index() {
+    put(99, "Old", null);
+    when(articleRepository.streamAllBy())
+        .thenReturn(Stream.of(article(1, "Java", null), article(2, "Python", null)));
+    List<Long> progress = new ArrayList<>();
+
+    long count = index.rebuild(() -> !progress.isEmpty(), progress::add);
+
+    assertEquals(1, count);
+    assertEquals(List.of(99L), search("old", 10));
+    assertEquals(List.of(), search("java", 10));
+  }
+
+  @Test
+  public void a_failed_rebuild_keeps_the_old_index() {
+    put(99, "Old", null);
+    RuntimeException failure = new RuntimeException("connection lost");
+    when(articleRepository.streamAllBy()).thenThrow(failure);
+
+    RuntimeException thrown =
+        assertThrows(RuntimeException.class, () -> index.rebuild(() -> false, n -> {}));
+
+    assertSame(failure, thrown);
+    put(98, "Old", null);
+    assertEquals(List.of(98L, 99L), search("old", 10));
+  }
+
+  @Test
+  public void the_index_is_built_on_startup() {
+    when(articleRepository.streamAllBy()).thenReturn(Stream.of(article(1, "Java", null)));
+
+    index.buildOnStartup();
+
+    assertEquals(List.of(1L), search("java", 10));
+  }
+}
@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.BatchItemResult.Status;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+public class BatchServiceTests {
+
+  private RestaurantRepository repository;
+  private BatchService service;
+
+  @BeforeEach
+  public void setUp() {
+    repository = mock(RestaurantRepository.class);
+    service = new BatchService();
+    ReflectionTestUtils.setField(service, "maxItems", 3);
+  }
+
+  private static Restaurant restaurant(long id, String name) {
+    return Restaurant.builder().id(id).name(name).description("Description").build();
+  }
+
+  private static void copyName(Restaurant target, Restaurant incoming) {
+    target.setName(incoming.getName());
+  }
+
+  @Test
+  public void create_saves_every_item_and_reports_the_new_keys() {
+    List<Restaurant> items = List.of(restaurant(0, "A"), restaurant(0, "B"));
+    when(repository.saveAll(items)).thenReturn(List.of(restaurant(5, "A"), restaurant(6, "B")));
+
+    List<BatchItemResult> results = service.create(repository, items, Restaurant::getId);
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 5L, Status.CREATED), new BatchItemResult(1, 6L, Status.CREATED)),
+        results);
+  }
+
+  @Test
+  public void create_skips_items_whose_key_is_taken_and_saves_the_rest() {
+    Restaurant existing = restaurant(1, "Existing");
+    Restaurant free = restaurant(2, "Free");
+    when(repository.findAllById(List.of(1L, 2L, 2L))).thenReturn(List.of(existing));
+    when(repository.saveAll(List.of(free))).thenReturn(List.of(free));
+
+    List<BatchItemResult> results =
+        service.create(
+            repository,
+            List.of(restaurant(1, "Duplicate"), free, restaurant(2, "Repeat")),
+            Restaurant::getId);
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 1L, Status.CONFLICT),
+            new BatchItemResult(1, 2L, Status.CREATED),
+            new BatchItemResult(2, 2L, Status.CONFLICT)),
+        results);
+  }
+
+  @Test
+  public void create_checks_natural_keys_and_leaves_null_keys_to_the_database() {
+    UCSBDiningCommonsRepository commons = mock(UCSBDiningCommonsRepository.class);
+    UCSBDiningCommons existing = UCSBDiningCommons.builder().code("ortega").build();
+    UCSBDiningCommons unnamed = UCSBDiningCommons.builder().build();
+    when(commons.findAllById(List.of("ortega"))).thenReturn(List.of(existing));
+    when(commons.saveAll(List.of(unnamed))).thenReturn(List.of(unnamed));
+
+    List<BatchItemResult> results =
+        service.create(
+            commons,
+            List.of(UCSBDiningCommons.builder().code("ortega").build(), unnamed),
+            UCSBDiningCommons::getCode);
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, "ortega", Status.CONFLICT),
+            new BatchItemResult(1, null, Status.CREATED)),
+        results);
+  }
+
+  @Test
+  public void update_copies_onto_existing_rows_read_in_one_query() {
+    Restaurant existing1 = restaurant(1, "Old 1");
+    Restaurant existing3 = restaurant(3, "Old 3");
+    when(repository.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(existing3, existing1));
+
+    List<BatchItemResult> results =
+        service.update(
+            repository,
+            List.of(restaurant(1, "New 1"), restaurant(2, "New 2"), restaurant(3, "New 3")),
+            Restaurant::getId,
+            BatchServiceTests::copyName);
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 1L, Status.UPDATED),
+            new BatchItemResult(1, 2L, Status.NOT_FOUND),
+            new BatchItemResult(2, 3L, Status.UPDATED)),
+        results);
+    assertEquals("New 1", existing1.getName());
+    assertEquals("New 3", existing3.getName());
+    verify(repository).saveAll(List.of(existing1, existing3));
+  }
+
+  @Test
+  public void delete_removes_each_existing_row_once() {
+    Restaurant existing = restaurant(1, "Doomed");
+    when(repository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    List<BatchItemResult> results =
+        service.delete(repository, List.of(1L, 2L, 1L), Restaurant::getId);
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 1L, Status.DELETED),
+            new BatchItemResult(1, 2L, Status.NOT_FOUND),
+            new BatchItemResult(2, 1L, Status.NOT_FOUND)),
+        results);
+    verify(repository).deleteAll(List.of(existing));
+  }
+
+  @Test
+  public void batches_larger_than_maxItems_are_rejected() {
+    List<Restaurant> items =
+        List.of(restaurant(1, "A"), restaurant(2, "B"), restaurant(3, "C"), restaurant(4, "D"));
+
+    ResponseStatusException e =
+        assertThrows(
+            ResponseStatusException.class,
+            () -> service.create(repository, items, Restaurant::getId));
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    assertEquals("A batch may have at most 3 items; this one has 4", e.getReason());
+
+    assertThrows(
+        ResponseStatusException.class,
+        () -> service.update(repository, items, Restaurant::getId, BatchServiceTests::copyName));
+    assertThrows(
+        ResponseStatusException.class,
+        () -> service.delete(repository, List.of(1L, 2L, 3L, 4L), Restaurant::getId));
+    verify(repository, never()).saveAll(any());
+    verify(repository, never()).findAllById(any());
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsb.cs156.example.config.CacheConfig;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@ExtendWith(SpringExtension.class)
+@Import({
+  CurrentUserServiceImpl.class,
+  AdminService.class,
+  CurrentUserServiceImplTests.CacheTestConfig.class
+})
+@TestPropertySource(properties = "app.admin.emails=admin@ucsb.edu")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CurrentUserServiceImplTests {
+
+  @TestConfiguration
+  static class CacheTestConfig {
+    @Bean
+    CacheManager cacheManager() {
+      CaffeineCacheManager cacheManager = new CaffeineCacheManager(CacheConfig.CURRENT_USERS);
+      cacheManager.setCaffeine(Caffeine.newBuilder().recordStats());
+      return cacheManager;
+    }
+  }
+
+  @MockBean UserRepository userRepository;
+
+  @MockBean GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @Autowired CurrentUserServiceImpl currentUserService;
+
+  @Autowired CacheManager cacheManager;
+
+  private void logIn(String email) {
+    DefaultOAuth2User principal =
+        new DefaultOAuth2User(
+            List.of(new SimpleGrantedAuthority("ROLE_USER")),
+            Map.of("sub", "sub-" + email, "email", email, "email_verified", true),
+            "email");
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  private void startRequest() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  @BeforeEach
+  public void setUp() {
+    startRequest();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void the_user_is_looked_up_once_per_request() {
+    User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").build();
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+    logIn("cgaucho@ucsb.edu");
+
+    assertTrue(currentUserService.isLoggedIn());
+    assertTrue(currentUserService.isLoggedIn());
+    assertSame(cgaucho, currentUserService.getUser());
+
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+    CaffeineCache users = (CaffeineCache) cacheManager.getCache(CacheConfig.CURRENT_USERS);
+    assertEquals(0, users.getNativeCache().stats().hitCount());
+  }
+
+  @Test
+  public void later_requests_are_answered_from_the_cache() {
+    User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").build();
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+    logIn("cgaucho@ucsb.edu");
+
+    assertSame(cgaucho, currentUserService.getUser());
+    startRequest();
+    assertSame(cgaucho, currentUserService.getUser());
+    RequestContextHolder.resetRequestAttributes();
+    assertSame(cgaucho, currentUserService.getUser());
+
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+    verify(userRepository, never()).save(any());
+  }
+
+  @Test
+  public void new_users_are_saved_and_cached() {
+    when(userRepository.findByEmail("new@ucsb.edu")).thenReturn(Optional.empty());
+    logIn("new@ucsb.edu");
+
+    User user = currentUserService.getUser();
+    startRequest();
+
+    assertSame(user, currentUserService.getUser());
+    assertEquals("new@ucsb.edu", user.getEmail());
+    verify(userRepository, times(1)).findByEmail("new@ucsb.edu");
+    verify(userRepository, times(1)).save(user);
+  }
+
+  @Test
+  public void a_cached_user_that_becomes_an_admin_is_saved_and_replaced_in_the_cache() {
+    User cached = User.builder().id(2L).email("admin@ucsb.edu").admin(false).build();
+    cacheManager.getCache(CacheConfig.CURRENT_USERS).put("admin@ucsb.edu", cached);
+    logIn("admin@ucsb.edu");
+
+    User user = currentUserService.getUser();
+    startRequest();
+    currentUserService.getUser();
+
+    assertTrue(user.getAdmin());
+    assertTrue(
+        cacheManager
+            .getCache(CacheConfig.CURRENT_USERS)
+            .get("admin@ucsb.edu", User.class)
+            .getAdmin());
+    verify(userRepository, never()).findByEmail(any());
+    verify(userRepository, times(1)).save(user);
+  }
+
+  @Test
+  public void users_who_are_not_logged_in_with_oauth_are_not_looked_up() {
+    assertNull(currentUserService.getUser());
+    verify(userRepository, never()).findByEmail(any());
+  }
+}
@@ -5,8 +5,12 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +22,10 @@ public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -64,4 +72,92 @@ public class JobLogsServiceTests {
     // Act & Assert
     assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
   }
+
+  @Test
+  void test_getJobLogs_range_of_legacy_log() {
+    // Arrange
+    Long jobId = 4L;
+    Job job = Job.builder().log("0123456789").build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+
+    // Act & Assert
+    assertEquals("3456", jobService.getJobLogs(jobId, 3, 4));
+    assertEquals("89", jobService.getJobLogs(jobId, 8, 4));
+    assertEquals("", jobService.getJobLogs(jobId, 20, 4));
+    assertEquals("0123", jobService.getJobLogs(jobId, -5, 4));
+    assertEquals("", jobService.getJobLogs(jobId, 3, -1));
+  }
+
+  @Test
+  void test_getJobLogs_of_job_already_read() {
+    // Arrange
+    Job job = Job.builder().log("0123456789").build();
+
+    // Act & Assert
+    assertEquals("0123456789", jobService.getJobLogs(job));
+    assertEquals("3456", jobService.getJobLogs(job, 3, 4));
+  }
+
+  @Test
+  void test_getJobLogs_reads_all_chunks() {
+    // Arrange
+    Long jobId = 5L;
+    Job job = Job.builder().id(jobId).build();
+    JobLogChunk chunk1 =
+        JobLogChunk.builder()
+            .jobId(jobId)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(6)
+            .content("line 1")
+            .build();
+    JobLogChunk chunk2 =
+        JobLogChunk.builder()
+            .jobId(jobId)
+            .seq(1)
+            .startOffset(6)
+            .endOffset(20)
+            .content("\nline 2\nline 3")
+            .build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.findChunksInRange(5L, 0L, Long.MAX_VALUE))
+        .thenReturn(List.of(chunk1, chunk2));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("line 1\nline 2\nline 3", result);
+  }
+
+  @Test
+  void test_getJobLogs_reads_only_the_requested_range_of_chunks() {
+    // Arrange
+    Long jobId = 6L;
+    Job job = Job.builder().id(jobId).build();
+    JobLogChunk chunk1 =
+        JobLogChunk.builder()
+            .jobId(jobId)
+            .seq(0)
+            .startOffset(0)
+            .endOffset(6)
+            .content("line 1")
+            .build();
+    JobLogChunk chunk2 =
+        JobLogChunk.builder()
+            .jobId(jobId)
+            .seq(1)
+            .startOffset(6)
+            .endOffset(13)
+            .content("\nline 2")
+            .build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogChunksRepository.findChunksInRange(6L, 4L, 9L)).thenReturn(List.of(chunk1, chunk2));
+
+    // Act
+    String result = jobService.getJobLogs(jobId, 4, 5);
+
+    // Assert
+    assertEquals(" 1\nli", result);
+  }
 }
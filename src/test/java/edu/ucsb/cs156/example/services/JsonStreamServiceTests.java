@@ -0,0 +1,126 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public class JsonStreamServiceTests {
+
+  private static class CountingOutputStream extends ByteArrayOutputStream {
+    int flushes = 0;
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+
+    String text() {
+      return toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private EntityManager entityManager;
+  private PlatformTransactionManager transactionManager;
+  private JsonStreamService service;
+
+  @BeforeEach
+  public void setUp() {
+    entityManager = mock(EntityManager.class);
+    transactionManager = mock(PlatformTransactionManager.class);
+    service = new JsonStreamService();
+    ReflectionTestUtils.setField(service, "mapper", mapper);
+    ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+    ReflectionTestUtils.setField(service, "flushEveryRows", 2);
+  }
+
+  private List<Restaurant> restaurants(int count) {
+    return IntStream.rangeClosed(1, count)
+        .mapToObj(i -> Restaurant.builder().id(i).name("R" + i).description("D" + i).build())
+        .toList();
+  }
+
+  @Test
+  public void array_writes_every_row_in_a_read_only_transaction() throws Exception {
+    List<Restaurant> rows = restaurants(5);
+    AtomicBoolean closed = new AtomicBoolean(false);
+    CountingOutputStream out = new CountingOutputStream();
+
+    ResponseEntity<StreamingResponseBody> response =
+        service.array(() -> rows.stream().onClose(() -> closed.set(true)));
+    response.getBody().writeTo(out);
+
+    assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+    assertEquals(mapper.writeValueAsString(rows), out.text());
+    assertTrue(closed.get());
+    // after rows 2 and 4, and once more at the end
+    assertEquals(3, out.flushes);
+    for (Restaurant row : rows) {
+      verify(entityManager).detach(row);
+    }
+
+    ArgumentCaptor<TransactionDefinition> definition =
+        ArgumentCaptor.forClass(TransactionDefinition.class);
+    verify(transactionManager).getTransaction(definition.capture());
+    assertTrue(definition.getValue().isReadOnly());
+    verify(transactionManager).commit(any());
+  }
+
+  @Test
+  public void array_writes_an_empty_array_when_there_are_no_rows() throws Exception {
+    CountingOutputStream out = new CountingOutputStream();
+
+    service.array(Stream::empty).getBody().writeTo(out);
+
+    assertEquals("[]", out.text());
+  }
+
+  @Test
+  public void array_rolls_back_and_rethrows_when_the_client_goes_away() {
+    OutputStream out =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("Broken pipe");
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            throw new IOException("Broken pipe");
+          }
+        };
+    StreamingResponseBody body = service.array(() -> restaurants(1).stream()).getBody();
+
+    UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> body.writeTo(out));
+
+    assertEquals("Broken pipe", e.getCause().getMessage());
+    verify(transactionManager, times(1)).rollback(any());
+  }
+}
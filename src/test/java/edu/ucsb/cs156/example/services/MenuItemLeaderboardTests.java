@@ -0,0 +1,202 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MenuItemLeaderboardTests {
+
+  private UCSBDiningCommonsMenuItemRepository repository;
+  private TableVersionService tableVersionService;
+  private MenuItemLeaderboard leaderboard;
+
+  private final TopMenuItem tacos = new TopMenuItem(1, "ortega", "Grill", "Tacos", 2, 10);
+  private final TopMenuItem pizza = new TopMenuItem(2, "ortega", "Pizza", "Pizza", 4, 18);
+  private final TopMenuItem salad = new TopMenuItem(3, "ortega", "Grill", "Salad", 4, 20);
+  private final TopMenuItem soup = new TopMenuItem(4, "ortega", "Grill", "Soup", 2, 10);
+  private final TopMenuItem toast = new TopMenuItem(5, "ortega", "Grill", "Toast", 0, 0);
+  private final TopMenuItem pasta = new TopMenuItem(6, "dlg", "Pasta", "Pasta", 1, 3);
+  private final TopMenuItem nowhere = new TopMenuItem(7, null, null, "Nowhere", 1, 5);
+
+  @BeforeEach
+  public void setUp() {
+    repository = mock(UCSBDiningCommonsMenuItemRepository.class);
+    tableVersionService = mock(TableVersionService.class);
+    leaderboard = new MenuItemLeaderboard();
+    leaderboard.ucsbDiningCommonsMenuItemRepository = repository;
+    leaderboard.tableVersionService = tableVersionService;
+
+    when(repository.findAllWithReviewTotals())
+        .thenReturn(List.of(tacos, pizza, salad, soup, toast, pasta, nowhere));
+    leaderboard.refresh();
+  }
+
+  @Test
+  public void items_are_ranked_by_average_then_review_count_then_id() {
+    assertEquals(List.of(salad, tacos, soup, pizza), leaderboard.top("ortega", null, 10));
+    assertEquals(List.of(salad, tacos), leaderboard.top("ortega", null, 2));
+    assertEquals(List.of(pasta), leaderboard.top("dlg", null, 10));
+  }
+
+  @Test
+  public void items_can_be_ranked_within_a_station() {
+    assertEquals(List.of(salad, tacos, soup), leaderboard.top("ortega", "Grill", 10));
+    assertEquals(List.of(pizza), leaderboard.top("ortega", "Pizza", 10));
+  }
+
+  @Test
+  public void unknown_commons_and_stations_have_no_items() {
+    assertEquals(List.of(), leaderboard.top("carrillo", null, 10));
+    assertEquals(List.of(), leaderboard.top("ortega", "Wok", 10));
+  }
+
+  @Test
+  public void items_without_reviews_have_no_average() {
+    assertNull(toast.getAverageStars());
+    assertEquals(4.5, pizza.getAverageStars());
+  }
+
+  @Test
+  public void refresh_does_nothing_until_a_table_version_changes() {
+    leaderboard.refresh();
+    verify(repository, times(1)).findAllWithReviewTotals();
+
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(1L);
+    when(repository.findAllWithReviewTotals()).thenReturn(List.of(pizza));
+    leaderboard.refresh();
+    leaderboard.refresh();
+    verify(repository, times(2)).findAllWithReviewTotals();
+    assertEquals(List.of(pizza), leaderboard.top("ortega", null, 10));
+
+    when(tableVersionService.readVersion(UCSBDiningCommonsMenuItem.class)).thenReturn(1L);
+    when(repository.findAllWithReviewTotals()).thenReturn(List.of(tacos));
+    leaderboard.refresh();
+    verify(repository, times(3)).findAllWithReviewTotals();
+    assertEquals(List.of(tacos), leaderboard.top("ortega", null, 10));
+  }
+
+  @Test
+  public void added_reviews_move_items_without_a_rebuild() {
+    leaderboard.add(
+        List.of(
+            MenuItemReviewStats.builder().itemId(2).reviewCount(1).starsTotal(5).build(),
+            MenuItemReviewStats.builder().itemId(5).reviewCount(1).starsTotal(1).build(),
+            MenuItemReviewStats.builder().itemId(4).reviewCount(-2).starsTotal(-10).build(),
+            MenuItemReviewStats.builder().itemId(99).reviewCount(1).starsTotal(5).build()),
+        1L);
+
+    TopMenuItem betterPizza = new TopMenuItem(2, "ortega", "Pizza", "Pizza", 5, 23);
+    TopMenuItem reviewedToast = new TopMenuItem(5, "ortega", "Grill", "Toast", 1, 1);
+    assertEquals(
+        List.of(salad, tacos, betterPizza, reviewedToast), leaderboard.top("ortega", null, 10));
+    assertEquals(List.of(salad, tacos, reviewedToast), leaderboard.top("ortega", "Grill", 10));
+    verify(repository, times(1)).findAllWithReviewTotals();
+  }
+
+  @Test
+  public void added_reviews_of_items_outside_any_commons_are_not_ranked() {
+    leaderboard.add(
+        List.of(MenuItemReviewStats.builder().itemId(7).reviewCount(1).starsTotal(5).build()), 1L);
+
+    assertEquals(List.of(salad, tacos, soup, pizza), leaderboard.top("ortega", null, 10));
+  }
+
+  private void addReview(long reviewsVersion) {
+    leaderboard.add(
+        List.of(MenuItemReviewStats.builder().itemId(1).reviewCount(1).starsTotal(5).build()),
+        reviewsVersion);
+  }
+
+  @Test
+  public void versions_bumped_by_added_writes_do_not_cause_a_rebuild() {
+    addReview(1L);
+    addReview(2L);
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(2L);
+    leaderboard.refresh();
+
+    verify(repository, times(1)).findAllWithReviewTotals();
+    TopMenuItem reviewedTacos = new TopMenuItem(1, "ortega", "Grill", "Tacos", 4, 20);
+    assertEquals(List.of(reviewedTacos, salad, soup, pizza), leaderboard.top("ortega", null, 10));
+
+    // once the board has moved on to version 2, a write already counted in it is not added again
+    addReview(2L);
+    assertEquals(List.of(reviewedTacos, salad, soup, pizza), leaderboard.top("ortega", null, 10));
+  }
+
+  @Test
+  public void a_version_bumped_by_another_write_causes_a_rebuild() {
+    addReview(1L);
+    addReview(3L);
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(3L);
+    when(repository.findAllWithReviewTotals()).thenReturn(List.of(pizza));
+    leaderboard.refresh();
+
+    verify(repository, times(2)).findAllWithReviewTotals();
+    assertEquals(List.of(pizza), leaderboard.top("ortega", null, 10));
+
+    // writes the rebuilt board was read after are not added to it again
+    addReview(3L);
+    leaderboard.refresh();
+    verify(repository, times(2)).findAllWithReviewTotals();
+  }
+
+  @Test
+  public void a_board_read_while_reviews_were_written_is_rebuilt_next_time() {
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(1L, 2L, 2L, 2L);
+    leaderboard.refresh();
+    verify(repository, times(2)).findAllWithReviewTotals();
+
+    // version 2 may or may not be in the rows, so the next refresh rebuilds even if it was added
+    addReview(2L);
+    leaderboard.refresh();
+    verify(repository, times(3)).findAllWithReviewTotals();
+  }
+
+  @Test
+  public void a_board_read_while_a_local_write_was_committing_is_rebuilt_next_time() {
+    // the write has committed but not yet bumped the version; another write already has
+    leaderboard.writeCommitting();
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(1L);
+    leaderboard.refresh();
+    verify(repository, times(2)).findAllWithReviewTotals();
+
+    // the rows may already include it, so even once it is added the next refresh rebuilds
+    addReview(2L);
+    leaderboard.writeFinished();
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(2L);
+    leaderboard.refresh();
+    verify(repository, times(3)).findAllWithReviewTotals();
+
+    leaderboard.refresh();
+    verify(repository, times(3)).findAllWithReviewTotals();
+  }
+
+  @Test
+  public void a_board_read_while_a_local_write_started_committing_is_rebuilt_next_time() {
+    when(repository.findAllWithReviewTotals())
+        .thenAnswer(
+            invocation -> {
+              leaderboard.writeCommitting();
+              return List.of(tacos);
+            });
+    when(tableVersionService.readVersion(MenuItemReview.class)).thenReturn(1L);
+    leaderboard.refresh();
+    verify(repository, times(2)).findAllWithReviewTotals();
+
+    leaderboard.writeFinished();
+    leaderboard.refresh();
+    verify(repository, times(3)).findAllWithReviewTotals();
+  }
+}
@@ -0,0 +1,387 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.BatchItemResult;
+import edu.ucsb.cs156.example.models.BatchItemResult.Status;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class MenuItemReviewServiceTests {
+
+  private MenuItemReviewRepository reviewRepository;
+  private MenuItemReviewStatsRepository statsRepository;
+  private PatchService patchService;
+  private EntityManager entityManager;
+  private MenuItemLeaderboard leaderboard;
+  private TableVersionService tableVersionService;
+  private MenuItemReviewService service;
+
+  @BeforeEach
+  public void setUp() {
+    reviewRepository = mock(MenuItemReviewRepository.class);
+    statsRepository = mock(MenuItemReviewStatsRepository.class);
+    patchService = mock(PatchService.class);
+    entityManager = mock(EntityManager.class);
+    leaderboard = mock(MenuItemLeaderboard.class);
+    tableVersionService = mock(TableVersionService.class);
+    BatchService batchService = new BatchService();
+    ReflectionTestUtils.setField(batchService, "maxItems", 10);
+
+    service = new MenuItemReviewService();
+    service.menuItemReviewRepository = reviewRepository;
+    service.menuItemReviewStatsRepository = statsRepository;
+    service.batchService = batchService;
+    service.patchService = patchService;
+    service.entityManager = entityManager;
+    service.menuItemLeaderboard = leaderboard;
+    service.tableVersionService = tableVersionService;
+
+    when(statsRepository.add(any())).thenReturn(1);
+    when(tableVersionService.bump(MenuItemReview.class)).thenReturn(5L);
+  }
+
+  private static MenuItemReview review(long id, long itemId, int stars) {
+    return MenuItemReview.builder().id(id).itemId(itemId).stars(stars).build();
+  }
+
+  private static MenuItemReviewStats.MenuItemReviewStatsBuilder stats(long itemId) {
+    return MenuItemReviewStats.builder().itemId(itemId);
+  }
+
+  @Test
+  public void stats_are_read_from_the_items_row() {
+    MenuItemReviewStats row =
+        stats(7).reviewCount(2).starsTotal(9).fourStars(1).fiveStars(1).build();
+    when(statsRepository.findById(7L)).thenReturn(Optional.of(row));
+
+    MenuItemReviewStats result = service.stats(7);
+
+    assertEquals(row, result);
+    assertEquals(4.5, result.getAverageStars());
+  }
+
+  @Test
+  public void an_item_without_reviews_has_zero_stats() {
+    when(statsRepository.findById(7L)).thenReturn(Optional.empty());
+
+    MenuItemReviewStats result = service.stats(7);
+
+    assertEquals(stats(7).build(), result);
+    assertEquals(null, result.getAverageStars());
+  }
+
+  @Test
+  public void create_adds_the_review_to_its_items_stats() {
+    MenuItemReview review = review(0, 7, 4);
+    MenuItemReview saved = review(1, 7, 4);
+    when(reviewRepository.save(review)).thenReturn(saved);
+
+    assertEquals(saved, service.create(review));
+
+    MenuItemReviewStats delta = stats(7).reviewCount(1).starsTotal(4).fourStars(1).build();
+    verify(statsRepository, times(1)).add(delta);
+    verify(statsRepository, never()).save(any());
+    verify(leaderboard, times(1)).add(List.of(delta), 5L);
+  }
+
+  @Test
+  public void a_write_bumps_the_version_and_reaches_the_leaderboard_only_once_it_commits() {
+    when(reviewRepository.save(any())).thenReturn(review(1, 7, 4));
+    when(tableVersionService.bumpInNewTransaction(MenuItemReview.class)).thenReturn(6L);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      service.create(review(0, 7, 4));
+      verify(tableVersionService, never()).bump(any());
+      verify(tableVersionService, never()).bumpInNewTransaction(any());
+      verify(leaderboard, never()).add(any(), anyLong());
+
+      List<TransactionSynchronization> synchronizations =
+          TransactionSynchronizationManager.getSynchronizations();
+      synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+      verify(leaderboard, times(1)).writeCommitting();
+      synchronizations.forEach(TransactionSynchronization::afterCommit);
+      synchronizations.forEach(
+          synchronization ->
+              synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    InOrder inOrder = inOrder(leaderboard);
+    inOrder
+        .verify(leaderboard)
+        .add(List.of(stats(7).reviewCount(1).starsTotal(4).fourStars(1).build()), 6L);
+    inOrder.verify(leaderboard).writeFinished();
+  }
+
+  @Test
+  public void a_write_that_rolls_back_leaves_the_version_and_the_leaderboard_alone() {
+    when(reviewRepository.save(any())).thenReturn(review(1, 7, 4));
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      service.create(review(0, 7, 4));
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(
+              synchronization ->
+                  synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    verify(tableVersionService, never()).bumpInNewTransaction(any());
+    verify(leaderboard, never()).add(any(), anyLong());
+    verify(leaderboard, never()).writeFinished();
+  }
+
+  @Test
+  public void the_first_review_of_an_item_inserts_its_stats_row() {
+    when(reviewRepository.save(any())).thenReturn(review(1, 7, 1));
+    when(statsRepository.add(any())).thenReturn(0).thenReturn(1);
+
+    service.create(review(0, 7, 1));
+
+    verify(statsRepository, times(1)).insertEmpty(7L);
+    verify(statsRepository, times(2)).add(stats(7).reviewCount(1).starsTotal(1).oneStar(1).build());
+  }
+
+  @Test
+  public void a_stats_row_inserted_by_another_transaction_is_added_to() {
+    when(reviewRepository.save(any())).thenReturn(review(1, 7, 1));
+    when(statsRepository.add(any())).thenReturn(0).thenReturn(1);
+    when(statsRepository.insertEmpty(7L))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    service.create(review(0, 7, 1));
+
+    verify(statsRepository, times(2)).add(stats(7).reviewCount(1).starsTotal(1).oneStar(1).build());
+    verify(leaderboard, times(1))
+        .add(List.of(stats(7).reviewCount(1).starsTotal(1).oneStar(1).build()), 5L);
+  }
+
+  @Test
+  public void update_moves_the_review_between_items() {
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(review(67, 1, 2)));
+    MenuItemReview incoming = review(0, 2, 5);
+    when(reviewRepository.updateById(67L, null, incoming)).thenReturn(1);
+
+    assertEquals(1, service.update(67L, null, incoming));
+
+    verify(statsRepository, times(1))
+        .add(stats(1).reviewCount(-1).starsTotal(-2).twoStars(-1).build());
+    verify(statsRepository, times(1))
+        .add(stats(2).reviewCount(1).starsTotal(5).fiveStars(1).build());
+  }
+
+  @Test
+  public void an_update_that_keeps_the_item_and_stars_leaves_the_stats_alone() {
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(review(67, 1, 3)));
+    MenuItemReview incoming = review(0, 1, 3);
+    when(reviewRepository.updateById(67L, 4L, incoming)).thenReturn(1);
+
+    assertEquals(1, service.update(67L, 4L, incoming));
+
+    verify(statsRepository, never()).add(any());
+    verify(statsRepository, never()).save(any());
+    verify(leaderboard, times(1)).add(List.of(), 5L);
+  }
+
+  @Test
+  public void an_update_that_writes_nothing_leaves_the_stats_alone() {
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(review(67, 1, 3)));
+    MenuItemReview incoming = review(0, 1, 5);
+    when(reviewRepository.updateById(67L, 4L, incoming)).thenReturn(0);
+
+    assertEquals(0, service.update(67L, 4L, incoming));
+
+    verify(statsRepository, never()).add(any());
+  }
+
+  @Test
+  public void update_of_a_missing_review_writes_nothing() {
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.empty());
+
+    assertEquals(0, service.update(67L, null, review(0, 1, 5)));
+
+    verify(reviewRepository, never()).updateById(anyLong(), any(), any());
+    verify(statsRepository, never()).add(any());
+  }
+
+  @Test
+  public void patch_counts_the_review_as_it_was_and_as_it_is() {
+    MenuItemReview review = review(67, 1, 3);
+    Map<String, JsonNode> fields = Map.of("stars", IntNode.valueOf(5));
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(review));
+    when(patchService.patch(MenuItemReview.class, 67L, fields, null)).thenReturn(1);
+    doAnswer(
+            invocation -> {
+              review.setStars(5);
+              return null;
+            })
+        .when(entityManager)
+        .refresh(review);
+
+    assertEquals(1, service.patch(67L, fields, null));
+
+    verify(statsRepository, times(1))
+        .add(stats(1).starsTotal(2).threeStars(-1).fiveStars(1).build());
+  }
+
+  @Test
+  public void a_patch_that_writes_nothing_leaves_the_stats_alone() {
+    MenuItemReview review = review(67, 1, 3);
+    Map<String, JsonNode> fields = Map.of("stars", IntNode.valueOf(5));
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.of(review));
+    when(patchService.patch(MenuItemReview.class, 67L, fields, 2L)).thenReturn(0);
+
+    assertEquals(0, service.patch(67L, fields, 2L));
+
+    verify(entityManager, never()).refresh(any());
+    verify(statsRepository, never()).add(any());
+  }
+
+  @Test
+  public void patch_of_a_missing_review_writes_nothing() {
+    when(reviewRepository.findForUpdateById(67L)).thenReturn(Optional.empty());
+
+    assertEquals(0, service.patch(67L, Map.of("stars", IntNode.valueOf(5)), null));
+
+    verify(patchService, never()).patch(any(), any(), any(), any());
+  }
+
+  @Test
+  public void delete_takes_the_review_away_from_its_items_stats() {
+    when(reviewRepository.findForUpdateById(15L)).thenReturn(Optional.of(review(15, 1, 4)));
+    when(reviewRepository.deleteRowById(15L, null)).thenReturn(1);
+
+    assertEquals(1, service.delete(15L, null));
+
+    verify(statsRepository, times(1))
+        .add(stats(1).reviewCount(-1).starsTotal(-4).fourStars(-1).build());
+  }
+
+  @Test
+  public void a_delete_that_writes_nothing_leaves_the_stats_alone() {
+    when(reviewRepository.findForUpdateById(15L)).thenReturn(Optional.of(review(15, 1, 4)));
+    when(reviewRepository.deleteRowById(15L, 2L)).thenReturn(0);
+
+    assertEquals(0, service.delete(15L, 2L));
+
+    verify(statsRepository, never()).add(any());
+  }
+
+  @Test
+  public void delete_of_a_missing_review_writes_nothing() {
+    when(reviewRepository.findForUpdateById(15L)).thenReturn(Optional.empty());
+
+    assertEquals(0, service.delete(15L, null));
+
+    verify(reviewRepository, never()).deleteRowById(anyLong(), any());
+  }
+
+  @Test
+  public void create_all_adds_up_the_stats_of_each_item_once() {
+    List<MenuItemReview> items =
+        List.of(
+            review(0, 1, 1),
+            review(0, 1, 2),
+            review(0, 1, 3),
+            review(0, 1, 4),
+            review(0, 1, 5),
+            review(0, 1, 7),
+            review(0, 2, 0));
+    when(reviewRepository.saveAll(items)).thenReturn(items);
+
+    List<BatchItemResult> results = service.createAll(items);
+
+    assertEquals(7, results.size());
+    verify(statsRepository, times(1))
+        .add(
+            stats(1)
+                .reviewCount(6)
+                .starsTotal(22)
+                .oneStar(1)
+                .twoStars(1)
+                .threeStars(1)
+                .fourStars(1)
+                .fiveStars(1)
+                .build());
+    verify(statsRepository, times(1)).add(stats(2).reviewCount(1).build());
+  }
+
+  @Test
+  public void create_all_counts_only_the_reviews_it_inserted() {
+    MenuItemReview taken = review(3, 1, 5);
+    MenuItemReview inserted = review(0, 1, 2);
+    when(reviewRepository.findAllById(List.of(3L))).thenReturn(List.of(review(3, 1, 4)));
+    when(reviewRepository.saveAll(List.of(inserted))).thenReturn(List.of(review(8, 1, 2)));
+
+    List<BatchItemResult> results = service.createAll(List.of(taken, inserted));
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 3L, Status.CONFLICT),
+            new BatchItemResult(1, 8L, Status.CREATED)),
+        results);
+    verify(statsRepository, times(1))
+        .add(stats(1).reviewCount(1).starsTotal(2).twoStars(1).build());
+  }
+
+  @Test
+  public void update_all_moves_each_updated_review() {
+    MenuItemReview existing = review(1, 1, 1);
+    when(reviewRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(existing));
+
+    List<BatchItemResult> results = service.updateAll(List.of(review(1, 1, 5), review(2, 1, 5)));
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 1L, Status.UPDATED),
+            new BatchItemResult(1, 2L, Status.NOT_FOUND)),
+        results);
+    assertEquals(5, existing.getStars());
+    verify(statsRepository, times(1)).add(stats(1).starsTotal(4).oneStar(-1).fiveStars(1).build());
+  }
+
+  @Test
+  public void delete_all_takes_away_each_deleted_review() {
+    MenuItemReview existing = review(1, 3, 2);
+    when(reviewRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(existing));
+
+    List<BatchItemResult> results = service.deleteAll(List.of(1L, 2L, 1L));
+
+    assertEquals(
+        List.of(
+            new BatchItemResult(0, 1L, Status.DELETED),
+            new BatchItemResult(1, 2L, Status.NOT_FOUND),
+            new BatchItemResult(2, 1L, Status.NOT_FOUND)),
+        results);
+    verify(reviewRepository, times(1)).deleteAll(List.of(existing));
+    verify(statsRepository, times(1))
+        .add(stats(3).reviewCount(-1).starsTotal(-2).twoStars(-1).build());
+  }
+}
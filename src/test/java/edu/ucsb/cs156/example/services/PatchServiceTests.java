@@ -0,0 +1,148 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(SpringExtension.class)
+@Import({PatchService.class, JacksonAutoConfiguration.class})
+public class PatchServiceTests {
+
+  @MockBean EntityManager entityManager;
+
+  @Autowired PatchService patchService;
+
+  @Autowired ObjectMapper mapper;
+
+  Query query;
+
+  @BeforeEach
+  public void setup() {
+    query = mock(Query.class, RETURNS_SELF);
+    when(entityManager.createQuery(anyString())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(1);
+  }
+
+  private Map<String, JsonNode> fields(String json) throws Exception {
+    Map<String, JsonNode> fields = new LinkedHashMap<>();
+    mapper.readTree(json).fields().forEachRemaining(e -> fields.put(e.getKey(), e.getValue()));
+    return fields;
+  }
+
+  @Test
+  public void patch_sets_only_the_given_fields_in_one_statement() throws Exception {
+    int count =
+        patchService.patch(
+            HelpRequest.class,
+            7L,
+            fields("{\"solved\": true, \"requestTime\": \"2022-01-03T00:00:00\"}"),
+            null);
+
+    assertEquals(1, count);
+    verify(entityManager)
+        .createQuery(
+            "UPDATE helprequests e SET e.solved = :v0, e.requestTime = :v1, "
+                + "e.version = e.version + 1 WHERE e.id = :key");
+    verify(query).setParameter("key", 7L);
+    verify(query).setParameter("v0", true);
+    verify(query).setParameter("v1", LocalDateTime.parse("2022-01-03T00:00:00"));
+    verify(query, never()).setParameter("version", null);
+  }
+
+  @Test
+  public void patch_with_a_version_only_changes_the_row_at_that_version() throws Exception {
+    when(query.executeUpdate()).thenReturn(0);
+
+    int count =
+        patchService.patch(UCSBOrganization.class, "ZPR", fields("{\"orgTranslation\": null}"), 3L);
+
+    assertEquals(0, count);
+    verify(entityManager)
+        .createQuery(
+            "UPDATE ucsborganizations e SET e.orgTranslation = :v0, "
+                + "e.version = e.version + 1 WHERE e.orgCode = :key AND e.version = :version");
+    verify(query).setParameter("key", "ZPR");
+    verify(query).setParameter("v0", null);
+    verify(query).setParameter("version", 3L);
+  }
+
+  @Test
+  public void patch_rejects_an_empty_body() {
+    ResponseStatusException e =
+        assertThrows(
+            ResponseStatusException.class,
+            () -> patchService.patch(HelpRequest.class, 7L, Map.of(), null));
+
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    assertEquals("Give at least one field of HelpRequest to change", e.getReason());
+    verify(entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  public void patch_rejects_unknown_fields_and_the_key_and_version() throws Exception {
+    for (String field : new String[] {"nope", "id", "version"}) {
+      Map<String, JsonNode> body = fields("{\"%s\": 1}".formatted(field));
+      ResponseStatusException e =
+          assertThrows(
+              ResponseStatusException.class,
+              () -> patchService.patch(HelpRequest.class, 7L, body, null));
+
+      assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+      assertEquals(
+          "HelpRequest has no field %s that can be changed".formatted(field), e.getReason());
+    }
+    verify(entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  public void patch_rejects_null_for_a_primitive_field() throws Exception {
+    Map<String, JsonNode> body = fields("{\"solved\": null}");
+
+    ResponseStatusException e =
+        assertThrows(
+            ResponseStatusException.class,
+            () -> patchService.patch(HelpRequest.class, 7L, body, null));
+
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    assertEquals("solved cannot be null", e.getReason());
+  }
+
+  @Test
+  public void patch_rejects_a_value_of_the_wrong_type() throws Exception {
+    Map<String, JsonNode> body = fields("{\"requestTime\": \"next tuesday\"}");
+
+    ResponseStatusException e =
+        assertThrows(
+            ResponseStatusException.class,
+            () -> patchService.patch(HelpRequest.class, 7L, body, null));
+
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    assertEquals("requestTime must be a LocalDateTime", e.getReason());
+    verify(entityManager, never()).createQuery(anyString());
+  }
+}
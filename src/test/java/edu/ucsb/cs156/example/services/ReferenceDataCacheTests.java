@@ -0,0 +1,140 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@Import({ReferenceDataCache.class, ReferenceDataCacheTests.CacheConfig.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ReferenceDataCacheTests {
+
+  @TestConfiguration
+  @EnableCaching
+  static class CacheConfig {
+    @Bean
+    CacheManager cacheManager() {
+      CaffeineCacheManager cacheManager =
+          new CaffeineCacheManager(
+              ReferenceDataCache.DINING_COMMONS, ReferenceDataCache.ORGANIZATIONS);
+      cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(100).recordStats());
+      return cacheManager;
+    }
+  }
+
+  @MockBean UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @MockBean UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @MockBean TableVersionService tableVersionService;
+
+  @Autowired ReferenceDataCache referenceDataCache;
+
+  @Autowired CacheManager cacheManager;
+
+  private final UCSBDiningCommons carrillo =
+      UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build();
+
+  private final UCSBOrganization zpr =
+      UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+
+  private CacheStats stats(String name) {
+    return ((CaffeineCache) cacheManager.getCache(name)).getNativeCache().stats();
+  }
+
+  @Test
+  public void dining_commons_are_read_from_the_database_once() {
+    when(ucsbDiningCommonsRepository.findById("carrillo")).thenReturn(Optional.of(carrillo));
+
+    assertEquals(Optional.of(carrillo), referenceDataCache.findDiningCommons("carrillo"));
+    assertEquals(Optional.of(carrillo), referenceDataCache.findDiningCommons("carrillo"));
+
+    verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+    assertEquals(1, stats(ReferenceDataCache.DINING_COMMONS).hitCount());
+    assertEquals(1, stats(ReferenceDataCache.DINING_COMMONS).missCount());
+  }
+
+  @Test
+  public void missing_dining_commons_are_cached_until_the_cache_is_cleared() {
+    when(ucsbDiningCommonsRepository.findById("munger-hall")).thenReturn(Optional.empty());
+
+    assertTrue(referenceDataCache.findDiningCommons("munger-hall").isEmpty());
+    assertTrue(referenceDataCache.findDiningCommons("munger-hall").isEmpty());
+    cacheManager.getCache(ReferenceDataCache.DINING_COMMONS).clear();
+    assertTrue(referenceDataCache.findDiningCommons("munger-hall").isEmpty());
+
+    verify(ucsbDiningCommonsRepository, times(2)).findById("munger-hall");
+  }
+
+  @Test
+  public void the_list_of_dining_commons_is_cached_apart_from_single_rows() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(carrillo));
+    when(ucsbDiningCommonsRepository.findById("carrillo")).thenReturn(Optional.of(carrillo));
+
+    assertEquals(List.of(carrillo), referenceDataCache.allDiningCommons());
+    assertEquals(Optional.of(carrillo), referenceDataCache.findDiningCommons("carrillo"));
+    assertEquals(List.of(carrillo), referenceDataCache.allDiningCommons());
+
+    verify(ucsbDiningCommonsRepository, times(1)).findAll();
+    verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+  }
+
+  @Test
+  public void organizations_are_read_from_the_database_once() {
+    when(ucsbOrganizationRepository.findById("ZPR")).thenReturn(Optional.of(zpr));
+    when(ucsbOrganizationRepository.findAll()).thenReturn(List.of(zpr));
+
+    assertEquals(Optional.of(zpr), referenceDataCache.findOrganization("ZPR"));
+    assertEquals(Optional.of(zpr), referenceDataCache.findOrganization("ZPR"));
+    assertEquals(List.of(zpr), referenceDataCache.allOrganizations());
+    assertEquals(List.of(zpr), referenceDataCache.allOrganizations());
+
+    verify(ucsbOrganizationRepository, times(1)).findById("ZPR");
+    verify(ucsbOrganizationRepository, times(1)).findAll();
+    assertEquals(2, stats(ReferenceDataCache.ORGANIZATIONS).hitCount());
+    assertEquals(0, stats(ReferenceDataCache.DINING_COMMONS).requestCount());
+  }
+
+  @Test
+  public void a_write_on_another_node_is_seen_through_the_table_version() {
+    when(ucsbDiningCommonsRepository.findById("carrillo")).thenReturn(Optional.of(carrillo));
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(carrillo));
+    when(tableVersionService.version(UCSBDiningCommons.class)).thenReturn(4L);
+    referenceDataCache.findDiningCommons("carrillo");
+    referenceDataCache.allDiningCommons();
+
+    // another node writes the table; this node's cache is not cleared
+    when(tableVersionService.version(UCSBDiningCommons.class)).thenReturn(5L);
+    referenceDataCache.findDiningCommons("carrillo");
+    referenceDataCache.allDiningCommons();
+    referenceDataCache.findDiningCommons("carrillo");
+
+    verify(ucsbDiningCommonsRepository, times(2)).findById("carrillo");
+    verify(ucsbDiningCommonsRepository, times(2)).findAll();
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@ExtendWith(SpringExtension.class)
+@Import(TableVersionService.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TableVersionServiceTests {
+
+  @MockBean TableVersionRepository tableVersionRepository;
+
+  @Autowired TableVersionService tableVersionService;
+
+  @AfterEach
+  void clearThreadState() {
+    RequestContextHolder.resetRequestAttributes();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static Optional<TableVersion> restaurantsAt(long version) {
+    return Optional.of(TableVersion.builder().tableName("Restaurant").version(version).build());
+  }
+
+  @Test
+  public void the_version_and_etag_come_from_the_table_versions_row() {
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(5).build()));
+
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    assertEquals("\"Restaurant-5\"", tableVersionService.etag(Restaurant.class));
+  }
+
+  @Test
+  public void a_table_without_a_row_is_at_version_zero() {
+    when(tableVersionRepository.findById("Restaurant")).thenReturn(Optional.empty());
+
+    assertEquals(0, tableVersionService.version(Restaurant.class));
+    assertEquals("\"Restaurant-0\"", tableVersionService.etag(Restaurant.class));
+  }
+
+  @Test
+  public void bump_increments_the_row_and_returns_the_new_version() {
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(1);
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(6).build()));
+
+    assertEquals(6, tableVersionService.bump(Restaurant.class));
+
+    verify(tableVersionRepository, times(1)).increment("Restaurant");
+    verify(tableVersionRepository, never()).save(any());
+  }
+
+  @Test
+  public void bump_in_new_transaction_bumps_the_same_row() {
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(1);
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("Restaurant").version(6).build()));
+
+    assertEquals(6, tableVersionService.bumpInNewTransaction(Restaurant.class));
+
+    verify(tableVersionRepository, times(1)).increment("Restaurant");
+  }
+
+  @Test
+  public void bump_refuses_a_table_the_migration_did_not_seed() {
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(0);
+
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> tableVersionService.bump(Restaurant.class));
+
+    assertEquals(
+        "table_versions has no row for Restaurant; add one in the TableVersions migration",
+        e.getMessage());
+    verify(tableVersionRepository, never()).save(any());
+  }
+
+  @Test
+  public void the_version_is_kept_between_calls_but_read_version_always_queries() {
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(restaurantsAt(5), restaurantsAt(6), restaurantsAt(7));
+
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    assertEquals("\"Restaurant-5\"", tableVersionService.etag(Restaurant.class));
+    assertEquals(6, tableVersionService.readVersion(Restaurant.class));
+    assertEquals(7, tableVersionService.readVersion(Restaurant.class));
+
+    verify(tableVersionRepository, times(3)).findById("Restaurant");
+  }
+
+  @Test
+  public void a_request_reads_the_version_once_until_it_bumps_it() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(1);
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(restaurantsAt(5), restaurantsAt(6));
+
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    assertEquals(6, tableVersionService.bump(Restaurant.class));
+    assertEquals(6, tableVersionService.version(Restaurant.class));
+
+    verify(tableVersionRepository, times(3)).findById("Restaurant");
+  }
+
+  @Test
+  public void a_bump_in_a_transaction_drops_the_kept_version_when_it_commits() {
+    when(tableVersionRepository.increment("Restaurant")).thenReturn(1);
+    when(tableVersionRepository.findById("Restaurant"))
+        .thenReturn(restaurantsAt(5), restaurantsAt(6), restaurantsAt(6));
+    assertEquals(5, tableVersionService.version(Restaurant.class));
+    TransactionSynchronizationManager.initSynchronization();
+
+    assertEquals(6, tableVersionService.bump(Restaurant.class));
+    long beforeCommit = tableVersionService.version(Restaurant.class);
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    long afterCommit = tableVersionService.version(Restaurant.class);
+
+    assertEquals(5, beforeCommit);
+    assertEquals(6, afterCommit);
+  }
+}
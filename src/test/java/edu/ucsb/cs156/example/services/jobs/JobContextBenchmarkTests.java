@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares a 10,000 line job logged with one save per line (the old behavior) against the same job
+ * logged with buffering. The elapsed times are logged for reference; the assertions check the
+ * number of saves, which is what drives database load.
+ */
+@Slf4j
+public class JobContextBenchmarkTests {
+
+  private static final int LINES = 10_000;
+  private static final int BATCH = 100;
+
+  private long runJob(JobContext ctx) {
+    long start = System.nanoTime();
+    for (int i = 0; i < LINES; i++) {
+      ctx.log("Processed row %d of %d".formatted(i, LINES));
+    }
+    ctx.save();
+    return System.nanoTime() - start;
+  }
+
+  @Test
+  public void buffered_logging_of_10k_lines_saves_far_less_often() throws Exception {
+    JobsRepository unbufferedRepository = mock(JobsRepository.class);
+    Job unbufferedJob = Job.builder().build();
+    long unbufferedNanos = runJob(new JobContext(unbufferedRepository, unbufferedJob));
+
+    JobsRepository bufferedRepository = mock(JobsRepository.class);
+    Job bufferedJob = Job.builder().build();
+    long bufferedNanos = runJob(new JobContext(bufferedRepository, bufferedJob, BATCH, 60_000));
+
+    log.info(
+        "{} lines: unbuffered {} ms ({} saves), buffered {} ms ({} saves)",
+        LINES,
+        unbufferedNanos / 1_000_000,
+        LINES + 1,
+        bufferedNanos / 1_000_000,
+        LINES / BATCH + 1);
+
+    assertEquals(unbufferedJob.getLog(), bufferedJob.getLog());
+    verify(unbufferedRepository, times(LINES + 1)).save(unbufferedJob);
+    verify(bufferedRepository, times(LINES / BATCH + 1)).save(bufferedJob);
+  }
+}
@@ -1,8 +1,20 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 
 public class JobContextTests {
@@ -20,4 +32,213 @@ public class JobContextTests {
     // assert
     assertEquals("This is a log message", job1.getLog());
   }
+
+  @Test
+  public void unbuffered_context_saves_every_line() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job);
+
+    ctx.log("line 1");
+    ctx.log("line 2");
+
+    assertEquals("line 1\nline 2", job.getLog());
+    verify(jobsRepository, times(2)).save(job);
+  }
+
+  @Test
+  public void existing_log_is_appended_to() throws Exception {
+    Job job = Job.builder().log("earlier").build();
+    JobContext ctx = new JobContext(null, job);
+
+    ctx.log("later");
+
+    assertEquals("earlier\nlater", job.getLog());
+  }
+
+  @Test
+  public void buffered_context_saves_once_per_batch() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 3, 0);
+
+    ctx.log("line 1");
+    ctx.log("line 2");
+
+    assertNull(job.getLog());
+    verify(jobsRepository, never()).save(job);
+
+    ctx.log("line 3");
+
+    assertEquals("line 1\nline 2\nline 3", job.getLog());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void buffered_context_saves_when_time_threshold_passes() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 100, 1);
+
+    Thread.sleep(5);
+    ctx.log("line 1");
+
+    assertEquals("line 1", job.getLog());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void buffered_context_does_not_save_before_time_threshold() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 100, 60_000);
+
+    ctx.log("line 1");
+
+    assertNull(job.getLog());
+    verify(jobsRepository, never()).save(job);
+  }
+
+  @Test
+  public void flush_saves_only_when_lines_are_pending() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 100, 0);
+
+    ctx.flush();
+    verify(jobsRepository, never()).save(job);
+
+    ctx.log("line 1");
+    ctx.flush();
+    ctx.flush();
+
+    assertEquals("line 1", job.getLog());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void save_persists_job_even_with_nothing_logged() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 100, 0);
+
+    ctx.save();
+
+    assertNull(job.getLog());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void flush_every_lines_below_one_means_unbuffered() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(jobsRepository, job, 0, 0);
+
+    ctx.log("line 1");
+
+    assertEquals("line 1", job.getLog());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void chunked_context_appends_chunks_without_saving_job() throws Exception {
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    JobLogChunksRepository jobLogChunksRepository = mock(JobLogChunksRepository.class);
+    Job job = Job.builder().id(7L).build();
+    when(jobLogChunksRepository.findFirstByJobIdOrderBySeqDesc(7L)).thenReturn(Optional.empty());
+    JobContext ctx = new JobContext(jobsRepository, jobLogChunksRepository, null, job, 2, 0);
+
+    ctx.log("line 1");
+    ctx.log("line 2");
+    ctx.log("line 3");
+    ctx.flush();
+
+    verify(jobLogChunksRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(7L)
+                .seq(0)
+                .startOffset(0)
+                .endOffset(13)
+                .content("line 1\nline 2")
+                .build());
+    verify(jobLogChunksRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(7L)
+                .seq(1)
+                .startOffset(13)
+                .endOffset(20)
+                .content("\nline 3")
+                .build());
+    verify(jobsRepository, never()).save(job);
+    assertNull(job.getLog());
+
+    ctx.save();
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void chunked_context_continues_after_existing_chunks() throws Exception {
+    JobLogChunksRepository jobLogChunksRepository = mock(JobLogChunksRepository.class);
+    Job job = Job.builder().id(8L).build();
+    JobLogChunk previous =
+        JobLogChunk.builder().jobId(8L).seq(4).startOffset(30).endOffset(40).content("x").build();
+    when(jobLogChunksRepository.findFirstByJobIdOrderBySeqDesc(8L))
+        .thenReturn(Optional.of(previous));
+    JobContext ctx = new JobContext(null, jobLogChunksRepository, null, job, 1, 0);
+
+    ctx.log("more");
+    ctx.save();
+
+    verify(jobLogChunksRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(8L)
+                .seq(5)
+                .startOffset(40)
+                .endOffset(45)
+                .content("\nmore")
+                .build());
+  }
+
+  @Test
+  public void listener_is_told_about_each_chunk_written() throws Exception {
+    JobLogChunksRepository jobLogChunksRepository = mock(JobLogChunksRepository.class);
+    JobLogListener listener = mock(JobLogListener.class);
+    Job job = Job.builder().id(9L).build();
+    JobContext ctx = new JobContext(null, jobLogChunksRepository, listener, job, 2, 0);
+
+    ctx.log("line 1");
+    verify(listener, never()).logAppended(9L, 0, "line 1");
+
+    ctx.log("line 2");
+    ctx.log("line 3");
+    ctx.save();
+    ctx.save();
+
+    verify(listener, times(1)).logAppended(9L, 0, "line 1\nline 2");
+    verify(listener, times(1)).logAppended(9L, 13, "\nline 3");
+  }
+
+  @Test
+  public void listener_is_told_about_text_appended_to_log_column() throws Exception {
+    JobLogListener listener = mock(JobLogListener.class);
+    Job job = Job.builder().id(10L).log("earlier").build();
+    JobContext ctx = new JobContext(null, null, listener, job, 1, 0);
+
+    ctx.log("later");
+
+    verify(listener, times(1)).logAppended(10L, 7, "\nlater");
+  }
+
+  @Test
+  public void isCancelled_is_true_once_cancelled() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    assertFalse(ctx.isCancelled());
+
+    ctx.cancel();
+
+    assertTrue(ctx.isCancelled());
+  }
 }
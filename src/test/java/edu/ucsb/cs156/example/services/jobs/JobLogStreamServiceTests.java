@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobLogStreamServiceTests {
+
+  private final JobLogStreamService service = new JobLogStreamService();
+
+  @BeforeEach
+  public void setup() {
+    service.streamMaxQueuedEvents = 100;
+  }
+
+  @Test
+  public void subscribe_and_unsubscribe_track_subscribers_per_job() throws Exception {
+    JobLogSubscription first = service.subscribe(1L);
+    JobLogSubscription second = service.subscribe(1L);
+    service.subscribe(2L);
+
+    assertNotSame(first.getEmitter(), second.getEmitter());
+    assertEquals(1L, first.getJobId());
+    assertEquals(2, service.subscriberCount(1L));
+    assertEquals(1, service.subscriberCount(2L));
+    assertEquals(Set.of(1L, 2L), service.watchedJobIds());
+
+    service.unsubscribe(first);
+    assertEquals(1, service.subscriberCount(1L));
+    service.unsubscribe(second);
+    assertEquals(0, service.subscriberCount(1L));
+    service.unsubscribe(second);
+    assertEquals(0, service.subscriberCount(1L));
+  }
+
+  @Test
+  public void publish_and_finish_with_no_subscribers_do_nothing() throws Exception {
+    service.publish(3L, 0, "line 1");
+    service.finish(3L, "complete");
+
+    assertEquals(0, service.subscriberCount(3L));
+  }
+
+  @Test
+  public void finish_removes_all_subscribers_of_job() throws Exception {
+    JobLogSubscription subscription = service.subscribe(4L);
+    subscription.start(0, "", null);
+    service.publish(4L, 0, "line 1");
+
+    service.finish(4L, "complete");
+
+    assertEquals(0, service.subscriberCount(4L));
+  }
+
+  @Test
+  public void emitter_callbacks_unsubscribe() throws Exception {
+    SseEmitter emitter = mock(SseEmitter.class);
+    JobLogStreamService serviceWithMockEmitter =
+        new JobLogStreamService() {
+          @Override
+          SseEmitter createEmitter() {
+            return emitter;
+          }
+        };
+    ArgumentCaptor<Runnable> completion = ArgumentCaptor.forClass(Runnable.class);
+    ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Consumer<Throwable>> error = ArgumentCaptor.forClass(Consumer.class);
+
+    serviceWithMockEmitter.subscribe(5L);
+    serviceWithMockEmitter.subscribe(5L);
+    serviceWithMockEmitter.subscribe(5L);
+    verify(emitter, times(3)).onCompletion(completion.capture());
+    verify(emitter, times(3)).onTimeout(timeout.capture());
+    verify(emitter, times(3)).onError(error.capture());
+    assertEquals(3, serviceWithMockEmitter.subscriberCount(5L));
+
+    completion.getAllValues().get(0).run();
+    assertEquals(2, serviceWithMockEmitter.subscriberCount(5L));
+    timeout.getAllValues().get(1).run();
+    assertEquals(1, serviceWithMockEmitter.subscriberCount(5L));
+    error.getAllValues().get(2).accept(new RuntimeException("gone"));
+    assertEquals(0, serviceWithMockEmitter.subscriberCount(5L));
+  }
+}
@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+public class JobLogSubscriptionTests {
+
+  private SseEmitter emitter;
+  private JobLogSubscription subscription;
+
+  @BeforeEach
+  public void setup() {
+    emitter = mock(SseEmitter.class);
+    subscription = new JobLogSubscription(1L, emitter, Runnable::run, 10);
+  }
+
+  private List<String> sentEvents() throws Exception {
+    ArgumentCaptor<SseEventBuilder> captor = ArgumentCaptor.forClass(SseEventBuilder.class);
+    verify(emitter, atLeast(0)).send(captor.capture());
+    return captor.getAllValues().stream()
+        .map(
+            event ->
+                event.build().stream()
+                    .map(part -> part.getData().toString())
+                    .collect(Collectors.joining()))
+        .toList();
+  }
+
+  @Test
+  public void start_sends_backlog_then_queued_text() throws Exception {
+    subscription.append(6, "\nline 2");
+    subscription.start(0, "line 1", null);
+
+    List<String> events = sentEvents();
+    assertEquals(2, events.size());
+    assertEquals("id:6\nevent:log\ndata:LogEvent[offset=0, text=line 1]\n\n", events.get(0));
+    assertEquals("id:13\nevent:log\ndata:LogEvent[offset=6, text=\nline 2]\n\n", events.get(1));
+    verify(emitter, never()).complete();
+  }
+
+  @Test
+  public void text_already_in_backlog_is_not_sent_twice() throws Exception {
+    subscription.append(0, "line 1");
+    subscription.start(0, "line 1\nline 2", null);
+    subscription.append(6, "\nline 2");
+
+    assertEquals(1, sentEvents().size());
+  }
+
+  @Test
+  public void only_unseen_part_of_overlapping_text_is_sent() throws Exception {
+    subscription.start(4, "", null);
+    subscription.append(0, "0123456789");
+
+    List<String> events = sentEvents();
+    assertEquals(1, events.size());
+    assertEquals("id:10\nevent:log\ndata:LogEvent[offset=4, text=456789]\n\n", events.get(0));
+  }
+
+  @Test
+  public void empty_backlog_is_not_sent() throws Exception {
+    subscription.start(0, "", null);
+
+    assertEquals(0, sentEvents().size());
+  }
+
+  @Test
+  public void start_closes_stream_of_finished_job() throws Exception {
+    subscription.start(0, "line 1", "complete");
+
+    List<String> events = sentEvents();
+    assertEquals(2, events.size());
+    assertEquals("event:status\ndata:complete\n\n", events.get(1));
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void finish_before_start_closes_stream_on_start() throws Exception {
+    subscription.finish("error");
+    verify(emitter, never()).complete();
+
+    subscription.start(0, "", null);
+
+    assertEquals(List.of("event:status\ndata:error\n\n"), sentEvents());
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void nothing_is_sent_after_stream_is_closed() throws Exception {
+    subscription.start(0, "", null);
+    subscription.finish("complete");
+    subscription.finish("complete");
+    subscription.append(0, "late");
+
+    assertEquals(List.of("event:status\ndata:complete\n\n"), sentEvents());
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void failed_send_closes_stream() throws Exception {
+    IOException broken = new IOException("broken pipe");
+    doThrow(broken).when(emitter).send(any(SseEventBuilder.class));
+
+    subscription.start(0, "line 1", null);
+    subscription.append(6, "\nline 2");
+    subscription.finish("complete");
+
+    verify(emitter, times(1)).send(any(SseEventBuilder.class));
+    verify(emitter, times(1)).completeWithError(broken);
+    verify(emitter, never()).complete();
+  }
+
+  @Test
+  public void events_are_written_by_the_sender_not_the_caller() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    subscription = new JobLogSubscription(1L, emitter, tasks::add, 10);
+
+    subscription.start(0, "line 1", null);
+    subscription.append(6, "\nline 2");
+    subscription.finish("complete");
+
+    // one writer at a time, and nothing written yet
+    assertEquals(1, tasks.size());
+    assertEquals(List.of(), sentEvents());
+    verify(emitter, never()).complete();
+
+    tasks.get(0).run();
+    assertEquals(3, sentEvents().size());
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void client_that_falls_too_far_behind_is_disconnected() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    subscription = new JobLogSubscription(1L, emitter, tasks::add, 2);
+
+    subscription.start(0, "a", null);
+    subscription.append(1, "b");
+    subscription.append(2, "c");
+    subscription.append(3, "d");
+    tasks.get(0).run();
+
+    // the queued events are dropped and the client can reconnect to resume
+    assertEquals(List.of(), sentEvents());
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void a_new_writer_is_started_once_the_last_one_is_done() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    subscription = new JobLogSubscription(1L, emitter, tasks::add, 10);
+
+    subscription.start(0, "a", null);
+    tasks.get(0).run();
+    subscription.append(1, "b");
+
+    assertEquals(2, tasks.size());
+    tasks.get(1).run();
+    assertEquals(2, sentEvents().size());
+    verify(emitter, never()).complete();
+  }
+}
@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import edu.ucsb.cs156.example.entities.Job;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class JobMetricsTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final JobMetrics jobMetrics = new JobMetrics(meterRegistry);
+
+  @Test
+  public void queue_wait_and_run_time_are_recorded_by_type_and_status() throws Exception {
+    // arrange
+    ZonedDateTime createdAt = ZonedDateTime.now();
+    Job job =
+        Job.builder()
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .createdAt(createdAt)
+            .startedAt(createdAt.plusSeconds(3))
+            .build();
+
+    // act
+    jobMetrics.jobStarted(job);
+    int activeWhileRunning = jobMetrics.getActive();
+    job.setStatus("complete");
+    job.setFinishedAt(createdAt.plusSeconds(10));
+    jobMetrics.jobFinished(job);
+
+    // assert
+    assertEquals(1, activeWhileRunning);
+    assertEquals(0, jobMetrics.getActive());
+    assertEquals(
+        3.0,
+        meterRegistry
+            .get("jobs.queue.wait")
+            .tag("type", "TestJob")
+            .timer()
+            .totalTime(TimeUnit.SECONDS));
+    assertEquals(
+        7.0,
+        meterRegistry
+            .get("jobs.run")
+            .tags("type", "TestJob", "status", "complete")
+            .timer()
+            .totalTime(TimeUnit.SECONDS));
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tags("type", "TestJob", "status", "complete")
+            .counter()
+            .count());
+  }
+
+  @Test
+  public void queue_wait_is_skipped_for_jobs_never_saved() throws Exception {
+    // arrange
+    Job job = Job.builder().startedAt(ZonedDateTime.now()).build();
+
+    // act
+    jobMetrics.jobStarted(job);
+
+    // assert
+    assertEquals(1, jobMetrics.getActive());
+    assertNull(meterRegistry.find("jobs.queue.wait").timer());
+  }
+
+  @Test
+  public void job_that_never_ran_is_only_counted() throws Exception {
+    // arrange
+    Job job = Job.builder().jobType("Lambda").status("rejected").build();
+
+    // act
+    jobMetrics.jobEndedWithoutRunning(job);
+
+    // assert
+    assertEquals(0, jobMetrics.getActive());
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tags("type", "Lambda", "status", "rejected")
+            .counter()
+            .count());
+    assertNull(meterRegistry.find("jobs.run").timer());
+  }
+}
@@ -0,0 +1,351 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobQueueWorkerTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @Mock private JobQueueWorker self;
+
+  @Mock private JobContext context;
+
+  private final JobQueueWorker worker = new JobQueueWorker();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(worker, "jobsRepository", jobsRepository);
+    ReflectionTestUtils.setField(worker, "jobService", jobService);
+    ReflectionTestUtils.setField(worker, "jobLogStreamService", jobLogStreamService);
+    ReflectionTestUtils.setField(worker, "jobExecutor", jobExecutor);
+    ReflectionTestUtils.setField(worker, "self", self);
+    ReflectionTestUtils.setField(worker, "nodeId", "node-1");
+    ReflectionTestUtils.setField(worker, "leaseSeconds", 60L);
+    ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+  }
+
+  private Job claimedJob(long id, int attempts) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+        .params("{\"fail\":false,\"sleepMs\":0}")
+        .claimedBy("node-1")
+        .attempts(attempts)
+        .build();
+  }
+
+  @Test
+  public void poll_claims_only_as_many_jobs_as_the_executor_has_room_for() throws Exception {
+    // arrange
+    when(jobExecutor.getMaxPoolSize()).thenReturn(4);
+    when(jobExecutor.getActiveCount()).thenReturn(1);
+    when(jobExecutor.getQueueSize()).thenReturn(1);
+    Job job = claimedJob(1, 1);
+    TestJob testJob = TestJob.builder().build();
+    when(self.claimJobs(2)).thenReturn(List.of(job));
+    when(jobService.restoreJobFunction(job)).thenReturn(testJob);
+
+    // act
+    worker.poll();
+
+    // assert
+    verify(self).claimJobs(2);
+    verify(jobService).runJobAsync(eq(job), any(JobContextConsumer.class));
+    assertEquals(Set.of(1L), worker.getRunningJobIds());
+  }
+
+  @Test
+  public void poll_does_nothing_when_executor_is_full() throws Exception {
+    // arrange
+    when(jobExecutor.getMaxPoolSize()).thenReturn(4);
+    when(jobExecutor.getActiveCount()).thenReturn(4);
+    when(jobExecutor.getQueueSize()).thenReturn(0);
+
+    // act
+    worker.poll();
+
+    // assert
+    verify(self, never()).claimJobs(anyInt());
+  }
+
+  @Test
+  public void claimJobs_locks_claims_and_loads_jobs_in_id_order() throws Exception {
+    // arrange
+    Job job1 = claimedJob(1, 1);
+    Job job2 = claimedJob(2, 1);
+    when(jobsRepository.lockClaimableJobIds(any(ZonedDateTime.class), eq(5)))
+        .thenReturn(List.of(1L, 2L));
+    when(jobsRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(job2, job1));
+
+    // act
+    List<Job> jobs = worker.claimJobs(5);
+
+    // assert
+    assertEquals(List.of(job1, job2), jobs);
+    ArgumentCaptor<ZonedDateTime> lease = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).claim(eq(List.of(1L, 2L)), eq("node-1"), lease.capture());
+    assertEquals(true, lease.getValue().isAfter(ZonedDateTime.now().plusSeconds(50)));
+  }
+
+  @Test
+  public void claimJobs_returns_nothing_when_queue_is_empty() throws Exception {
+    // arrange
+    when(jobsRepository.lockClaimableJobIds(any(ZonedDateTime.class), eq(5))).thenReturn(List.of());
+
+    // act
+    List<Job> jobs = worker.claimJobs(5);
+
+    // assert
+    assertEquals(List.of(), jobs);
+    verify(jobsRepository, never()).claim(any(), any(), any());
+  }
+
+  @Test
+  public void running_job_is_forgotten_when_it_finishes_or_fails() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 1);
+    JobContextConsumer failing =
+        ctx -> {
+          throw new Exception("Fail!");
+        };
+    when(jobService.restoreJobFunction(job)).thenReturn(ctx -> {}, failing);
+    ArgumentCaptor<JobContextConsumer> wrapped = ArgumentCaptor.forClass(JobContextConsumer.class);
+
+    // act
+    worker.dispatch(job);
+    worker.dispatch(job);
+
+    // assert
+    verify(jobService, times(2)).runJobAsync(eq(job), wrapped.capture());
+    assertEquals(Set.of(1L), worker.getRunningJobIds());
+    wrapped.getAllValues().get(0).accept(context);
+    assertEquals(Set.of(), worker.getRunningJobIds());
+    assertThrows(Exception.class, () -> wrapped.getAllValues().get(1).accept(context));
+    assertEquals(Set.of(), worker.getRunningJobIds());
+  }
+
+  @Test
+  public void job_claimed_too_many_times_is_failed() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 4);
+
+    // act
+    worker.dispatch(job);
+
+    // assert
+    verify(jobService).failJob(job, "Job 1 gave up after 3 attempts");
+    verify(jobService, never()).runJobAsync(any(Job.class), any(JobContextConsumer.class));
+  }
+
+  @Test
+  public void job_that_cannot_be_restored_is_failed() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 1);
+    when(jobService.restoreJobFunction(job))
+        .thenThrow(new IllegalArgumentException("Cannot restore job 1: bad"));
+
+    // act
+    worker.dispatch(job);
+
+    // assert
+    verify(jobService).failJob(job, "Cannot restore job 1: bad");
+    verify(jobService, never()).runJobAsync(any(Job.class), any(JobContextConsumer.class));
+  }
+
+  @Test
+  public void job_rejected_by_executor_goes_back_to_the_queue() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 1);
+    when(jobService.restoreJobFunction(job)).thenReturn(TestJob.builder().build());
+    doThrow(new TaskRejectedException("full"))
+        .when(jobService)
+        .runJobAsync(eq(job), any(JobContextConsumer.class));
+
+    // act
+    worker.dispatch(job);
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertNull(job.getClaimedBy());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobsRepository).save(job);
+    assertEquals(Set.of(), worker.getRunningJobIds());
+  }
+
+  @Test
+  public void heartbeat_renews_leases_of_running_jobs() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 1);
+    when(jobService.restoreJobFunction(job)).thenReturn(TestJob.builder().build());
+    worker.dispatch(job);
+
+    // act
+    worker.heartbeat();
+    worker.renewLeases();
+
+    // assert
+    verify(self).renewLeases();
+    verify(jobsRepository).renewLeases(eq(Set.of(1L)), eq("node-1"), any(ZonedDateTime.class));
+    verify(jobService, never()).stopRunningJob(anyLong(), any());
+  }
+
+  @Test
+  public void heartbeat_stops_jobs_cancelled_from_another_node() throws Exception {
+    // arrange
+    Job job = claimedJob(1, 1);
+    when(jobService.restoreJobFunction(job)).thenReturn(TestJob.builder().build());
+    when(jobsRepository.findCancelledIds(Set.of(1L))).thenReturn(List.of(1L));
+    when(jobService.stopRunningJob(1L, "cancelled")).thenReturn(true);
+    worker.dispatch(job);
+
+    // act
+    worker.heartbeat();
+
+    // assert
+    verify(jobService).stopRunningJob(1L, "cancelled");
+    assertEquals(Set.of(1L), worker.getRunningJobIds());
+  }
+
+  @Test
+  public void heartbeat_forgets_jobs_cancelled_before_they_started() throws Exception {
+    // arrange
+    Job job1 = claimedJob(1, 1);
+    Job job2 = claimedJob(2, 1);
+    when(jobService.restoreJobFunction(any(Job.class))).thenReturn(TestJob.builder().build());
+    when(jobsRepository.findCancelledIds(Set.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+    // job 2 has already been stopped and is finishing
+    when(jobService.isRunningHere(2L)).thenReturn(true);
+    worker.dispatch(job1);
+    worker.dispatch(job2);
+
+    // act
+    worker.heartbeat();
+
+    // assert
+    assertEquals(Set.of(2L), worker.getRunningJobIds());
+  }
+
+  @Test
+  public void heartbeat_does_nothing_when_no_jobs_are_running() throws Exception {
+    // act
+    worker.heartbeat();
+
+    // assert
+    verify(self, never()).renewLeases();
+  }
+
+  @Test
+  public void relay_sends_new_log_text_of_jobs_running_elsewhere() throws Exception {
+    // arrange
+    Job job = Job.builder().id(1).status("running").claimedBy("node-2").build();
+    when(jobLogStreamService.watchedJobIds()).thenReturn(Set.of(1L));
+    when(jobsRepository.findById(1L)).thenReturn(Optional.of(job));
+    when(jobService.getJobLogs(job, 0, null)).thenReturn("line 1");
+    when(jobService.getJobLogs(job, 6, null)).thenReturn("", "\nline 2");
+
+    // act
+    worker.relayLogs();
+    worker.relayLogs();
+    worker.relayLogs();
+
+    // assert
+    verify(jobLogStreamService).publish(1L, 0, "line 1");
+    verify(jobLogStreamService).publish(1L, 6, "\nline 2");
+    verify(jobLogStreamService, never()).finish(anyLong(), any());
+  }
+
+  @Test
+  public void relay_sends_final_status_of_jobs_that_finished_elsewhere() throws Exception {
+    // arrange
+    Job job = Job.builder().id(1).status("complete").claimedBy("node-2").build();
+    when(jobLogStreamService.watchedJobIds()).thenReturn(Set.of(1L));
+    when(jobsRepository.findById(1L)).thenReturn(Optional.of(job));
+    when(jobService.getJobLogs(job, 0, null)).thenReturn("done");
+
+    // act
+    worker.relayLogs();
+
+    // assert
+    verify(jobLogStreamService).publish(1L, 0, "done");
+    verify(jobLogStreamService).finish(1L, "complete");
+  }
+
+  @Test
+  public void relay_closes_streams_of_deleted_jobs() throws Exception {
+    // arrange
+    when(jobLogStreamService.watchedJobIds()).thenReturn(Set.of(1L));
+    when(jobsRepository.findById(1L)).thenReturn(Optional.empty());
+
+    // act
+    worker.relayLogs();
+
+    // assert
+    verify(jobLogStreamService).finish(1L, "deleted");
+  }
+
+  @Test
+  public void relay_leaves_jobs_running_here_to_publish_their_own_log() throws Exception {
+    // arrange
+    when(jobLogStreamService.watchedJobIds()).thenReturn(Set.of(1L));
+    when(jobService.isRunningHere(1L)).thenReturn(true);
+
+    // act
+    worker.relayLogs();
+
+    // assert
+    verify(jobsRepository, never()).findById(anyLong());
+    verify(jobLogStreamService, never()).publish(anyLong(), anyLong(), any());
+  }
+
+  @Test
+  public void relay_forgets_jobs_nobody_is_watching() throws Exception {
+    // arrange
+    Job job = Job.builder().id(1).status("running").claimedBy("node-2").build();
+    when(jobLogStreamService.watchedJobIds()).thenReturn(Set.of(1L), Set.of(), Set.of(1L));
+    when(jobsRepository.findById(1L)).thenReturn(Optional.of(job));
+    when(jobService.getJobLogs(job, 0, null)).thenReturn("line 1");
+
+    // act
+    worker.relayLogs();
+    worker.relayLogs();
+    worker.relayLogs();
+
+    // assert: a new watcher is sent the log from the start
+    verify(jobLogStreamService, times(2)).publish(1L, 0, "line 1");
+  }
+}
@@ -0,0 +1,181 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.config.JobRetentionProperties;
+import edu.ucsb.cs156.example.jobs.ExportJobFactory;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRetentionServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private ExportJobFactory exportJobFactory;
+
+  private final JobRetentionService jobRetentionService = new JobRetentionService();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobRetentionService, "jobsRepository", jobsRepository);
+    ReflectionTestUtils.setField(jobRetentionService, "exportJobFactory", exportJobFactory);
+  }
+
+  private void useProperties(JobRetentionProperties properties) {
+    ReflectionTestUtils.setField(jobRetentionService, "properties", properties);
+  }
+
+  @Test
+  public void old_jobs_are_deleted_in_batches_until_a_short_batch() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(Duration.ofDays(30), 0, 100, null));
+    when(jobsRepository.deleteCreatedBefore(eq("complete"), any(ZonedDateTime.class), eq(100)))
+        .thenReturn(100, 100, 7);
+
+    // act
+    long deleted = jobRetentionService.purge("complete");
+
+    // assert
+    assertEquals(207, deleted);
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(3)).deleteCreatedBefore(eq("complete"), cutoff.capture(), eq(100));
+    assertTrue(cutoff.getValue().isBefore(ZonedDateTime.now().minusDays(29)));
+    verify(jobsRepository, never()).findIdAfterNewest(anyString(), anyInt());
+  }
+
+  @Test
+  public void jobs_beyond_max_count_are_deleted() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(null, 50, 10, Map.of()));
+    when(jobsRepository.findIdAfterNewest("error", 50)).thenReturn(Optional.of(42L));
+    when(jobsRepository.deleteUpToId("error", 42L, 10)).thenReturn(10, 3);
+
+    // act
+    long deleted = jobRetentionService.purge("error");
+
+    // assert
+    assertEquals(13, deleted);
+    verify(jobsRepository, never()).deleteCreatedBefore(anyString(), any(), anyInt());
+  }
+
+  @Test
+  public void nothing_is_deleted_when_under_max_count_or_limits_are_disabled() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(Duration.ZERO, 50, 10, null));
+    when(jobsRepository.findIdAfterNewest("error", 50)).thenReturn(Optional.empty());
+
+    // act
+    long deleted = jobRetentionService.purge("error");
+
+    // assert
+    assertEquals(0, deleted);
+    verify(jobsRepository, never()).deleteCreatedBefore(anyString(), any(), anyInt());
+    verify(jobsRepository, never()).deleteUpToId(anyString(), anyLong(), anyInt());
+  }
+
+  @Test
+  public void per_status_limits_override_defaults() throws Exception {
+    // arrange
+    useProperties(
+        new JobRetentionProperties(
+            Duration.ofDays(30),
+            1000,
+            10,
+            Map.of(
+                "error", new JobRetentionProperties.Limits(Duration.ZERO, 5),
+                "cancelled", new JobRetentionProperties.Limits(null, null))));
+    when(jobsRepository.findIdAfterNewest(anyString(), anyInt())).thenReturn(Optional.empty());
+
+    // act
+    jobRetentionService.purge("error");
+    jobRetentionService.purge("cancelled");
+
+    // assert
+    verify(jobsRepository).findIdAfterNewest("error", 5);
+    verify(jobsRepository, never()).deleteCreatedBefore(eq("error"), any(), anyInt());
+    verify(jobsRepository).findIdAfterNewest("cancelled", 1000);
+    verify(jobsRepository).deleteCreatedBefore(eq("cancelled"), any(), eq(10));
+  }
+
+  @Test
+  public void scheduled_purge_covers_every_finished_status_and_nothing_else() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(Duration.ofDays(1), 0, 10, null));
+    when(jobsRepository.deleteCreatedBefore(anyString(), any(), anyInt())).thenReturn(2);
+
+    // act
+    long deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(2L * JobService.FINISHED_STATUSES.size(), deleted);
+    for (String status : JobService.FINISHED_STATUSES) {
+      verify(jobsRepository).deleteCreatedBefore(eq(status), any(), eq(10));
+    }
+    verify(jobsRepository, never()).deleteCreatedBefore(eq("running"), any(), anyInt());
+    verify(jobsRepository, never()).deleteCreatedBefore(eq("queued"), any(), anyInt());
+    verify(exportJobFactory).deleteExportFilesOfDeletedJobs();
+  }
+
+  @Test
+  public void deleteAll_deletes_in_batches() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(null, 0, 0, null));
+    when(jobsRepository.deleteOldest(1)).thenReturn(1, 1, 0);
+
+    // act
+    long deleted = jobRetentionService.deleteAll();
+
+    // assert
+    assertEquals(2, deleted);
+    verify(jobsRepository, times(3)).deleteOldest(1);
+  }
+
+  @Test
+  public void deleteAll_deletes_the_export_files_of_deleted_jobs() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(null, 0, 10, null));
+    when(jobsRepository.deleteOldest(10)).thenReturn(0);
+
+    // act
+    jobRetentionService.deleteAll();
+
+    // assert
+    verify(exportJobFactory).deleteExportFilesOfDeletedJobs();
+  }
+
+  @Test
+  public void jobs_stay_deleted_when_their_export_files_cannot_be_deleted() throws Exception {
+    // arrange
+    useProperties(new JobRetentionProperties(null, 0, 10, null));
+    when(jobsRepository.deleteOldest(10)).thenReturn(3);
+    when(exportJobFactory.deleteExportFilesOfDeletedJobs())
+        .thenThrow(new IOException("permission denied"));
+
+    // act
+    long deleted = jobRetentionService.deleteAll();
+
+    // assert
+    assertEquals(3, deleted);
+  }
+}
@@ -0,0 +1,366 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.JobRejectedException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobLogChunksRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunksRepository jobLogChunksRepository;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobService self;
+
+  private final JobService jobService = new JobService();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "jobsRepository", jobsRepository);
+    ReflectionTestUtils.setField(jobService, "currentUserService", currentUserService);
+    ReflectionTestUtils.setField(jobService, "jobLogChunksRepository", jobLogChunksRepository);
+    ReflectionTestUtils.setField(jobService, "jobLogStreamService", jobLogStreamService);
+    ReflectionTestUtils.setField(jobService, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(jobService, "jobMetrics", new JobMetrics(meterRegistry));
+    ReflectionTestUtils.setField(jobService, "self", self);
+    ReflectionTestUtils.setField(jobService, "queueMode", "memory");
+    ReflectionTestUtils.setField(jobService, "logFlushEveryLines", 1);
+  }
+
+  /** A job whose parameters cannot be written as JSON. */
+  public static class BrokenJob implements QueueableJob {
+    public String getParam() {
+      throw new IllegalStateException("broken");
+    }
+
+    @Override
+    public void accept(JobContext c) {}
+  }
+
+  /** A job that does not ask to be queued. */
+  public static class LocalJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext c) {}
+  }
+
+  @Test
+  public void job_rejected_by_executor_is_saved_as_rejected() throws Exception {
+    // arrange
+    JobContextConsumer jobFunction = ctx -> ctx.log("never runs");
+    doThrow(new TaskRejectedException("queue full"))
+        .when(self)
+        .runJobAsync(any(Job.class), any(JobContextConsumer.class));
+
+    // act
+    JobRejectedException e =
+        assertThrows(JobRejectedException.class, () -> jobService.runAsJob(jobFunction));
+
+    // assert
+    assertEquals("Job 0 rejected: too many jobs are already running or queued", e.getMessage());
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(2)).save(saved.capture());
+    assertEquals("rejected", saved.getValue().getStatus());
+    assertEquals(
+        "edu.ucsb.cs156.example.services.jobs.JobServiceTests$$Lambda",
+        saved.getValue().getJobType());
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tags("type", "JobServiceTests$$Lambda", "status", "rejected")
+            .counter()
+            .count());
+  }
+
+  @Test
+  public void database_mode_queues_job_with_type_and_params() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(5).build();
+
+    // act
+    Job job = jobService.runAsJob(testJob);
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertEquals("edu.ucsb.cs156.example.jobs.TestJob", job.getJobType());
+    assertEquals("{\"fail\":true,\"sleepMs\":5}", job.getParams());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, never()).runJobAsync(any(Job.class), any(JobContextConsumer.class));
+  }
+
+  @Test
+  public void database_mode_runs_jobs_that_cannot_be_queued_in_memory() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    List<JobContextConsumer> jobFunctions = List.of(ctx -> ctx.log("lambda"), new LocalJob());
+
+    for (JobContextConsumer jobFunction : jobFunctions) {
+      // act
+      Job job = jobService.runAsJob(jobFunction);
+
+      // assert
+      assertEquals("running", job.getStatus());
+      assertNull(job.getParams());
+      verify(self).runJobAsync(job, jobFunction);
+    }
+  }
+
+  @Test
+  public void database_mode_rejects_job_whose_params_cannot_be_written() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+
+    // act
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobService.runAsJob(new BrokenJob()));
+
+    // assert
+    assertEquals(true, e.getMessage().startsWith("Cannot queue " + BrokenJob.class.getName()));
+    verify(jobsRepository, never()).save(any(Job.class));
+  }
+
+  @Test
+  public void restoreJobFunction_rebuilds_queued_job() throws Exception {
+    // arrange
+    Job job =
+        Job.builder()
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .params("{\"fail\":true,\"sleepMs\":5}")
+            .build();
+
+    // act
+    JobContextConsumer jobFunction = jobService.restoreJobFunction(job);
+
+    // assert
+    TestJob testJob = assertInstanceOf(TestJob.class, jobFunction);
+    assertEquals(true, testJob.getFail());
+    assertEquals(5, testJob.getSleepMs());
+  }
+
+  @Test
+  public void restoreJobFunction_refuses_classes_that_are_not_jobs() throws Exception {
+    // arrange
+    Job job = Job.builder().id(7).jobType(LocalJob.class.getName()).params("{}").build();
+
+    // act
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobService.restoreJobFunction(job));
+
+    // assert
+    assertEquals(LocalJob.class.getName() + " is not a QueueableJob", e.getMessage());
+  }
+
+  @Test
+  public void restoreJobFunction_reports_unknown_class_and_bad_params() throws Exception {
+    // arrange
+    Job unknown = Job.builder().id(7).jobType("no.such.Job").params("{}").build();
+    Job badParams =
+        Job.builder().id(8).jobType("edu.ucsb.cs156.example.jobs.TestJob").params("{").build();
+
+    // act
+    IllegalArgumentException e1 =
+        assertThrows(IllegalArgumentException.class, () -> jobService.restoreJobFunction(unknown));
+    IllegalArgumentException e2 =
+        assertThrows(
+            IllegalArgumentException.class, () -> jobService.restoreJobFunction(badParams));
+
+    // assert
+    assertEquals("Cannot restore job 7: no.such.Job", e1.getMessage());
+    assertEquals(true, e2.getMessage().startsWith("Cannot restore job 8: "));
+  }
+
+  @Test
+  public void failJob_logs_reason_and_marks_job_as_error() throws Exception {
+    // arrange
+    Job job = Job.builder().id(9).status("running").build();
+
+    // act
+    jobService.failJob(job, "gave up");
+
+    // assert
+    assertEquals("error", job.getStatus());
+    ArgumentCaptor<JobLogChunk> chunk = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository).save(chunk.capture());
+    assertEquals("gave up", chunk.getValue().getContent());
+    verify(jobsRepository).save(job);
+    verify(jobLogStreamService).finish(9L, "error");
+    assertEquals(1.0, meterRegistry.get("jobs.finished").tags("status", "error").counter().count());
+  }
+
+  @Test
+  public void job_stopped_while_running_ends_as_cancelled_and_is_stopped_only_once()
+      throws Exception {
+    // arrange
+    Job job = Job.builder().id(11).status("running").timeoutMillis(0L).build();
+    List<Boolean> stopped = new ArrayList<>();
+    JobContextConsumer jobFunction =
+        ctx -> {
+          stopped.add(jobService.isRunningHere(11));
+          stopped.add(jobService.stopRunningJob(11, "cancelled"));
+          stopped.add(jobService.stopRunningJob(11, "cancelled"));
+          stopped.add(ctx.isCancelled());
+        };
+
+    // act
+    jobService.runJobAsync(job, jobFunction);
+
+    // assert
+    assertEquals(List.of(true, true, false, true), stopped);
+    assertEquals("cancelled", job.getStatus());
+    assertEquals(false, Thread.currentThread().isInterrupted());
+    assertEquals(false, jobService.stopRunningJob(11, "cancelled"));
+    assertEquals(false, jobService.isRunningHere(11));
+    verify(jobLogStreamService).finish(11L, "cancelled");
+    assertEquals(
+        1L,
+        meterRegistry
+            .get("jobs.run")
+            .tags("type", "unknown", "status", "cancelled")
+            .timer()
+            .count());
+    assertEquals(0.0, meterRegistry.get("jobs.active").gauge().value());
+  }
+
+  @Test
+  public void job_that_throws_an_error_is_cleaned_up_then_the_error_is_rethrown() throws Exception {
+    // arrange
+    Job job = Job.builder().id(12).status("running").timeoutMillis(60_000L).build();
+    StackOverflowError error = new StackOverflowError("too deep");
+    JobContextConsumer jobFunction =
+        ctx -> {
+          throw error;
+        };
+
+    // act
+    StackOverflowError thrown =
+        assertThrows(StackOverflowError.class, () -> jobService.runJobAsync(job, jobFunction));
+
+    // assert
+    assertEquals(error, thrown);
+    assertEquals("error", job.getStatus());
+    assertNotNull(job.getFinishedAt());
+    assertEquals(false, jobService.isRunningHere(12));
+    ArgumentCaptor<JobLogChunk> chunk = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository).save(chunk.capture());
+    assertEquals("java.lang.StackOverflowError: too deep", chunk.getValue().getContent());
+    verify(jobLogStreamService).finish(12L, "error");
+    assertEquals(0.0, meterRegistry.get("jobs.active").gauge().value());
+  }
+
+  @Test
+  public void job_cancelled_while_it_waited_for_the_executor_never_runs() throws Exception {
+    // arrange
+    Job job = Job.builder().id(13).status("running").build();
+    when(jobsRepository.existsById(13L)).thenReturn(true);
+    when(jobsRepository.cancelIfNotFinished(13L)).thenReturn(1);
+    when(jobsRepository.findStatusById(13L)).thenReturn(Optional.of("cancelled"));
+    List<String> ran = new ArrayList<>();
+
+    // act
+    assertEquals(true, jobService.cancelJob(13L));
+    jobService.runJobAsync(job, ctx -> ran.add("ran"));
+
+    // assert
+    assertEquals(List.of(), ran);
+    assertEquals("cancelled", job.getStatus());
+    assertNull(job.getStartedAt());
+    assertEquals(false, jobService.isRunningHere(13));
+    verify(jobsRepository).finish(eq(13L), eq("cancelled"), isNull(), any());
+    verify(jobsRepository, never()).save(any(Job.class));
+    ArgumentCaptor<JobLogChunk> chunk = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunksRepository).save(chunk.capture());
+    assertEquals("Job cancelled before it started", chunk.getValue().getContent());
+    verify(jobLogStreamService).finish(13L, "cancelled");
+    assertEquals(
+        1.0, meterRegistry.get("jobs.finished").tags("status", "cancelled").counter().count());
+  }
+
+  @Test
+  public void a_cancel_written_while_the_job_ran_is_not_overwritten() throws Exception {
+    // arrange
+    Job job = Job.builder().id(14).status("running").build();
+    when(jobsRepository.findStatusById(14L))
+        .thenReturn(Optional.of("running"), Optional.of("cancelled"));
+
+    // act
+    jobService.runJobAsync(job, ctx -> {});
+
+    // assert
+    verify(jobsRepository).finish(eq(14L), eq("complete"), any(), any());
+    assertEquals("cancelled", job.getStatus());
+    verify(jobLogStreamService).finish(14L, "cancelled");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void cancel_stops_a_job_that_started_while_it_was_being_cancelled() throws Exception {
+    // arrange
+    Job job = Job.builder().id(15).status("running").build();
+    RunningJob running = new RunningJob(new Thread(() -> {}), new JobContext(null, job));
+    Map<Long, RunningJob> runningJobs =
+        (Map<Long, RunningJob>) ReflectionTestUtils.getField(jobService, "runningJobs");
+    when(jobsRepository.existsById(15L)).thenReturn(true);
+    when(jobsRepository.cancelIfNotFinished(15L))
+        .thenAnswer(
+            invocation -> {
+              // the job starts, and reads its status, before the cancel is written
+              runningJobs.put(15L, running);
+              return 1;
+            });
+
+    // act
+    boolean cancelled = jobService.cancelJob(15L);
+
+    // assert
+    assertEquals(true, cancelled);
+    assertEquals("cancelled", running.finish());
+  }
+
+  @Test
+  public void cancelling_a_finished_job_does_nothing() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(16L)).thenReturn(true);
+
+    // act and assert
+    assertEquals(false, jobService.cancelJob(16L));
+  }
+}
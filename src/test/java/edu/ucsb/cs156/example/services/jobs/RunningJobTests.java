@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import org.junit.jupiter.api.Test;
+
+public class RunningJobTests {
+
+  @Test
+  public void stop_cancels_context_and_interrupts_thread_once() throws Exception {
+    // arrange
+    JobContext context = new JobContext(null, Job.builder().build());
+    RunningJob running = new RunningJob(Thread.currentThread(), context);
+
+    // act
+    boolean first = running.stop("cancelled");
+    boolean second = running.stop("timed_out");
+
+    // assert
+    assertTrue(first);
+    assertFalse(second);
+    assertTrue(context.isCancelled());
+    assertTrue(Thread.currentThread().isInterrupted());
+    assertEquals("cancelled", running.finish());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void finished_job_is_not_stopped() throws Exception {
+    // arrange
+    JobContext context = new JobContext(null, Job.builder().build());
+    RunningJob running = new RunningJob(Thread.currentThread(), context);
+
+    // act
+    String stopStatus = running.finish();
+    boolean stopped = running.stop("cancelled");
+
+    // assert
+    assertNull(stopStatus);
+    assertFalse(stopped);
+    assertFalse(context.isCancelled());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+}
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.testconfig;
 
 import edu.ucsb.cs156.example.config.SecurityConfig;
+import edu.ucsb.cs156.example.services.AdminService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import org.springframework.boot.test.context.TestConfiguration;
@@ -8,7 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 
 @TestConfiguration
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, AdminService.class})
 public class TestConfig {
 
   @Bean